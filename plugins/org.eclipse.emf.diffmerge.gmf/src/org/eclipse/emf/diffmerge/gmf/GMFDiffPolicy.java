@@ -66,6 +66,20 @@ public class GMFDiffPolicy extends ConfigurableDiffPolicy {
     return result;
   }
   
+  /**
+   * No key is provided for the values whose equality is redefined in
+   * considerEqual(Object, Object, EAttribute).
+   * @see org.eclipse.emf.diffmerge.impl.policies.DefaultDiffPolicy#getEqualityKey(Object, EAttribute)
+   */
+  @Override
+  public Object getEqualityKey(Object value_p, EAttribute attribute_p) {
+    Object result = super.getEqualityKey(value_p, attribute_p);
+    if (NotationPackage.eINSTANCE.getRelativeBendpoints_Points().equals(attribute_p) ||
+        value_p instanceof RelativeBendpoint || value_p instanceof Color)
+      result = null;
+    return result;
+  }
+  
   /**
    * Defines a custom equality relation on SWT Color.
    */
@@ -25,6 +25,8 @@ import org.eclipse.emf.edit.domain.EditingDomain;
 
 /**
  * A scope definition based on a URI.
+ * The scopes digest the persistent contents of the resources they load, so that
+ * the elements of byte-identical resources are compared quickly.
  * @author Olivier Constant
  */
 public class URIScopeDefinition extends AbstractScopeDefinition {
@@ -59,7 +61,10 @@ public class URIScopeDefinition extends AbstractScopeDefinition {
    * @return a non-null scope
    */
   protected IEditableModelScope createScopeOnEditingDomain(EditingDomain editingDomain_p) {
-    return new FragmentedModelScope(getEntrypoint(), editingDomain_p, !isEditable());
+    FragmentedModelScope result = new FragmentedModelScope(
+        getEntrypoint(), editingDomain_p, !isEditable());
+    result.setDigesting(true);
+    return result;
   }
   
   /**
@@ -68,7 +73,10 @@ public class URIScopeDefinition extends AbstractScopeDefinition {
    * @return a non-null scope
    */
   protected IEditableModelScope createScopeOnResourceSet(ResourceSet resourceSet_p) {
-    return new FragmentedModelScope(getEntrypoint(), resourceSet_p, !isEditable());
+    FragmentedModelScope result = new FragmentedModelScope(
+        getEntrypoint(), resourceSet_p, !isEditable());
+    result.setDigesting(true);
+    return result;
   }
   
   /**
@@ -27,6 +27,7 @@ import org.eclipse.emf.diffmerge.api.IComparison;
 import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
 import org.eclipse.emf.diffmerge.api.scopes.IPersistentModelScope;
 import org.eclipse.emf.diffmerge.diffdata.EComparison;
+import org.eclipse.emf.diffmerge.diffdata.impl.EComparisonImpl;
 import org.eclipse.emf.diffmerge.ui.EMFDiffMergeUIPlugin;
 import org.eclipse.emf.diffmerge.ui.Messages;
 import org.eclipse.emf.diffmerge.ui.diffuidata.ComparisonSelection;
@@ -399,6 +400,10 @@ public abstract class AbstractComparisonViewer extends Viewer implements IFlusha
             stack.undo();
           else if (!undo_p && stack.canRedo())
             stack.redo();
+          EComparison comparison = getComparison();
+          if (comparison instanceof EComparisonImpl)
+            // Undo/redo changes the comparison without updating its statistics
+            ((EComparisonImpl)comparison).getStatistics().invalidate();
           boolean dirty = stack.getUndoCommand() != getLastCommandBeforeSave();
           firePropertyChangeEvent(CompareEditorInput.DIRTY_STATE, new Boolean(dirty));
           undoRedoPerformed(undo_p);
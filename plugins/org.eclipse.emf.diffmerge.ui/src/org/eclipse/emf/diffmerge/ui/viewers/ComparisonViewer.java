@@ -41,6 +41,7 @@ import org.eclipse.emf.diffmerge.diffdata.EElementRelativePresence;
 import org.eclipse.emf.diffmerge.diffdata.EMatch;
 import org.eclipse.emf.diffmerge.diffdata.EMergeableDifference;
 import org.eclipse.emf.diffmerge.diffdata.EValuePresence;
+import org.eclipse.emf.diffmerge.impl.helpers.MergeOperation;
 import org.eclipse.emf.diffmerge.ui.EMFDiffMergeUIPlugin;
 import org.eclipse.emf.diffmerge.ui.EMFDiffMergeUIPlugin.ImageID;
 import org.eclipse.emf.diffmerge.ui.Messages;
@@ -849,7 +850,12 @@ public class ComparisonViewer extends AbstractComparisonViewer {
                  * @see java.lang.Runnable#run()
                  */
                 public void run() {
-                  merged.addAll(getComparison().merge(toMerge, destination, true, monitor_p));
+                  MergeOperation operation = new MergeOperation(
+                      getComparison(), toMerge, destination, true);
+                  // Without undo/redo, changes need not be notified during the merge
+                  operation.setSuspendNotifications(!input.isUndoRedoSupported());
+                  operation.run(monitor_p);
+                  merged.addAll(operation.getOutput());
                   getUIComparison().setLastActionSelection(selection);
                 }
               };
@@ -22,6 +22,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.diffmerge.api.diff.IAttributeValuePresence;
 import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex;
 import org.eclipse.emf.diffmerge.api.diff.IElementPresence;
 import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
 import org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope;
@@ -291,4 +292,21 @@ public interface IComparison {
         Role presenceRole_p, boolean isOrder_p);
   }
   
+  
+  /**
+   * An optional extension of IComparison for comparisons which provide an index
+   * of their differences.
+   */
+  public static interface Indexed extends IComparison {
+    
+    /**
+     * Return an index which allows efficiently retrieving the differences of this
+     * comparison according to criteria such as their feature, the type or resource
+     * of the element they relate to, or their state.
+     * The index is built on its first query, then maintained as the comparison evolves.
+     * @return a non-null index
+     */
+    IDifferenceIndex getDifferenceIndex();
+  }
+  
 }
@@ -67,4 +67,44 @@ public interface IDiffPolicy {
    */
   boolean coverValue(Object value_p, EAttribute attribute_p);
   
+  
+  /**
+   * A diff policy which is able to provide hash keys for attribute values,
+   * so that many-valued attributes can be compared in linear time.
+   */
+  interface Hashing extends IDiffPolicy {
+    /**
+     * Return a key for the given attribute value such that, for any values v1 and v2,
+     * considerEqual(v1, v2, attribute_p) if and only if the keys of v1 and v2 are
+     * equal in the sense of Object#equals(Object) and Object#hashCode().
+     * Null may be returned if no such key can be provided, in which case attribute
+     * values are compared via considerEqual(Object, Object, EAttribute).
+     * @param value_p a non-null attribute value
+     * @param attribute_p a non-null attribute
+     * @return a potentially null object
+     */
+    Object getEqualityKey(Object value_p, EAttribute attribute_p);
+  }
+  
+  
+  /**
+   * A diff policy which may require differences to be detected in parallel.
+   * Differences are detected sequentially with diff policies which do not
+   * implement this interface.
+   */
+  interface Concurrent extends IDiffPolicy {
+    /**
+     * Return the number of threads on which differences must be detected,
+     * 1 meaning sequential detection. The resulting differences do not depend
+     * on the number of threads.
+     * A number greater than 1 may only be returned if the operations of this policy
+     * may be called concurrently, provided that the compared scopes are not modified
+     * meanwhile. Since the thread-safety of redefinitions of these operations cannot
+     * be assumed, implementations intended for being extended should return 1
+     * unless explicitly configured otherwise.
+     * @return a positive int
+     */
+    int getThreadCount();
+  }
+  
 }
@@ -230,4 +230,54 @@ public interface IMapping {
         EObject element2_p, Role role2_p);
   }
   
+  
+  /**
+   * An optional extension of IMapping.Editable for mappings which support
+   * bulk construction phases.
+   */
+  public static interface BulkConstructible extends Editable {
+    
+    /**
+     * Return whether a bulk construction phase is in progress for this mapping.
+     * Matches may rely on it to register related differences without uniqueness checks.
+     * @see IMapping.BulkConstructible#setBulkConstruction(boolean)
+     * @return whether setBulkConstruction(true) has been called and not yet followed
+     *         by setBulkConstruction(false)
+     */
+    boolean isBulkConstruction();
+    
+    /**
+     * Start or end a bulk construction phase for this mapping.
+     * During such a phase, new matches are added without uniqueness checks nor
+     * notifications, and matches removed by map or mapIncrementally are only marked
+     * as removed: getModifiableContents() may thus still include them until the
+     * phase ends, while getContents(), size() and getMatchFor(EObject, Role)
+     * are always up-to-date.
+     * In addition, the matches register new related differences without uniqueness
+     * checks nor notifications: every difference is then assumed to be registered
+     * at most once.
+     * @param bulk_p true to start a bulk construction phase, false to end it
+     */
+    void setBulkConstruction(boolean bulk_p);
+  }
+  
+  
+  /**
+   * An optional extension of IMapping.Editable for mappings which can tell
+   * whether their cross-references have been computed.
+   */
+  public static interface CrossReferencing extends Editable {
+    
+    /**
+     * Return whether the cross-references of the elements of the given role have
+     * been computed since the creation or the last clearing of this mapping.
+     * If not, getCrossReferences(EObject, Role) returns no cross-reference for
+     * the elements of the given role.
+     * @see IMapping#getCrossReferences(EObject, Role)
+     * @see IMapping.Editable#crossReference(Role)
+     * @param role_p a non-null role
+     */
+    boolean isCrossReferenced(Role role_p);
+  }
+  
 }
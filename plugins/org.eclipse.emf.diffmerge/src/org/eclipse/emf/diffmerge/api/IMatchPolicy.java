@@ -69,6 +69,46 @@ public interface IMatchPolicy {
   boolean keepMatchIDs();
   
   
+  /**
+   * A match policy which may cache information about model elements during
+   * a matching phase, typically for computing match IDs from other match IDs.
+   * The models must not be modified during a matching phase.
+   */
+  interface Caching extends IMatchPolicy {
+    /**
+     * Notify this policy that a matching phase starts
+     */
+    void matchingStarted();
+    
+    /**
+     * Notify this policy that the current matching phase has ended.
+     * Cached information must be discarded.
+     */
+    void matchingEnded();
+  }
+  
+  
+  /**
+   * A match policy which may require match IDs to be computed in parallel.
+   * Match IDs are computed sequentially with match policies which do not
+   * implement this interface.
+   */
+  interface Concurrent extends IMatchPolicy {
+    /**
+     * Return the number of threads on which match IDs must be computed during
+     * the matching phase, 1 meaning sequential computation. The resulting mapping
+     * does not depend on the number of threads.
+     * A number greater than 1 may only be returned if getMatchID(EObject, IModelScope)
+     * may be called concurrently, provided that the scopes are not modified meanwhile.
+     * Since the thread-safety of redefinitions of getMatchID(EObject, IModelScope)
+     * cannot be assumed, implementations intended for being extended should return 1
+     * unless explicitly configured otherwise.
+     * @return a positive int
+     */
+    int getThreadCount();
+  }
+  
+  
   /**
    * A simple comparator that is solely based on the natural order of objects
    * that implement Comparable, such as Strings.
@@ -0,0 +1,122 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.api.diff;
+
+import java.util.Collection;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+
+
+/**
+ * An index of the differences of a comparison which allows retrieving the
+ * differences that satisfy given criteria without iterating the comparison.
+ * The index provides one set of differences, or posting set, per value of each
+ * criterion. Differences which satisfy several criteria are obtained by
+ * intersecting the corresponding posting sets.
+ * Posting sets are returned as live, unmodifiable views which follow the evolution
+ * of the comparison, so they must be copied, e.g., by intersecting them, before
+ * being iterated while the comparison is being modified, e.g., for merging the
+ * unmerged differences. Only intersections and unions of posting sets are snapshots.
+ * @see org.eclipse.emf.diffmerge.api.IComparison.Indexed#getDifferenceIndex()
+ */
+public interface IDifferenceIndex {
+  
+  /**
+   * The states of differences which can be used as criteria.
+   */
+  public static enum State {
+  
+    /** The difference is conflicting */
+    CONFLICTING,
+  
+    /** The difference has been merged */
+    MERGED,
+  
+    /** The difference has not been merged */
+    UNMERGED
+  
+  }
+  
+  
+  /**
+   * Return the differences of the given kind
+   * @param kind_p a non-null sub-interface of IDifference, e.g., IElementPresence.class
+   * @return a non-null, potentially empty, unmodifiable set which is a snapshot
+   *         if the given kind covers several kinds of differences, e.g., IValuePresence.class
+   */
+  Collection<IDifference> getDifferences(Class<? extends IDifference> kind_p);
+  
+  /**
+   * Return the differences whose holder element is an instance of the given type.
+   * The holder element of a difference relative to an element is this element,
+   * in any role covered by its match.
+   * @param type_p a non-null EClass
+   * @param includeSubtypes_p whether differences on instances of subtypes of the given
+   *        type must also be included
+   * @return a non-null, potentially empty, unmodifiable set which is a snapshot
+   *         if subtypes are included
+   */
+  Collection<IDifference> getDifferences(EClass type_p, boolean includeSubtypes_p);
+  
+  /**
+   * Return the value presences on the given feature
+   * @param feature_p a non-null attribute or reference
+   * @return a non-null, potentially empty, unmodifiable set
+   */
+  Collection<IDifference> getDifferences(EStructuralFeature feature_p);
+  
+  /**
+   * Return the differences whose holder element belongs to the given resource
+   * in some role. Resources are those of the holder elements at the time of the last
+   * query on the given resource, provided the models are only modified through the
+   * comparison, e.g., by merging.
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#involves(Resource)
+   * @param resource_p a non-null resource
+   * @return a non-null, potentially empty, unmodifiable set
+   */
+  Collection<IDifference> getDifferences(Resource resource_p);
+  
+  /**
+   * Return the differences in the given state
+   * @param state_p a non-null state
+   * @return a non-null, potentially empty, unmodifiable set
+   */
+  Collection<IDifference> getDifferences(State state_p);
+  
+  /**
+   * Return the differences which belong to both given sets, typically posting
+   * sets of this index. The time required is proportional to the size of the
+   * smallest set if the other one is a set.
+   * @param differences1_p a non-null collection of differences
+   * @param differences2_p a non-null collection of differences
+   * @return a non-null, potentially empty, unmodifiable snapshot set
+   */
+  Collection<IDifference> intersect(Collection<? extends IDifference> differences1_p,
+      Collection<? extends IDifference> differences2_p);
+  
+  /**
+   * Return the differences which belong to all the given sets, typically posting
+   * sets of this index. The time required is proportional to the size of the
+   * smallest set if the other ones are sets.
+   * @param differenceSets_p a non-null, non-empty collection of non-null collections
+   *        of differences
+   * @return a non-null, potentially empty, unmodifiable snapshot set
+   */
+  Collection<IDifference> intersect(
+      Collection<? extends Collection<? extends IDifference>> differenceSets_p);
+  
+}
@@ -79,4 +79,27 @@ public interface IFragmentedModelScope extends IPersistentModelScope {
     // Nothing more
   }
   
+  
+  /**
+   * An IFragmentedModelScope which provides digests of the persistent contents of
+   * its resources, so that resources whose contents are byte-identical across
+   * scopes can be identified without comparing their elements.
+   */
+  public static interface Digesting extends IFragmentedModelScope {
+    /**
+     * Return a digest of the persistent contents of the given resource, provided
+     * that the resource is loaded and has not been modified since it was loaded.
+     * Two resources have byte-identical persistent contents if their digests are equal.
+     * @param resource_p a non-null resource belonging to getResources()
+     * @return a potentially null array of bytes, where null means that no digest is available
+     */
+    byte[] getDigest(Resource resource_p);
+    
+    /**
+     * Return whether digests may be provided for the resources of this scope
+     * @see IFragmentedModelScope.Digesting#getDigest(Resource)
+     */
+    boolean isDigesting();
+  }
+  
 }
@@ -18,7 +18,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,7 +28,6 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.common.notify.NotificationChain;
-import org.eclipse.emf.common.util.AbstractTreeIterator;
 import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.diffmerge.Messages;
 import org.eclipse.emf.diffmerge.api.IComparison;
@@ -42,16 +40,18 @@ import org.eclipse.emf.diffmerge.api.IMergeSelector;
 import org.eclipse.emf.diffmerge.api.Role;
 import org.eclipse.emf.diffmerge.api.diff.IAttributeValuePresence;
 import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex;
 import org.eclipse.emf.diffmerge.api.diff.IElementPresence;
 import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
 import org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope;
-import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
 import org.eclipse.emf.diffmerge.diffdata.DiffdataPackage;
 import org.eclipse.emf.diffmerge.diffdata.EAttributeValuePresence;
 import org.eclipse.emf.diffmerge.diffdata.EComparison;
 import org.eclipse.emf.diffmerge.diffdata.EMapping;
 import org.eclipse.emf.diffmerge.diffdata.EMatch;
 import org.eclipse.emf.diffmerge.diffdata.EReferenceValuePresence;
+import org.eclipse.emf.diffmerge.impl.helpers.ComparisonBehavior;
+import org.eclipse.emf.diffmerge.impl.helpers.ComparisonStatistics;
 import org.eclipse.emf.diffmerge.impl.helpers.DiffOperation;
 import org.eclipse.emf.diffmerge.impl.helpers.MatchOperation;
 import org.eclipse.emf.diffmerge.impl.helpers.MergeOperation;
@@ -59,10 +59,6 @@ import org.eclipse.emf.diffmerge.impl.policies.DefaultDiffPolicy;
 import org.eclipse.emf.diffmerge.impl.policies.DefaultMatchPolicy;
 import org.eclipse.emf.diffmerge.impl.policies.DefaultMergePolicy;
 import org.eclipse.emf.diffmerge.util.IExpensiveOperation;
-import org.eclipse.emf.diffmerge.util.structures.FArrayList;
-import org.eclipse.emf.diffmerge.util.structures.FHashSet;
-import org.eclipse.emf.diffmerge.util.structures.FOrderedSet;
-import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
 import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
@@ -90,7 +86,8 @@ import org.eclipse.emf.ecore.impl.EObjectImpl;
  *
  * @generated
  */
-public class EComparisonImpl extends EObjectImpl implements EComparison {
+public class EComparisonImpl extends EObjectImpl implements EComparison,
+    IComparison.Indexed {
   /**
    * The default value of the '{@link #getAncestorScope() <em>Ancestor Scope</em>}' attribute.
    * <!-- begin-user-doc -->
@@ -227,6 +224,12 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    */
   private final Map<Role, Set<Object>> _duplicateIDs;
 
+  /**
+   * The non-null, incrementally maintained statistics on the contents of this comparison
+   * @generated NOT
+   */
+  private final ComparisonStatistics _statistics;
+
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
@@ -239,6 +242,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
     duplicateIDs.put(Role.TARGET, new HashSet<Object>(0));
     duplicateIDs.put(Role.REFERENCE, new HashSet<Object>(0));
     _duplicateIDs = Collections.unmodifiableMap(duplicateIDs);
+    _statistics = new ComparisonStatistics(this);
   }
 
   /**
@@ -643,6 +647,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    */
   public void clear() {
     ((IMapping.Editable) getMapping()).clear();
+    _statistics.invalidate();
     setLastMatchPolicy(null);
     setLastDiffPolicy(null);
     setLastMergePolicy(null);
@@ -710,22 +715,8 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @see org.eclipse.emf.diffmerge.api.IComparison#getAllContents(org.eclipse.emf.diffmerge.api.Role)
    * @generated NOT
    */
-  @SuppressWarnings("serial")
-  public TreeIterator<IMatch> getAllContents(final Role role_p) {
-    return new AbstractTreeIterator<IMatch>(this, false) {
-      /**
-       * @see org.eclipse.emf.common.util.AbstractTreeIterator#getChildren(Object)
-       */
-      @Override
-      protected Iterator<? extends IMatch> getChildren(Object object_p) {
-        Iterator<? extends IMatch> result;
-        if (object_p instanceof IComparison)
-          result = ((IComparison) object_p).getContents(role_p).iterator();
-        else
-          result = getContentsOf((IMatch) object_p, role_p).iterator();
-        return result;
-      }
-    };
+  public TreeIterator<IMatch> getAllContents(Role role_p) {
+    return ComparisonBehavior.getAllContents(this, role_p);
   }
 
   /**
@@ -733,16 +724,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public IMatch getContainerOf(IMatch match_p, Role role_p) {
-    IMatch result = null;
-    EObject child = match_p.get(role_p);
-    if (child != null) {
-      IModelScope scope = getScope(role_p);
-      EObject container = scope.getContainer(child);
-      if (container != null) {
-        result = getMapping().getMatchFor(container, role_p);
-      }
-    }
-    return result;
+    return ComparisonBehavior.getContainerOf(this, match_p, role_p);
   }
 
   /**
@@ -750,14 +732,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public List<IMatch> getContents() {
-    List<IMatch> targetMatches = getContents(Role.TARGET);
-    List<IMatch> referenceMatches = getContents(Role.REFERENCE);
-    List<IMatch> result = new FArrayList<IMatch>(referenceMatches, null);
-    for (IMatch targetMatch : targetMatches) {
-      if (!result.contains(targetMatch))
-        result.add(targetMatch);
-    }
-    return Collections.unmodifiableList(result);
+    return ComparisonBehavior.getContents(this);
   }
 
   /**
@@ -765,16 +740,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public List<IMatch> getContents(Role role_p) {
-    List<IMatch> result = new FArrayList<IMatch>();
-    // Defining 'contents': list of elements whose matches must be retrieved
-    List<EObject> contents = getScope(role_p).getContents();
-    // Retrieving matches
-    for (EObject child : contents) {
-      IMatch childMatch = getMapping().getMatchFor(child, role_p);
-      if (childMatch != null)
-        result.add(childMatch);
-    }
-    return Collections.unmodifiableList(result);
+    return ComparisonBehavior.getContents(this, role_p);
   }
 
   /**
@@ -782,13 +748,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public List<IMatch> getContentsOf(IMatch match_p) {
-    List<IMatch> targetMatches = getContentsOf(match_p, Role.TARGET);
-    List<IMatch> referenceMatches = getContentsOf(match_p, Role.REFERENCE);
-    List<IMatch> result = new FOrderedSet<IMatch>(referenceMatches, null);
-    for (IMatch targetMatch : targetMatches) {
-      result.add(targetMatch);
-    }
-    return Collections.unmodifiableList(result);
+    return ComparisonBehavior.getContentsOf(this, match_p);
   }
 
   /**
@@ -796,23 +756,15 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public List<IMatch> getContentsOf(IMatch match_p, Role role_p) {
-    List<IMatch> result = new FArrayList<IMatch>();
-    // Defining 'contents': list of elements whose matches must be retrieved
-    List<EObject> contents = null;
-    EObject container = match_p.get(role_p);
-    if (container != null) {
-      IModelScope scope = getScope(role_p);
-      contents = scope.getContents(container);
-    }
-    // Retrieving matches
-    if (contents != null) {
-      for (EObject child : contents) {
-        IMatch childMatch = getMapping().getMatchFor(child, role_p);
-        if (childMatch != null)
-          result.add(childMatch);
-      }
-    }
-    return Collections.unmodifiableList(result);
+    return ComparisonBehavior.getContentsOf(this, match_p, role_p);
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison.Indexed#getDifferenceIndex()
+   * @generated NOT
+   */
+  public IDifferenceIndex getDifferenceIndex() {
+    return _statistics.getDifferenceIndex();
   }
 
   /**
@@ -820,13 +772,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public List<IDifference> getDifferences(Role role_p) {
-    List<IDifference> result = new FArrayList<IDifference>();
-    Iterator<IMatch> it = getAllContents(role_p);
-    while (it.hasNext()) {
-      IMatch current = it.next();
-      result.addAll(current.getPresenceDifferencesIn(role_p));
-    }
-    return result;
+    return ComparisonBehavior.getDifferences(this, role_p);
   }
 
   /**
@@ -866,10 +812,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public int getNbDifferences() {
-    int result = 0;
-    for (IMatch match : getMapping().getContents())
-      result += match.getRelatedDifferences().size();
-    return result;
+    return _statistics.getNbDifferences();
   }
 
   /**
@@ -877,10 +820,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public int getNbNoContainmentDifferences() {
-    int result = 0;
-    for (IMatch match : getMapping().getContents())
-      result += match.getNbNoContainmentDifferences();
-    return result;
+    return _statistics.getNbNoContainmentDifferences();
   }
 
   /**
@@ -888,15 +828,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public Collection<IDifference> getRemainingDifferences() {
-    Collection<IDifference> result = new FHashSet<IDifference>(
-        IEqualityTester.BY_EQUALS);
-    for (IMatch match : getMapping().getContents()) {
-      for (IDifference difference : match.getAllDifferences()) {
-        if (!difference.isMerged())
-          result.add(difference);
-      }
-    }
-    return Collections.unmodifiableCollection(result);
+    return _statistics.getRemainingDifferences();
   }
 
   /**
@@ -918,18 +850,21 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
     return result;
   }
 
+  /**
+   * Return the incrementally maintained statistics on the contents of this comparison
+   * @return a non-null object
+   * @generated NOT
+   */
+  public ComparisonStatistics getStatistics() {
+    return _statistics;
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.api.IComparison#hasRemainingDifferences()
    * @generated NOT
    */
   public boolean hasRemainingDifferences() {
-    for (IMatch match : getMapping().getContents()) {
-      for (IDifference difference : match.getAllDifferences()) {
-        if (!difference.isMerged())
-          return true;
-      }
-    }
-    return false;
+    return _statistics.hasRemainingDifferences();
   }
 
   /**
@@ -937,11 +872,7 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @generated NOT
    */
   public boolean isConsistent() {
-    for (Role role : Role.values()) {
-      if (!getDuplicateMatchIDs(role).isEmpty())
-        return false;
-    }
-    return true;
+    return ComparisonBehavior.isConsistent(this);
   }
 
   /**
@@ -956,17 +887,12 @@ public class EComparisonImpl extends EObjectImpl implements EComparison {
    * @see org.eclipse.emf.diffmerge.api.IComparison#merge(org.eclipse.emf.diffmerge.api.Role, boolean, org.eclipse.core.runtime.IProgressMonitor)
    * @generated not
    */
-  public Collection<IDifference> merge(final Role destination_p,
+  public Collection<IDifference> merge(Role destination_p,
       boolean updateReferences_p, IProgressMonitor monitor_p) {
-    Collection<IDifference> result = merge(new IMergeSelector() {
-      /**
-       * @see org.eclipse.emf.diffmerge.api.IMergeSelector#getMergeDirection(org.eclipse.emf.diffmerge.api.diff.IDifference)
-       */
-      public Role getMergeDirection(IDifference difference_p) {
-        return destination_p;
-      }
-    }, updateReferences_p, monitor_p);
-    return result;
+    MergeOperation operation = new MergeOperation(this, destination_p,
+        updateReferences_p);
+    operation.run(monitor_p);
+    return operation.getOutput();
   }
 
   /**
@@ -15,20 +15,14 @@
 package org.eclipse.emf.diffmerge.diffdata.impl;
 
 import org.eclipse.emf.common.notify.Notification;
-import org.eclipse.emf.diffmerge.api.IDiffPolicy;
-import org.eclipse.emf.diffmerge.api.IMapping;
 import org.eclipse.emf.diffmerge.api.IMatch;
-import org.eclipse.emf.diffmerge.api.IMergePolicy;
-import org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope;
 import org.eclipse.emf.diffmerge.diffdata.DiffdataPackage;
 import org.eclipse.emf.diffmerge.diffdata.EComparison;
 import org.eclipse.emf.diffmerge.diffdata.EElementPresence;
 import org.eclipse.emf.diffmerge.diffdata.EMatch;
-import org.eclipse.emf.diffmerge.impl.helpers.BidirectionalComparisonCopier;
+import org.eclipse.emf.diffmerge.impl.helpers.DifferenceMerger;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.EReference;
-import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
 
@@ -178,40 +172,7 @@ public class EElementPresenceImpl extends EElementRelativePresenceImpl
    */
   @Override
   protected void mergeAddition() {
-    IMapping.Editable mapping = getComparison().getMapping();
-    IMatch eltMatch = getElementMatch();
-    EObject clone = eltMatch.isPartial() ? mapping.completeMatch(eltMatch)
-        : eltMatch.get(getAbsenceRole());
-    boolean addedToScope = false;
-    boolean actuallyAdded = false;
-    IMergePolicy mergePolicy = getComparison().getLastMergePolicy();
-    if (getComparison().getLastMergePolicy().bindPresenceToOwnership(getAbsenceScope())
-        && !isRoot()) {
-      EObject container = getOwnerMatch().get(getAbsenceRole());
-      if (container != null) {
-        EReference containment = getPresenceScope()
-            .getContainment(getElement());
-        actuallyAdded = getAbsenceScope().add(container, containment, clone);
-        addedToScope = true; // Even if !actuallyAdded
-        // Order handling
-        IDiffPolicy diffPolicy = getComparison().getLastDiffPolicy();
-        if (diffPolicy != null && actuallyAdded
-            && diffPolicy.considerOrdered(containment)) {
-          // Move added value if required
-          int index = mergePolicy.getDesiredValuePosition(getComparison(),
-              getAbsenceRole(), getOwnerMatch(), containment, eltMatch);
-          if (index >= 0)
-            getAbsenceScope().move(container, containment, index, -1);
-        }
-      }
-      // Else container will be created and ownership automatically applied by the copier,
-      // if containment tree of the scope is consistent with matching
-    }
-    if (!addedToScope)
-      actuallyAdded = getAbsenceScope().add(clone);
-    if (actuallyAdded)
-      BidirectionalComparisonCopier.handleIDCopy(
-          getElement(), getPresenceScope(), clone, getAbsenceScope(), mergePolicy);
+    DifferenceMerger.mergeElementAddition(this);
   }
 
   /**
@@ -220,18 +181,7 @@ public class EElementPresenceImpl extends EElementRelativePresenceImpl
    */
   @Override
   protected void mergeRemoval() {
-    if (isRoot()
-        || getElementMatch().getOwnershipDifference(getPresenceRole()) == null) {
-      IEditableModelScope presenceScope = getPresenceScope();
-      EObject element = getElement();
-      presenceScope.remove(element);
-      // Delete element
-      for (EStructuralFeature.Setting setting : getComparison().getMapping()
-          .getCrossReferences(element, getPresenceRole())) {
-        presenceScope.remove(setting.getEObject(),
-            (EReference) setting.getEStructuralFeature(), element);
-      }
-    } // Else handled by ownership
+    DifferenceMerger.mergeElementRemoval(this);
   }
 
 } //EElementPresenceImpl
@@ -14,18 +14,20 @@
  */
 package org.eclipse.emf.diffmerge.diffdata.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.emf.common.notify.NotificationChain;
-import org.eclipse.emf.common.notify.Notifier;
-import org.eclipse.emf.common.util.ECollections;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.EMap;
-import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.diffmerge.api.IMapping;
 import org.eclipse.emf.diffmerge.api.IMatch;
 import org.eclipse.emf.diffmerge.api.Role;
 import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
@@ -34,19 +36,21 @@ import org.eclipse.emf.diffmerge.diffdata.EComparison;
 import org.eclipse.emf.diffmerge.diffdata.EMapping;
 import org.eclipse.emf.diffmerge.diffdata.EMatch;
 import org.eclipse.emf.diffmerge.impl.helpers.BidirectionalComparisonCopier;
-import org.eclipse.emf.diffmerge.util.structures.FArrayList;
-import org.eclipse.emf.diffmerge.util.structures.FHashMap;
+import org.eclipse.emf.diffmerge.impl.helpers.ComparisonStatistics;
+import org.eclipse.emf.diffmerge.impl.helpers.MappingBehavior;
+import org.eclipse.emf.diffmerge.impl.helpers.MappingCrossReferencer;
+import org.eclipse.emf.diffmerge.util.structures.ExcludingCollection;
+import org.eclipse.emf.diffmerge.util.structures.FHashSet;
+import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
+import org.eclipse.emf.diffmerge.util.structures.IndexedEObjectResolvingEList;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
-import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.EStructuralFeature.Setting;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.EObjectImpl;
 import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
 import org.eclipse.emf.ecore.util.EObjectContainmentEList;
-import org.eclipse.emf.ecore.util.EObjectResolvingEList;
-import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.InternalEList;
 
 /**
@@ -62,9 +66,10 @@ import org.eclipse.emf.ecore.util.InternalEList;
  * </ul>
  * </p>
  *
- * @generated
+ * @generated NOT
  */
-public class EMappingImpl extends EObjectImpl implements EMapping {
+public class EMappingImpl extends EObjectImpl implements EMapping,
+    IMapping.BulkConstructible, IMapping.CrossReferencing {
   /**
    * The cached value of the '{@link #getModifiableContents() <em>Modifiable Contents</em>}' containment reference list.
    * <!-- begin-user-doc -->
@@ -114,10 +119,26 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
   private final ScopeCrossReferencer _referenceCrossReferencer;
 
   /**
-   * A non-null cross reference adapter on this mapping for retrieving matches from model elements
+   * The identity-based indexes from model elements to matches, per role,
+   * or null if they must be rebuilt from the contents.
+   * They are maintained by the contents list and by the matches themselves,
+   * so that all changes are taken into account including undo and direct edits.
    * @generated NOT
    */
-  private final MatchCrossReferenceAdapter _matchAdapter;
+  private transient Map<Role, Map<EObject, EMatch>> _matchIndexes;
+
+  /**
+   * The matches removed during the current bulk construction phase,
+   * or null if no such phase is in progress
+   * @generated NOT
+   */
+  private transient Set<IMatch> _removedMatches;
+
+  /**
+   * Whether notifications were delivered before the current bulk construction phase
+   * @generated NOT
+   */
+  private transient boolean _deliverBeforeBulk;
 
   /**
    * <!-- begin-user-doc -->
@@ -129,8 +150,6 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
     _copier = new BidirectionalComparisonCopier();
     _targetCrossReferencer = new ScopeCrossReferencer(Role.TARGET);
     _referenceCrossReferencer = new ScopeCrossReferencer(Role.REFERENCE);
-    _matchAdapter = new MatchCrossReferenceAdapter();
-    eAdapters().add(_matchAdapter);
   }
 
   /**
@@ -145,13 +164,13 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
 
   /**
    * <!-- begin-user-doc -->
+   * The list keeps the match indexes up-to-date whatever the origin of its changes.
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public EList<EMatch> getModifiableContents() {
     if (modifiableContents == null) {
-      modifiableContents = new EObjectContainmentEList<EMatch>(EMatch.class,
-          this, DiffdataPackage.EMAPPING__MODIFIABLE_CONTENTS);
+      modifiableContents = new MatchContainmentList();
     }
     return modifiableContents;
   }
@@ -159,11 +178,11 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public EList<IMatch> getReferenceCompletedMatches() {
     if (referenceCompletedMatches == null) {
-      referenceCompletedMatches = new EObjectResolvingEList<IMatch>(
+      referenceCompletedMatches = new IndexedEObjectResolvingEList<IMatch>(
           IMatch.class, this,
           DiffdataPackage.EMAPPING__REFERENCE_COMPLETED_MATCHES);
     }
@@ -173,12 +192,12 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public EList<IMatch> getTargetCompletedMatches() {
     if (targetCompletedMatches == null) {
-      targetCompletedMatches = new EObjectResolvingEList<IMatch>(IMatch.class,
-          this, DiffdataPackage.EMAPPING__TARGET_COMPLETED_MATCHES);
+      targetCompletedMatches = new IndexedEObjectResolvingEList<IMatch>(
+          IMatch.class, this, DiffdataPackage.EMAPPING__TARGET_COMPLETED_MATCHES);
     }
     return targetCompletedMatches;
   }
@@ -278,16 +297,38 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
     return super.eIsSet(featureID);
   }
 
+  /**
+   * Add the given new match to this mapping
+   * @param match_p a non-null match which does not belong to this mapping
+   * @generated NOT
+   */
+  @SuppressWarnings("unchecked")
+  protected void addMatch(EMatch match_p) {
+    if (_removedMatches != null)
+      ((InternalEList<EMatch>) getModifiableContents()).addUnique(match_p);
+    else
+      getModifiableContents().add(match_p);
+    ComparisonStatistics statistics = getStatistics();
+    if (statistics != null)
+      statistics.matchAdded(match_p);
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.api.IMapping.Editable#clear()
    * @generated NOT
    */
   public void clear() {
+    if (_removedMatches != null)
+      _removedMatches.clear();
     getModifiableContents().clear();
     getTargetCompletedMatches().clear();
     getReferenceCompletedMatches().clear();
+    _matchIndexes = null;
     _targetCrossReferencer.clear();
     _referenceCrossReferencer.clear();
+    ComparisonStatistics statistics = getStatistics();
+    if (statistics != null)
+      statistics.invalidate();
   }
 
   /**
@@ -354,6 +395,8 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
    * @generated NOT
    */
   public Collection<IMatch> getContents() {
+    if (_removedMatches != null && !_removedMatches.isEmpty())
+      return new ExcludingCollection<IMatch>(getModifiableContents(), _removedMatches);
     return Collections.<IMatch> unmodifiableCollection(getModifiableContents());
   }
 
@@ -363,28 +406,58 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
    */
   public IMatch getMatchFor(EObject element_p, Role role_p) {
     IMatch result = null;
-    EReference matchReference;
-    switch (role_p) {
-    case ANCESTOR:
-      matchReference = DiffdataPackage.eINSTANCE.getEMatch_Ancestor();
-      break;
-    case REFERENCE:
-      matchReference = DiffdataPackage.eINSTANCE.getEMatch_Reference();
-      break;
-    default:
-      matchReference = DiffdataPackage.eINSTANCE.getEMatch_Target();
+    if (element_p != null && role_p != null)
+      result = getMatchIndex(role_p).get(element_p);
+    return result;
+  }
+
+  /**
+   * Return the index from model elements to matches for the given role,
+   * building the indexes from the contents of this mapping if needed
+   * @param role_p a non-null role
+   * @return a non-null, modifiable map
+   * @generated NOT
+   */
+  protected Map<EObject, EMatch> getMatchIndex(Role role_p) {
+    if (_matchIndexes == null) {
+      _matchIndexes = new EnumMap<Role, Map<EObject, EMatch>>(Role.class);
+      for (Role role : Role.values())
+        _matchIndexes.put(role, new IdentityHashMap<EObject, EMatch>());
+      for (EMatch match : getModifiableContents()) {
+        if (_removedMatches == null || !_removedMatches.contains(match))
+          index(match);
+      }
     }
-    if (element_p != null && role_p != null) {
-      Collection<Setting> settings = _matchAdapter
-          .getNonNavigableInverseReferences(element_p);
-      for (Setting setting : settings) {
-        if (setting.getEStructuralFeature() == matchReference) {
-          result = (EMatch) setting.getEObject();
-          break;
-        }
+    return _matchIndexes.get(role_p);
+  }
+
+  /**
+   * Register the given match in the indexes for all the roles it covers
+   * @param match_p a non-null match
+   * @generated NOT
+   */
+  protected void index(EMatch match_p) {
+    for (Role role : Role.values()) {
+      EObject element = match_p.get(role);
+      if (element != null)
+        getMatchIndex(role).put(element, match_p);
+    }
+  }
+
+  /**
+   * Unregister the given match from the indexes for all the roles it covers
+   * @param match_p a non-null match
+   * @generated NOT
+   */
+  protected void unindex(IMatch match_p) {
+    for (Role role : Role.values()) {
+      EObject element = match_p.get(role);
+      if (element != null) {
+        Map<EObject, EMatch> index = getMatchIndex(role);
+        if (index.get(element) == match_p)
+          index.remove(element);
       }
     }
-    return result;
   }
 
   /**
@@ -421,6 +494,9 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
    * @generated NOT
    */
   public int getNbFullMatches() {
+    ComparisonStatistics statistics = getStatistics();
+    if (statistics != null)
+      return statistics.getNbFullMatches();
     int result = 0;
     for (IMatch match : getContents())
       if (!match.isPartial())
@@ -433,6 +509,9 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
    * @generated NOT
    */
   public int getNbPartialMatches(Role covered_p) {
+    ComparisonStatistics statistics = getStatistics();
+    if (statistics != null)
+      return statistics.getNbPartialMatches(covered_p);
     int result = 0;
     for (IMatch match : getContents())
       if (match.isPartial()
@@ -441,17 +520,24 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
     return result;
   }
 
+  /**
+   * Return the incrementally maintained statistics of the owning comparison, if any
+   * @return a potentially null object
+   * @generated NOT
+   */
+  public ComparisonStatistics getStatistics() {
+    EComparison comparison = getComparison();
+    return comparison instanceof EComparisonImpl ? ((EComparisonImpl) comparison)
+        .getStatistics() : null;
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.api.IMapping#getCrossReferences(org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.Role)
    * @generated NOT
    */
   public Collection<Setting> getCrossReferences(EObject element_p, Role role_p) {
     Collection<Setting> result = null;
-    ScopeCrossReferencer referencer = null;
-    if (role_p == Role.TARGET)
-      referencer = _targetCrossReferencer;
-    else if (role_p == Role.REFERENCE)
-      referencer = _referenceCrossReferencer;
+    ScopeCrossReferencer referencer = getCrossReferencer(role_p);
     if (referencer != null)
       result = referencer.get(element_p);
     if (result == null)
@@ -459,18 +545,36 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
     return result;
   }
 
+  /**
+   * Return the cross-referencer for the given role, if any
+   * @param role_p a potentially null role
+   * @return a cross-referencer which is non-null iff role_p is TARGET or REFERENCE
+   * @generated NOT
+   */
+  private ScopeCrossReferencer getCrossReferencer(Role role_p) {
+    ScopeCrossReferencer result = null;
+    if (role_p == Role.TARGET)
+      result = _targetCrossReferencer;
+    else if (role_p == Role.REFERENCE)
+      result = _referenceCrossReferencer;
+    return result;
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.api.IMapping#isCompleteFor(org.eclipse.emf.diffmerge.api.scopes.IModelScope, org.eclipse.emf.diffmerge.api.Role)
    * @generated NOT
    */
   public boolean isCompleteFor(IModelScope scope_p, Role role_p) {
-    Iterator<EObject> it = scope_p.getAllContents();
-    while (it.hasNext()) {
-      EObject currentInScope = it.next();
-      if (!covers(currentInScope, role_p))
-        return false;
-    }
-    return true;
+    return MappingBehavior.isCompleteFor(this, scope_p, role_p);
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.CrossReferencing#isCrossReferenced(org.eclipse.emf.diffmerge.api.Role)
+   * @generated NOT
+   */
+  public boolean isCrossReferenced(Role role_p) {
+    ScopeCrossReferencer referencer = getCrossReferencer(role_p);
+    return referencer != null && referencer.isCrossReferenced();
   }
 
   /**
@@ -478,7 +582,7 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
    * @generated NOT
    */
   public boolean isEmpty() {
-    return getModifiableContents().isEmpty();
+    return size() == 0;
   }
 
   /**
@@ -490,12 +594,12 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
     IMatch previous = getMatchFor(element_p, role_p);
     // Enforce consistency by removing previous match if any
     if (previous != null)
-      getModifiableContents().remove(previous);
+      removeMatch(previous);
     EMatch result = (EMatch) getComparison().newMatch(
         (Role.TARGET == role_p ? element_p : null),
         (Role.REFERENCE == role_p ? element_p : null),
         (Role.ANCESTOR == role_p ? element_p : null));
-    getModifiableContents().add(result);
+    addMatch(result);
     return result;
   }
 
@@ -533,7 +637,7 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
           element3 = inRole3;
         // Match found for role2_p which is different from that of role1_p
         if (newMatch != null && newMatch != found)
-          getModifiableContents().remove(found);
+          removeMatch(found);
         else
           newMatch = found;
       }
@@ -543,14 +647,41 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
       newMatch = getComparison().newMatch(elements.get(Role.TARGET),
           elements.get(Role.REFERENCE), elements.get(Role.ANCESTOR));
       // We assume the type of the match is compatible with the mapping
-      getModifiableContents().add((EMatch) newMatch);
+      addMatch((EMatch) newMatch);
     } else {
+      ComparisonStatistics statistics = getStatistics();
+      if (statistics != null)
+        statistics.matchRemoved(newMatch);
+      // The indexes are updated by the match itself
       ((IMatch.Editable) newMatch).reset(elements.get(Role.TARGET),
           elements.get(Role.REFERENCE), elements.get(Role.ANCESTOR));
+      if (statistics != null)
+        statistics.matchAdded(newMatch);
     }
     return result;
   }
 
+  /**
+   * Update the indexes according to the change of the element of the given match
+   * in the given role
+   * @param match_p a non-null match which belongs to this mapping
+   * @param role_p a non-null role
+   * @param oldElement_p the potentially null former element of the match in the role
+   * @param newElement_p the potentially null new element of the match in the role
+   * @generated NOT
+   */
+  protected void matchElementChanged(EMatch match_p, Role role_p,
+      EObject oldElement_p, EObject newElement_p) {
+    if (_matchIndexes != null &&
+        (_removedMatches == null || !_removedMatches.contains(match_p))) {
+      Map<EObject, EMatch> index = _matchIndexes.get(role_p);
+      if (oldElement_p != null && index.get(oldElement_p) == match_p)
+        index.remove(oldElement_p);
+      if (newElement_p != null)
+        index.put(newElement_p, match_p);
+    }
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.api.IMapping#maps(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject)
    * @generated NOT
@@ -564,9 +695,7 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
    * @generated NOT
    */
   public boolean maps(EObject target_p, EObject reference_p, EObject ancestor_p) {
-    return maps(ancestor_p, Role.ANCESTOR, target_p, Role.TARGET)
-        && maps(ancestor_p, Role.ANCESTOR, reference_p, Role.REFERENCE)
-        && maps(target_p, Role.TARGET, reference_p, Role.REFERENCE);
+    return MappingBehavior.maps(this, target_p, reference_p, ancestor_p);
   }
 
   /**
@@ -575,15 +704,60 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
    */
   public boolean maps(EObject element1_p, Role role1_p, EObject element2_p,
       Role role2_p) {
-    boolean result = false;
-    if (element1_p != null) {
-      IMatch fromElement1 = getMatchFor(element1_p, role1_p);
-      result = fromElement1 != null && fromElement1.get(role2_p) == element2_p;
-    } else if (element2_p != null) {
-      IMatch fromElement2 = getMatchFor(element2_p, role2_p);
-      result = fromElement2 != null && fromElement2.get(role1_p) == element1_p;
+    return MappingBehavior.maps(this, element1_p, role1_p, element2_p, role2_p);
+  }
+
+  /**
+   * Remove the given match from this mapping
+   * @param match_p a non-null match which belongs to this mapping
+   * @generated NOT
+   */
+  protected void removeMatch(IMatch match_p) {
+    ComparisonStatistics statistics = getStatistics();
+    if (statistics != null)
+      statistics.matchRemoved(match_p);
+    if (_removedMatches != null) {
+      // The match stays in the contents until the end of the phase
+      unindex(match_p);
+      _removedMatches.add(match_p);
+    } else {
+      getModifiableContents().remove(match_p);
+    }
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.BulkConstructible#isBulkConstruction()
+   * @generated NOT
+   */
+  public boolean isBulkConstruction() {
+    return _removedMatches != null;
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.BulkConstructible#setBulkConstruction(boolean)
+   * @generated NOT
+   */
+  @SuppressWarnings("unchecked")
+  public void setBulkConstruction(boolean bulk_p) {
+    if (bulk_p && _removedMatches == null) {
+      _removedMatches = new FHashSet<IMatch>(IEqualityTester.BY_REFERENCE);
+      _deliverBeforeBulk = eDeliver();
+      eSetDeliver(false);
+    } else if (!bulk_p && _removedMatches != null) {
+      if (!_removedMatches.isEmpty()) {
+        // Compact the contents in a single pass
+        EList<EMatch> contents = getModifiableContents();
+        List<EMatch> kept = new ArrayList<EMatch>(contents.size());
+        for (EMatch match : contents) {
+          if (!_removedMatches.contains(match))
+            kept.add(match);
+        }
+        contents.clear();
+        ((InternalEList<EMatch>) contents).addAllUnique(kept);
+      }
+      _removedMatches = null;
+      eSetDeliver(_deliverBeforeBulk);
     }
-    return result;
   }
 
   /**
@@ -599,8 +773,11 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
    * @generated NOT
    */
   public int size(Role role_p) {
+    ComparisonStatistics statistics = getStatistics();
+    if (statistics != null)
+      return statistics.getNbMatches(role_p);
     int result = 0;
-    for (EMatch match : getModifiableContents()) {
+    for (IMatch match : getContents()) {
       if (match.get(role_p) != null)
         result++;
     }
@@ -612,19 +789,15 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
    * @generated NOT
    */
   public EMap<EObject, EObject> toMap(Role keyRole_p, Role valueRole_p) {
-    EMap<EObject, EObject> result = new FHashMap<EObject, EObject>();
-    for (IMatch match : getContents()) {
-      EObject key = match.get(keyRole_p);
-      if (key != null)
-        result.put(key, match.get(valueRole_p));
-    }
-    return ECollections.unmodifiableEMap(result);
+    return MappingBehavior.toMap(this, keyRole_p, valueRole_p);
   }
 
   /**
    * A cross reference adapter for retrieving matches from model elements.
+   * @deprecated The mapping indexes its matches, use getMatchFor(EObject, Role) instead
    * @generated NOT
    */
+  @Deprecated
   protected static class MatchCrossReferenceAdapter extends
       ECrossReferenceAdapter {
     /**
@@ -639,79 +812,76 @@ public class EMappingImpl extends EObjectImpl implements EMapping {
   }
 
   /**
-   * A cross-referencer for handling cross-references that are not covered by differences.
+   * The containment list of the matches of this mapping, which registers
+   * and unregisters matches in the indexes as they are added and removed.
    * @generated NOT
    */
-  protected class ScopeCrossReferencer extends EcoreUtil.CrossReferencer {
+  protected class MatchContainmentList extends EObjectContainmentEList<EMatch> {
     private static final long serialVersionUID = 1L;
-    /** The non-null role played by the scope to cross-reference */
-    protected final Role _role;
 
     /**
      * Constructor
-     * @param role_p a role which is TARGET or REFERENCE
      */
-    public ScopeCrossReferencer(Role role_p) {
-      super(Collections.emptyList());
-      _role = role_p;
+    public MatchContainmentList() {
+      super(EMatch.class, EMappingImpl.this,
+          DiffdataPackage.EMAPPING__MODIFIABLE_CONTENTS);
     }
 
     /**
-     * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#crossReference()
+     * @see org.eclipse.emf.common.util.BasicEList#didAdd(int, java.lang.Object)
      */
     @Override
-    public void crossReference() { // Increases visibility
-      super.crossReference();
+    protected void didAdd(int index_p, EMatch newObject_p) {
+      super.didAdd(index_p, newObject_p);
+      if (_matchIndexes != null)
+        index(newObject_p);
     }
 
     /**
-     * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#crossReference(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EReference, org.eclipse.emf.ecore.EObject)
+     * @see org.eclipse.emf.common.util.BasicEList#didRemove(int, java.lang.Object)
      */
     @Override
-    protected boolean crossReference(EObject element_p, EReference reference_p,
-        EObject crossReferenced_p) {
-      boolean result = false;
-      if (reference_p.isChangeable() && !reference_p.isDerived()) {
-        IMatch referencingMatch = getMatchFor(element_p, _role);
-        IMatch referencedMatch = getMatchFor(crossReferenced_p, _role);
-        // Unidirectional, modifiable cross-references between unmatched elements
-        if (referencingMatch != null && referencedMatch != null)
-          result = referencingMatch.isPartial() && referencedMatch.isPartial();
-      }
-      return result;
+    protected void didRemove(int index_p, EMatch oldObject_p) {
+      super.didRemove(index_p, oldObject_p);
+      forget(oldObject_p);
     }
 
     /**
-     * Return the role covered by this cross-referencer
-     * @return TARGET or REFERENCE
-     */
-    public Role getRole() {
-      return _role;
-    }
-
-    /**
-     * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#newCollection()
+     * @see org.eclipse.emf.common.util.BasicEList#didSet(int, java.lang.Object, java.lang.Object)
      */
     @Override
-    protected Collection<EStructuralFeature.Setting> newCollection() {
-      return new FArrayList<EStructuralFeature.Setting>();
+    protected void didSet(int index_p, EMatch newObject_p, EMatch oldObject_p) {
+      super.didSet(index_p, newObject_p, oldObject_p);
+      forget(oldObject_p);
+      if (_matchIndexes != null)
+        index(newObject_p);
     }
 
     /**
-     * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#newContentsIterator()
+     * Forget the given match which is no longer in the list
+     * @param match_p a non-null match
      */
-    @Override
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-    protected TreeIterator<Notifier> newContentsIterator() {
-      return (TreeIterator) getComparison().getScope(_role).getAllContents();
+    protected void forget(EMatch match_p) {
+      if (_removedMatches != null && _removedMatches.remove(match_p))
+        return; // Already unindexed
+      if (_matchIndexes != null)
+        unindex(match_p);
     }
+  }
+
+  /**
+   * A cross-referencer for handling cross-references that are not covered by differences.
+   * @generated NOT
+   */
+  protected class ScopeCrossReferencer extends MappingCrossReferencer {
+    private static final long serialVersionUID = 1L;
 
     /**
-     * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#resolve()
+     * Constructor
+     * @param role_p a role which is TARGET or REFERENCE
      */
-    @Override
-    protected boolean resolve() {
-      return false;
+    public ScopeCrossReferencer(Role role_p) {
+      super(EMappingImpl.this, role_p);
     }
   }
 
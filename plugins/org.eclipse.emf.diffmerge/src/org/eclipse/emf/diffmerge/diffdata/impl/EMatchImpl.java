@@ -28,6 +28,7 @@ import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.common.notify.NotificationChain;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.EMap;
+import org.eclipse.emf.diffmerge.api.IMapping;
 import org.eclipse.emf.diffmerge.api.IMatch;
 import org.eclipse.emf.diffmerge.api.IPureMatch;
 import org.eclipse.emf.diffmerge.api.Role;
@@ -42,6 +43,8 @@ import org.eclipse.emf.diffmerge.diffdata.DiffdataPackage;
 import org.eclipse.emf.diffmerge.diffdata.EMapping;
 import org.eclipse.emf.diffmerge.diffdata.EMatch;
 import org.eclipse.emf.diffmerge.diffdata.EMergeableDifference;
+import org.eclipse.emf.diffmerge.impl.helpers.ComparisonStatistics;
+import org.eclipse.emf.diffmerge.util.structures.CompactNestedMap;
 import org.eclipse.emf.diffmerge.util.structures.FArrayList;
 import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
@@ -217,6 +220,20 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
    */
   protected IReferenceValuePresence targetOwnershipDifference;
 
+  /**
+   * The compact index: attribute -> value -> difference, or null if it must be
+   * rebuilt from the related differences
+   * @generated NOT
+   */
+  private transient CompactNestedMap<EAttribute, Object, IAttributeValuePresence> _attributeIndex;
+
+  /**
+   * The compact index: reference -> value match -> difference, or null if it must be
+   * rebuilt from the related differences
+   * @generated NOT
+   */
+  private transient CompactNestedMap<EReference, IMatch, IReferenceValuePresence> _referenceIndex;
+
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
@@ -302,8 +319,9 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
 
   /**
    * <!-- begin-user-doc -->
+   * The indexes of the owning mapping are kept up-to-date.
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public void setAncestor(EObject newAncestor) {
     EObject oldAncestor = ancestor;
@@ -311,6 +329,7 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
     if (eNotificationRequired())
       eNotify(new ENotificationImpl(this, Notification.SET,
           DiffdataPackage.EMATCH__ANCESTOR, oldAncestor, ancestor));
+    elementChanged(ANCESTOR, oldAncestor, ancestor);
   }
 
   /**
@@ -342,8 +361,9 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
 
   /**
    * <!-- begin-user-doc -->
+   * The indexes of the owning mapping are kept up-to-date.
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public void setReference(EObject newReference) {
     EObject oldReference = reference;
@@ -351,6 +371,7 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
     if (eNotificationRequired())
       eNotify(new ENotificationImpl(this, Notification.SET,
           DiffdataPackage.EMATCH__REFERENCE, oldReference, reference));
+    elementChanged(REFERENCE, oldReference, reference);
   }
 
   /**
@@ -382,8 +403,9 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
 
   /**
    * <!-- begin-user-doc -->
+   * The indexes of the owning mapping are kept up-to-date.
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public void setTarget(EObject newTarget) {
     EObject oldTarget = target;
@@ -391,6 +413,7 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
     if (eNotificationRequired())
       eNotify(new ENotificationImpl(this, Notification.SET,
           DiffdataPackage.EMATCH__TARGET, oldTarget, target));
+    elementChanged(TARGET, oldTarget, target);
   }
 
   /**
@@ -421,8 +444,11 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
 
   /**
    * <!-- begin-user-doc -->
+   * The map is only created upon request, e.g., when the comparison is saved.
+   * It is then filled from the compact index and replaces it, so that it can
+   * be modified directly.
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public EMap<EAttribute, EMap<Object, IAttributeValuePresence>> getModifiableAttributeMap() {
     if (modifiableAttributeMap == null) {
@@ -430,14 +456,27 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
           DiffdataPackage.Literals.ATTRIBUTE_TO_VALUE_TO_DIFFERENCE_ENTRY,
           AttributeToValueToDifferenceEntryImpl.class, this,
           DiffdataPackage.EMATCH__MODIFIABLE_ATTRIBUTE_MAP);
+      CompactNestedMap<EAttribute, Object, IAttributeValuePresence> index = _attributeIndex;
+      _attributeIndex = null;
+      if (index != null) {
+        for (EAttribute attribute : index.keySet()) {
+          EMap<Object, IAttributeValuePresence> forAttribute =
+            newAttributeValueToPresenceMap(attribute);
+          for (IAttributeValuePresence presence : index.values(attribute))
+            forAttribute.put(getAttributeKey(presence), presence);
+        }
+      }
     }
     return modifiableAttributeMap;
   }
 
   /**
    * <!-- begin-user-doc -->
+   * The map is only created upon request, e.g., when the comparison is saved.
+   * It is then filled from the compact index and replaces it, so that it can
+   * be modified directly.
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public EMap<EReference, EMap<IMatch, IReferenceValuePresence>> getModifiableReferenceMap() {
     if (modifiableReferenceMap == null) {
@@ -445,6 +484,16 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
           DiffdataPackage.Literals.REFERENCE_TO_MATCH_TO_DIFFERENCE_ENTRY,
           ReferenceToMatchToDifferenceEntryImpl.class, this,
           DiffdataPackage.EMATCH__MODIFIABLE_REFERENCE_MAP);
+      CompactNestedMap<EReference, IMatch, IReferenceValuePresence> index = _referenceIndex;
+      _referenceIndex = null;
+      if (index != null) {
+        for (EReference reference : index.keySet()) {
+          EMap<IMatch, IReferenceValuePresence> forReference =
+            newReferenceValueToPresenceMap(reference);
+          for (IReferenceValuePresence presence : index.values(reference))
+            forReference.put(getReferenceKey(presence), presence);
+        }
+      }
     }
     return modifiableReferenceMap;
   }
@@ -743,7 +792,7 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   @Override
   public boolean eIsSet(int featureID) {
@@ -762,10 +811,12 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
           && !modifiableRelatedDifferences.isEmpty();
     case DiffdataPackage.EMATCH__MODIFIABLE_ATTRIBUTE_MAP:
       return modifiableAttributeMap != null
-          && !modifiableAttributeMap.isEmpty();
+          && !modifiableAttributeMap.isEmpty()
+          || _attributeIndex != null && !_attributeIndex.isEmpty();
     case DiffdataPackage.EMATCH__MODIFIABLE_REFERENCE_MAP:
       return modifiableReferenceMap != null
-          && !modifiableReferenceMap.isEmpty();
+          && !modifiableReferenceMap.isEmpty()
+          || _referenceIndex != null && !_referenceIndex.isEmpty();
     case DiffdataPackage.EMATCH__ELEMENT_PRESENCE_DIFFERENCE:
       return elementPresenceDifference != null;
     case DiffdataPackage.EMATCH__REFERENCE_OWNERSHIP_DIFFERENCE:
@@ -801,18 +852,18 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
    * @generated NOT
    */
   protected void addAttributeValuePresence(IAttributeValuePresence presence_p) {
-    EMap<EAttribute, EMap<Object, IAttributeValuePresence>> attributeMap = getModifiableAttributeMap(true);
-    EMap<Object, IAttributeValuePresence> forAttribute = attributeMap
-        .get(presence_p.getFeature());
-    if (forAttribute == null)
-      forAttribute = newAttributeValueToPresenceMap(presence_p.getFeature());
-    Object key;
-    if (presence_p.isOrder())
-      key = presence_p.getPresenceRole() == Role.TARGET ? ATTRIBUTE_ORDER_KEY_TARGET
-          : ATTRIBUTE_ORDER_KEY_REFERENCE;
-    else
-      key = presence_p.getValue();
-    forAttribute.put(key, presence_p);
+    Object key = getAttributeKey(presence_p);
+    EMap<EAttribute, EMap<Object, IAttributeValuePresence>> attributeMap = getModifiableAttributeMap(false);
+    if (attributeMap != null) {
+      // The persistent map has replaced the compact index
+      EMap<Object, IAttributeValuePresence> forAttribute = attributeMap
+          .get(presence_p.getFeature());
+      if (forAttribute == null)
+        forAttribute = newAttributeValueToPresenceMap(presence_p.getFeature());
+      forAttribute.put(key, presence_p);
+    } else {
+      getAttributeIndex(true).put(presence_p.getFeature(), key, presence_p);
+    }
   }
 
   /**
@@ -834,30 +885,42 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
    */
   protected void addReferenceValuePresence(IReferenceValuePresence presence_p) {
     assert presence_p.getElementMatch() == this;
-    EMap<EReference, EMap<IMatch, IReferenceValuePresence>> referenceMap = getModifiableReferenceMap(true);
-    EMap<IMatch, IReferenceValuePresence> forReference = referenceMap
-        .get(presence_p.getFeature());
-    if (forReference == null)
-      forReference = newReferenceValueToPresenceMap(presence_p.getFeature());
-    IMatch key;
-    if (presence_p.isOrder())
-      key = presence_p.getPresenceRole() == Role.TARGET ? REFERENCE_ORDER_KEY_TARGET
-          : REFERENCE_ORDER_KEY_REFERENCE;
-    else
-      key = presence_p.getValue();
-    forReference.put(key, presence_p);
+    IMatch key = getReferenceKey(presence_p);
+    EMap<EReference, EMap<IMatch, IReferenceValuePresence>> referenceMap = getModifiableReferenceMap(false);
+    if (referenceMap != null) {
+      // The persistent map has replaced the compact index
+      EMap<IMatch, IReferenceValuePresence> forReference = referenceMap
+          .get(presence_p.getFeature());
+      if (forReference == null)
+        forReference = newReferenceValueToPresenceMap(presence_p.getFeature());
+      forReference.put(key, presence_p);
+    } else {
+      getReferenceIndex(true).put(presence_p.getFeature(), key, presence_p);
+    }
   }
 
   /**
    * @see org.eclipse.emf.diffmerge.api.IMatch.Editable#addRelatedDifference(org.eclipse.emf.diffmerge.api.diff.IDifference)
    * @generated NOT
    */
-  @SuppressWarnings("unchecked")
   public void addRelatedDifference(IDifference difference_p) {
     assert difference_p != null;
-    Collection<? extends IDifference> differences = getModifiableRelatedDifferences(true);
-    if (!differences.contains(difference_p)) {
-      ((Collection<IDifference>) differences).add(difference_p); // Difference is supposed compatible
+    List<EMergeableDifference> differences = getModifiableRelatedDifferences(true);
+    EMergeableDifference difference = (EMergeableDifference) difference_p; // Difference is supposed compatible
+    boolean added;
+    if (isInBulkConstruction()) {
+      // Fresh difference: no uniqueness check, no notification
+      boolean deliver = eDeliver();
+      eSetDeliver(false);
+      ((InternalEList<EMergeableDifference>) differences).addUnique(difference);
+      eSetDeliver(deliver);
+      added = true;
+    } else {
+      added = !differences.contains(difference);
+      if (added)
+        differences.add(difference);
+    }
+    if (added) {
       if (difference_p instanceof IElementPresence) {
         setElementPresenceDifference((IElementPresence) difference_p);
       } else if (difference_p instanceof IReferenceValuePresence) {
@@ -870,6 +933,12 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
       } else if (difference_p instanceof IAttributeValuePresence) {
         addAttributeValuePresence((IAttributeValuePresence) difference_p);
       }
+      EMapping mapping = getMapping();
+      if (mapping instanceof EMappingImpl) {
+        ComparisonStatistics statistics = ((EMappingImpl) mapping).getStatistics();
+        if (statistics != null)
+          statistics.differenceAdded(this, difference_p);
+      }
     }
   }
 
@@ -881,6 +950,21 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
     return get(role_p) != null;
   }
 
+  /**
+   * Notify the owning mapping, if any, that the element in the given role has changed
+   * @param role_p a non-null role
+   * @param oldElement_p the potentially null former element
+   * @param newElement_p the potentially null new element
+   * @generated NOT
+   */
+  protected void elementChanged(Role role_p, EObject oldElement_p,
+      EObject newElement_p) {
+    EMapping mapping = getMapping();
+    if (mapping instanceof EMappingImpl)
+      ((EMappingImpl) mapping).matchElementChanged(this, role_p, oldElement_p,
+          newElement_p);
+  }
+
   /**
    * @see Object#equals(Object)
    * @generated NOT
@@ -940,11 +1024,17 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
   public Collection<IAttributeValuePresence> getAttributeDifferences(
       EAttribute attribute_p) {
     Collection<IAttributeValuePresence> result = null;
-    if (getModifiableAttributeMap(false) != null) {
-      EMap<Object, IAttributeValuePresence> forAttribute = getModifiableAttributeMap(
-          false).get(attribute_p);
+    EMap<EAttribute, EMap<Object, IAttributeValuePresence>> attributeMap = getModifiableAttributeMap(false);
+    if (attributeMap != null) {
+      EMap<Object, IAttributeValuePresence> forAttribute = attributeMap
+          .get(attribute_p);
       if (forAttribute != null)
         result = Collections.unmodifiableCollection(forAttribute.values());
+    } else {
+      CompactNestedMap<EAttribute, Object, IAttributeValuePresence> index =
+        getAttributeIndex(false);
+      if (index != null)
+        result = index.values(attribute_p);
     }
     if (result == null)
       result = Collections.emptyList();
@@ -957,14 +1047,7 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
    */
   public IAttributeValuePresence getAttributeValueDifference(
       EAttribute attribute_p, Object value_p) {
-    IAttributeValuePresence result = null;
-    if (getModifiableAttributeMap(false) != null) {
-      EMap<Object, IAttributeValuePresence> forAttribute = getModifiableAttributeMap(
-          false).get(attribute_p);
-      if (forAttribute != null)
-        result = forAttribute.get(value_p);
-    }
-    return result;
+    return getAttributeValuePresence(attribute_p, value_p);
   }
 
   /**
@@ -973,11 +1056,73 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
    */
   public Collection<EAttribute> getAttributesWithDifferences() {
     Set<EAttribute> result;
-    if (getModifiableAttributeMap(false) == null)
+    EMap<EAttribute, EMap<Object, IAttributeValuePresence>> attributeMap = getModifiableAttributeMap(false);
+    CompactNestedMap<EAttribute, Object, IAttributeValuePresence> index =
+      getAttributeIndex(false);
+    if (attributeMap != null)
+      result = Collections.unmodifiableSet(attributeMap.keySet());
+    else if (index != null)
+      result = index.keySet();
+    else
       result = Collections.emptySet();
+    return result;
+  }
+
+  /**
+   * Return the compact index: attribute -> value -> difference, unless it has
+   * been replaced by the persistent map
+   * @param create_p whether the index must be created if it does not exist
+   * @return a modifiable index which is null if the persistent map exists, and
+   *         otherwise not null if create_p or if there are related differences
+   * @generated NOT
+   */
+  protected CompactNestedMap<EAttribute, Object, IAttributeValuePresence> getAttributeIndex(
+      boolean create_p) {
+    if (modifiableAttributeMap == null && _attributeIndex == null &&
+        (create_p || !getRelatedDifferences().isEmpty()))
+      initializeIndexes();
+    return modifiableAttributeMap == null ? _attributeIndex : null;
+  }
+
+  /**
+   * Return the attribute value presence registered for the given attribute
+   * under the given key, if any
+   * @param attribute_p a non-null attribute
+   * @param key_p a potentially null value or order key
+   * @return a potentially null attribute value presence
+   * @generated NOT
+   */
+  protected IAttributeValuePresence getAttributeValuePresence(
+      EAttribute attribute_p, Object key_p) {
+    IAttributeValuePresence result = null;
+    EMap<EAttribute, EMap<Object, IAttributeValuePresence>> attributeMap = getModifiableAttributeMap(false);
+    if (attributeMap != null) {
+      EMap<Object, IAttributeValuePresence> forAttribute = attributeMap
+          .get(attribute_p);
+      if (forAttribute != null)
+        result = forAttribute.get(key_p);
+    } else {
+      CompactNestedMap<EAttribute, Object, IAttributeValuePresence> index =
+        getAttributeIndex(false);
+      if (index != null)
+        result = index.get(attribute_p, key_p);
+    }
+    return result;
+  }
+
+  /**
+   * Return the key under which the given attribute value presence is indexed
+   * @param presence_p a non-null attribute value presence
+   * @return a potentially null object
+   * @generated NOT
+   */
+  protected Object getAttributeKey(IAttributeValuePresence presence_p) {
+    Object result;
+    if (presence_p.isOrder())
+      result = presence_p.getPresenceRole() == Role.TARGET ? ATTRIBUTE_ORDER_KEY_TARGET
+          : ATTRIBUTE_ORDER_KEY_REFERENCE;
     else
-      result = Collections.unmodifiableSet(getModifiableAttributeMap(false)
-          .keySet());
+      result = presence_p.getValue();
     return result;
   }
 
@@ -1037,27 +1182,14 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
   public IValuePresence getOrderDifference(EStructuralFeature feature_p,
       Role role_p) {
     IValuePresence result = null;
-    if (feature_p instanceof EAttribute) {
-      EMap<EAttribute, EMap<Object, IAttributeValuePresence>> attributeMap = getModifiableAttributeMap(false);
-      if (attributeMap != null) {
-        EMap<Object, IAttributeValuePresence> forAttribute = attributeMap
-            .get(feature_p);
-        if (forAttribute != null)
-          result = forAttribute
-              .get(role_p == Role.TARGET ? ATTRIBUTE_ORDER_KEY_TARGET
-                  : ATTRIBUTE_ORDER_KEY_REFERENCE);
-      }
-    } else if (feature_p instanceof EReference) {
-      EMap<EReference, EMap<IMatch, IReferenceValuePresence>> referenceMap = getModifiableReferenceMap(false);
-      if (referenceMap != null) {
-        EMap<IMatch, IReferenceValuePresence> forReference = referenceMap
-            .get(feature_p);
-        if (forReference != null)
-          result = forReference
-              .get(role_p == Role.TARGET ? REFERENCE_ORDER_KEY_TARGET
-                  : REFERENCE_ORDER_KEY_REFERENCE);
-      }
-    }
+    if (feature_p instanceof EAttribute)
+      result = getAttributeValuePresence((EAttribute) feature_p,
+          role_p == Role.TARGET ? ATTRIBUTE_ORDER_KEY_TARGET
+              : ATTRIBUTE_ORDER_KEY_REFERENCE);
+    else if (feature_p instanceof EReference)
+      result = getReferenceValuePresence((EReference) feature_p,
+          role_p == Role.TARGET ? REFERENCE_ORDER_KEY_TARGET
+              : REFERENCE_ORDER_KEY_REFERENCE);
     return result;
   }
 
@@ -1091,11 +1223,17 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
   public Collection<IReferenceValuePresence> getReferenceDifferences(
       EReference reference_p) {
     Collection<IReferenceValuePresence> result = null;
-    if (getModifiableReferenceMap(false) != null) {
-      EMap<IMatch, IReferenceValuePresence> forReference = getModifiableReferenceMap(
-          false).get(reference_p);
+    EMap<EReference, EMap<IMatch, IReferenceValuePresence>> referenceMap = getModifiableReferenceMap(false);
+    if (referenceMap != null) {
+      EMap<IMatch, IReferenceValuePresence> forReference = referenceMap
+          .get(reference_p);
       if (forReference != null)
         result = Collections.unmodifiableCollection(forReference.values());
+    } else {
+      CompactNestedMap<EReference, IMatch, IReferenceValuePresence> index =
+        getReferenceIndex(false);
+      if (index != null)
+        result = index.values(reference_p);
     }
     if (result == null)
       result = Collections.emptyList();
@@ -1108,14 +1246,7 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
    */
   public IReferenceValuePresence getReferenceValueDifference(
       EReference reference_p, IMatch valueMatch_p) {
-    IReferenceValuePresence result = null;
-    if (getModifiableReferenceMap(false) != null) {
-      EMap<IMatch, IReferenceValuePresence> forReference = getModifiableReferenceMap(
-          false).get(reference_p);
-      if (forReference != null)
-        result = forReference.get(valueMatch_p);
-    }
-    return result;
+    return getReferenceValuePresence(reference_p, valueMatch_p);
   }
 
   /**
@@ -1124,11 +1255,73 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
    */
   public Collection<EReference> getReferencesWithDifferences() {
     Set<EReference> result;
-    if (getModifiableReferenceMap(false) == null)
+    EMap<EReference, EMap<IMatch, IReferenceValuePresence>> referenceMap = getModifiableReferenceMap(false);
+    CompactNestedMap<EReference, IMatch, IReferenceValuePresence> index =
+      getReferenceIndex(false);
+    if (referenceMap != null)
+      result = Collections.unmodifiableSet(referenceMap.keySet());
+    else if (index != null)
+      result = index.keySet();
+    else
       result = Collections.emptySet();
+    return result;
+  }
+
+  /**
+   * Return the compact index: reference -> value match -> difference, unless it
+   * has been replaced by the persistent map
+   * @param create_p whether the index must be created if it does not exist
+   * @return a modifiable index which is null if the persistent map exists, and
+   *         otherwise not null if create_p or if there are related differences
+   * @generated NOT
+   */
+  protected CompactNestedMap<EReference, IMatch, IReferenceValuePresence> getReferenceIndex(
+      boolean create_p) {
+    if (modifiableReferenceMap == null && _referenceIndex == null &&
+        (create_p || !getRelatedDifferences().isEmpty()))
+      initializeIndexes();
+    return modifiableReferenceMap == null ? _referenceIndex : null;
+  }
+
+  /**
+   * Return the reference value presence registered for the given reference
+   * under the given key, if any
+   * @param reference_p a non-null reference
+   * @param key_p a potentially null value match or order key
+   * @return a potentially null reference value presence
+   * @generated NOT
+   */
+  protected IReferenceValuePresence getReferenceValuePresence(
+      EReference reference_p, IMatch key_p) {
+    IReferenceValuePresence result = null;
+    EMap<EReference, EMap<IMatch, IReferenceValuePresence>> referenceMap = getModifiableReferenceMap(false);
+    if (referenceMap != null) {
+      EMap<IMatch, IReferenceValuePresence> forReference = referenceMap
+          .get(reference_p);
+      if (forReference != null)
+        result = forReference.get(key_p);
+    } else {
+      CompactNestedMap<EReference, IMatch, IReferenceValuePresence> index =
+        getReferenceIndex(false);
+      if (index != null)
+        result = index.get(reference_p, key_p);
+    }
+    return result;
+  }
+
+  /**
+   * Return the key under which the given reference value presence is indexed
+   * @param presence_p a non-null reference value presence
+   * @return a potentially null match
+   * @generated NOT
+   */
+  protected IMatch getReferenceKey(IReferenceValuePresence presence_p) {
+    IMatch result;
+    if (presence_p.isOrder())
+      result = presence_p.getPresenceRole() == Role.TARGET ? REFERENCE_ORDER_KEY_TARGET
+          : REFERENCE_ORDER_KEY_REFERENCE;
     else
-      result = Collections.unmodifiableSet(getModifiableReferenceMap(false)
-          .keySet());
+      result = presence_p.getValue();
     return result;
   }
 
@@ -1175,6 +1368,30 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
     return result;
   }
 
+  /**
+   * Create the compact indexes which have not been replaced by the persistent
+   * maps and fill them from the related differences, which is needed if they
+   * have not been registered in this session
+   * @generated NOT
+   */
+  protected void initializeIndexes() {
+    boolean attributes = modifiableAttributeMap == null;
+    boolean references = modifiableReferenceMap == null;
+    if (attributes)
+      _attributeIndex = new CompactNestedMap<EAttribute, Object, IAttributeValuePresence>();
+    if (references)
+      _referenceIndex = new CompactNestedMap<EReference, IMatch, IReferenceValuePresence>();
+    for (IDifference difference : getRelatedDifferences()) {
+      if (attributes && difference instanceof IAttributeValuePresence) {
+        IAttributeValuePresence presence = (IAttributeValuePresence) difference;
+        _attributeIndex.put(presence.getFeature(), getAttributeKey(presence), presence);
+      } else if (references && difference instanceof IReferenceValuePresence) {
+        IReferenceValuePresence presence = (IReferenceValuePresence) difference;
+        _referenceIndex.put(presence.getFeature(), getReferenceKey(presence), presence);
+      }
+    }
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.api.IPureMatch#involves(org.eclipse.emf.ecore.resource.Resource)
    * @generated NOT
@@ -1199,6 +1416,17 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
     return result;
   }
 
+  /**
+   * Return whether the mapping of this match is in a bulk construction phase
+   * @see org.eclipse.emf.diffmerge.api.IMapping.BulkConstructible#setBulkConstruction(boolean)
+   * @generated NOT
+   */
+  protected boolean isInBulkConstruction() {
+    EMapping mapping = getMapping();
+    return mapping instanceof IMapping.BulkConstructible &&
+        ((IMapping.BulkConstructible) mapping).isBulkConstruction();
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.api.IPureMatch#isPartial()
    * @generated NOT
@@ -1266,6 +1494,8 @@ public class EMatchImpl extends EObjectImpl implements EMatch {
       getModifiableAttributeMap(false).clear();
     if (getModifiableReferenceMap(false) != null)
       getModifiableReferenceMap(false).clear();
+    _attributeIndex = null;
+    _referenceIndex = null;
     setElementPresenceDifference(null);
     setTargetOwnershipDifference(null);
     setReferenceOwnershipDifference(null);
@@ -16,26 +16,30 @@ package org.eclipse.emf.diffmerge.diffdata.impl;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 
 import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
 import org.eclipse.emf.common.util.EList;
-import org.eclipse.emf.diffmerge.Messages;
 import org.eclipse.emf.diffmerge.api.Role;
 import org.eclipse.emf.diffmerge.api.diff.IDifference;
 import org.eclipse.emf.diffmerge.api.diff.IMergeableDifference;
 import org.eclipse.emf.diffmerge.diffdata.DiffdataPackage;
 import org.eclipse.emf.diffmerge.diffdata.EComparison;
 import org.eclipse.emf.diffmerge.diffdata.EMergeableDifference;
+import org.eclipse.emf.diffmerge.impl.helpers.ComparisonStatistics;
+import org.eclipse.emf.diffmerge.impl.helpers.DependencyClosures;
+import org.eclipse.emf.diffmerge.impl.helpers.DifferenceMerger;
 import org.eclipse.emf.diffmerge.util.structures.AbstractEndorelation;
 import org.eclipse.emf.diffmerge.util.structures.FArrayList;
 import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
+import org.eclipse.emf.diffmerge.util.structures.IndexedEObjectResolvingEList;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
 import org.eclipse.emf.ecore.impl.EObjectImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.EDataTypeUniqueEList;
-import org.eclipse.emf.ecore.util.EObjectResolvingEList;
+import org.eclipse.emf.ecore.util.InternalEList;
 
 /**
  * <!-- begin-user-doc -->
@@ -181,30 +185,6 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
    */
   protected EList<IMergeableDifference> implicitDependenciesForReference;
 
-  /**
-   * The set of all implicit dependencies on the TARGET side (initially null, assigned once)
-   * @generated NOT
-   */
-  private transient Collection<IMergeableDifference> _allImplicitDependenciesTarget;
-
-  /**
-   * The set of all implicit dependencies on the REFERENCE side (initially null, assigned once)
-   * @generated NOT
-   */
-  private transient Collection<IMergeableDifference> _allImplicitDependenciesReference;
-
-  /**
-   * The set of all explicit dependencies on the TARGET side (initially null, assigned once)
-   * @generated NOT
-   */
-  private transient Collection<IMergeableDifference> _allExplicitDependenciesTarget;
-
-  /**
-   * The set of all explicit dependencies on the REFERENCE side (initially null, assigned once)
-   * @generated NOT
-   */
-  private transient Collection<IMergeableDifference> _allExplicitDependenciesReference;
-
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
@@ -214,10 +194,6 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
     super();
     getPossibleMergeDestinations().add(Role.TARGET);
     getPossibleMergeDestinations().add(Role.REFERENCE);
-    _allImplicitDependenciesTarget = null;
-    _allImplicitDependenciesReference = null;
-    _allExplicitDependenciesTarget = null;
-    _allExplicitDependenciesReference = null;
   }
 
   /**
@@ -344,13 +320,12 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public EList<IMergeableDifference> getExplicitDependenciesForTarget() {
     if (explicitDependenciesForTarget == null) {
-      explicitDependenciesForTarget = new EObjectResolvingEList<IMergeableDifference>(
-          IMergeableDifference.class,
-          this,
+      explicitDependenciesForTarget = new IndexedEObjectResolvingEList<IMergeableDifference>(
+          IMergeableDifference.class, this,
           DiffdataPackage.EMERGEABLE_DIFFERENCE__EXPLICIT_DEPENDENCIES_FOR_TARGET);
     }
     return explicitDependenciesForTarget;
@@ -359,13 +334,12 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public EList<IMergeableDifference> getExplicitDependenciesForReference() {
     if (explicitDependenciesForReference == null) {
-      explicitDependenciesForReference = new EObjectResolvingEList<IMergeableDifference>(
-          IMergeableDifference.class,
-          this,
+      explicitDependenciesForReference = new IndexedEObjectResolvingEList<IMergeableDifference>(
+          IMergeableDifference.class, this,
           DiffdataPackage.EMERGEABLE_DIFFERENCE__EXPLICIT_DEPENDENCIES_FOR_REFERENCE);
     }
     return explicitDependenciesForReference;
@@ -374,13 +348,12 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public EList<IMergeableDifference> getImplicitDependenciesForTarget() {
     if (implicitDependenciesForTarget == null) {
-      implicitDependenciesForTarget = new EObjectResolvingEList<IMergeableDifference>(
-          IMergeableDifference.class,
-          this,
+      implicitDependenciesForTarget = new IndexedEObjectResolvingEList<IMergeableDifference>(
+          IMergeableDifference.class, this,
           DiffdataPackage.EMERGEABLE_DIFFERENCE__IMPLICIT_DEPENDENCIES_FOR_TARGET);
     }
     return implicitDependenciesForTarget;
@@ -389,13 +362,12 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
   /**
    * <!-- begin-user-doc -->
    * <!-- end-user-doc -->
-   * @generated
+   * @generated NOT
    */
   public EList<IMergeableDifference> getImplicitDependenciesForReference() {
     if (implicitDependenciesForReference == null) {
-      implicitDependenciesForReference = new EObjectResolvingEList<IMergeableDifference>(
-          IMergeableDifference.class,
-          this,
+      implicitDependenciesForReference = new IndexedEObjectResolvingEList<IMergeableDifference>(
+          IMergeableDifference.class, this,
           DiffdataPackage.EMERGEABLE_DIFFERENCE__IMPLICIT_DEPENDENCIES_FOR_REFERENCE);
     }
     return implicitDependenciesForReference;
@@ -592,9 +564,7 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
    */
   protected void checkMerge(IMergeableDifference difference_p,
       Role destination_p) {
-    if (getMergeDestination() != destination_p && !canMergeTo(destination_p))
-      throw new UnsupportedOperationException(
-          Messages.AbstractDifference_UnableToMerge + ": " + toString()); //$NON-NLS-1$
+    DifferenceMerger.checkMerge(difference_p, destination_p);
   }
 
   /**
@@ -712,9 +682,11 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
    */
   public final Collection<IMergeableDifference> getImpliesDependencies(
       Role role_p) {
-    Collection<IMergeableDifference> result = (role_p == Role.TARGET) ? _allImplicitDependenciesTarget
-        : _allImplicitDependenciesReference;
-    if (result == null) {
+    Collection<IMergeableDifference> result;
+    DependencyClosures closures = getDependencyClosures();
+    if (closures != null) {
+      result = closures.getImpliesDependencies(this, role_p);
+    } else {
       Collection<IMergeableDifference> required = getRequiresDependencies(role_p);
       Collection<IMergeableDifference> allRequired = new FArrayList<IMergeableDifference>(
           required.size() + 1, null);
@@ -722,10 +694,6 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
       allRequired.addAll(required);
       result = new DifferenceDependencyRelation(role_p, false)
           .getTransitiveClosure(allRequired);
-      if (role_p == Role.TARGET)
-        _allImplicitDependenciesTarget = result;
-      else
-        _allImplicitDependenciesReference = result;
     }
     return result;
   }
@@ -737,20 +705,75 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
   public final Collection<IMergeableDifference> getRequiresDependencies(
       Role role_p) {
     Collection<IMergeableDifference> result;
-    if (role_p == Role.TARGET) {
-      if (_allExplicitDependenciesTarget == null)
-        _allExplicitDependenciesTarget = new DifferenceDependencyRelation(
-            role_p, true).getTransitiveClosure(this);
-      result = _allExplicitDependenciesTarget;
+    DependencyClosures closures = getDependencyClosures();
+    if (closures != null)
+      result = closures.getRequiresDependencies(this, role_p);
+    else
+      result = new DifferenceDependencyRelation(role_p, true)
+          .getTransitiveClosure(this);
+    return result;
+  }
+
+  /**
+   * Return the transitive closures of dependencies which cover the differences
+   * of the owning comparison, if any. If the comparison does not maintain statistics,
+   * the closures are attached to it as an adapter.
+   * @return a potentially null object, null if this difference does not belong to a comparison
+   * @generated NOT
+   */
+  protected DependencyClosures getDependencyClosures() {
+    DependencyClosures result;
+    ComparisonStatistics statistics = getStatistics();
+    if (statistics != null) {
+      result = statistics.getDependencyClosures();
     } else {
-      if (_allExplicitDependenciesReference == null)
-        _allExplicitDependenciesReference = new DifferenceDependencyRelation(
-            role_p, true).getTransitiveClosure(this);
-      result = _allExplicitDependenciesReference;
+      EComparison comparison = getComparison();
+      if (comparison != null) {
+        DependencyClosuresAdapter adapter = (DependencyClosuresAdapter) EcoreUtil
+            .getExistingAdapter(comparison, DependencyClosures.class);
+        if (adapter == null) {
+          adapter = new DependencyClosuresAdapter(comparison);
+          comparison.eAdapters().add(adapter);
+        }
+        result = adapter.getClosures();
+        result.differenceAdded(this);
+      } else {
+        result = null;
+      }
     }
     return result;
   }
 
+  /**
+   * Update the dependency closures of the owning comparison, if any, according to
+   * the addition of a direct dependency to this difference
+   * @generated NOT
+   */
+  protected void dependencyAdded() {
+    ComparisonStatistics statistics = getStatistics();
+    if (statistics != null) {
+      statistics.differenceDependencyAdded(this);
+    } else {
+      EComparison comparison = getComparison();
+      DependencyClosuresAdapter adapter = comparison == null ? null
+          : (DependencyClosuresAdapter) EcoreUtil.getExistingAdapter(comparison,
+              DependencyClosures.class);
+      if (adapter != null)
+        adapter.getClosures().invalidate();
+    }
+  }
+
+  /**
+   * Return the incrementally maintained statistics of the owning comparison, if any
+   * @return a potentially null object
+   * @generated NOT
+   */
+  protected ComparisonStatistics getStatistics() {
+    EComparison comparison = getComparison();
+    return comparison instanceof EComparisonImpl ? ((EComparisonImpl) comparison)
+        .getStatistics() : null;
+  }
+
   /**
    * @see org.eclipse.emf.diffmerge.api.diff.IDifference#isMerged()
    * @generated NOT
@@ -764,35 +787,7 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
    * @generated NOT
    */
   public Collection<IDifference> mergeTo(Role destination_p) {
-    // Checking ability to merge
-    checkMerge(this, destination_p);
-    if (isMerged())
-      return Collections.emptyList();
-    Collection<IMergeableDifference> allRequired = getRequiresDependencies(destination_p);
-    for (IMergeableDifference required : allRequired)
-      checkMerge(required, destination_p);
-    // Core behavior
-    markAsMergedIn(destination_p);
-    Collection<IDifference> result = new HashSet<IDifference>();
-    for (IMergeableDifference required : allRequired) {
-      if (!required.isMerged()) {
-        ((IMergeableDifference.Editable) required)
-            .markAsMergedIn(destination_p);
-        ((IMergeableDifference.Editable) required).doMergeIn(destination_p);
-        result.add(required);
-      }
-    }
-    doMergeIn(destination_p);
-    result.add(this);
-    // Mark implicit dependencies as merged
-    for (IMergeableDifference implicit : getImpliesDependencies(destination_p)) {
-      if (!implicit.isMerged()) {
-        ((IMergeableDifference.Editable) implicit)
-            .markAsMergedIn(destination_p);
-        result.add(implicit);
-      }
-    }
-    return Collections.unmodifiableCollection(result);
+    return DifferenceMerger.mergeTo(this, destination_p);
   }
 
   /**
@@ -801,7 +796,12 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
    */
   public void markAsConflicting() {
     markAsDifferentFromAncestor();
-    setConflicting(true);
+    if (!isConflicting()) {
+      setConflicting(true);
+      ComparisonStatistics statistics = getStatistics();
+      if (statistics != null)
+        statistics.differenceMarkedAsConflicting(this);
+    }
   }
 
   /**
@@ -820,6 +820,9 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
     if (getMergeDestination() == null) {
       setMergeDestination(destination_p);
       getPossibleMergeDestinations().clear();
+      ComparisonStatistics statistics = getStatistics();
+      if (statistics != null)
+        statistics.differenceMarkedAsMerged(this);
     }
   }
 
@@ -828,7 +831,7 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
    * @generated NOT
    */
   public final void markImplies(IMergeableDifference difference_p, Role role_p) {
-    Collection<IMergeableDifference> toChange;
+    EList<IMergeableDifference> toChange;
     switch (role_p) {
     case TARGET:
       toChange = getImplicitDependenciesForTarget(true);
@@ -836,8 +839,11 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
     default:
       toChange = getImplicitDependenciesForReference(true);
     }
-    if (!toChange.contains(difference_p))
-      toChange.add(difference_p);
+    // Uniqueness is already checked
+    if (!toChange.contains(difference_p)) {
+      ((InternalEList<IMergeableDifference>)toChange).addUnique(difference_p);
+      dependencyAdded();
+    }
   }
 
   /**
@@ -845,7 +851,7 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
    * @generated NOT
    */
   public final void markRequires(IMergeableDifference difference_p, Role role_p) {
-    Collection<IMergeableDifference> toChange;
+    EList<IMergeableDifference> toChange;
     switch (role_p) {
     case TARGET:
       toChange = getExplicitDependenciesForTarget(true);
@@ -853,8 +859,46 @@ public abstract class EMergeableDifferenceImpl extends EObjectImpl implements
     default:
       toChange = getExplicitDependenciesForReference(true);
     }
-    if (!toChange.contains(difference_p))
-      toChange.add(difference_p);
+    // Uniqueness is already checked
+    if (!toChange.contains(difference_p)) {
+      ((InternalEList<IMergeableDifference>)toChange).addUnique(difference_p);
+      dependencyAdded();
+    }
+  }
+
+  /**
+   * An adapter which attaches dependency closures to a comparison that does not
+   * maintain statistics.
+   * @generated NOT
+   */
+  protected static class DependencyClosuresAdapter extends AdapterImpl {
+
+    /** The non-null closures */
+    private final DependencyClosures _closures;
+
+    /**
+     * Constructor
+     * @param comparison_p the non-null comparison whose differences are covered
+     */
+    protected DependencyClosuresAdapter(EComparison comparison_p) {
+      _closures = new DependencyClosures(comparison_p);
+    }
+
+    /**
+     * Return the closures
+     * @return a non-null object
+     */
+    public DependencyClosures getClosures() {
+      return _closures;
+    }
+
+    /**
+     * @see org.eclipse.emf.common.notify.impl.AdapterImpl#isAdapterForType(java.lang.Object)
+     */
+    @Override
+    public boolean isAdapterForType(Object type_p) {
+      return type_p == DependencyClosures.class;
+    }
   }
 
   /**
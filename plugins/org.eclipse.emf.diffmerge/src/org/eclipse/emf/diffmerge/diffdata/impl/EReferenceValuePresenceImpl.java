@@ -15,25 +15,18 @@
 package org.eclipse.emf.diffmerge.diffdata.impl;
 
 import java.util.Collection;
-import java.util.List;
 
 import org.eclipse.emf.common.notify.Notification;
-import org.eclipse.emf.diffmerge.api.IComparison;
-import org.eclipse.emf.diffmerge.api.IDiffPolicy;
 import org.eclipse.emf.diffmerge.api.IMatch;
-import org.eclipse.emf.diffmerge.api.IMergePolicy;
 import org.eclipse.emf.diffmerge.api.Role;
 import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
-import org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope;
 import org.eclipse.emf.diffmerge.diffdata.DiffdataPackage;
 import org.eclipse.emf.diffmerge.diffdata.EComparison;
 import org.eclipse.emf.diffmerge.diffdata.EMatch;
 import org.eclipse.emf.diffmerge.diffdata.EReferenceValuePresence;
-import org.eclipse.emf.diffmerge.impl.helpers.BidirectionalComparisonCopier;
+import org.eclipse.emf.diffmerge.impl.helpers.DifferenceMerger;
 import org.eclipse.emf.ecore.EClass;
-import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
-import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
 
@@ -217,16 +210,7 @@ public class EReferenceValuePresenceImpl extends EValuePresenceImpl implements
    * @generated NOT
    */
   protected boolean hasStrongerOpposite() {
-    boolean result = false;
-    EStructuralFeature ownfeature = getFeature();
-    if (ownfeature instanceof EReference) {
-      EReference ref = (EReference) ownfeature;
-      if (ref.isMany()) {
-        EReference opposite = ref.getEOpposite();
-        result = opposite != null && !opposite.isMany();
-      }
-    }
-    return result;
+    return DifferenceMerger.hasStrongerOpposite(this);
   }
 
   /**
@@ -264,36 +248,7 @@ public class EReferenceValuePresenceImpl extends EValuePresenceImpl implements
    */
   @Override
   protected void mergeOrder() {
-    EObject sourceHolder = getHolder();
-    EObject destinationHolder = getMatchOfHolder();
-    EReference reference = getFeature();
-    assert sourceHolder != null && destinationHolder != null; // Otherwise order change would not have been detected
-    assert getFeature() != null; // Order merge does not cover root containment at this time
-    IEditableModelScope absenceScope = getAbsenceScope();
-    IMergePolicy mergePolicy = getComparison().getLastMergePolicy();
-    Role destination = getAbsenceRole();
-    IMatch holderMatch = getElementMatch();
-    IComparison owningComparison = getComparison();
-    List<EObject> sourceValues = getPresenceScope()
-        .get(sourceHolder, reference);
-    for (int i = sourceValues.size() - 1; i >= 0; i--) {
-      EObject sourceValue = sourceValues.get(i);
-      IMatch valueMatch = owningComparison.getMapping().getMatchFor(
-          sourceValue, destination.opposite());
-      if (valueMatch != null) { // Should be true since scope must be complete
-        EObject destinationValue = valueMatch.get(destination);
-        if (destinationValue != null) {
-          int index = mergePolicy.getDesiredValuePosition(owningComparison,
-              destination, holderMatch, reference, valueMatch);
-          if (index >= 0) {
-            List<EObject> updatedDestinationValues = absenceScope.get(
-                destinationHolder, reference);
-            int oldIndex = updatedDestinationValues.indexOf(destinationValue);
-            absenceScope.move(destinationHolder, reference, index, oldIndex);
-          }
-        }
-      }
-    }
+    DifferenceMerger.mergeReferenceOrder(this);
   }
 
   /**
@@ -302,38 +257,7 @@ public class EReferenceValuePresenceImpl extends EValuePresenceImpl implements
    */
   @Override
   protected void mergeValueAddition() {
-    IEditableModelScope absenceScope = getAbsenceScope();
-    EObject destinationHolder = getMatchOfHolder();
-    IMatch match = getValue();
-    EObject destinationValue;
-    boolean cloned;
-    if (match.isPartial()) {
-      destinationValue = getComparison().getMapping().completeMatch(match);
-      cloned = true;
-    } else {
-      destinationValue = match.get(getAbsenceRole());
-      cloned = false;
-    }
-    // Assertions are assumed to be enforced by diff dependency handling
-    assert destinationHolder != null && destinationValue != null;
-    boolean actuallyAdded = absenceScope.add(destinationHolder, getFeature(),
-        destinationValue);
-    // Order handling
-    IDiffPolicy diffPolicy = getComparison().getLastDiffPolicy();
-    IMergePolicy mergePolicy = getComparison().getLastMergePolicy();
-    if (diffPolicy != null && actuallyAdded
-        && diffPolicy.considerOrdered(getFeature())) {
-      // Move added value if required
-      int index = mergePolicy.getDesiredValuePosition(getComparison(),
-          getAbsenceRole(), getElementMatch(), getFeature(), getValue());
-      if (index >= 0)
-        absenceScope.move(destinationHolder, getFeature(), index, -1);
-    }
-    // ID enforcement
-    if (cloned && actuallyAdded)
-      BidirectionalComparisonCopier.handleIDCopy(
-          match.get(getPresenceRole()), getPresenceScope(),
-          destinationValue, getAbsenceScope(), mergePolicy);
+    DifferenceMerger.mergeReferenceValueAddition(this);
   }
 
   /**
@@ -342,31 +266,7 @@ public class EReferenceValuePresenceImpl extends EValuePresenceImpl implements
    */
   @Override
   protected final void mergeValueRemoval() {
-    if (getSymmetrical() == null
-        && !(hasStrongerOpposite() && !getValue().isPartial())) {
-      IEditableModelScope presenceScope = getPresenceScope();
-      EObject valueElement = getValue().get(getPresenceRole());
-      if (getFeature() != null)
-        presenceScope.remove(getHolder(), getFeature(), valueElement);
-      else
-        presenceScope.remove(valueElement);
-      if (getFeature() == null || getFeature().isContainment()) {
-        // Value has been removed from its containment: delete element
-        for (EStructuralFeature.Setting setting : getComparison().getMapping()
-            .getCrossReferences(valueElement, getPresenceRole())) {
-          presenceScope.remove(setting.getEObject(),
-              (EReference) setting.getEStructuralFeature(), valueElement);
-        }
-        if (!getComparison().getLastMergePolicy().bindPresenceToOwnership(presenceScope)) {
-          // Re-integrate direct children in scope
-          for (EObject child : presenceScope.getContents(valueElement)) {
-            presenceScope.add(child);
-          }
-        }
-      }
-    }
-    // Otherwise, we know this difference will be merged implicitly because of dependencies
-    // since a required difference implies this difference
+    DifferenceMerger.mergeReferenceValueRemoval(this);
   }
 
 } //EReferenceValuePresenceImpl
@@ -14,6 +14,13 @@
  */
 package org.eclipse.emf.diffmerge.impl.helpers;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -69,4 +76,35 @@ public abstract class AbstractExpensiveOperation implements IExpensiveOperation
     return run();
   }
   
+  /**
+   * Execute the given tasks on the given number of threads and wait for their completion.
+   * Progress is checked while waiting. If a task fails, its exception is rethrown.
+   * @param tasks_p a non-null list of tasks which can be executed concurrently
+   * @param threadCount_p a positive number of threads
+   */
+  protected void runInParallel(List<? extends Runnable> tasks_p, int threadCount_p) {
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount_p);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>(tasks_p.size());
+      for (Runnable task : tasks_p)
+        futures.add(executor.submit(task));
+      for (Future<?> future : futures) {
+        checkProgress();
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OperationCanceledException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
+      if (cause instanceof Error)
+        throw (Error)cause;
+      throw new RuntimeException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
 }
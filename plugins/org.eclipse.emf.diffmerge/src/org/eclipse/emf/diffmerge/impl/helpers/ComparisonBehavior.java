@@ -0,0 +1,203 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.helpers;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.common.util.AbstractTreeIterator;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
+import org.eclipse.emf.diffmerge.util.structures.FArrayList;
+import org.eclipse.emf.diffmerge.util.structures.FOrderedSet;
+import org.eclipse.emf.ecore.EObject;
+
+
+/**
+ * The behavior of comparisons which only depends on their model scopes and
+ * mapping, and which is thus shared by all the implementations of comparisons.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EComparisonImpl
+ * @see org.eclipse.emf.diffmerge.impl.lightweight.Comparison
+ */
+public final class ComparisonBehavior {
+  
+  /**
+   * Private constructor
+   */
+  private ComparisonBehavior() {
+    // Forbids instantiation
+  }
+  
+  /**
+   * Return an iterator over all the matches of the given comparison in the given
+   * role, following the containment of the elements in the corresponding scope
+   * @see IComparison#getAllContents(Role)
+   * @param comparison_p a non-null comparison
+   * @param role_p a non-null role
+   * @return a non-null iterator
+   */
+  @SuppressWarnings("serial")
+  public static TreeIterator<IMatch> getAllContents(final IComparison comparison_p,
+      final Role role_p) {
+    return new AbstractTreeIterator<IMatch>(comparison_p, false) {
+      /**
+       * @see org.eclipse.emf.common.util.AbstractTreeIterator#getChildren(Object)
+       */
+      @Override
+      protected Iterator<? extends IMatch> getChildren(Object object_p) {
+        Iterator<? extends IMatch> result;
+        if (object_p instanceof IComparison)
+          result = ((IComparison)object_p).getContents(role_p).iterator();
+        else
+          result = comparison_p.getContentsOf((IMatch)object_p, role_p).iterator();
+        return result;
+      }
+    };
+  }
+  
+  /**
+   * Return the match of the container of the element of the given match in
+   * the given role, if any
+   * @see IComparison#getContainerOf(IMatch, Role)
+   * @param comparison_p a non-null comparison
+   * @param match_p a non-null match of the comparison
+   * @param role_p a non-null role
+   * @return a potentially null match
+   */
+  public static IMatch getContainerOf(IComparison comparison_p, IMatch match_p,
+      Role role_p) {
+    IMatch result = null;
+    EObject child = match_p.get(role_p);
+    if (child != null) {
+      EObject container = comparison_p.getScope(role_p).getContainer(child);
+      if (container != null)
+        result = comparison_p.getMapping().getMatchFor(container, role_p);
+    }
+    return result;
+  }
+  
+  /**
+   * Return the matches of the root elements of the given comparison in the
+   * REFERENCE then TARGET roles, without duplicates
+   * @see IComparison#getContents()
+   * @param comparison_p a non-null comparison
+   * @return a non-null, unmodifiable list
+   */
+  public static List<IMatch> getContents(IComparison comparison_p) {
+    List<IMatch> targetMatches = comparison_p.getContents(Role.TARGET);
+    List<IMatch> referenceMatches = comparison_p.getContents(Role.REFERENCE);
+    List<IMatch> result = new FOrderedSet<IMatch>(referenceMatches, null);
+    for (IMatch targetMatch : targetMatches) {
+      result.add(targetMatch);
+    }
+    return Collections.unmodifiableList(result);
+  }
+  
+  /**
+   * Return the matches of the root elements of the given comparison in the given role
+   * @see IComparison#getContents(Role)
+   * @param comparison_p a non-null comparison
+   * @param role_p a non-null role
+   * @return a non-null, unmodifiable list
+   */
+  public static List<IMatch> getContents(IComparison comparison_p, Role role_p) {
+    List<IMatch> result = new FArrayList<IMatch>();
+    for (EObject child : comparison_p.getScope(role_p).getContents()) {
+      IMatch childMatch = comparison_p.getMapping().getMatchFor(child, role_p);
+      if (childMatch != null)
+        result.add(childMatch);
+    }
+    return Collections.unmodifiableList(result);
+  }
+  
+  /**
+   * Return the matches of the children of the elements of the given match in
+   * the REFERENCE then TARGET roles, without duplicates
+   * @see IComparison#getContentsOf(IMatch)
+   * @param comparison_p a non-null comparison
+   * @param match_p a non-null match of the comparison
+   * @return a non-null, unmodifiable list
+   */
+  public static List<IMatch> getContentsOf(IComparison comparison_p, IMatch match_p) {
+    List<IMatch> targetMatches = comparison_p.getContentsOf(match_p, Role.TARGET);
+    List<IMatch> referenceMatches = comparison_p.getContentsOf(match_p, Role.REFERENCE);
+    List<IMatch> result = new FOrderedSet<IMatch>(referenceMatches, null);
+    for (IMatch targetMatch : targetMatches) {
+      result.add(targetMatch);
+    }
+    return Collections.unmodifiableList(result);
+  }
+  
+  /**
+   * Return the matches of the children of the element of the given match in the given role
+   * @see IComparison#getContentsOf(IMatch, Role)
+   * @param comparison_p a non-null comparison
+   * @param match_p a non-null match of the comparison
+   * @param role_p a non-null role
+   * @return a non-null, unmodifiable list
+   */
+  public static List<IMatch> getContentsOf(IComparison comparison_p, IMatch match_p,
+      Role role_p) {
+    List<IMatch> result = new FArrayList<IMatch>();
+    EObject container = match_p.get(role_p);
+    if (container != null) {
+      IModelScope scope = comparison_p.getScope(role_p);
+      for (EObject child : scope.getContents(container)) {
+        IMatch childMatch = comparison_p.getMapping().getMatchFor(child, role_p);
+        if (childMatch != null)
+          result.add(childMatch);
+      }
+    }
+    return Collections.unmodifiableList(result);
+  }
+  
+  /**
+   * Return the differences which are presences in the given role, in the
+   * containment order of the corresponding scope
+   * @see IComparison#getDifferences(Role)
+   * @param comparison_p a non-null comparison
+   * @param role_p a non-null role
+   * @return a non-null, modifiable list
+   */
+  public static List<IDifference> getDifferences(IComparison comparison_p, Role role_p) {
+    List<IDifference> result = new FArrayList<IDifference>();
+    Iterator<IMatch> it = comparison_p.getAllContents(role_p);
+    while (it.hasNext()) {
+      IMatch current = it.next();
+      result.addAll(current.getPresenceDifferencesIn(role_p));
+    }
+    return result;
+  }
+  
+  /**
+   * Return whether the given comparison has no duplicate match IDs in any role
+   * @see IComparison#isConsistent()
+   * @param comparison_p a non-null comparison
+   */
+  public static boolean isConsistent(IComparison comparison_p) {
+    boolean result = true;
+    for (Role role : Role.values()) {
+      if (!comparison_p.getDuplicateMatchIDs(role).isEmpty())
+        result = false;
+    }
+    return result;
+  }
+  
+}
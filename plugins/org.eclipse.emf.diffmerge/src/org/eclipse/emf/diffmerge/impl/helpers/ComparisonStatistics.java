@@ -0,0 +1,511 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.helpers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.api.IMapping;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IAttributeValuePresence;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IElementPresence;
+import org.eclipse.emf.diffmerge.api.diff.IElementRelativeDifference;
+import org.eclipse.emf.diffmerge.api.diff.IPresenceDifference;
+import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
+import org.eclipse.emf.diffmerge.util.structures.FHashSet;
+import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
+
+
+/**
+ * Counters on the matches and differences of a comparison which are maintained
+ * incrementally, so that size and remaining-work queries do not need to iterate
+ * the whole comparison.
+ * The counters are computed in a single pass on the first query, then updated
+ * by the mapping, matches and differences of the comparison on each change.
+ * Differences are those registered as related differences of the matches of the
+ * mapping. Changes which bypass these objects, such as direct modifications of
+ * the modifiable contents of the mapping or the undo of a merge, require a call
+ * to invalidate(): comparison viewers do so after undo and redo.
+ * The statistics also maintain the difference index of the comparison once it
+ * has been requested, and the transitive closures of dependencies between differences.
+ */
+public class ComparisonStatistics {
+  
+  /** The bit flag of the TARGET role in match coverage masks */
+  private static final int COVERS_TARGET = 1;
+  
+  /** The bit flag of the REFERENCE role in match coverage masks */
+  private static final int COVERS_REFERENCE = 2;
+  
+  /** The bit flag of the ANCESTOR role in match coverage masks */
+  private static final int COVERS_ANCESTOR = 4;
+  
+  /** The non-null comparison whose contents are counted */
+  private final IComparison _comparison;
+  
+  /** Whether the counters reflect the current contents of the comparison */
+  private boolean _upToDate;
+  
+  /** The number of matches per coverage mask */
+  private final int[] _nbMatchesPerCoverage;
+  
+  /** The number of differences */
+  private int _nbDifferences;
+  
+  /** The number of element presences */
+  private int _nbElementPresences;
+  
+  /** The number of attribute value presences */
+  private int _nbAttributeValuePresences;
+  
+  /** The number of reference value presences */
+  private int _nbReferenceValuePresences;
+  
+  /** The number of presence differences in the TARGET role */
+  private int _nbTargetPresences;
+  
+  /** The number of presence differences in the REFERENCE role */
+  private int _nbReferencePresences;
+  
+  /** The number of merged differences */
+  private int _nbMergedDifferences;
+  
+  /** The number of conflicting differences */
+  private int _nbConflictingDifferences;
+  
+  /** The number of unmerged differences which are unrelated to the containment tree
+      and belong to non-partial matches */
+  private int _nbNoContainmentDifferences;
+  
+  /** The unmerged differences, or null if they have not been requested yet */
+  private Set<IDifference> _remainingDifferences;
+  
+  /** The index of the differences, or null if it has not been requested yet */
+  private DifferenceIndex _index;
+  
+  /** The non-null transitive closures of dependencies between differences */
+  private final DependencyClosures _closures;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison whose contents are counted
+   */
+  public ComparisonStatistics(IComparison comparison_p) {
+    _comparison = comparison_p;
+    _nbMatchesPerCoverage = new int[8];
+    _closures = new DependencyClosures(comparison_p);
+    invalidate();
+  }
+  
+  /**
+   * Update the counters according to the addition of the given difference to
+   * the related differences of the given match
+   * @param match_p a non-null match of the comparison
+   * @param difference_p a non-null difference which is new to the match
+   */
+  public void differenceAdded(IMatch match_p, IDifference difference_p) {
+    _closures.differenceAdded(difference_p);
+    if (_index != null)
+      _index.differenceAdded(match_p, difference_p);
+    if (_upToDate)
+      count(match_p, difference_p, 1);
+  }
+  
+  /**
+   * Update the dependency closures according to the addition of a dependency
+   * between differences
+   * @param difference_p a non-null difference which has a new direct dependency
+   */
+  public void differenceDependencyAdded(IDifference difference_p) {
+    _closures.invalidate();
+  }
+  
+  /**
+   * Update the counters according to the given difference having been marked as conflicting
+   * @param difference_p a non-null difference which was not conflicting before
+   */
+  public void differenceMarkedAsConflicting(IDifference difference_p) {
+    if (_index != null)
+      _index.differenceMarkedAsConflicting(difference_p);
+    if (_upToDate)
+      _nbConflictingDifferences++;
+  }
+  
+  /**
+   * Update the counters according to the given difference having been marked as merged
+   * @param difference_p a non-null difference which was not merged before
+   */
+  public void differenceMarkedAsMerged(IDifference difference_p) {
+    if (_index != null)
+      _index.differenceMarkedAsMerged(difference_p);
+    if (_upToDate) {
+      _nbMergedDifferences++;
+      if (countsAsNoContainment(difference_p))
+        _nbNoContainmentDifferences--;
+      if (_remainingDifferences != null)
+        _remainingDifferences.remove(difference_p);
+    }
+  }
+  
+  /**
+   * Update the counters by the given multiplier for the given difference
+   * @param match_p the non-null match to which the difference is related
+   * @param difference_p a non-null difference
+   * @param multiplier_p 1 for counting the difference, -1 for uncounting it
+   */
+  protected void count(IMatch match_p, IDifference difference_p, int multiplier_p) {
+    _nbDifferences += multiplier_p;
+    if (difference_p instanceof IElementPresence)
+      _nbElementPresences += multiplier_p;
+    else if (difference_p instanceof IAttributeValuePresence)
+      _nbAttributeValuePresences += multiplier_p;
+    else if (difference_p instanceof IReferenceValuePresence)
+      _nbReferenceValuePresences += multiplier_p;
+    if (difference_p instanceof IPresenceDifference) {
+      if (((IPresenceDifference)difference_p).getPresenceRole() == Role.TARGET)
+        _nbTargetPresences += multiplier_p;
+      else
+        _nbReferencePresences += multiplier_p;
+    }
+    if (difference_p.isConflicting())
+      _nbConflictingDifferences += multiplier_p;
+    if (difference_p.isMerged()) {
+      _nbMergedDifferences += multiplier_p;
+    } else {
+      if (!match_p.isPartial() && isUnrelatedToContainmentTree(difference_p))
+        _nbNoContainmentDifferences += multiplier_p;
+      if (_remainingDifferences != null) {
+        if (multiplier_p > 0)
+          _remainingDifferences.add(difference_p);
+        else
+          _remainingDifferences.remove(difference_p);
+      }
+    }
+  }
+  
+  /**
+   * Update the counters by the given multiplier for the given match and its
+   * related differences
+   * @param match_p a non-null match
+   * @param multiplier_p 1 for counting the match, -1 for uncounting it
+   */
+  protected void count(IMatch match_p, int multiplier_p) {
+    _nbMatchesPerCoverage[getCoverage(match_p)] += multiplier_p;
+    for (IDifference difference : match_p.getRelatedDifferences())
+      count(match_p, difference, multiplier_p);
+  }
+  
+  /**
+   * Return whether the given unmerged difference is currently counted as a
+   * difference unrelated to the containment tree
+   * @param difference_p a non-null difference
+   */
+  protected boolean countsAsNoContainment(IDifference difference_p) {
+    return isUnrelatedToContainmentTree(difference_p) &&
+      !((IElementRelativeDifference)difference_p).getElementMatch().isPartial();
+  }
+  
+  /**
+   * Make sure the counters reflect the current contents of the comparison
+   */
+  protected void ensureUpToDate() {
+    if (!_upToDate) {
+      for (IMatch match : _comparison.getMapping().getContents())
+        count(match, 1);
+      _upToDate = true;
+    }
+  }
+  
+  /**
+   * Return the coverage mask of the given match
+   * @param match_p a non-null match
+   * @return a positive int between 1 and 7
+   */
+  protected int getCoverage(IMatch match_p) {
+    int result = 0;
+    if (match_p.coversRole(Role.TARGET))
+      result |= COVERS_TARGET;
+    if (match_p.coversRole(Role.REFERENCE))
+      result |= COVERS_REFERENCE;
+    if (match_p.coversRole(Role.ANCESTOR))
+      result |= COVERS_ANCESTOR;
+    return result;
+  }
+  
+  /**
+   * Return the transitive closures of dependencies between differences
+   * @return a non-null object
+   */
+  public DependencyClosures getDependencyClosures() {
+    return _closures;
+  }
+  
+  /**
+   * Return the index of the differences, which is created on the first call
+   * and built on its first query
+   * @return a non-null object
+   * @see IComparison.Indexed#getDifferenceIndex()
+   */
+  public DifferenceIndex getDifferenceIndex() {
+    if (_index == null)
+      _index = new DifferenceIndex(_comparison);
+    return _index;
+  }
+  
+  /**
+   * Return the number of attribute value presences
+   */
+  public int getNbAttributeValuePresences() {
+    ensureUpToDate();
+    return _nbAttributeValuePresences;
+  }
+  
+  /**
+   * Return the number of conflicting differences
+   */
+  public int getNbConflictingDifferences() {
+    ensureUpToDate();
+    return _nbConflictingDifferences;
+  }
+  
+  /**
+   * Return the number of differences, merged or not
+   * @see IComparison#getNbDifferences()
+   */
+  public int getNbDifferences() {
+    ensureUpToDate();
+    return _nbDifferences;
+  }
+  
+  /**
+   * Return the number of presence differences in the given role
+   * @param presenceRole_p a role which is TARGET or REFERENCE
+   */
+  public int getNbDifferences(Role presenceRole_p) {
+    ensureUpToDate();
+    return presenceRole_p == Role.TARGET? _nbTargetPresences:
+      _nbReferencePresences;
+  }
+  
+  /**
+   * Return the number of element presences
+   */
+  public int getNbElementPresences() {
+    ensureUpToDate();
+    return _nbElementPresences;
+  }
+  
+  /**
+   * Return the number of matches which are not partial
+   * @see IMapping#getNbFullMatches()
+   */
+  public int getNbFullMatches() {
+    ensureUpToDate();
+    return _nbMatchesPerCoverage[COVERS_TARGET | COVERS_REFERENCE] +
+      _nbMatchesPerCoverage[COVERS_TARGET | COVERS_REFERENCE | COVERS_ANCESTOR];
+  }
+  
+  /**
+   * Return the number of matches
+   * @see IMapping#size()
+   */
+  public int getNbMatches() {
+    ensureUpToDate();
+    int result = 0;
+    for (int nb : _nbMatchesPerCoverage)
+      result += nb;
+    return result;
+  }
+  
+  /**
+   * Return the number of matches which cover the given role
+   * @param role_p a non-null role
+   * @see IMapping#size(Role)
+   */
+  public int getNbMatches(Role role_p) {
+    ensureUpToDate();
+    int flag = getFlag(role_p);
+    int result = 0;
+    for (int coverage = 0; coverage < _nbMatchesPerCoverage.length; coverage++) {
+      if ((coverage & flag) != 0)
+        result += _nbMatchesPerCoverage[coverage];
+    }
+    return result;
+  }
+  
+  /**
+   * Return the number of merged differences
+   */
+  public int getNbMergedDifferences() {
+    ensureUpToDate();
+    return _nbMergedDifferences;
+  }
+  
+  /**
+   * Return the number of unmerged differences which are unrelated to the
+   * containment tree and belong to non-partial matches
+   * @see IComparison#getNbNoContainmentDifferences()
+   */
+  public int getNbNoContainmentDifferences() {
+    ensureUpToDate();
+    return _nbNoContainmentDifferences;
+  }
+  
+  /**
+   * Return the number of partial matches which cover the given role
+   * @param covered_p a potentially null role, where null stands for any role
+   * @see IMapping#getNbPartialMatches(Role)
+   */
+  public int getNbPartialMatches(Role covered_p) {
+    ensureUpToDate();
+    int flag = covered_p == null? 0: getFlag(covered_p);
+    int result = 0;
+    for (int coverage = 0; coverage < _nbMatchesPerCoverage.length; coverage++) {
+      boolean partial = (coverage & COVERS_TARGET) == 0 ||
+        (coverage & COVERS_REFERENCE) == 0;
+      if (partial && (flag == 0 || (coverage & flag) != 0))
+        result += _nbMatchesPerCoverage[coverage];
+    }
+    return result;
+  }
+  
+  /**
+   * Return the number of reference value presences
+   */
+  public int getNbReferenceValuePresences() {
+    ensureUpToDate();
+    return _nbReferenceValuePresences;
+  }
+  
+  /**
+   * Return the number of unmerged differences
+   */
+  public int getNbRemainingDifferences() {
+    ensureUpToDate();
+    return _nbDifferences - _nbMergedDifferences;
+  }
+  
+  /**
+   * Return the bit flag of the given role in match coverage masks
+   * @param role_p a non-null role
+   */
+  private static int getFlag(Role role_p) {
+    int result;
+    switch (role_p) {
+    case TARGET:
+      result = COVERS_TARGET;
+      break;
+    case REFERENCE:
+      result = COVERS_REFERENCE;
+      break;
+    default:
+      result = COVERS_ANCESTOR;
+    }
+    return result;
+  }
+  
+  /**
+   * Return a snapshot of the unmerged differences.
+   * The first call iterates the comparison, subsequent calls take a time
+   * proportional to the number of unmerged differences.
+   * @return a non-null, unmodifiable collection
+   * @see IComparison#getRemainingDifferences()
+   */
+  public Collection<IDifference> getRemainingDifferences() {
+    ensureUpToDate();
+    if (_remainingDifferences == null) {
+      _remainingDifferences = new FHashSet<IDifference>(IEqualityTester.BY_REFERENCE);
+      for (IMatch match : _comparison.getMapping().getContents()) {
+        for (IDifference difference : match.getRelatedDifferences()) {
+          if (!difference.isMerged())
+            _remainingDifferences.add(difference);
+        }
+      }
+    }
+    Collection<IDifference> result = new FHashSet<IDifference>(
+        _remainingDifferences, IEqualityTester.BY_REFERENCE);
+    return Collections.unmodifiableCollection(result);
+  }
+  
+  /**
+   * Return whether there are unmerged differences
+   * @see IComparison#hasRemainingDifferences()
+   */
+  public boolean hasRemainingDifferences() {
+    return getNbRemainingDifferences() > 0;
+  }
+  
+  /**
+   * Discard the counters so that they are computed again on the next query
+   */
+  public void invalidate() {
+    _upToDate = false;
+    for (int i = 0; i < _nbMatchesPerCoverage.length; i++)
+      _nbMatchesPerCoverage[i] = 0;
+    _nbDifferences = 0;
+    _nbElementPresences = 0;
+    _nbAttributeValuePresences = 0;
+    _nbReferenceValuePresences = 0;
+    _nbTargetPresences = 0;
+    _nbReferencePresences = 0;
+    _nbMergedDifferences = 0;
+    _nbConflictingDifferences = 0;
+    _nbNoContainmentDifferences = 0;
+    _remainingDifferences = null;
+    _closures.invalidate();
+    if (_index != null)
+      _index.invalidate();
+  }
+  
+  /**
+   * Return whether the given difference is relative to an element and
+   * unrelated to the containment tree
+   * @param difference_p a non-null difference
+   */
+  private static boolean isUnrelatedToContainmentTree(IDifference difference_p) {
+    return difference_p instanceof IElementRelativeDifference &&
+      ((IElementRelativeDifference)difference_p).isUnrelatedToContainmentTree();
+  }
+  
+  /**
+   * Update the counters according to the addition of the given match to the mapping
+   * @param match_p a non-null match
+   */
+  public void matchAdded(IMatch match_p) {
+    _closures.matchAdded(match_p);
+    if (_index != null)
+      _index.matchAdded(match_p);
+    if (_upToDate)
+      count(match_p, 1);
+  }
+  
+  /**
+   * Update the counters according to the removal of the given match from the mapping.
+   * This must be called before the match is modified or discarded.
+   * @param match_p a non-null match of the mapping
+   */
+  public void matchRemoved(IMatch match_p) {
+    if (_index != null)
+      _index.matchRemoved(match_p);
+    if (_upToDate)
+      count(match_p, -1);
+  }
+  
+}
@@ -0,0 +1,113 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.helpers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+
+/**
+ * A cache of the features of EClasses which are covered according to some policy,
+ * so that the policy is only questioned once per feature and EClass instead of
+ * once per feature and element.
+ * Covered features are only computed once per EClass, so the policy must give
+ * the same answer for a given feature during the lifetime of the cache, unless
+ * clear() is called.
+ * Instances are thread-safe.
+ */
+public abstract class CoveredFeatures {
+  
+  /** An empty array of attributes */
+  private static final EAttribute[] NO_ATTRIBUTES = new EAttribute[0];
+  
+  /** An empty array of references */
+  private static final EReference[] NO_REFERENCES = new EReference[0];
+  
+  /** The non-null map from EClasses to their covered attributes */
+  private final ConcurrentHashMap<EClass, EAttribute[]> _attributes;
+  
+  /** The non-null map from EClasses to their covered non-container references */
+  private final ConcurrentHashMap<EClass, EReference[]> _references;
+  
+  
+  /**
+   * Constructor
+   */
+  public CoveredFeatures() {
+    _attributes = new ConcurrentHashMap<EClass, EAttribute[]>();
+    _references = new ConcurrentHashMap<EClass, EReference[]>();
+  }
+  
+  /**
+   * Forget the covered features of all EClasses
+   */
+  public void clear() {
+    _attributes.clear();
+    _references.clear();
+  }
+  
+  /**
+   * Return whether the given feature is covered
+   * @param feature_p a non-null attribute or non-container reference
+   */
+  protected abstract boolean covers(EStructuralFeature feature_p);
+  
+  /**
+   * Return the covered attributes of the given EClass
+   * @param eClass_p a non-null EClass
+   * @return a non-null array of attributes in the order of EClass#getEAllAttributes(),
+   *         which must not be modified
+   */
+  public EAttribute[] getAttributes(EClass eClass_p) {
+    EAttribute[] result = _attributes.get(eClass_p);
+    if (result == null) {
+      List<EAttribute> covered = new ArrayList<EAttribute>();
+      for (EAttribute attribute : eClass_p.getEAllAttributes()) {
+        if (covers(attribute))
+          covered.add(attribute);
+      }
+      result = covered.toArray(NO_ATTRIBUTES);
+      _attributes.put(eClass_p, result);
+    }
+    return result;
+  }
+  
+  /**
+   * Return the covered non-container references of the given EClass
+   * @param eClass_p a non-null EClass
+   * @return a non-null array of references in the order of EClass#getEAllReferences(),
+   *         which must not be modified
+   */
+  public EReference[] getReferences(EClass eClass_p) {
+    EReference[] result = _references.get(eClass_p);
+    if (result == null) {
+      List<EReference> covered = new ArrayList<EReference>();
+      for (EReference reference : eClass_p.getEAllReferences()) {
+        if (!reference.isContainer() && covers(reference))
+          covered.add(reference);
+      }
+      result = covered.toArray(NO_REFERENCES);
+      _references.put(eClass_p, result);
+    }
+    return result;
+  }
+  
+}
@@ -0,0 +1,245 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.helpers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IMergeableDifference;
+import org.eclipse.emf.diffmerge.util.structures.AbstractEndorelation;
+import org.eclipse.emf.diffmerge.util.structures.Condensation;
+import org.eclipse.emf.diffmerge.util.structures.FArrayList;
+import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
+
+
+/**
+ * The transitive closures of the inter-difference dependencies of a comparison.
+ * The dependency graph of each role and kind of dependency is condensed once for
+ * all the differences of the comparison, so that closures are computed on demand
+ * in time proportional to their size, the reachable components of each component
+ * being shared by all the closures which involve it.
+ * The condensations are discarded whenever dependencies are added or differences
+ * which they do not cover are added, and computed again on the next query.
+ * Changes to the matches of the mapping which do not affect differences, such as
+ * the completion of matches during merges, thus preserve the condensations.
+ * @see IMergeableDifference#getRequiresDependencies(Role)
+ * @see IMergeableDifference#getImpliesDependencies(Role)
+ */
+public class DependencyClosures {
+  
+  /** The non-null comparison whose differences are covered */
+  private final IComparison _comparison;
+  
+  /** The non-null map from roles to the condensations of explicit dependencies */
+  private final Map<Role, Condensation<IMergeableDifference>> _requiresCondensations;
+  
+  /** The non-null map from roles to the condensations of implicit dependencies */
+  private final Map<Role, Condensation<IMergeableDifference>> _impliesCondensations;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison whose differences are covered
+   */
+  public DependencyClosures(IComparison comparison_p) {
+    _comparison = comparison_p;
+    _requiresCondensations = new HashMap<Role, Condensation<IMergeableDifference>>(2);
+    _impliesCondensations = new HashMap<Role, Condensation<IMergeableDifference>>(2);
+  }
+  
+  /**
+   * Return whether the current condensations, if any, cover the given difference
+   * @param difference_p a non-null difference
+   */
+  protected boolean covers(IDifference difference_p) {
+    boolean result = true;
+    if (difference_p instanceof IMergeableDifference) {
+      Collection<Condensation<IMergeableDifference>> condensations =
+        _requiresCondensations.isEmpty()? _impliesCondensations.values():
+          _requiresCondensations.values();
+      for (Condensation<IMergeableDifference> condensation : condensations) {
+        // All condensations cover the same differences
+        result = condensation.getComponentIndex((IMergeableDifference)difference_p) >= 0;
+        break;
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Update the closures according to the addition of the given difference to
+   * the comparison
+   * @param difference_p a non-null difference
+   */
+  public synchronized void differenceAdded(IDifference difference_p) {
+    if (!covers(difference_p))
+      invalidate();
+  }
+  
+  /**
+   * Return the condensation of the dependencies of the given kind in the given role,
+   * computing it if needed
+   * @param role_p a role which is TARGET or REFERENCE
+   * @param isExplicit_p whether explicit or implicit dependencies are concerned
+   * @return a non-null condensation which covers all the differences of the comparison
+   */
+  protected synchronized Condensation<IMergeableDifference> getCondensation(
+      Role role_p, boolean isExplicit_p) {
+    Map<Role, Condensation<IMergeableDifference>> condensations =
+      isExplicit_p? _requiresCondensations: _impliesCondensations;
+    Condensation<IMergeableDifference> result = condensations.get(role_p);
+    if (result == null) {
+      List<IMergeableDifference> differences = new ArrayList<IMergeableDifference>();
+      for (IMatch match : _comparison.getMapping().getContents()) {
+        for (IDifference difference : match.getRelatedDifferences()) {
+          if (difference instanceof IMergeableDifference)
+            differences.add((IMergeableDifference)difference);
+        }
+      }
+      result = new Condensation<IMergeableDifference>(
+          new DependencyRelation(role_p, isExplicit_p), differences);
+      condensations.put(role_p, result);
+    }
+    return result;
+  }
+  
+  /**
+   * Return the transitive closure of the implicit dependencies of the given
+   * difference and of its explicit dependencies in the given role
+   * @param difference_p a non-null difference
+   * @param role_p a role which is TARGET or REFERENCE
+   * @return a non-null, unmodifiable list
+   * @see IMergeableDifference#getImpliesDependencies(Role)
+   */
+  public List<IMergeableDifference> getImpliesDependencies(
+      IMergeableDifference difference_p, Role role_p) {
+    Collection<IMergeableDifference> required = getRequiresDependencies(
+        difference_p, role_p);
+    Collection<IMergeableDifference> allRequired = new FArrayList<IMergeableDifference>(
+        required.size() + 1, null);
+    allRequired.add(difference_p);
+    allRequired.addAll(required);
+    return getTransitiveClosure(allRequired, role_p, false);
+  }
+  
+  /**
+   * Return the transitive closure of the explicit dependencies of the given
+   * difference in the given role, where every difference comes after the
+   * differences it requires unless they require each other
+   * @param difference_p a non-null difference
+   * @param role_p a role which is TARGET or REFERENCE
+   * @return a non-null, unmodifiable list
+   * @see IMergeableDifference#getRequiresDependencies(Role)
+   */
+  public List<IMergeableDifference> getRequiresDependencies(
+      IMergeableDifference difference_p, Role role_p) {
+    List<IMergeableDifference> elements = new FArrayList<IMergeableDifference>(1, null);
+    elements.add(difference_p);
+    return getTransitiveClosure(elements, role_p, true);
+  }
+  
+  /**
+   * Return the transitive closure of the dependencies of the given kind in the
+   * given role starting on the given differences
+   * @param differences_p a non-null collection of differences
+   * @param role_p a role which is TARGET or REFERENCE
+   * @param isExplicit_p whether explicit or implicit dependencies are concerned
+   * @return a non-null, unmodifiable list
+   */
+  protected List<IMergeableDifference> getTransitiveClosure(
+      Collection<IMergeableDifference> differences_p, Role role_p,
+      boolean isExplicit_p) {
+    Role role = role_p == Role.TARGET? Role.TARGET: Role.REFERENCE;
+    Condensation<IMergeableDifference> condensation = getCondensation(role, isExplicit_p);
+    boolean covered = true;
+    for (IMergeableDifference difference : differences_p) {
+      if (condensation.getComponentIndex(difference) < 0) {
+        covered = false;
+        break;
+      }
+    }
+    List<IMergeableDifference> result;
+    if (covered)
+      result = condensation.getTransitiveClosure(differences_p);
+    else // Differences which do not belong to the comparison
+      result = new Condensation<IMergeableDifference>(
+          new DependencyRelation(role, isExplicit_p), differences_p).getTransitiveClosure(
+              differences_p);
+    return result;
+  }
+  
+  /**
+   * Discard the condensations so that they are computed again on the next query
+   */
+  public synchronized void invalidate() {
+    _requiresCondensations.clear();
+    _impliesCondensations.clear();
+  }
+  
+  /**
+   * Update the closures according to the addition of the given match to the mapping
+   * @param match_p a non-null match
+   */
+  public synchronized void matchAdded(IMatch match_p) {
+    for (IDifference difference : match_p.getRelatedDifferences()) {
+      if (!covers(difference)) {
+        invalidate();
+        break;
+      }
+    }
+  }
+  
+  
+  /**
+   * A definition of inter-difference dependencies as a mathematical binary relation
+   * over differences.
+   */
+  public static class DependencyRelation extends
+      AbstractEndorelation<IMergeableDifference> {
+  
+    /** The non-null role for dependency computation */
+    private final Role _role;
+  
+    /** Whether to use explicit or implicit inter-difference dependencies */
+    private final boolean _isExplicit;
+  
+    /**
+     * Constructor
+     * @param role_p the role to which this dependency is relative (TARGET or REFERENCE)
+     * @param isExplicit_p whether to use explicit or implicit inter-difference dependencies
+     */
+    public DependencyRelation(Role role_p, boolean isExplicit_p) {
+      super(IEqualityTester.BY_REFERENCE);
+      _role = role_p;
+      _isExplicit = isExplicit_p;
+    }
+  
+    /**
+     * @see org.eclipse.emf.diffmerge.util.structures.IBinaryRelation#get(Object)
+     */
+    public Collection<IMergeableDifference> get(IMergeableDifference element_p) {
+      return _isExplicit? element_p.getDirectRequiresDependencies(_role):
+        element_p.getDirectImpliesDependencies(_role);
+    }
+  }
+  
+}
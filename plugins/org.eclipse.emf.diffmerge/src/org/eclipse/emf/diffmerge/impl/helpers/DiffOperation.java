@@ -17,7 +17,15 @@ package org.eclipse.emf.diffmerge.impl.helpers;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -35,12 +43,17 @@ import org.eclipse.emf.diffmerge.api.diff.IMergeableDifference;
 import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
 import org.eclipse.emf.diffmerge.api.diff.IValuePresence;
 import org.eclipse.emf.diffmerge.api.scopes.IFeaturedModelScope;
+import org.eclipse.emf.diffmerge.api.scopes.IFragmentedModelScope;
+import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
+import org.eclipse.emf.diffmerge.util.OrderingUtil;
 import org.eclipse.emf.diffmerge.util.structures.FArrayList;
-import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
 import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 
 
 /**
@@ -58,6 +71,19 @@ public class DiffOperation extends AbstractExpensiveOperation {
   /** The non-null comparison whose differences are being built */
   private final IComparison.Editable _comparison;
   
+  /** The records of the differences detected by the current thread, if any */
+  private final ThreadLocal<List<ValuePresenceRecord>> _detectedDifferences;
+  
+  /** The non-null features covered by the diff policy per EClass */
+  private final CoveredFeatures _coveredFeatures;
+  
+  /** The non-null map from features to whether the diff policy considers them ordered */
+  private final ConcurrentHashMap<EStructuralFeature, Boolean> _orderedFeatures;
+  
+  /** The TARGET resources which are identical to REFERENCE resources, non-null iff
+   *  differences are being detected and there is at least one of them */
+  private Set<Resource> _identicalResources;
+  
   
   /**
    * Constructor based on a comparison with a predefined mapping
@@ -71,6 +97,33 @@ public class DiffOperation extends AbstractExpensiveOperation {
     _comparison = comparison_p;
     _diffPolicy = diffPolicy_p;
     _mergePolicy = mergePolicy_p;
+    _detectedDifferences = new ThreadLocal<List<ValuePresenceRecord>>();
+    _coveredFeatures = new CoveredFeatures() {
+      /**
+       * @see org.eclipse.emf.diffmerge.impl.helpers.CoveredFeatures#covers(org.eclipse.emf.ecore.EStructuralFeature)
+       */
+      @Override
+      protected boolean covers(EStructuralFeature feature_p) {
+        return getDiffPolicy().coverFeature(feature_p);
+      }
+    };
+    _orderedFeatures = new ConcurrentHashMap<EStructuralFeature, Boolean>();
+    _identicalResources = null;
+  }
+  
+  /**
+   * Return whether the given feature must be considered as ordered according
+   * to the diff policy, which is questioned only once per feature
+   * @see IDiffPolicy#considerOrdered(EStructuralFeature)
+   * @param feature_p a non-null feature
+   */
+  protected boolean considerOrdered(EStructuralFeature feature_p) {
+    Boolean result = _orderedFeatures.get(feature_p);
+    if (result == null) {
+      result = Boolean.valueOf(getDiffPolicy().considerOrdered(feature_p));
+      _orderedFeatures.put(feature_p, result);
+    }
+    return result.booleanValue();
   }
   
   /**
@@ -80,8 +133,10 @@ public class DiffOperation extends AbstractExpensiveOperation {
   protected void createAllAttributeDifferences(IMatch match_p) {
     assert match_p != null && !match_p.isPartial();
     EClass eClass = match_p.get(Role.TARGET).eClass();
-    for (EAttribute attribute : eClass.getEAllAttributes()) {
-      if (getDiffPolicy().coverFeature(attribute))
+    boolean identical = isInIdenticalResources(match_p);
+    for (EAttribute attribute : _coveredFeatures.getAttributes(eClass)) {
+      // Persistent values are identical if resources are
+      if (!identical || attribute.isTransient() || attribute.isDerived())
         createAttributeDifferences(match_p, attribute);
     }
   }
@@ -99,37 +154,94 @@ public class DiffOperation extends AbstractExpensiveOperation {
     EObject reference = match_p.get(Role.REFERENCE);
     List<Object> targetValues = targetScope.get(target, attribute_p);
     List<Object> referenceValues = referenceScope.get(reference, attribute_p);
-    List<Object> remainingTargetValues = new ArrayList<Object>(targetValues);
-    List<Object> remainingReferenceValues = new ArrayList<Object>(referenceValues);
-    boolean checkOrder = attribute_p.isMany() && getDiffPolicy().considerOrdered(attribute_p);
-    int maxIndex = -1;
-    for (Object targetValue : targetValues) {
-      ObjectAndIndex matchingReferenceValue = findEqualAttributeValue(
-          attribute_p, targetValue, remainingReferenceValues);
-      if (matchingReferenceValue.getObject() != null) {
-        if (checkOrder) {
-          if (matchingReferenceValue.getIndex() < maxIndex) {
-            // Ordering difference
-            createAttributeOrderDifference(
-                match_p, attribute_p, targetValue, matchingReferenceValue.getObject());
-            checkOrder = false;
-          } else {
-            maxIndex = matchingReferenceValue.getIndex();
+    Object[] targetKeys = null, referenceKeys = null;
+    if (attribute_p.isMany()) {
+      targetKeys = getEqualityKeys(attribute_p, targetValues);
+      if (targetKeys != null)
+        referenceKeys = getEqualityKeys(attribute_p, referenceValues);
+    }
+    if (referenceKeys != null) {
+      createAttributeDifferencesByKeys(match_p, attribute_p, targetValues, targetKeys,
+          referenceValues, referenceKeys);
+    } else {
+      List<Object> remainingTargetValues = new ArrayList<Object>(targetValues);
+      List<Object> remainingReferenceValues = new ArrayList<Object>(referenceValues);
+      boolean checkOrder = attribute_p.isMany() && considerOrdered(attribute_p);
+      int maxIndex = -1;
+      for (Object targetValue : targetValues) {
+        ObjectAndIndex matchingReferenceValue = findEqualAttributeValue(
+            attribute_p, targetValue, remainingReferenceValues);
+        if (matchingReferenceValue.getObject() != null) {
+          if (checkOrder) {
+            if (matchingReferenceValue.getIndex() < maxIndex) {
+              // Ordering difference
+              createOrRecordDifference(new ValuePresenceRecord(match_p, attribute_p,
+                  targetValue, matchingReferenceValue.getObject(), null));
+              checkOrder = false;
+            } else {
+              maxIndex = matchingReferenceValue.getIndex();
+            }
           }
+          remainingTargetValues.remove(targetValue);
+          remainingReferenceValues.remove(matchingReferenceValue.getObject());
         }
-        remainingTargetValues.remove(targetValue);
-        remainingReferenceValues.remove(matchingReferenceValue.getObject());
       }
+      for (Object remainingTargetValue : remainingTargetValues) {
+        if (getDiffPolicy().coverValue(remainingTargetValue, attribute_p))
+          createOrRecordDifference(new ValuePresenceRecord(
+              match_p, attribute_p, remainingTargetValue, null, Role.TARGET));
+      }
+      for (Object remainingReferenceValue : remainingReferenceValues) {
+        if (getDiffPolicy().coverValue(remainingReferenceValue, attribute_p))
+          createOrRecordDifference(new ValuePresenceRecord(
+              match_p, attribute_p, remainingReferenceValue, null, Role.REFERENCE));
+      }
+    }
+  }
+  
+  /**
+   * Create the differences related to the given many-valued attribute for the given
+   * match, based on the equality keys of the values.
+   * The resulting differences are the same as those of
+   * createAttributeDifferences(IMatch, EAttribute): every value is matched against
+   * the first equal counterpart which has not already been matched, and an order
+   * difference is created for the first value which must be moved, if any.
+   * @see IDiffPolicy.Hashing#getEqualityKey(Object, EAttribute)
+   * @param match_p a non-null, non-partial match
+   * @param attribute_p a non-null, many-valued attribute
+   * @param targetValues_p the non-null values of the attribute in TARGET
+   * @param targetKeys_p the non-null equality keys of targetValues_p, in the same order
+   * @param referenceValues_p the non-null values of the attribute in REFERENCE
+   * @param referenceKeys_p the non-null equality keys of referenceValues_p, in the same order
+   */
+  protected void createAttributeDifferencesByKeys(IMatch match_p, EAttribute attribute_p,
+      List<Object> targetValues_p, Object[] targetKeys_p,
+      List<Object> referenceValues_p, Object[] referenceKeys_p) {
+    ValuePositions referencePositions = new ValuePositions(
+        Arrays.asList(referenceKeys_p), false);
+    int[] positions = new int[targetKeys_p.length];
+    for (int i = 0; i < targetKeys_p.length; i++)
+      positions[i] = referencePositions.consume(targetKeys_p[i]);
+    if (considerOrdered(attribute_p)) {
+      int outOfOrder = OrderingUtil.getFirstMove(positions);
+      if (outOfOrder >= 0)
+        // Ordering difference
+        createOrRecordDifference(new ValuePresenceRecord(match_p, attribute_p,
+            targetValues_p.get(outOfOrder), referenceValues_p.get(positions[outOfOrder]),
+            null));
     }
-    for (Object remainingTargetValue : remainingTargetValues) {
-      if (getDiffPolicy().coverValue(remainingTargetValue, attribute_p))
-        createAttributeValueDifference(match_p, attribute_p, remainingTargetValue,
-            Role.TARGET, false);
+    for (int i = 0; i < positions.length; i++) {
+      Object targetValue = targetValues_p.get(i);
+      if (positions[i] < 0 && getDiffPolicy().coverValue(targetValue, attribute_p))
+        createOrRecordDifference(new ValuePresenceRecord(
+            match_p, attribute_p, targetValue, null, Role.TARGET));
     }
-    for (Object remainingReferenceValue : remainingReferenceValues) {
-      if (getDiffPolicy().coverValue(remainingReferenceValue, attribute_p))
-        createAttributeValueDifference(match_p, attribute_p, remainingReferenceValue,
-            Role.REFERENCE, false);
+    for (int i = 0; i < referenceKeys_p.length; i++) {
+      Object referenceValue = referenceValues_p.get(i);
+      if (!referencePositions.isConsumed(i) &&
+          getDiffPolicy().coverValue(referenceValue, attribute_p))
+        createOrRecordDifference(new ValuePresenceRecord(
+            match_p, attribute_p, referenceValue, null, Role.REFERENCE));
     }
   }
   
@@ -184,7 +296,8 @@ public class DiffOperation extends AbstractExpensiveOperation {
       if (parentMatch != null && parentMatch.isPartial()) {
         EObject element = match_p.get(role);
         EReference containment = getComparison().getScope(role).getContainment(element);
-        createReferenceValueDifference(parentMatch, containment, match_p, role, false);
+        createOrRecordDifference(new ValuePresenceRecord(
+            parentMatch, containment, match_p, null, role));
       }
     }
   }
@@ -197,8 +310,10 @@ public class DiffOperation extends AbstractExpensiveOperation {
   protected void createAllReferenceDifferences(IMatch match_p) {
     assert match_p != null && !match_p.isPartial();
     EClass eClass = match_p.get(Role.TARGET).eClass();
-    for (EReference reference : eClass.getEAllReferences()) {
-      if (!reference.isContainer() && getDiffPolicy().coverFeature(reference))
+    boolean identical = isInIdenticalResources(match_p);
+    for (EReference reference : _coveredFeatures.getReferences(eClass)) {
+      // Values may belong to other resources which are not identical
+      if (!identical || !haveIdenticalValues(match_p, reference))
         createReferenceDifferences(match_p, reference);
     }
   }
@@ -218,59 +333,53 @@ public class DiffOperation extends AbstractExpensiveOperation {
     EObject referenceElement = match_p.get(Role.REFERENCE);
     List<EObject> targetValues = targetScope.get(targetElement, reference_p);
     List<EObject> referenceValues = referenceScope.get(referenceElement, reference_p);
-    List<EObject> remainingReferenceValues = new FArrayList<EObject>(
-        referenceValues, IEqualityTester.BY_REFERENCE);
-    boolean checkOrder = reference_p.isMany() && getDiffPolicy().considerOrdered(reference_p);
-    int maxIndex = -1;
+    ValuePositions referencePositions = new ValuePositions(referenceValues, true);
     // Check which ones match
     List<IMatch> isolatedTargetMatches = new FArrayList<IMatch>();
-    for (EObject targetValue : targetValues) {
+    int[] positions = new int[targetValues.size()];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = -1;
       // For every value in TARGET, get its corresponding match (if none, uncovered)
-      IMatch targetValueMatch = getMapping().getMatchFor(targetValue, Role.TARGET);
+      IMatch targetValueMatch = getMapping().getMatchFor(targetValues.get(i), Role.TARGET);
       if (targetValueMatch != null) {
         // Get the matching value in REFERENCE
         EObject matchReference = targetValueMatch.get(Role.REFERENCE);
-        boolean isIsolated = matchReference == null;
-        if (!isIsolated) {
-          // Check value presence and ordering
-          int index = remainingReferenceValues.indexOf(matchReference);
-          isIsolated = index < 0;
-          if (checkOrder && !isIsolated) {
-            if (index < maxIndex) {
-              // Ordering difference
-              createReferenceOrderDifference(match_p, reference_p, targetValueMatch);
-              checkOrder = false;
-            } else {
-              maxIndex = index;
-            }
-          }
-        }
-        if (isIsolated)
+        if (matchReference != null)
+          positions[i] = referencePositions.consume(matchReference);
+        if (positions[i] < 0)
           // None found or not in referenced values: mark as isolated
           isolatedTargetMatches.add(targetValueMatch);
-        else
-          remainingReferenceValues.remove(matchReference);
       }
     }
+    // Check ordering
+    if (reference_p.isMany() && considerOrdered(reference_p)) {
+      int outOfOrder = OrderingUtil.getFirstMove(positions);
+      if (outOfOrder >= 0)
+        // Ordering difference
+        createOrRecordDifference(new ValuePresenceRecord(match_p, reference_p,
+            getMapping().getMatchFor(targetValues.get(outOfOrder), Role.TARGET), null, null));
+    }
     // For every remaining value in REFERENCE, get its corresponding isolated match
     // if the value is covered
     List<IMatch> isolatedReferenceMatches = new FArrayList<IMatch>();
-    for (EObject remainingReferenceValue : remainingReferenceValues) {
-      IMatch referenceValueMatch = getMapping().getMatchFor(
-          remainingReferenceValue, Role.REFERENCE);
-      if (referenceValueMatch != null)
-        isolatedReferenceMatches.add(referenceValueMatch);      
+    for (int i = 0; i < referenceValues.size(); i++) {
+      if (!referencePositions.isConsumed(i)) {
+        IMatch referenceValueMatch = getMapping().getMatchFor(
+            referenceValues.get(i), Role.REFERENCE);
+        if (referenceValueMatch != null)
+          isolatedReferenceMatches.add(referenceValueMatch);
+      }
     }
     // Create differences for isolated values
     for (IMatch isolatedTargetMatch : isolatedTargetMatches) {
       if (getDiffPolicy().coverMatch(isolatedTargetMatch))
-        createReferenceValueDifference(match_p, reference_p, isolatedTargetMatch,
-          Role.TARGET, false);
+        createOrRecordDifference(new ValuePresenceRecord(
+            match_p, reference_p, isolatedTargetMatch, null, Role.TARGET));
     }
     for (IMatch isolatedReferenceMatch : isolatedReferenceMatches) {
       if (getDiffPolicy().coverMatch(isolatedReferenceMatch))
-        createReferenceValueDifference(match_p, reference_p, isolatedReferenceMatch,
-            Role.REFERENCE, false);
+        createOrRecordDifference(new ValuePresenceRecord(
+            match_p, reference_p, isolatedReferenceMatch, null, Role.REFERENCE));
     }
   }
   
@@ -310,18 +419,158 @@ public class DiffOperation extends AbstractExpensiveOperation {
     return result;
   }
   
+  /**
+   * Create the difference described by the given record
+   * @param record_p a non-null record
+   */
+  protected void createDifference(ValuePresenceRecord record_p) {
+    IMatch elementMatch = record_p.getElementMatch();
+    EStructuralFeature feature = record_p.getFeature();
+    if (feature instanceof EAttribute) {
+      EAttribute attribute = (EAttribute)feature;
+      if (record_p.isOrder())
+        createAttributeOrderDifference(elementMatch, attribute,
+            record_p.getValue(), record_p.getReferenceValue());
+      else
+        createAttributeValueDifference(elementMatch, attribute,
+            record_p.getValue(), record_p.getPresenceRole(), false);
+    } else {
+      EReference reference = (EReference)feature;
+      IMatch valueMatch = (IMatch)record_p.getValue();
+      if (record_p.isOrder())
+        createReferenceOrderDifference(elementMatch, reference, valueMatch);
+      else
+        createReferenceValueDifference(elementMatch, reference, valueMatch,
+            record_p.getPresenceRole(), false);
+    }
+  }
+  
   /**
    * Create differences based on the mapping between the model scopes compared
    */
   protected void createDifferences() {
-    for (IMatch match : getMapping().getContents()) {
+    Set<Resource> identicalResources = getIdenticalResources();
+    _identicalResources = identicalResources.isEmpty()? null: identicalResources;
+    if (isParallel()) {
+      createDifferencesInParallel();
+    } else {
+      for (IMatch match : getMapping().getContents()) {
+        checkProgress();
+        if (getDiffPolicy().coverMatch(match))
+          createTechnicalDifferences(match);
+        getMonitor().worked(1);
+      }
+    }
+  }
+  
+  /**
+   * Create differences based on the mapping between the model scopes compared
+   * in three phases. First, the values read during detection are loaded and
+   * resolved sequentially, so that the models are only read afterwards.
+   * Second, the differences related to the content of non-partial matches are
+   * detected concurrently and recorded. Then the differences are created and
+   * their dependencies are set in the same order as in a sequential execution,
+   * so that the result is the same.
+   */
+  protected void createDifferencesInParallel() {
+    final List<IMatch> matches = new ArrayList<IMatch>(getMapping().getContents());
+    if (!matches.isEmpty()) {
+      // Lazily built structures of the mapping must exist before concurrent accesses
+      IMatch first = matches.get(0);
+      for (Role role : Role.values())
+        getMapping().getMatchFor(first.get(role), role);
+    }
+    // Preparation phase
+    for (IMatch match : matches) {
+      checkProgress();
+      if (!match.isPartial() && getDiffPolicy().coverMatch(match))
+        prepareContentDifferences(match);
+    }
+    // Detection phase
+    final List<List<ValuePresenceRecord>> records = new ArrayList<List<ValuePresenceRecord>>(
+        Collections.<List<ValuePresenceRecord>>nCopies(matches.size(), null));
+    int threadCount = getThreadCount();
+    // Several chunks per thread for load balancing
+    int chunkSize = Math.max(1, records.size() / (4 * threadCount) + 1);
+    List<Runnable> chunks = new ArrayList<Runnable>();
+    for (int start = 0; start < records.size(); start += chunkSize) {
+      final int from = start;
+      final int to = Math.min(start + chunkSize, records.size());
+      chunks.add(new Runnable() {
+        public void run() {
+          for (int i = from; i < to; i++) {
+            IMatch match = matches.get(i);
+            if (!match.isPartial() && getDiffPolicy().coverMatch(match)) {
+              List<ValuePresenceRecord> matchRecords = new ArrayList<ValuePresenceRecord>();
+              records.set(i, matchRecords);
+              _detectedDifferences.set(matchRecords);
+              try {
+                createContentDifferences(match);
+              } finally {
+                _detectedDifferences.remove();
+              }
+            }
+          }
+        }
+      });
+    }
+    runInParallel(chunks, threadCount);
+    // Creation phase
+    for (int i = 0; i < records.size(); i++) {
       checkProgress();
-      if (getDiffPolicy().coverMatch(match))
-        createTechnicalDifferences(match);
+      IMatch match = matches.get(i);
+      if (match.isPartial()) {
+        if (getDiffPolicy().coverMatch(match))
+          getOrCreateElementPresence(match);
+      } else if (records.get(i) != null) {
+        for (ValuePresenceRecord record : records.get(i))
+          createDifference(record);
+      }
       getMonitor().worked(1);
     }
   }
   
+  /**
+   * Read the values of the covered features and the containers of the elements
+   * of the given match, so that lazily loaded resources, proxies and lazily
+   * created value lists are loaded, resolved and created before differences are
+   * detected concurrently. EMF does not support such modifications from several
+   * threads.
+   * @see DiffOperation#createContentDifferences(IMatch)
+   * @param match_p a non-null, non-partial match
+   */
+  protected void prepareContentDifferences(IMatch match_p) {
+    assert match_p != null && !match_p.isPartial();
+    for (Role role : Arrays.asList(Role.TARGET, Role.REFERENCE)) {
+      IFeaturedModelScope scope = getComparison().getScope(role);
+      EObject element = match_p.get(role);
+      EClass eClass = element.eClass();
+      for (EAttribute attribute : _coveredFeatures.getAttributes(eClass))
+        scope.get(element, attribute);
+      for (EReference reference : _coveredFeatures.getReferences(eClass)) {
+        // Iterating resolves proxies
+        Iterator<EObject> it = scope.get(element, reference).iterator();
+        while (it.hasNext())
+          it.next();
+      }
+      scope.getContainer(element);
+      scope.getContainment(element);
+    }
+  }
+  
+  /**
+   * Create the difference described by the given record, or only record it
+   * if differences are being detected in parallel
+   * @param record_p a non-null record
+   */
+  protected void createOrRecordDifference(ValuePresenceRecord record_p) {
+    List<ValuePresenceRecord> records = _detectedDifferences.get();
+    if (records != null)
+      records.add(record_p);
+    else
+      createDifference(record_p);
+  }
+  
   /**
    * Create the technical differences corresponding to the given non-partial
    * match, focusing on the content of the elements matched
@@ -366,6 +615,91 @@ public class DiffOperation extends AbstractExpensiveOperation {
     return new ObjectAndIndex();
   }
   
+  /**
+   * Return the equality key of the given value of the given attribute, if
+   * the diff policy provides it
+   * @see IDiffPolicy.Hashing#getEqualityKey(Object, EAttribute)
+   * @param attribute_p a non-null attribute
+   * @param value_p a potentially null value of the attribute
+   * @return a potentially null object
+   */
+  protected Object getEqualityKey(EAttribute attribute_p, Object value_p) {
+    Object result = null;
+    if (value_p != null && getDiffPolicy() instanceof IDiffPolicy.Hashing)
+      result = ((IDiffPolicy.Hashing)getDiffPolicy()).getEqualityKey(value_p, attribute_p);
+    return result;
+  }
+  
+  /**
+   * Return the equality keys of the given values of the given attribute, if
+   * the diff policy provides them
+   * @see IDiffPolicy.Hashing#getEqualityKey(Object, EAttribute)
+   * @param attribute_p a non-null attribute
+   * @param values_p a non-null list of values of the attribute
+   * @return an array of non-null keys in the order of the values, or null if
+   *         keys are not available for all the values
+   */
+  protected Object[] getEqualityKeys(EAttribute attribute_p, List<Object> values_p) {
+    Object[] result = null;
+    if (getDiffPolicy() instanceof IDiffPolicy.Hashing) {
+      result = new Object[values_p.size()];
+      int i = 0;
+      for (Object value : values_p) {
+        Object key = getEqualityKey(attribute_p, value);
+        if (key == null) {
+          result = null;
+          break;
+        }
+        result[i] = key;
+        i++;
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Return the resources of the TARGET scope whose persistent contents are
+   * byte-identical to those of a resource of the REFERENCE scope, and whose
+   * elements match one to one and in the same order the elements of that resource.
+   * Such resources are only identified if both scopes provide digests.
+   * @see IFragmentedModelScope.Digesting#getDigest(Resource)
+   * @return a non-null, potentially empty set
+   */
+  protected Set<Resource> getIdenticalResources() {
+    Set<Resource> result = new HashSet<Resource>();
+    IModelScope targetScope = getComparison().getScope(Role.TARGET);
+    IModelScope referenceScope = getComparison().getScope(Role.REFERENCE);
+    if (targetScope instanceof IFragmentedModelScope.Digesting &&
+        ((IFragmentedModelScope.Digesting)targetScope).isDigesting() &&
+        referenceScope instanceof IFragmentedModelScope.Digesting &&
+        ((IFragmentedModelScope.Digesting)referenceScope).isDigesting()) {
+      IFragmentedModelScope.Digesting targetDigesting =
+        (IFragmentedModelScope.Digesting)targetScope;
+      IFragmentedModelScope.Digesting referenceDigesting =
+        (IFragmentedModelScope.Digesting)referenceScope;
+      for (Resource targetResource : targetDigesting.getResources()) {
+        checkProgress();
+        Resource referenceResource = null;
+        if (!targetResource.getContents().isEmpty()) {
+          IMatch rootMatch = getMapping().getMatchFor(
+              targetResource.getContents().get(0), Role.TARGET);
+          EObject referenceRoot = rootMatch == null? null: rootMatch.get(Role.REFERENCE);
+          if (referenceRoot != null)
+            referenceResource = referenceRoot.eResource();
+        }
+        if (referenceResource != null &&
+            referenceDigesting.getResources().contains(referenceResource)) {
+          byte[] targetDigest = targetDigesting.getDigest(targetResource);
+          if (targetDigest != null &&
+              Arrays.equals(targetDigest, referenceDigesting.getDigest(referenceResource)) &&
+              haveMatchingContents(targetResource, referenceResource))
+            result.add(targetResource);
+        }
+      }
+    }
+    return result;
+  }
+  
   /**
    * Return the comparison which is being built
    * @return a non-null comparison
@@ -424,6 +758,18 @@ public class DiffOperation extends AbstractExpensiveOperation {
     return result;
   }
   
+  /**
+   * Return the number of threads on which differences are detected
+   * @return a positive int
+   * @see IDiffPolicy.Concurrent#getThreadCount()
+   */
+  protected int getThreadCount() {
+    int result = 1;
+    if (getDiffPolicy() instanceof IDiffPolicy.Concurrent)
+      result = Math.max(1, ((IDiffPolicy.Concurrent)getDiffPolicy()).getThreadCount());
+    return result;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.impl.helpers.AbstractExpensiveOperation#getWorkAmount()
    */
@@ -432,12 +778,75 @@ public class DiffOperation extends AbstractExpensiveOperation {
     return 1 + getMapping().size();
   }
   
+  /**
+   * Return whether the values of the given reference on both sides of the given
+   * match are pairwise matching and in the same order, in which case no difference
+   * is related to the reference
+   * @param match_p a non-null, non-partial match
+   * @param reference_p a non-null, non-container reference
+   */
+  protected boolean haveIdenticalValues(IMatch match_p, EReference reference_p) {
+    List<EObject> targetValues = getComparison().getScope(Role.TARGET).get(
+        match_p.get(Role.TARGET), reference_p);
+    List<EObject> referenceValues = getComparison().getScope(Role.REFERENCE).get(
+        match_p.get(Role.REFERENCE), reference_p);
+    boolean result = targetValues.size() == referenceValues.size();
+    for (int i = 0; result && i < targetValues.size(); i++) {
+      IMatch valueMatch = getMapping().getMatchFor(targetValues.get(i), Role.TARGET);
+      result = valueMatch != null && valueMatch.get(Role.REFERENCE) == referenceValues.get(i);
+    }
+    return result;
+  }
+  
+  /**
+   * Return whether the elements of the given resources, excluding those which are
+   * contained in other resources, match one to one in the order of their containment trees
+   * @param targetResource_p a non-null resource of the TARGET scope
+   * @param referenceResource_p a non-null resource of the REFERENCE scope
+   */
+  protected boolean haveMatchingContents(Resource targetResource_p,
+      Resource referenceResource_p) {
+    Iterator<EObject> targetIterator = EcoreUtil.getAllProperContents(targetResource_p, false);
+    Iterator<EObject> referenceIterator = EcoreUtil.getAllProperContents(referenceResource_p, false);
+    boolean result = true;
+    while (result && targetIterator.hasNext() && referenceIterator.hasNext()) {
+      IMatch match = getMapping().getMatchFor(targetIterator.next(), Role.TARGET);
+      result = match != null && match.get(Role.REFERENCE) == referenceIterator.next();
+    }
+    return result && !targetIterator.hasNext() && !referenceIterator.hasNext();
+  }
+  
+  /**
+   * Return whether the elements of the given match belong to resources whose
+   * persistent contents are identical and whose elements all match one to one,
+   * in which case the persistent attribute values of the elements are identical
+   * @see DiffOperation#getIdenticalResources()
+   * @param match_p a non-null, non-partial match
+   */
+  protected boolean isInIdenticalResources(IMatch match_p) {
+    return _identicalResources != null &&
+      _identicalResources.contains(match_p.get(Role.TARGET).eResource());
+  }
+  
+  /**
+   * Return whether differences are detected in parallel
+   */
+  protected boolean isParallel() {
+    return getThreadCount() > 1;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.util.IExpensiveOperation#run()
    */
   public IStatus run() {
     getMonitor().worked(1);
-    createDifferences();
+    IMapping.Editable mapping = getComparison().getMapping();
+    MatchOperation.setBulkConstruction(mapping, true);
+    try {
+      createDifferences();
+    } finally {
+      MatchOperation.setBulkConstruction(mapping, false);
+    }
     return Status.OK_STATUS;
   }
   
@@ -669,30 +1078,33 @@ public class DiffOperation extends AbstractExpensiveOperation {
       IFeaturedModelScope ancestorScope = _comparison.getScope(Role.ANCESTOR);
       assert ancestorScope != null; // Thanks to call context
       List<Object> valuesInAncestor = ancestorScope.get(ancestorHolder, attribute);
+      Object[] ancestorKeys = getEqualityKeys(attribute, valuesInAncestor);
+      ValuePositions ancestorPositions = ancestorKeys == null? null:
+        new ValuePositions(Arrays.asList(ancestorKeys), false);
       boolean aligned;
       if (presence_p.isOrder()) {
         Role presenceRole = presence_p.getPresenceRole();
         List<Object> values = _comparison.getScope(presenceRole).get(
             presence_p.getElementMatch().get(presenceRole),
             presence_p.getFeature());
-        int maxIndex = -1;
-        aligned = true;
-        for (Object value : values) {
-          ObjectAndIndex matchingAncestorValue = findEqualAttributeValue(
-              attribute, value, valuesInAncestor);
-          if (matchingAncestorValue.getObject() != null) {
-            if (matchingAncestorValue.getIndex() < maxIndex) {
-              // Ordering difference
-              aligned = false;
-              break;
-            }
-            maxIndex = matchingAncestorValue.getIndex();
-          }
+        Object[] keys = ancestorPositions == null? null: getEqualityKeys(attribute, values);
+        int[] positions = new int[values.size()];
+        for (int i = 0; i < positions.length; i++) {
+          if (keys != null)
+            positions[i] = ancestorPositions.indexOf(keys[i]);
+          else
+            positions[i] = findEqualAttributeValue(
+                attribute, values.get(i), valuesInAncestor).getIndex();
         }
+        aligned = OrderingUtil.getFirstInversion(positions) < 0;
       } else {
-        ObjectAndIndex equalInAncestor = findEqualAttributeValue(
-            attribute, presence_p.getValue(), valuesInAncestor);
-        aligned = equalInAncestor.getObject() != null;
+        Object key = ancestorPositions == null? null:
+          getEqualityKey(attribute, presence_p.getValue());
+        if (key != null)
+          aligned = ancestorPositions.indexOf(key) >= 0;
+        else
+          aligned = findEqualAttributeValue(
+              attribute, presence_p.getValue(), valuesInAncestor).getObject() != null;
       }
       if (!aligned) {
         // Not aligned with ancestor
@@ -723,37 +1135,28 @@ public class DiffOperation extends AbstractExpensiveOperation {
       EObject ancestorValue = valueMatch.get(Role.ANCESTOR); // May be null
       IFeaturedModelScope ancestorScope = _comparison.getScope(Role.ANCESTOR);
       assert ancestorScope != null; // Thanks to call context
-      List<EObject> ancestorValues = new FArrayList<EObject>(
-          ancestorScope.get(ancestorHolder, presence_p.getFeature()),
-          IEqualityTester.BY_REFERENCE);
+      ValuePositions ancestorValues = new ValuePositions(
+          ancestorScope.get(ancestorHolder, presence_p.getFeature()), true);
       if (presence_p.isOrder()) {
         // Order
         Role presenceRole = presence_p.getPresenceRole();
         List<EObject> values = _comparison.getScope(presenceRole).get(
             presence_p.getElementMatch().get(presenceRole),
             presence_p.getFeature());
-        int maxIndex = -1;
-        aligned = true;
-        for (EObject value : values) {
-          IMatch currentValueMatch = getMapping().getMatchFor(value, presenceRole);
+        int[] positions = new int[values.size()];
+        for (int i = 0; i < positions.length; i++) {
+          positions[i] = -1;
+          IMatch currentValueMatch = getMapping().getMatchFor(values.get(i), presenceRole);
           if (currentValueMatch != null) {
             EObject matchAncestor = currentValueMatch.get(Role.ANCESTOR);
-            if (matchAncestor != null) {
-              int index = ancestorValues.indexOf(matchAncestor);
-              if (index >= 0) {
-                if (index < maxIndex) {
-                  // Ordering difference
-                  aligned = false;
-                  break;
-                }
-                maxIndex = index;
-              }
-            }
+            if (matchAncestor != null)
+              positions[i] = ancestorValues.indexOf(matchAncestor);
           }
         }
+        aligned = OrderingUtil.getFirstInversion(positions) < 0;
       } else {
         // Not an order
-        aligned = ancestorValues.contains(ancestorValue);
+        aligned = ancestorValues.indexOf(ancestorValue) >= 0;
       }
     }
     if (!aligned) {
@@ -836,4 +1239,148 @@ public class DiffOperation extends AbstractExpensiveOperation {
     }
   }
   
+  
+  /**
+   * A description of a value presence which has been detected but not yet created.
+   * It is either a value presence, or an order difference on a feature.
+   */
+  protected static class ValuePresenceRecord {
+    /** The non-null match of the holder of the value */
+    private final IMatch _elementMatch;
+    /** The feature, which can only be null for root containment */
+    private final EStructuralFeature _feature;
+    /** The non-null value: an attribute value or a value match */
+    private final Object _value;
+    /** For attribute orders only, the non-null value in REFERENCE that corresponds to _value */
+    private final Object _referenceValue;
+    /** The presence role, or null for an order difference */
+    private final Role _presenceRole;
+    /**
+     * Constructor
+     * @param elementMatch_p a non-null match
+     * @param feature_p a feature, which can only be null for root containment
+     * @param value_p a non-null attribute value or value match; for attribute orders,
+     *          the value in TARGET
+     * @param referenceValue_p for attribute orders only, the non-null value in REFERENCE
+     *          that corresponds to value_p, otherwise null
+     * @param presenceRole_p the presence role, or null for an order difference
+     */
+    public ValuePresenceRecord(IMatch elementMatch_p, EStructuralFeature feature_p,
+        Object value_p, Object referenceValue_p, Role presenceRole_p) {
+      _elementMatch = elementMatch_p;
+      _feature = feature_p;
+      _value = value_p;
+      _referenceValue = referenceValue_p;
+      _presenceRole = presenceRole_p;
+    }
+    /**
+     * Return the match of the holder of the value
+     * @return a non-null match
+     */
+    public IMatch getElementMatch() {
+      return _elementMatch;
+    }
+    /**
+     * Return the feature
+     * @return a feature which can only be null for root containment
+     */
+    public EStructuralFeature getFeature() {
+      return _feature;
+    }
+    /**
+     * Return the presence role
+     * @return a role which is null if and only if this record is an order difference
+     */
+    public Role getPresenceRole() {
+      return _presenceRole;
+    }
+    /**
+     * Return the value in REFERENCE for an attribute order difference
+     * @return a potentially null object
+     */
+    public Object getReferenceValue() {
+      return _referenceValue;
+    }
+    /**
+     * Return the value: an attribute value or a value match
+     * @return a non-null object
+     */
+    public Object getValue() {
+      return _value;
+    }
+    /**
+     * Return whether this record is an order difference
+     */
+    public boolean isOrder() {
+      return _presenceRole == null;
+    }
+  }
+  
+  
+  /**
+   * An index of the positions of the values in a list, from which positions
+   * can be consumed in increasing order for every value.
+   * It allows matching the values of two lists in linear time.
+   */
+  protected static class ValuePositions {
+    /** The non-null map from values to their first unconsumed position, if any */
+    private final Map<Object, int[]> _firstPositions;
+    /** The non-null array of the next positions of equal values, or -1 if none */
+    private final int[] _nextPositions;
+    /** The non-null array of the positions which have been consumed */
+    private final boolean[] _consumed;
+    /**
+     * Constructor
+     * @param values_p a non-null list of values
+     * @param byReference_p whether values are compared by reference or by equals
+     */
+    public ValuePositions(List<?> values_p, boolean byReference_p) {
+      int size = values_p.size();
+      _firstPositions = byReference_p? new IdentityHashMap<Object, int[]>(size):
+        new HashMap<Object, int[]>(size);
+      _nextPositions = new int[size];
+      _consumed = new boolean[size];
+      for (int i = size - 1; i >= 0; i--) {
+        Object value = values_p.get(i);
+        int[] firstPosition = _firstPositions.get(value);
+        if (firstPosition == null) {
+          _nextPositions[i] = -1;
+          _firstPositions.put(value, new int[] {i});
+        } else {
+          _nextPositions[i] = firstPosition[0];
+          firstPosition[0] = i;
+        }
+      }
+    }
+    /**
+     * Consume and return the first unconsumed position of the given value
+     * @param value_p a potentially null value
+     * @return a positive int or 0, or -1 if the value has no unconsumed position
+     */
+    public int consume(Object value_p) {
+      int result = indexOf(value_p);
+      if (result >= 0) {
+        _firstPositions.get(value_p)[0] = _nextPositions[result];
+        _consumed[result] = true;
+      }
+      return result;
+    }
+    /**
+     * Return the first unconsumed position of the given value
+     * @param value_p a potentially null value
+     * @return a positive int or 0, or -1 if the value has no unconsumed position
+     */
+    public int indexOf(Object value_p) {
+      int[] firstPosition = _firstPositions.get(value_p);
+      return firstPosition == null? -1: firstPosition[0];
+    }
+    /**
+     * Return whether the given position has been consumed
+     * @param index_p a valid position
+     */
+    public boolean isConsumed(int index_p) {
+      return _consumed[index_p];
+    }
+  }
+  
 }
@@ -0,0 +1,539 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.helpers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IAttributeValuePresence;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex;
+import org.eclipse.emf.diffmerge.api.diff.IElementPresence;
+import org.eclipse.emf.diffmerge.api.diff.IElementRelativeDifference;
+import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
+import org.eclipse.emf.diffmerge.api.diff.IValuePresence;
+import org.eclipse.emf.diffmerge.util.structures.FHashSet;
+import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+
+
+/**
+ * An implementation of IDifferenceIndex which is built on the first query, then
+ * maintained incrementally by the statistics of the comparison.
+ * Differences are those registered as related differences of the matches of the
+ * mapping, and their holder elements are the elements of these matches.
+ * Changes of the comparison which bypass the statistics, such as undo, require
+ * the statistics to be invalidated, which discards the index.
+ * Posting sets are returned as live, unmodifiable views: only intersections and
+ * unions are materialized.
+ * Since merges may move elements across resources, the differences of elements
+ * which are added to the scopes by merges are indexed per resource on the next
+ * query on resources, and the posting set of a resource is checked again against
+ * the current resources of the elements on the next query on this resource.
+ * @see ComparisonStatistics#getDifferenceIndex()
+ */
+public class DifferenceIndex implements IDifferenceIndex {
+  
+  /** The non-null comparison whose differences are indexed */
+  private final IComparison _comparison;
+  
+  /** Whether the posting sets reflect the current contents of the comparison */
+  private boolean _upToDate;
+  
+  /** The non-null set of matches whose elements may have been moved across resources since last query */
+  private final Set<IMatch> _movedMatches;
+  
+  /** The non-null set of resources whose posting sets do not include differences of other resources */
+  private final Set<Resource> _checkedResources;
+  
+  /** The non-null posting sets per kind of difference */
+  private final Map<Class<?>, Set<IDifference>> _kindPostings;
+  
+  /** The non-null posting sets per exact type of holder element */
+  private final Map<EClass, Set<IDifference>> _typePostings;
+  
+  /** The non-null posting sets per feature of value presences */
+  private final Map<EStructuralFeature, Set<IDifference>> _featurePostings;
+  
+  /** The non-null posting sets per resource of holder element */
+  private final Map<Resource, Set<IDifference>> _resourcePostings;
+  
+  /** The non-null posting sets per state of difference */
+  private final Map<State, Set<IDifference>> _statePostings;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison whose differences are indexed
+   */
+  public DifferenceIndex(IComparison comparison_p) {
+    _comparison = comparison_p;
+    _upToDate = false;
+    _movedMatches = new HashSet<IMatch>();
+    _checkedResources = new HashSet<Resource>();
+    _kindPostings = new IdentityHashMap<Class<?>, Set<IDifference>>();
+    _typePostings = new IdentityHashMap<EClass, Set<IDifference>>();
+    _featurePostings = new IdentityHashMap<EStructuralFeature, Set<IDifference>>();
+    _resourcePostings = new IdentityHashMap<Resource, Set<IDifference>>();
+    _statePostings = new EnumMap<State, Set<IDifference>>(State.class);
+    for (State state : State.values())
+      _statePostings.put(state, newPostingSet());
+  }
+  
+  /**
+   * Update the index according to the addition of the given difference to
+   * the related differences of the given match
+   * @param match_p a non-null match of the comparison
+   * @param difference_p a non-null difference which is new to the match
+   */
+  public void differenceAdded(IMatch match_p, IDifference difference_p) {
+    if (_upToDate)
+      index(match_p, difference_p);
+  }
+  
+  /**
+   * Update the index according to the given difference having been marked as conflicting
+   * @param difference_p a non-null difference which was not conflicting before
+   */
+  public void differenceMarkedAsConflicting(IDifference difference_p) {
+    if (_upToDate && isIndexed(difference_p))
+      _statePostings.get(State.CONFLICTING).add(difference_p);
+  }
+  
+  /**
+   * Update the index according to the given difference having been marked as merged
+   * @param difference_p a non-null difference which was not merged before
+   */
+  public void differenceMarkedAsMerged(IDifference difference_p) {
+    if (_upToDate && isIndexed(difference_p)) {
+      _statePostings.get(State.UNMERGED).remove(difference_p);
+      _statePostings.get(State.MERGED).add(difference_p);
+      IMatch movedMatch = getMovedMatch(difference_p);
+      if (movedMatch != null)
+        _movedMatches.add(movedMatch);
+      if (mayRemoveElements(difference_p))
+        _checkedResources.clear();
+    }
+  }
+  
+  /**
+   * Make sure the posting set of the given resource reflects the current resources of the
+   * elements of the comparison, by indexing the differences of the matches whose elements
+   * may have been moved and of their descendants, then by removing the differences whose
+   * holder elements no longer belong to the resource
+   * @param resource_p a non-null resource
+   */
+  protected void ensureResourcesUpToDate(Resource resource_p) {
+    ensureUpToDate();
+    if (!_movedMatches.isEmpty()) {
+      Set<IMatch> toReindex = new HashSet<IMatch>();
+      for (IMatch movedMatch : _movedMatches) {
+        for (Role role : Role.values()) {
+          EObject element = movedMatch.get(role);
+          if (element != null) {
+            toReindex.add(movedMatch);
+            Iterator<EObject> contents = element.eAllContents();
+            while (contents.hasNext()) {
+              IMatch match = _comparison.getMapping().getMatchFor(contents.next(), role);
+              if (match != null)
+                toReindex.add(match);
+            }
+          }
+        }
+      }
+      _movedMatches.clear();
+      for (IMatch match : toReindex) {
+        for (IDifference difference : match.getRelatedDifferences()) {
+          if (isIndexed(difference))
+            indexResources(match, difference);
+        }
+      }
+    }
+    if (_checkedResources.add(resource_p)) {
+      Set<IDifference> postingSet = getPostingSet(_resourcePostings, resource_p);
+      List<IDifference> toRemove = new ArrayList<IDifference>();
+      for (IDifference difference : postingSet) {
+        if (difference instanceof IElementRelativeDifference &&
+            !((IElementRelativeDifference)difference).getElementMatch().involves(resource_p))
+          toRemove.add(difference);
+      }
+      postingSet.removeAll(toRemove);
+    }
+  }
+  
+  /**
+   * Make sure the posting sets reflect the current contents of the comparison
+   */
+  protected void ensureUpToDate() {
+    if (!_upToDate) {
+      _movedMatches.clear();
+      _checkedResources.clear();
+      for (IMatch match : _comparison.getMapping().getContents()) {
+        for (IDifference difference : match.getRelatedDifferences())
+          index(match, difference);
+      }
+      _checkedResources.addAll(_resourcePostings.keySet());
+      _upToDate = true;
+    }
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex#getDifferences(java.lang.Class)
+   */
+  public Collection<IDifference> getDifferences(Class<? extends IDifference> kind_p) {
+    ensureUpToDate();
+    Collection<IDifference> result;
+    if (kind_p == IElementPresence.class || kind_p == IAttributeValuePresence.class ||
+        kind_p == IReferenceValuePresence.class) {
+      result = view(_kindPostings, kind_p);
+    } else {
+      // Union of the kinds which are sub-kinds of the given one
+      List<Set<IDifference>> postings = new ArrayList<Set<IDifference>>();
+      for (Map.Entry<Class<?>, Set<IDifference>> entry : _kindPostings.entrySet()) {
+        if (kind_p.isAssignableFrom(entry.getKey()))
+          postings.add(entry.getValue());
+      }
+      result = union(postings);
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex#getDifferences(org.eclipse.emf.ecore.EClass, boolean)
+   */
+  public Collection<IDifference> getDifferences(EClass type_p,
+      boolean includeSubtypes_p) {
+    ensureUpToDate();
+    Collection<IDifference> result;
+    if (includeSubtypes_p) {
+      List<Set<IDifference>> postings = new ArrayList<Set<IDifference>>();
+      for (Map.Entry<EClass, Set<IDifference>> entry : _typePostings.entrySet()) {
+        if (type_p.isSuperTypeOf(entry.getKey()))
+          postings.add(entry.getValue());
+      }
+      result = union(postings);
+    } else {
+      result = view(_typePostings, type_p);
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex#getDifferences(org.eclipse.emf.ecore.EStructuralFeature)
+   */
+  public Collection<IDifference> getDifferences(EStructuralFeature feature_p) {
+    ensureUpToDate();
+    return view(_featurePostings, feature_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex#getDifferences(org.eclipse.emf.ecore.resource.Resource)
+   */
+  public Collection<IDifference> getDifferences(Resource resource_p) {
+    ensureResourcesUpToDate(resource_p);
+    return view(_resourcePostings, resource_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex#getDifferences(org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex.State)
+   */
+  public Collection<IDifference> getDifferences(State state_p) {
+    ensureUpToDate();
+    return view(_statePostings, state_p);
+  }
+  
+  /**
+   * Return the kind of the given difference, i.e., the most specific
+   * sub-interface of IDifference it is indexed by
+   * @param difference_p a non-null difference
+   * @return a non-null interface
+   */
+  protected Class<?> getKind(IDifference difference_p) {
+    Class<?> result;
+    if (difference_p instanceof IElementPresence)
+      result = IElementPresence.class;
+    else if (difference_p instanceof IAttributeValuePresence)
+      result = IAttributeValuePresence.class;
+    else if (difference_p instanceof IReferenceValuePresence)
+      result = IReferenceValuePresence.class;
+    else
+      result = IDifference.class;
+    return result;
+  }
+  
+  /**
+   * Return the match whose element and its descendants may be added to resources
+   * when the given difference is merged, if any
+   * @param difference_p a non-null difference
+   * @return a potentially null match
+   */
+  protected IMatch getMovedMatch(IDifference difference_p) {
+    IMatch result = null;
+    if (difference_p instanceof IElementPresence) {
+      result = ((IElementPresence)difference_p).getElementMatch();
+    } else if (difference_p instanceof IReferenceValuePresence) {
+      IReferenceValuePresence presence = (IReferenceValuePresence)difference_p;
+      EReference reference = presence.getFeature();
+      if (!presence.isOrder() && (reference == null || reference.isContainment()))
+        result = presence.getValue();
+    }
+    return result;
+  }
+  
+  /**
+   * Return the posting set for the given key in the given map, creating it if needed
+   * @param postings_p a non-null map of posting sets
+   * @param key_p a non-null key
+   * @return a non-null, modifiable set
+   */
+  protected <K> Set<IDifference> getPostingSet(Map<K, Set<IDifference>> postings_p,
+      K key_p) {
+    Set<IDifference> result = postings_p.get(key_p);
+    if (result == null) {
+      result = newPostingSet();
+      postings_p.put(key_p, result);
+    }
+    return result;
+  }
+  
+  /**
+   * Add the given difference to the posting sets it belongs to
+   * @param match_p the non-null match to which the difference is related
+   * @param difference_p a non-null difference
+   */
+  protected void index(IMatch match_p, IDifference difference_p) {
+    getPostingSet(_kindPostings, getKind(difference_p)).add(difference_p);
+    if (difference_p.isConflicting())
+      _statePostings.get(State.CONFLICTING).add(difference_p);
+    State mergeState = difference_p.isMerged()? State.MERGED: State.UNMERGED;
+    _statePostings.get(mergeState).add(difference_p);
+    if (difference_p instanceof IValuePresence) {
+      EStructuralFeature feature = ((IValuePresence)difference_p).getFeature();
+      if (feature != null)
+        getPostingSet(_featurePostings, feature).add(difference_p);
+    }
+    for (Role role : Role.values()) {
+      EObject holder = match_p.get(role);
+      if (holder != null)
+        getPostingSet(_typePostings, holder.eClass()).add(difference_p);
+    }
+    indexResources(match_p, difference_p);
+  }
+  
+  /**
+   * Add the given difference to the posting sets of the current resources of
+   * its holder elements
+   * @param match_p the non-null match to which the difference is related
+   * @param difference_p a non-null difference
+   */
+  protected void indexResources(IMatch match_p, IDifference difference_p) {
+    for (Role role : Role.values()) {
+      EObject holder = match_p.get(role);
+      if (holder != null) {
+        Resource resource = holder.eResource();
+        if (resource != null)
+          getPostingSet(_resourcePostings, resource).add(difference_p);
+      }
+    }
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex#intersect(java.util.Collection, java.util.Collection)
+   */
+  public Collection<IDifference> intersect(
+      Collection<? extends IDifference> differences1_p,
+      Collection<? extends IDifference> differences2_p) {
+    List<Collection<? extends IDifference>> differenceSets =
+      new ArrayList<Collection<? extends IDifference>>(2);
+    differenceSets.add(differences1_p);
+    differenceSets.add(differences2_p);
+    return intersect(differenceSets);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex#intersect(java.util.Collection)
+   */
+  public Collection<IDifference> intersect(
+      Collection<? extends Collection<? extends IDifference>> differenceSets_p) {
+    Collection<? extends IDifference> smallest = null;
+    for (Collection<? extends IDifference> differenceSet : differenceSets_p) {
+      if (smallest == null || differenceSet.size() < smallest.size())
+        smallest = differenceSet;
+    }
+    Set<IDifference> result = newPostingSet();
+    if (smallest != null && !smallest.isEmpty()) {
+      List<Collection<? extends IDifference>> others =
+        new ArrayList<Collection<? extends IDifference>>(differenceSets_p.size());
+      for (Collection<? extends IDifference> differenceSet : differenceSets_p) {
+        if (differenceSet != smallest)
+          others.add(differenceSet instanceof Set<?>? differenceSet:
+            new FHashSet<IDifference>(differenceSet, IEqualityTester.BY_REFERENCE));
+      }
+      for (IDifference difference : smallest) {
+        boolean inAll = true;
+        for (Collection<? extends IDifference> other : others) {
+          if (!other.contains(difference)) {
+            inAll = false;
+            break;
+          }
+        }
+        if (inAll)
+          result.add(difference);
+      }
+    }
+    return Collections.unmodifiableSet(result);
+  }
+  
+  /**
+   * Empty the posting sets so that they are computed again on the next query.
+   * The posting sets are emptied in place so that views on them remain live.
+   */
+  public void invalidate() {
+    _upToDate = false;
+    _movedMatches.clear();
+    _checkedResources.clear();
+    List<Map<?, Set<IDifference>>> allPostings = new ArrayList<Map<?, Set<IDifference>>>();
+    allPostings.add(_kindPostings);
+    allPostings.add(_typePostings);
+    allPostings.add(_featurePostings);
+    allPostings.add(_resourcePostings);
+    allPostings.add(_statePostings);
+    for (Map<?, Set<IDifference>> postings : allPostings) {
+      for (Set<IDifference> postingSet : postings.values())
+        postingSet.clear();
+    }
+  }
+  
+  /**
+   * Return whether the given difference is currently indexed
+   * @param difference_p a non-null difference
+   */
+  protected boolean isIndexed(IDifference difference_p) {
+    Set<IDifference> kindPostingSet = _kindPostings.get(getKind(difference_p));
+    return kindPostingSet != null && kindPostingSet.contains(difference_p);
+  }
+  
+  /**
+   * Return whether merging the given difference may remove elements from resources,
+   * either directly or as a side effect of the change of a reference
+   * @param difference_p a non-null difference
+   */
+  protected boolean mayRemoveElements(IDifference difference_p) {
+    return difference_p instanceof IElementPresence ||
+      difference_p instanceof IReferenceValuePresence &&
+      !((IReferenceValuePresence)difference_p).isOrder();
+  }
+  
+  /**
+   * Update the index according to the addition of the given match to the mapping
+   * @param match_p a non-null match
+   */
+  public void matchAdded(IMatch match_p) {
+    if (_upToDate) {
+      for (IDifference difference : match_p.getRelatedDifferences())
+        index(match_p, difference);
+    }
+  }
+  
+  /**
+   * Update the index according to the removal of the given match from the mapping.
+   * This must be called before the match is modified or discarded.
+   * @param match_p a non-null match of the mapping
+   */
+  public void matchRemoved(IMatch match_p) {
+    if (_upToDate) {
+      for (IDifference difference : match_p.getRelatedDifferences())
+        unindex(match_p, difference);
+    }
+  }
+  
+  /**
+   * Create and return a new, empty posting set
+   * @return a non-null, modifiable set
+   */
+  protected Set<IDifference> newPostingSet() {
+    return new FHashSet<IDifference>(IEqualityTester.BY_REFERENCE);
+  }
+  
+  /**
+   * Return a snapshot of the union of the given posting sets
+   * @param postings_p a non-null, potentially empty list of posting sets
+   * @return a non-null, unmodifiable set
+   */
+  protected Collection<IDifference> union(List<Set<IDifference>> postings_p) {
+    Set<IDifference> result = newPostingSet();
+    for (Set<IDifference> postingSet : postings_p)
+      result.addAll(postingSet);
+    return Collections.unmodifiableSet(result);
+  }
+  
+  /**
+   * Return a live, unmodifiable view on the posting set for the given key in the given map
+   * @param postings_p a non-null map of posting sets
+   * @param key_p a non-null key
+   * @return a non-null, unmodifiable set
+   */
+  protected <K> Collection<IDifference> view(Map<K, Set<IDifference>> postings_p,
+      K key_p) {
+    return Collections.unmodifiableSet(getPostingSet(postings_p, key_p));
+  }
+  
+  /**
+   * Remove the given difference from all the posting sets it belongs to.
+   * Resource posting sets are all considered since the resources of the
+   * holder elements may have changed since the difference was indexed.
+   * @param match_p the non-null match to which the difference is related
+   * @param difference_p a non-null difference
+   */
+  protected void unindex(IMatch match_p, IDifference difference_p) {
+    Set<IDifference> kindPostingSet = _kindPostings.get(getKind(difference_p));
+    if (kindPostingSet != null)
+      kindPostingSet.remove(difference_p);
+    for (Set<IDifference> postingSet : _statePostings.values())
+      postingSet.remove(difference_p);
+    if (difference_p instanceof IValuePresence) {
+      Set<IDifference> featurePostingSet = _featurePostings.get(
+          ((IValuePresence)difference_p).getFeature());
+      if (featurePostingSet != null)
+        featurePostingSet.remove(difference_p);
+    }
+    for (Role role : Role.values()) {
+      EObject holder = match_p.get(role);
+      if (holder != null) {
+        Set<IDifference> typePostingSet = _typePostings.get(holder.eClass());
+        if (typePostingSet != null)
+          typePostingSet.remove(difference_p);
+      }
+    }
+    for (Set<IDifference> postingSet : _resourcePostings.values())
+      postingSet.remove(difference_p);
+  }
+  
+}
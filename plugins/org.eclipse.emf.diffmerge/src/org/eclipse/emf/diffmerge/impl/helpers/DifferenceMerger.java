@@ -0,0 +1,348 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.helpers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.diffmerge.Messages;
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.api.IDiffPolicy;
+import org.eclipse.emf.diffmerge.api.IMapping;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.IMergePolicy;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IElementPresence;
+import org.eclipse.emf.diffmerge.api.diff.IMergeableDifference;
+import org.eclipse.emf.diffmerge.api.diff.IPresenceDifference;
+import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
+import org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope;
+import org.eclipse.emf.diffmerge.util.OrderingUtil;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+
+/**
+ * The merge behavior of the differences of an editable comparison, which is
+ * shared by all the implementations of differences.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EMergeableDifferenceImpl
+ * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractMergeableDifference
+ */
+public final class DifferenceMerger {
+  
+  /**
+   * Private constructor
+   */
+  private DifferenceMerger() {
+    // Forbids instantiation
+  }
+  
+  /**
+   * Check that the given difference can merge in the given role independently of
+   * its dependencies, by throwing an UnsupportedOperationException otherwise
+   * @param difference_p a non-null difference
+   * @param destination_p a non-null role which represents the destination of the merge
+   */
+  public static void checkMerge(IMergeableDifference difference_p, Role destination_p) {
+    if (difference_p.getMergeDestination() != destination_p &&
+        !difference_p.canMergeTo(destination_p))
+      throw new UnsupportedOperationException(
+          Messages.AbstractDifference_UnableToMerge + ": " + difference_p); //$NON-NLS-1$
+  }
+  
+  /**
+   * Return the scope of the given role in the comparison of the given difference
+   * @param difference_p a non-null difference which belongs to an editable comparison
+   * @param role_p a non-null role which is TARGET or REFERENCE
+   * @return a non-null scope
+   */
+  private static IEditableModelScope getScope(IDifference difference_p, Role role_p) {
+    IEditableModelScope result =
+      ((IComparison.Editable)difference_p.getComparison()).getScope(role_p);
+    assert result != null;
+    return result;
+  }
+  
+  /**
+   * Return whether the given difference has an opposite with stronger constraints
+   * @param presence_p a non-null reference value presence
+   */
+  public static boolean hasStrongerOpposite(IReferenceValuePresence presence_p) {
+    boolean result = false;
+    EReference reference = presence_p.getFeature();
+    if (reference != null && reference.isMany()) {
+      EReference opposite = reference.getEOpposite();
+      result = opposite != null && !opposite.isMany();
+    }
+    return result;
+  }
+  
+  /**
+   * Add the element of the given element presence in its absence role
+   * @param presence_p a non-null element presence
+   */
+  public static void mergeElementAddition(IElementPresence presence_p) {
+    IComparison.Editable comparison =
+      (IComparison.Editable)presence_p.getComparison();
+    Role absenceRole = presence_p.getPresenceRole().opposite();
+    IEditableModelScope absenceScope = getScope(presence_p, absenceRole);
+    IEditableModelScope presenceScope = getScope(presence_p,
+        presence_p.getPresenceRole());
+    IMapping.Editable mapping = comparison.getMapping();
+    IMatch eltMatch = presence_p.getElementMatch();
+    EObject clone = eltMatch.isPartial()? mapping.completeMatch(eltMatch):
+      eltMatch.get(absenceRole);
+    boolean addedToScope = false;
+    boolean actuallyAdded = false;
+    IMergePolicy mergePolicy = comparison.getLastMergePolicy();
+    if (mergePolicy.bindPresenceToOwnership(absenceScope) && !presence_p.isRoot()) {
+      EObject container = presence_p.getOwnerMatch().get(absenceRole);
+      if (container != null) {
+        EReference containment = presenceScope.getContainment(presence_p.getElement());
+        actuallyAdded = absenceScope.add(container, containment, clone);
+        addedToScope = true; // Even if !actuallyAdded
+        // Order handling
+        IDiffPolicy diffPolicy = comparison.getLastDiffPolicy();
+        if (diffPolicy != null && actuallyAdded &&
+            diffPolicy.considerOrdered(containment)) {
+          // Move added value if required
+          int index = mergePolicy.getDesiredValuePosition(comparison,
+              absenceRole, presence_p.getOwnerMatch(), containment, eltMatch);
+          if (index >= 0)
+            absenceScope.move(container, containment, index, -1);
+        }
+      }
+      // Else container will be created and ownership automatically applied by the copier,
+      // if containment tree of the scope is consistent with matching
+    }
+    if (!addedToScope)
+      actuallyAdded = absenceScope.add(clone);
+    if (actuallyAdded)
+      BidirectionalComparisonCopier.handleIDCopy(
+          presence_p.getElement(), presenceScope, clone, absenceScope, mergePolicy);
+  }
+  
+  /**
+   * Remove the element of the given element presence from its presence role
+   * @param presence_p a non-null element presence
+   */
+  public static void mergeElementRemoval(IElementPresence presence_p) {
+    Role presenceRole = presence_p.getPresenceRole();
+    if (presence_p.isRoot() ||
+        presence_p.getElementMatch().getOwnershipDifference(presenceRole) == null) {
+      IEditableModelScope presenceScope = getScope(presence_p, presenceRole);
+      EObject element = presence_p.getElement();
+      presenceScope.remove(element);
+      // Delete element
+      removeCrossReferences(presence_p, element);
+    } // Else handled by ownership
+  }
+  
+  /**
+   * Reorder the values of the reference of the given order difference in its
+   * absence role according to its presence role
+   * @param presence_p a non-null reference value presence which is an order difference
+   */
+  public static void mergeReferenceOrder(IReferenceValuePresence presence_p) {
+    Role destination = presence_p.getPresenceRole().opposite();
+    EObject sourceHolder = presence_p.getElementMatch().get(destination.opposite());
+    EObject destinationHolder = presence_p.getElementMatch().get(destination);
+    EReference reference = presence_p.getFeature();
+    assert sourceHolder != null && destinationHolder != null; // Otherwise order change would not have been detected
+    assert reference != null; // Order merge does not cover root containment at this time
+    IEditableModelScope absenceScope = getScope(presence_p, destination);
+    List<EObject> sourceValues = getScope(presence_p, destination.opposite()).get(
+        sourceHolder, reference);
+    List<EObject> destinationValues = absenceScope.get(destinationHolder, reference);
+    int[] positions = getPositions(presence_p.getComparison().getMapping(),
+        sourceValues, destinationValues, destination);
+    // Only move the values which are out of order
+    for (int[] move : OrderingUtil.getMoves(positions, destinationValues.size()))
+      absenceScope.move(destinationHolder, reference, move[0], move[1]);
+  }
+  
+  /**
+   * Add the value of the given reference value presence in its absence role
+   * @param presence_p a non-null reference value presence
+   */
+  public static void mergeReferenceValueAddition(IReferenceValuePresence presence_p) {
+    IComparison.Editable comparison =
+      (IComparison.Editable)presence_p.getComparison();
+    Role absenceRole = presence_p.getPresenceRole().opposite();
+    IEditableModelScope absenceScope = getScope(presence_p, absenceRole);
+    EObject destinationHolder = presence_p.getElementMatch().get(absenceRole);
+    EReference reference = presence_p.getFeature();
+    IMatch match = presence_p.getValue();
+    EObject destinationValue;
+    boolean cloned;
+    if (match.isPartial()) {
+      destinationValue = comparison.getMapping().completeMatch(match);
+      cloned = true;
+    } else {
+      destinationValue = match.get(absenceRole);
+      cloned = false;
+    }
+    // Assertions are assumed to be enforced by diff dependency handling
+    assert destinationHolder != null && destinationValue != null;
+    boolean actuallyAdded = absenceScope.add(destinationHolder, reference,
+        destinationValue);
+    // Order handling
+    IDiffPolicy diffPolicy = comparison.getLastDiffPolicy();
+    IMergePolicy mergePolicy = comparison.getLastMergePolicy();
+    if (diffPolicy != null && actuallyAdded && diffPolicy.considerOrdered(reference)) {
+      // Move added value if required
+      int index = mergePolicy.getDesiredValuePosition(comparison,
+          absenceRole, presence_p.getElementMatch(), reference, match);
+      if (index >= 0)
+        absenceScope.move(destinationHolder, reference, index, -1);
+    }
+    // ID enforcement
+    if (cloned && actuallyAdded)
+      BidirectionalComparisonCopier.handleIDCopy(
+          match.get(presence_p.getPresenceRole()),
+          getScope(presence_p, presence_p.getPresenceRole()),
+          destinationValue, absenceScope, mergePolicy);
+  }
+  
+  /**
+   * Remove the value of the given reference value presence from its presence role,
+   * unless it is merged implicitly because of dependencies
+   * @param presence_p a non-null reference value presence
+   */
+  public static void mergeReferenceValueRemoval(IReferenceValuePresence presence_p) {
+    if (presence_p.getSymmetrical() == null &&
+        !(hasStrongerOpposite(presence_p) && !presence_p.getValue().isPartial())) {
+      Role presenceRole = presence_p.getPresenceRole();
+      IEditableModelScope presenceScope = getScope(presence_p, presenceRole);
+      EReference reference = presence_p.getFeature();
+      EObject valueElement = presence_p.getValue().get(presenceRole);
+      if (reference != null)
+        presenceScope.remove(presence_p.getElementMatch().get(presenceRole),
+            reference, valueElement);
+      else
+        presenceScope.remove(valueElement);
+      if (reference == null || reference.isContainment()) {
+        // Value has been removed from its containment: delete element
+        removeCrossReferences(presence_p, valueElement);
+        if (!presence_p.getComparison().getLastMergePolicy().bindPresenceToOwnership(
+            presenceScope)) {
+          // Re-integrate direct children in scope
+          for (EObject child : presenceScope.getContents(valueElement)) {
+            presenceScope.add(child);
+          }
+        }
+      }
+    }
+    // Otherwise, we know this difference will be merged implicitly because of dependencies
+    // since a required difference implies this difference
+  }
+  
+  /**
+   * Merge the given difference in the given role together with its explicit
+   * dependencies, and mark its implicit dependencies as merged
+   * @param difference_p a non-null difference
+   * @param destination_p a non-null role which represents the destination of the merge
+   * @return a non-null, unmodifiable collection of the differences which have
+   *         actually been merged
+   * @see IMergeableDifference#mergeTo(Role)
+   */
+  public static Collection<IDifference> mergeTo(IMergeableDifference.Editable difference_p,
+      Role destination_p) {
+    // Checking ability to merge
+    checkMerge(difference_p, destination_p);
+    if (difference_p.isMerged())
+      return Collections.emptyList();
+    Collection<IMergeableDifference> allRequired =
+      difference_p.getRequiresDependencies(destination_p);
+    for (IMergeableDifference required : allRequired)
+      checkMerge(required, destination_p);
+    // Core behavior
+    difference_p.markAsMergedIn(destination_p);
+    Collection<IDifference> result = new HashSet<IDifference>();
+    for (IMergeableDifference required : allRequired) {
+      if (!required.isMerged()) {
+        ((IMergeableDifference.Editable)required).markAsMergedIn(destination_p);
+        ((IMergeableDifference.Editable)required).doMergeIn(destination_p);
+        result.add(required);
+      }
+    }
+    difference_p.doMergeIn(destination_p);
+    result.add(difference_p);
+    // Mark implicit dependencies as merged
+    for (IMergeableDifference implicit : difference_p.getImpliesDependencies(destination_p)) {
+      if (!implicit.isMerged()) {
+        ((IMergeableDifference.Editable)implicit).markAsMergedIn(destination_p);
+        result.add(implicit);
+      }
+    }
+    return Collections.unmodifiableCollection(result);
+  }
+  
+  /**
+   * Return the positions in the given destination values of the counterparts
+   * of the given source values
+   * @param mapping_p the non-null mapping which relates the values
+   * @param sourceValues_p the non-null values of the role opposite to destination_p
+   * @param destinationValues_p the non-null values of destination_p
+   * @param destination_p a non-null role which is TARGET or REFERENCE
+   * @return a non-null array of positions as defined by OrderingUtil
+   * @see OrderingUtil
+   */
+  public static int[] getPositions(IMapping mapping_p, List<EObject> sourceValues_p,
+      List<EObject> destinationValues_p, Role destination_p) {
+    Map<EObject, Integer> destinationPositions = new IdentityHashMap<EObject, Integer>();
+    for (int i = destinationValues_p.size() - 1; i >= 0; i--)
+      destinationPositions.put(destinationValues_p.get(i), Integer.valueOf(i));
+    int[] result = new int[sourceValues_p.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = -1;
+      IMatch valueMatch = mapping_p.getMatchFor(
+          sourceValues_p.get(i), destination_p.opposite());
+      if (valueMatch != null) { // Should be true since scope must be complete
+        EObject destinationValue = valueMatch.get(destination_p);
+        Integer position = destinationValue == null? null:
+          destinationPositions.get(destinationValue);
+        if (position != null)
+          result[i] = position.intValue();
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Remove the references to the given element in the presence role of the
+   * given difference
+   * @param presence_p a non-null presence difference of an element or value
+   * @param element_p a non-null element which has been removed from the scope
+   */
+  private static void removeCrossReferences(IPresenceDifference presence_p,
+      EObject element_p) {
+    Role presenceRole = presence_p.getPresenceRole();
+    IEditableModelScope presenceScope = getScope(presence_p, presenceRole);
+    for (EStructuralFeature.Setting setting :
+        ((IComparison.Editable)presence_p.getComparison()).getMapping().
+        getCrossReferences(element_p, presenceRole)) {
+      presenceScope.remove(setting.getEObject(),
+          (EReference)setting.getEStructuralFeature(), element_p);
+    }
+  }
+  
+}
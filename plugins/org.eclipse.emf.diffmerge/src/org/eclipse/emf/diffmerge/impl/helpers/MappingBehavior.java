@@ -0,0 +1,118 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.helpers;
+
+import java.util.Iterator;
+
+import org.eclipse.emf.common.util.ECollections;
+import org.eclipse.emf.common.util.EMap;
+import org.eclipse.emf.diffmerge.api.IMapping;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
+import org.eclipse.emf.diffmerge.util.structures.FHashMap;
+import org.eclipse.emf.ecore.EObject;
+
+
+/**
+ * The behavior of mappings which only depends on their lookup of matches, and
+ * which is thus shared by all the implementations of mappings.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EMappingImpl
+ * @see org.eclipse.emf.diffmerge.impl.lightweight.Mapping
+ */
+public final class MappingBehavior {
+  
+  /**
+   * Private constructor
+   */
+  private MappingBehavior() {
+    // Forbids instantiation
+  }
+  
+  /**
+   * Return whether the given mapping covers all the elements of the given scope
+   * in the given role
+   * @see IMapping#isCompleteFor(IModelScope, Role)
+   * @param mapping_p a non-null mapping
+   * @param scope_p a non-null scope
+   * @param role_p a non-null role
+   */
+  public static boolean isCompleteFor(IMapping mapping_p, IModelScope scope_p,
+      Role role_p) {
+    boolean result = true;
+    Iterator<EObject> it = scope_p.getAllContents();
+    while (result && it.hasNext())
+      result = mapping_p.covers(it.next(), role_p);
+    return result;
+  }
+  
+  /**
+   * Return whether the given mapping maps the given elements altogether
+   * @see IMapping#maps(EObject, EObject, EObject)
+   * @param mapping_p a non-null mapping
+   * @param target_p a potentially null element playing the TARGET role
+   * @param reference_p a potentially null element playing the REFERENCE role
+   * @param ancestor_p a potentially null element playing the ANCESTOR role
+   */
+  public static boolean maps(IMapping mapping_p, EObject target_p,
+      EObject reference_p, EObject ancestor_p) {
+    return maps(mapping_p, ancestor_p, Role.ANCESTOR, target_p, Role.TARGET) &&
+      maps(mapping_p, ancestor_p, Role.ANCESTOR, reference_p, Role.REFERENCE) &&
+      maps(mapping_p, target_p, Role.TARGET, reference_p, Role.REFERENCE);
+  }
+  
+  /**
+   * Return whether the given mapping maps the given elements in the given roles
+   * @see IMapping#maps(EObject, Role, EObject, Role)
+   * @param mapping_p a non-null mapping
+   * @param element1_p a potentially null element playing role1_p
+   * @param role1_p a non-null role
+   * @param element2_p a potentially null element playing role2_p
+   * @param role2_p a non-null role different from role1_p
+   */
+  public static boolean maps(IMapping mapping_p, EObject element1_p, Role role1_p,
+      EObject element2_p, Role role2_p) {
+    boolean result = false;
+    if (element1_p != null) {
+      IMatch fromElement1 = mapping_p.getMatchFor(element1_p, role1_p);
+      result = fromElement1 != null && fromElement1.get(role2_p) == element2_p;
+    } else if (element2_p != null) {
+      IMatch fromElement2 = mapping_p.getMatchFor(element2_p, role2_p);
+      result = fromElement2 != null && fromElement2.get(role1_p) == element1_p;
+    }
+    return result;
+  }
+  
+  /**
+   * Return a map from the elements of the given mapping in the given key role
+   * to their counterparts in the given value role
+   * @see IMapping#toMap(Role, Role)
+   * @param mapping_p a non-null mapping
+   * @param keyRole_p a non-null role
+   * @param valueRole_p a non-null role
+   * @return a non-null, unmodifiable map
+   */
+  public static EMap<EObject, EObject> toMap(IMapping mapping_p, Role keyRole_p,
+      Role valueRole_p) {
+    EMap<EObject, EObject> result = new FHashMap<EObject, EObject>();
+    for (IMatch match : mapping_p.getContents()) {
+      EObject key = match.get(keyRole_p);
+      if (key != null)
+        result.put(key, match.get(valueRole_p));
+    }
+    return ECollections.unmodifiableEMap(result);
+  }
+  
+}
@@ -0,0 +1,140 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.helpers;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.diffmerge.api.IMapping;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.util.structures.FArrayList;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+
+/**
+ * A cross-referencer for handling the cross-references of the scope of a mapping
+ * that are not covered by differences, which is shared by all the implementations
+ * of mappings.
+ * @see IMapping#getCrossReferences(EObject, Role)
+ */
+public class MappingCrossReferencer extends EcoreUtil.CrossReferencer {
+  
+  /** The serial version ID */
+  private static final long serialVersionUID = 1L;
+  
+  /** The non-null mapping whose matches determine the cross-references to handle */
+  private final IMapping _mapping;
+  
+  /** The non-null role played by the scope to cross-reference */
+  protected final Role _role;
+  
+  /** Whether cross-referencing has been done since creation or last clearing */
+  private boolean _crossReferenced;
+  
+  
+  /**
+   * Constructor
+   * @param mapping_p the non-null mapping whose matches determine the cross-references to handle
+   * @param role_p a role which is TARGET or REFERENCE
+   */
+  public MappingCrossReferencer(IMapping mapping_p, Role role_p) {
+    super(Collections.emptyList());
+    _mapping = mapping_p;
+    _role = role_p;
+    _crossReferenced = false;
+  }
+  
+  /**
+   * @see java.util.HashMap#clear()
+   */
+  @Override
+  public void clear() {
+    super.clear();
+    _crossReferenced = false;
+  }
+  
+  /**
+   * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#crossReference()
+   */
+  @Override
+  public void crossReference() { // Increases visibility
+    super.crossReference();
+    _crossReferenced = true;
+  }
+  
+  /**
+   * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#crossReference(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EReference, org.eclipse.emf.ecore.EObject)
+   */
+  @Override
+  protected boolean crossReference(EObject element_p, EReference reference_p,
+      EObject crossReferenced_p) {
+    boolean result = false;
+    if (reference_p.isChangeable() && !reference_p.isDerived()) {
+      IMatch referencingMatch = _mapping.getMatchFor(element_p, _role);
+      IMatch referencedMatch = _mapping.getMatchFor(crossReferenced_p, _role);
+      // Unidirectional, modifiable cross-references between unmatched elements
+      if (referencingMatch != null && referencedMatch != null)
+        result = referencingMatch.isPartial() && referencedMatch.isPartial();
+    }
+    return result;
+  }
+  
+  /**
+   * Return the role covered by this cross-referencer
+   * @return TARGET or REFERENCE
+   */
+  public Role getRole() {
+    return _role;
+  }
+  
+  /**
+   * Return whether cross-referencing has been done since creation or last clearing
+   */
+  public boolean isCrossReferenced() {
+    return _crossReferenced;
+  }
+  
+  /**
+   * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#newCollection()
+   */
+  @Override
+  protected Collection<EStructuralFeature.Setting> newCollection() {
+    return new FArrayList<EStructuralFeature.Setting>();
+  }
+  
+  /**
+   * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#newContentsIterator()
+   */
+  @Override
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  protected TreeIterator<Notifier> newContentsIterator() {
+    return (TreeIterator)_mapping.getComparison().getScope(_role).getAllContents();
+  }
+  
+  /**
+   * @see org.eclipse.emf.ecore.util.EcoreUtil.CrossReferencer#resolve()
+   */
+  @Override
+  protected boolean resolve() {
+    return false;
+  }
+  
+}
@@ -14,11 +14,15 @@
  */
 package org.eclipse.emf.diffmerge.impl.helpers;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -31,8 +35,11 @@ import org.eclipse.emf.diffmerge.api.IMapping;
 import org.eclipse.emf.diffmerge.api.IMatch;
 import org.eclipse.emf.diffmerge.api.IMatchPolicy;
 import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.scopes.IFragmentedModelScope;
 import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 
 
 /**
@@ -56,6 +63,13 @@ public class MatchOperation extends AbstractExpensiveOperation {
   /** Duplicate IDs in role 2 which may have an impact on the mapping */
   protected final Set<Object> _duplicateCandidatesRole2;
   
+  /** The non-null set of the TARGET and REFERENCE resources whose elements are matched in bulk */
+  private final Set<Resource> _identicalResources;
+  
+  /** The non-null map from the elements of the TARGET resources which are matched
+   *  in bulk to their counterparts in REFERENCE */
+  private final Map<EObject, EObject> _identicalCounterparts;
+  
   
   /**
    * Constructor
@@ -72,6 +86,43 @@ public class MatchOperation extends AbstractExpensiveOperation {
     _duplicateIDs = duplicateIDs_p;
     _duplicateCandidatesRole1 = new HashSet<Object>(0);
     _duplicateCandidatesRole2 = new HashSet<Object>(0);
+    _identicalResources = new HashSet<Resource>();
+    _identicalCounterparts = new IdentityHashMap<EObject, EObject>();
+  }
+  
+  /**
+   * Compute the match IDs of the given elements in parallel.
+   * Match IDs are stored at the positions of their elements, so that no per-thread
+   * registry needs to be merged and the mapping is built sequentially in the
+   * original order of the elements. A fixed thread pool is used since fork-join
+   * pools are not available at the Java level of this plug-in.
+   * @param elements_p a non-null list of elements from the given scope
+   * @param scope_p a non-null scope
+   * @return a non-null array of potentially null match IDs, in the same order as elements_p
+   */
+  protected Object[] computeMatchIDs(final List<EObject> elements_p,
+      final IModelScope scope_p) {
+    final Object[] result = new Object[elements_p.size()];
+    int threadCount = getThreadCount();
+    // Several chunks per thread for load balancing
+    int chunkSize = Math.max(1, result.length / (4 * threadCount) + 1);
+    List<Runnable> chunks = new ArrayList<Runnable>();
+    for (int start = 0; start < result.length; start += chunkSize) {
+      final int from = start;
+      final int to = Math.min(start + chunkSize, result.length);
+      chunks.add(new Runnable() {
+        public void run() {
+          boolean rememberMatchIDs = getMatchPolicy().keepMatchIDs();
+          for (int i = from; i < to; i++) {
+            EObject element = elements_p.get(i);
+            if (rememberMatchIDs || !isMatchedInBulk(element))
+              result[i] = getMatchPolicy().getMatchID(element, scope_p);
+          }
+        }
+      });
+    }
+    runInParallel(chunks, threadCount);
+    return result;
   }
   
   /**
@@ -108,24 +159,37 @@ public class MatchOperation extends AbstractExpensiveOperation {
     if (scope != null) {
       // Explore the scope, marking its elements as unmatched
       // and registering their match IDs
-      Iterator<EObject> it = scope.getAllContents();
+      Iterator<EObject> it;
+      Object[] matchIDs = null;
+      if (isParallel() && (rememberMatchIDs || fillIDMap_p)) {
+        List<EObject> elements = getAllContents(scope);
+        matchIDs = computeMatchIDs(elements, scope);
+        it = elements.iterator();
+      } else {
+        it = scope.getAllContents();
+      }
       IMapping.Editable mapping = _comparison.getMapping();
+      int index = 0;
       while (it.hasNext()) {
         checkProgress();
         EObject current = it.next();
         IMatch.Editable match = mapping.map(current, role_p);
-        if (rememberMatchIDs || fillIDMap_p) {
-          Object matchID = getMatchPolicy().getMatchID(current, scope);
+        // Elements matched in bulk need not be registered
+        boolean register = fillIDMap_p && !isMatchedInBulk(current);
+        if (rememberMatchIDs || register) {
+          Object matchID = matchIDs != null? matchIDs[index]:
+            getMatchPolicy().getMatchID(current, scope);
           if (matchID != null) {
             if (rememberMatchIDs)
               match.setMatchID(matchID);
-            if (fillIDMap_p) {
+            if (register) {
               EObject squatter = result.put(matchID, current);
               if (squatter != null && _duplicateIDs != null)
                 _duplicateCandidatesRole1.add(matchID);
             }
           }
         }
+        index++;
       }
     }
     return result;
@@ -156,14 +220,28 @@ public class MatchOperation extends AbstractExpensiveOperation {
     IModelScope scope = _comparison.getScope(role_p);
     boolean rememberMatchIDs = getMatchPolicy().keepMatchIDs();
     if (scope != null) {
-      Iterator<EObject> targetIt = scope.getAllContents();
+      Iterator<EObject> targetIt;
+      Object[] matchIDs = null;
+      if (isParallel()) {
+        List<EObject> elements = getAllContents(scope);
+        matchIDs = computeMatchIDs(elements, scope);
+        targetIt = elements.iterator();
+      } else {
+        targetIt = scope.getAllContents();
+      }
       IMapping.Editable mapping = _comparison.getMapping();
+      int index = 0;
       while (targetIt.hasNext()) {
         checkProgress();
         EObject current = targetIt.next();
-        EObject counterpart1 = null;
+        EObject counterpart1 = _identicalCounterparts.isEmpty()? null:
+          _identicalCounterparts.get(current);
         EObject counterpart2 = null;
-        Object matchID = getMatchPolicy().getMatchID(current, scope);
+        Object matchID = null;
+        if (counterpart1 == null) // Otherwise matched in bulk
+          matchID = matchIDs != null? matchIDs[index]:
+            getMatchPolicy().getMatchID(current, scope);
+        index++;
         if (matchID != null) {
           if (fillIDMap_p) {
             EObject squatter = result.put(matchID, current);
@@ -190,14 +268,63 @@ public class MatchOperation extends AbstractExpensiveOperation {
             contradiction = contradiction ||
               mapping.mapIncrementally(current, role_p, counterpart2, secondaryRole2_p);
           }
-          if (contradiction && _duplicateIDs != null)
-            _duplicateIDs.get(role_p).add(matchID); // matchID cannot be null since current was matched
+          if (contradiction && _duplicateIDs != null && matchID != null)
+            _duplicateIDs.get(role_p).add(matchID);
         }
       }
     }
     return result;
   }
   
+  /**
+   * Explore the given scope completely, so that all its resources are loaded
+   * @param scope_p a non-null scope
+   */
+  protected void exploreFully(IModelScope scope_p) {
+    Iterator<EObject> it = scope_p.getAllContents();
+    while (it.hasNext()) {
+      checkProgress();
+      it.next();
+    }
+  }
+  
+  /**
+   * Return the contents of the given scope as a list
+   * @param scope_p a non-null scope
+   * @return a non-null, modifiable list
+   */
+  protected List<EObject> getAllContents(IModelScope scope_p) {
+    List<EObject> result = new ArrayList<EObject>();
+    Iterator<EObject> it = scope_p.getAllContents();
+    while (it.hasNext()) {
+      checkProgress();
+      result.add(it.next());
+    }
+    return result;
+  }
+  
+  /**
+   * Return the resources of the given scope which have a digest, indexed by digest,
+   * excluding those whose digest is shared with other resources of the scope
+   * @param scope_p a non-null scope
+   * @return a non-null, modifiable map
+   */
+  protected Map<ByteBuffer, Resource> getResourcesByDigest(
+      IFragmentedModelScope.Digesting scope_p) {
+    Map<ByteBuffer, Resource> result = new HashMap<ByteBuffer, Resource>();
+    Set<ByteBuffer> shared = new HashSet<ByteBuffer>();
+    for (Resource resource : scope_p.getResources()) {
+      byte[] digest = scope_p.getDigest(resource);
+      if (digest != null) {
+        ByteBuffer key = ByteBuffer.wrap(digest);
+        if (result.put(key, resource) != null)
+          shared.add(key);
+      }
+    }
+    result.keySet().removeAll(shared);
+    return result;
+  }
+  
   /**
    * Return the match policy
    * @return a non-null match policy
@@ -221,6 +348,18 @@ public class MatchOperation extends AbstractExpensiveOperation {
     return Messages.MatchBuilder_Task_Main;
   }
   
+  /**
+   * Return the number of threads on which match IDs are computed
+   * @return a positive int
+   * @see IMatchPolicy.Concurrent#getThreadCount()
+   */
+  protected int getThreadCount() {
+    int result = 1;
+    if (getMatchPolicy() instanceof IMatchPolicy.Concurrent)
+      result = Math.max(1, ((IMatchPolicy.Concurrent)getMatchPolicy()).getThreadCount());
+    return result;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.impl.helpers.AbstractExpensiveOperation#getWorkAmount()
    */
@@ -229,6 +368,32 @@ public class MatchOperation extends AbstractExpensiveOperation {
     return _comparison.isThreeWay()? 5: 6; // 1 init, 2|3 for ID-based matching, 2 for cross-refs
   }
   
+  /**
+   * Return whether the given scope provides digests of its resources
+   * @param scope_p a potentially null scope
+   */
+  protected boolean isDigesting(IModelScope scope_p) {
+    return scope_p instanceof IFragmentedModelScope.Digesting &&
+      ((IFragmentedModelScope.Digesting)scope_p).isDigesting();
+  }
+  
+  /**
+   * Return whether the given element belongs to a resource whose elements are
+   * matched in bulk
+   * @param element_p a non-null element
+   */
+  protected boolean isMatchedInBulk(EObject element_p) {
+    return !_identicalResources.isEmpty() &&
+      _identicalResources.contains(element_p.eResource());
+  }
+  
+  /**
+   * Return whether match IDs are computed in parallel
+   */
+  protected boolean isParallel() {
+    return getThreadCount() > 1;
+  }
+  
   /**
    * Fill the mapping destructively
    * Postcondition: getOutput().isCompleteFor(TARGET)
@@ -237,22 +402,110 @@ public class MatchOperation extends AbstractExpensiveOperation {
    */
   protected void match() {
     boolean threeWay = _comparison.isThreeWay();
-    getMonitor().subTask(Messages.MatchBuilder_Task_RegisteringIDs);
-    Map<Object, EObject> referenceIDRegistry = explore(Role.REFERENCE, true);
-    getMonitor().worked(1);
-    getMonitor().subTask(Messages.MatchBuilder_Task_MappingIDs);
-    Map<Object, EObject> targetIDRegistry = exploreAndMatch(
-        Role.TARGET, referenceIDRegistry, Role.REFERENCE, null, null, threeWay);
-    getMonitor().worked(1);
-    if (threeWay) {
-      exploreAndMatch(Role.ANCESTOR, referenceIDRegistry, Role.REFERENCE,
-          targetIDRegistry, Role.TARGET, false);
+    IMapping.Editable mapping = _comparison.getMapping();
+    setBulkConstruction(mapping, true);
+    if (getMatchPolicy() instanceof IMatchPolicy.Caching)
+      ((IMatchPolicy.Caching)getMatchPolicy()).matchingStarted();
+    try {
+      if (!threeWay)
+        registerIdenticalResources();
+      getMonitor().subTask(Messages.MatchBuilder_Task_RegisteringIDs);
+      Map<Object, EObject> referenceIDRegistry = explore(Role.REFERENCE, true);
       getMonitor().worked(1);
+      getMonitor().subTask(Messages.MatchBuilder_Task_MappingIDs);
+      Map<Object, EObject> targetIDRegistry = exploreAndMatch(
+          Role.TARGET, referenceIDRegistry, Role.REFERENCE, null, null, threeWay);
+      getMonitor().worked(1);
+      if (threeWay) {
+        exploreAndMatch(Role.ANCESTOR, referenceIDRegistry, Role.REFERENCE,
+            targetIDRegistry, Role.TARGET, false);
+        getMonitor().worked(1);
+      }
+    } finally {
+      if (getMatchPolicy() instanceof IMatchPolicy.Caching)
+        ((IMatchPolicy.Caching)getMatchPolicy()).matchingEnded();
+      setBulkConstruction(mapping, false);
+      _identicalResources.clear();
+      _identicalCounterparts.clear();
     }
     _duplicateCandidatesRole1.clear();
     _duplicateCandidatesRole2.clear();
   }
   
+  /**
+   * Determine the resources of the TARGET and REFERENCE scopes whose elements are
+   * matched in bulk, without match IDs, in the order of their containment trees.
+   * This is the case for pairs of resources which have the same digest, whose roots
+   * have the same match ID and whose elements correspond one to one. The match policy
+   * is thus assumed to give the same match IDs to the elements of byte-identical
+   * resources whose roots match, which is typically the case if match IDs are
+   * persistent IDs. Duplicate match IDs within such resources are not reported.
+   * @see IFragmentedModelScope.Digesting
+   */
+  protected void registerIdenticalResources() {
+    IModelScope targetScope = _comparison.getScope(Role.TARGET);
+    IModelScope referenceScope = _comparison.getScope(Role.REFERENCE);
+    if (isDigesting(targetScope) && isDigesting(referenceScope)) {
+      // Digests are available once the resources are loaded
+      exploreFully(targetScope);
+      exploreFully(referenceScope);
+      Map<ByteBuffer, Resource> referenceResources = getResourcesByDigest(
+          (IFragmentedModelScope.Digesting)referenceScope);
+      if (!referenceResources.isEmpty()) {
+        Map<ByteBuffer, Resource> targetResources = getResourcesByDigest(
+            (IFragmentedModelScope.Digesting)targetScope);
+        for (Map.Entry<ByteBuffer, Resource> entry : targetResources.entrySet()) {
+          Resource referenceResource = referenceResources.get(entry.getKey());
+          if (referenceResource != null)
+            registerIdenticalResources(entry.getValue(), referenceResource);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Register the given resources as matched in bulk if their roots have
+   * the same match ID and their elements correspond one to one
+   * @param targetResource_p a non-null resource of the TARGET scope
+   * @param referenceResource_p a non-null resource of the REFERENCE scope
+   *        whose digest is the same as the one of targetResource_p
+   */
+  protected void registerIdenticalResources(Resource targetResource_p,
+      Resource referenceResource_p) {
+    List<EObject> targetRoots = targetResource_p.getContents();
+    List<EObject> referenceRoots = referenceResource_p.getContents();
+    if (targetRoots.isEmpty() || targetRoots.size() != referenceRoots.size())
+      return;
+    EObject targetRoot = targetRoots.get(0);
+    EObject referenceRoot = referenceRoots.get(0);
+    Object targetID = getMatchPolicy().getMatchID(
+        targetRoot, _comparison.getScope(Role.TARGET));
+    Object referenceID = getMatchPolicy().getMatchID(
+        referenceRoot, _comparison.getScope(Role.REFERENCE));
+    if (targetID == null || referenceID == null)
+      return;
+    Map<Object, EObject> rootRegistry = createMatchIDToElementMap();
+    rootRegistry.put(referenceID, referenceRoot);
+    if (rootRegistry.get(targetID) != referenceRoot)
+      return;
+    Map<EObject, EObject> counterparts = new IdentityHashMap<EObject, EObject>();
+    Iterator<EObject> targetIt = EcoreUtil.getAllProperContents(targetResource_p, false);
+    Iterator<EObject> referenceIt = EcoreUtil.getAllProperContents(referenceResource_p, false);
+    while (targetIt.hasNext() && referenceIt.hasNext()) {
+      checkProgress();
+      EObject target = targetIt.next();
+      EObject reference = referenceIt.next();
+      if (target.eClass() != reference.eClass())
+        return;
+      counterparts.put(target, reference);
+    }
+    if (!targetIt.hasNext() && !referenceIt.hasNext()) {
+      _identicalCounterparts.putAll(counterparts);
+      _identicalResources.add(targetResource_p);
+      _identicalResources.add(referenceResource_p);
+    }
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.util.IExpensiveOperation#run()
    * Postconditions: see MatchOperation#match()
@@ -268,4 +521,15 @@ public class MatchOperation extends AbstractExpensiveOperation {
     return Status.OK_STATUS;
   }
   
+  /**
+   * Start or end a bulk construction phase for the given mapping if it supports it
+   * @see IMapping.BulkConstructible#setBulkConstruction(boolean)
+   * @param mapping_p a non-null mapping
+   * @param bulk_p true to start a bulk construction phase, false to end it
+   */
+  public static void setBulkConstruction(IMapping.Editable mapping_p, boolean bulk_p) {
+    if (mapping_p instanceof IMapping.BulkConstructible)
+      ((IMapping.BulkConstructible)mapping_p).setBulkConstruction(bulk_p);
+  }
+  
 }
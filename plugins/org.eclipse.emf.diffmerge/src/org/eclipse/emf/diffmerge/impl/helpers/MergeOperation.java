@@ -14,11 +14,17 @@
  */
 package org.eclipse.emf.diffmerge.impl.helpers;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notifier;
 import org.eclipse.emf.diffmerge.Messages;
 import org.eclipse.emf.diffmerge.api.IComparison;
 import org.eclipse.emf.diffmerge.api.IMapping;
@@ -28,6 +34,13 @@ import org.eclipse.emf.diffmerge.api.Role;
 import org.eclipse.emf.diffmerge.api.diff.IDifference;
 import org.eclipse.emf.diffmerge.api.diff.IMergeableDifference;
 import org.eclipse.emf.diffmerge.util.structures.FArrayList;
+import org.eclipse.emf.diffmerge.util.structures.FHashSet;
+import org.eclipse.emf.diffmerge.util.structures.FOrderedSet;
+import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
 
 
 /**
@@ -45,7 +58,8 @@ public class MergeOperation extends AbstractExpensiveOperation {
   /** The non-null set of differences to merge (relevant only if !isGlobal()) */
   protected final Collection<? extends IDifference> _toMerge;
   
-  /** The optional destination role (TARGET or REFERENCE), null iff isGlobal() */
+  /** The optional destination role (TARGET or REFERENCE), null iff isGlobal() and
+   * the merger may return different roles */
   protected final Role _destinationRole;
   
   /** Whether references of the elements added must be set */
@@ -54,6 +68,12 @@ public class MergeOperation extends AbstractExpensiveOperation {
   /** The non-null set of differences that have actually been merged (initially empty) */
   protected final Collection<IDifference> _actuallyMerged;
   
+  /** Whether notifications of the destination models are suspended during the merge */
+  private boolean _suspendNotifications;
+  
+  /** The non-null, potentially empty list of elements whose notifications are suspended */
+  private final List<EObject> _suspended;
+  
   
   /**
    * Constructor for a selected subset of differences
@@ -71,6 +91,34 @@ public class MergeOperation extends AbstractExpensiveOperation {
     _merger = null;
     _updateReferences = updateReferences_p;
     _actuallyMerged = new FArrayList<IDifference>();
+    _suspendNotifications = false;
+    _suspended = new ArrayList<EObject>();
+  }
+  
+  /**
+   * Constructor for a global merge of all differences in a given direction
+   * @param comparison_p a non-null comparison
+   * @param destination_p a role which is TARGET or REFERENCE
+   * @param updateReferences_p whether references of the elements added must be set
+   */
+  public MergeOperation(IComparison comparison_p, final Role destination_p,
+      boolean updateReferences_p) {
+    super();
+    _comparison = comparison_p;
+    _toMerge = Collections.emptySet();
+    _destinationRole = destination_p;
+    _merger = new IMergeSelector() {
+      /**
+       * @see org.eclipse.emf.diffmerge.api.IMergeSelector#getMergeDirection(org.eclipse.emf.diffmerge.api.diff.IDifference)
+       */
+      public Role getMergeDirection(IDifference difference_p) {
+        return destination_p;
+      }
+    };
+    _updateReferences = updateReferences_p;
+    _actuallyMerged = new FArrayList<IDifference>();
+    _suspendNotifications = false;
+    _suspended = new ArrayList<EObject>();
   }
   
   /**
@@ -88,6 +136,8 @@ public class MergeOperation extends AbstractExpensiveOperation {
     _merger = merger_p;
     _updateReferences = updateReferences_p;
     _actuallyMerged = new FArrayList<IDifference>();
+    _suspendNotifications = false;
+    _suspended = new ArrayList<EObject>();
   }
   
   /**
@@ -123,26 +173,87 @@ public class MergeOperation extends AbstractExpensiveOperation {
     return _merger != null;
   }
   
+  /**
+   * Return the roles of the models which may be modified by this operation
+   * @return a non-null, non-empty array of roles among TARGET and REFERENCE
+   */
+  protected Role[] getDestinationRoles() {
+    return _destinationRole != null? new Role[] { _destinationRole }:
+      new Role[] { Role.TARGET, Role.REFERENCE };
+  }
+  
+  /**
+   * Refresh the adapters which propagate over containment, such as cross-referencers
+   * and content adapters, and which are attached to the resource sets, resources or
+   * roots of the destination models, by detaching and re-attaching them
+   */
+  protected void refreshContainmentAdapters() {
+    Collection<Notifier> holders = new FOrderedSet<Notifier>(IEqualityTester.BY_REFERENCE);
+    for (Role role : getDestinationRoles()) {
+      for (EObject root : _comparison.getScope(role).getContents()) {
+        Resource resource = root.eResource();
+        if (resource != null) {
+          if (resource.getResourceSet() != null)
+            holders.add(resource.getResourceSet());
+          holders.add(resource);
+        }
+        holders.add(root);
+      }
+    }
+    // Holders are ordered from the outermost, so adapters are refreshed once
+    Set<Adapter> refreshed = new FHashSet<Adapter>(IEqualityTester.BY_REFERENCE);
+    for (Notifier holder : holders) {
+      for (Adapter adapter : new ArrayList<Adapter>(holder.eAdapters())) {
+        if ((adapter instanceof ECrossReferenceAdapter || adapter instanceof EContentAdapter) &&
+            !refreshed.contains(adapter) && holder.eAdapters().contains(adapter)) {
+          holder.eAdapters().remove(adapter);
+          holder.eAdapters().add(adapter);
+          refreshed.add(adapter);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Resume the notifications which have been suspended by suspendNotifications()
+   * and refresh the adapters which could not follow the changes
+   */
+  protected void resumeNotifications() {
+    for (EObject element : _suspended)
+      element.eSetDeliver(true);
+    _suspended.clear();
+    refreshContainmentAdapters();
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.util.IExpensiveOperation#run()
    */
   public IStatus run() {
     getMonitor().worked(1);
     IStatus result;
-    if (isGlobal())
-      result = runOnComparison();
-    else
-      result = runOnSet();
-    if (_updateReferences && result != null && result.isOK()) {
-      checkProgress();
-      IMapping.Editable mapping = (IMapping.Editable)_comparison.getMapping();
-      if (_destinationRole != null) {
-        mapping.completeReferences(_destinationRole);
-      } else {
-        mapping.completeReferences(Role.TARGET);
-        mapping.completeReferences(Role.REFERENCE);
+    if (_suspendNotifications)
+      suspendNotifications();
+    try {
+      if (!isGlobal())
+        result = runOnSet();
+      else if (_destinationRole != null)
+        result = runOnComparisonInDirection();
+      else
+        result = runOnComparison();
+      if (_updateReferences && result != null && result.isOK()) {
+        checkProgress();
+        IMapping.Editable mapping = (IMapping.Editable)_comparison.getMapping();
+        if (_destinationRole != null) {
+          mapping.completeReferences(_destinationRole);
+        } else {
+          mapping.completeReferences(Role.TARGET);
+          mapping.completeReferences(Role.REFERENCE);
+        }
+        getMonitor().worked(1);
       }
-      getMonitor().worked(1);
+    } finally {
+      if (_suspendNotifications)
+        resumeNotifications();
     }
     return result;
   }
@@ -172,20 +283,226 @@ public class MergeOperation extends AbstractExpensiveOperation {
   }
   
   /**
-   * Run the merge operation on a selected subset of differences
+   * Set whether notifications of the elements of the destination models must be
+   * suspended during the merge. When they are, adapters attached to those elements
+   * are not notified of the changes: adapters which propagate over containment and
+   * are attached to the resource sets, resources or roots of the destination models
+   * are refreshed after the merge, while other adapters are not.
+   * Undo/redo is thus not supported: this must not be used when changes are recorded
+   * through notifications, e.g., within a transaction or a command of an editing
+   * domain whose changes can be undone. It is typically meant for headless merges
+   * and for comparison viewers whose input does not support undo/redo, provided
+   * that the viewers which display the destination models are refreshed afterwards.
+   * Since suspending and resuming notifications take a time proportional to
+   * the size of the destination models, it only pays off for merges which change
+   * a significant part of them.
+   * Notifications are not suspended by default.
+   * @param suspend_p whether notifications must be suspended
+   */
+  public void setSuspendNotifications(boolean suspend_p) {
+    _suspendNotifications = suspend_p;
+  }
+  
+  /**
+   * Suspend the notifications of the elements of the destination models
+   */
+  protected void suspendNotifications() {
+    for (Role role : getDestinationRoles()) {
+      Iterator<EObject> it = _comparison.getScope(role).getAllContents();
+      while (it.hasNext()) {
+        EObject element = it.next();
+        if (element.eDeliver()) {
+          element.eSetDeliver(false);
+          _suspended.add(element);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Return whether the given difference can be merged in the given role
+   * independently of its dependencies
+   * @param difference_p a non-null difference
+   * @param destination_p a non-null role
+   */
+  protected boolean isMergeableTo(IMergeableDifference difference_p, Role destination_p) {
+    return difference_p.getMergeDestination() == destination_p ||
+      difference_p.canMergeTo(destination_p);
+  }
+  
+  /**
+   * Mark as merged in the given role the differences which are implicitly dependent
+   * upon the given ones, directly or transitively, and which are not merged yet
+   * @param differences_p a non-null collection of differences
+   * @param destination_p a non-null role which is TARGET or REFERENCE
+   * @param explored_p the non-null, modifiable set of differences whose implicit
+   *        dependencies have already been marked as merged
+   */
+  protected void markImplied(Collection<? extends IMergeableDifference> differences_p,
+      Role destination_p, Set<IMergeableDifference> explored_p) {
+    List<IMergeableDifference> toExplore = new FArrayList<IMergeableDifference>(
+        differences_p, IEqualityTester.BY_REFERENCE);
+    while (!toExplore.isEmpty()) {
+      IMergeableDifference current = toExplore.remove(toExplore.size() - 1);
+      if (explored_p.add(current)) {
+        for (IMergeableDifference implicit :
+            current.getDirectImpliesDependencies(destination_p)) {
+          if (!implicit.isMerged()) {
+            ((IMergeableDifference.Editable)implicit).markAsMergedIn(destination_p);
+            _actuallyMerged.add(implicit);
+          }
+          toExplore.add(implicit);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Merge the given difference in the given role along with the differences it
+   * requires, then mark as merged the differences it implies, if it is not merged yet.
+   * The result is the same as IMergeableDifference#mergeTo(Role) but the dependencies
+   * which have already been explored by previous calls are not explored again.
+   * Nothing is changed if a required difference cannot be merged in the given role.
+   * @param difference_p a non-null difference which can be merged in the given role
+   * @param destination_p a non-null role which is TARGET or REFERENCE
+   * @param explored_p the non-null, modifiable set of differences whose required
+   *        differences have been explored for the given role
+   * @param implicitlyExplored_p the non-null, modifiable set of differences whose
+   *        implied differences have been explored for the given role
+   * @throws UnsupportedOperationException if a required difference cannot be
+   *         merged in the given role
+   */
+  protected void merge(IMergeableDifference difference_p, Role destination_p,
+      Set<IMergeableDifference> explored_p,
+      Set<IMergeableDifference> implicitlyExplored_p) {
+    if (!difference_p.isMerged()) {
+      List<IMergeableDifference> required =
+        planRequired(difference_p, destination_p, explored_p);
+      IMergeableDifference.Editable editable = (IMergeableDifference.Editable)difference_p;
+      editable.markAsMergedIn(destination_p);
+      for (IMergeableDifference current : required) {
+        if (!current.isMerged()) {
+          ((IMergeableDifference.Editable)current).markAsMergedIn(destination_p);
+          ((IMergeableDifference.Editable)current).doMergeIn(destination_p);
+          _actuallyMerged.add(current);
+        }
+      }
+      editable.doMergeIn(destination_p);
+      _actuallyMerged.add(difference_p);
+      required.add(difference_p);
+      markImplied(required, destination_p, implicitlyExplored_p);
+    }
+  }
+  
+  /**
+   * Return the differences which are explicitly required by the given difference,
+   * directly or transitively, and which have not been explored yet, in an order
+   * where every difference comes after the differences it requires.
+   * Every difference returned is checked to be mergeable in the given role
+   * as in IMergeableDifference#mergeTo(Role), in which case the differences
+   * returned and the given one are added to the given set of explored differences.
+   * Because the required differences of explored differences have already been
+   * planned and checked, each difference is only explored once for a whole set
+   * of differences.
+   * @param difference_p a non-null difference
+   * @param destination_p a non-null role which is TARGET or REFERENCE
+   * @param explored_p the non-null, modifiable set of explored differences
+   * @return a non-null, potentially empty, modifiable list excluding difference_p
+   * @throws UnsupportedOperationException if a required difference cannot be
+   *         merged in the given role, in which case explored_p is left unchanged
+   */
+  protected List<IMergeableDifference> planRequired(IMergeableDifference difference_p,
+      Role destination_p, Set<IMergeableDifference> explored_p) {
+    List<IMergeableDifference> result = new FArrayList<IMergeableDifference>(
+        IEqualityTester.BY_REFERENCE);
+    Set<IMergeableDifference> visited = new FHashSet<IMergeableDifference>(
+        IEqualityTester.BY_REFERENCE);
+    // Iterative depth-first exploration: a difference is appended when done
+    List<IMergeableDifference> stack = new FArrayList<IMergeableDifference>(
+        IEqualityTester.BY_REFERENCE);
+    List<Iterator<IMergeableDifference>> iterators =
+      new ArrayList<Iterator<IMergeableDifference>>();
+    visited.add(difference_p);
+    stack.add(difference_p);
+    iterators.add(difference_p.getDirectRequiresDependencies(destination_p).iterator());
+    while (!stack.isEmpty()) {
+      Iterator<IMergeableDifference> iterator = iterators.get(iterators.size() - 1);
+      if (iterator.hasNext()) {
+        IMergeableDifference required = iterator.next();
+        if (!explored_p.contains(required) && visited.add(required)) {
+          if (!isMergeableTo(required, destination_p))
+            throw new UnsupportedOperationException(
+                Messages.AbstractDifference_UnableToMerge + ": " + required); //$NON-NLS-1$
+          stack.add(required);
+          iterators.add(required.getDirectRequiresDependencies(destination_p).iterator());
+        }
+      } else {
+        IMergeableDifference done = stack.remove(stack.size() - 1);
+        iterators.remove(iterators.size() - 1);
+        if (done != difference_p)
+          result.add(done);
+      }
+    }
+    explored_p.addAll(visited);
+    return result;
+  }
+  
+  /**
+   * Run the merge operation on the whole comparison in the single direction
+   * defined by the destination role, which is the case when all differences
+   * are accepted from one side.
+   * Every match is covered in a single pass where the dependencies of every
+   * difference are explored at most once. As with a merger, a difference is
+   * not merged if one of its required differences cannot be merged in the
+   * destination role, e.g., because of the merge policy.
+   * @return a non-null status
+   */
+  protected IStatus runOnComparisonInDirection() {
+    Set<IMergeableDifference> explored = new FHashSet<IMergeableDifference>(
+        IEqualityTester.BY_REFERENCE);
+    Set<IMergeableDifference> implicitlyExplored = new FHashSet<IMergeableDifference>(
+        IEqualityTester.BY_REFERENCE);
+    for (IMatch match : _comparison.getMapping().getContents()) {
+      for (IDifference difference : match.getAllDifferences()) {
+        checkProgress();
+        if (difference instanceof IMergeableDifference &&
+            difference.canMergeTo(_destinationRole)) {
+          try {
+            merge((IMergeableDifference)difference, _destinationRole,
+                explored, implicitlyExplored);
+          } catch (UnsupportedOperationException e) {
+            // Required differences cannot be merged: proceed
+          }
+        }
+      }
+      getMonitor().worked(1);
+    }
+    return Status.OK_STATUS;
+  }
+  
+  /**
+   * Run the merge operation on a selected subset of differences.
+   * The result is the same as merging the differences one by one, but the
+   * dependencies of every difference are explored at most once for the whole set.
    * @return a non-null status
    */
   protected IStatus runOnSet() {
+    Set<IMergeableDifference> explored = new FHashSet<IMergeableDifference>(
+        IEqualityTester.BY_REFERENCE);
+    Set<IMergeableDifference> implicitlyExplored = new FHashSet<IMergeableDifference>(
+        IEqualityTester.BY_REFERENCE);
     for (IDifference difference : _toMerge) {
       checkProgress();
-      try {
-        if (difference instanceof IMergeableDifference) {
-          Collection<IDifference> merged =
-            ((IMergeableDifference)difference).mergeTo(_destinationRole);
-          _actuallyMerged.addAll(merged);
+      if (difference instanceof IMergeableDifference) {
+        IMergeableDifference mergeable = (IMergeableDifference)difference;
+        // A difference which cannot be merged is ignored
+        if (isMergeableTo(mergeable, _destinationRole)) {
+          try {
+            merge(mergeable, _destinationRole, explored, implicitlyExplored);
+          } catch (UnsupportedOperationException e) {
+            // Cannot merge this difference: proceed
+          }
         }
-      } catch (UnsupportedOperationException e) {
-        // Cannot merge this difference: proceed
       }
       getMonitor().worked(1);
     }
@@ -15,7 +15,10 @@
 package org.eclipse.emf.diffmerge.impl.helpers;
 
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.emf.diffmerge.api.IComparison;
 import org.eclipse.emf.diffmerge.api.IMapping;
@@ -24,10 +27,13 @@ import org.eclipse.emf.diffmerge.api.IMergePolicy;
 import org.eclipse.emf.diffmerge.api.Role;
 import org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope;
 import org.eclipse.emf.diffmerge.api.scopes.IFeaturedModelScope;
+import org.eclipse.emf.diffmerge.util.structures.FHashSet;
+import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
 import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
 import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.EStructuralFeature.Setting;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 
 
@@ -55,6 +61,15 @@ public class UnidirectionalComparisonCopier extends EcoreUtil.Copier {
   /** The potentially null merge policy to apply */
   protected IMergePolicy _mergePolicy;
   
+  /** The initially null features to copy per EClass w.r.t. the merge policy and target scope */
+  private transient CoveredFeatures _coveredFeatures;
+  
+  /** The number of leading completed matches whose references have been completed */
+  private transient int _referencesCompletedCount;
+  
+  /** The last completed match whose references have been completed, if any */
+  private transient IMatch _lastReferencesCompleted;
+  
   
   /**
    * Constructor
@@ -68,6 +83,8 @@ public class UnidirectionalComparisonCopier extends EcoreUtil.Copier {
     _mapping = null;
     _sourceScope = null;
     _destinationScope = null;
+    _referencesCompletedCount = 0;
+    _lastReferencesCompleted = null;
   }
   
   /**
@@ -81,10 +98,8 @@ public class UnidirectionalComparisonCopier extends EcoreUtil.Copier {
   @Override
   public EObject copy(EObject element_p) {
     EObject result = copyAsProxy(element_p);
-    for (EAttribute attribute : element_p.eClass().getEAllAttributes()) {
-      if (coverFeature(attribute))
-        copyAttribute(attribute, element_p, result);
-    }
+    for (EAttribute attribute : getCoveredFeatures().getAttributes(element_p.eClass()))
+      copyAttribute(attribute, element_p, result);
     // No call to method put, so the state never changes
     return result;
   }
@@ -142,21 +157,63 @@ public class UnidirectionalComparisonCopier extends EcoreUtil.Copier {
   }
   
   /**
+   * Copy the cross-references from the destination elements of matches which have been
+   * completed previously to the destination elements of the given newly completed matches.
+   * Such cross-references are not covered by differences: they are obtained through
+   * the cross-references of the mapping.
+   * @param newlyCompleted_p a non-null collection of matches whose references are completed
+   */
+  protected void copyIncomingReferences(Collection<IMatch> newlyCompleted_p) {
+    Set<IMatch> excluded = new FHashSet<IMatch>(newlyCompleted_p, IEqualityTester.BY_REFERENCE);
+    Map<EObject, Set<EReference>> handled = new IdentityHashMap<EObject, Set<EReference>>();
+    for (IMatch completedMatch : newlyCompleted_p) {
+      EObject source = completedMatch.get(_sourceRole);
+      for (Setting setting : _mapping.getCrossReferences(source, _sourceRole)) {
+        EObject referencing = setting.getEObject();
+        EReference reference = (EReference)setting.getEStructuralFeature();
+        IMatch referencingMatch = _mapping.getMatchFor(referencing, _sourceRole);
+        if (referencingMatch != null && !excluded.contains(referencingMatch) &&
+            getCompletedMatches().contains(referencingMatch) &&
+            !reference.isContainer() && coverFeature(reference)) {
+          Set<EReference> handledReferences = handled.get(referencing);
+          if (handledReferences == null) {
+            handledReferences = new FHashSet<EReference>(IEqualityTester.BY_REFERENCE);
+            handled.put(referencing, handledReferences);
+          }
+          if (handledReferences.add(reference))
+            copyReference(reference, referencing,
+                referencingMatch.get(_sourceRole.opposite()));
+        }
+      }
+    }
+  }
+  
+  /**
+   * Complete the references of the matches which have been completed since the
+   * last call, including the references from previously completed matches to them.
    * @see org.eclipse.emf.ecore.util.EcoreUtil.Copier#copyReferences()
    */
   @Override
   public void copyReferences() {
-    for (IMatch updatedMatch : getCompletedMatches())
+    Collection<IMatch> completed = getCompletedMatches();
+    Collection<IMatch> toComplete = getMatchesToComplete();
+    for (IMatch updatedMatch : toComplete)
       copyReferences(updatedMatch);
+    if (toComplete.size() < completed.size())
+      copyIncomingReferences(toComplete);
     // Update of containments may have changed resources, which may have an impact on IDs
     if (_mergePolicy != null) {
-      for (IMatch updatedMatch : getCompletedMatches()) {
+      for (IMatch updatedMatch : toComplete) {
         EObject source = updatedMatch.get(_sourceRole);
         EObject target = updatedMatch.get(_sourceRole.opposite());
         BidirectionalComparisonCopier.handleIDCopy(
             source, _sourceScope, target, _destinationScope, _mergePolicy);
       }
     }
+    _referencesCompletedCount = completed.size();
+    _lastReferencesCompleted = null;
+    if (completed instanceof List<?> && !completed.isEmpty())
+      _lastReferencesCompleted = ((List<IMatch>)completed).get(completed.size() - 1);
   }
   
   /**
@@ -167,10 +224,8 @@ public class UnidirectionalComparisonCopier extends EcoreUtil.Copier {
     EObject source = match_p.get(_sourceRole);
     EObject destination = match_p.get(_sourceRole.opposite());
     assert source != null && destination != null;
-    for (EReference reference : source.eClass().getEAllReferences()) {
-      if (!reference.isContainer() && coverFeature(reference))
-        copyReference(reference, source, destination);
-    }
+    for (EReference reference : getCoveredFeatures().getReferences(source.eClass()))
+      copyReference(reference, source, destination);
   }
   
   /**
@@ -256,15 +311,61 @@ public class UnidirectionalComparisonCopier extends EcoreUtil.Copier {
     return _mapping.getModifiableCompletedMatches(_sourceRole.opposite());
   }
   
+  /**
+   * Return the completed matches whose references have not been completed yet.
+   * All completed matches are returned if the completed matches have changed
+   * otherwise than by additions since the last completion of references, or if
+   * the cross-references of the mapping are not available, e.g., because the
+   * comparison has been loaded instead of computed.
+   * @return a non-null collection
+   */
+  protected Collection<IMatch> getMatchesToComplete() {
+    Collection<IMatch> result = getCompletedMatches();
+    boolean crossReferenced = _mapping instanceof IMapping.CrossReferencing &&
+      ((IMapping.CrossReferencing)_mapping).isCrossReferenced(_sourceRole);
+    if (crossReferenced && result instanceof List<?> && _referencesCompletedCount > 0 &&
+        _referencesCompletedCount <= result.size()) {
+      List<IMatch> completed = (List<IMatch>)result;
+      if (completed.get(_referencesCompletedCount - 1) == _lastReferencesCompleted)
+        result = completed.subList(_referencesCompletedCount, completed.size());
+    }
+    return result;
+  }
+  
+  /**
+   * Return the features to copy per EClass for the current merge policy and
+   * destination scope
+   * @return a non-null object
+   */
+  protected CoveredFeatures getCoveredFeatures() {
+    if (_coveredFeatures == null) {
+      _coveredFeatures = new CoveredFeatures() {
+        /**
+         * @see org.eclipse.emf.diffmerge.impl.helpers.CoveredFeatures#covers(org.eclipse.emf.ecore.EStructuralFeature)
+         */
+        @Override
+        protected boolean covers(EStructuralFeature feature_p) {
+          return coverFeature(feature_p);
+        }
+      };
+    }
+    return _coveredFeatures;
+  }
+  
   /**
    * Set the comparison which defines the behavioral context of this copier
    * @param comparison_p a non-null comparison
    */
   protected void setComparison(IComparison.Editable comparison_p) {
+    IEditableModelScope destinationScope = comparison_p.getScope(_sourceRole.opposite());
+    IMergePolicy mergePolicy = comparison_p.getLastMergePolicy();
+    if (_coveredFeatures != null &&
+        (destinationScope != _destinationScope || mergePolicy != _mergePolicy))
+      _coveredFeatures.clear();
     _mapping = comparison_p.getMapping();
     _sourceScope = comparison_p.getScope(_sourceRole);
-    _destinationScope = comparison_p.getScope(_sourceRole.opposite());
-    _mergePolicy = comparison_p.getLastMergePolicy();
+    _destinationScope = destinationScope;
+    _mergePolicy = mergePolicy;
     if (_mergePolicy != null)
       useOriginalReferences = _mergePolicy.copyOutOfScopeCrossReferences(
           _sourceScope, _destinationScope);
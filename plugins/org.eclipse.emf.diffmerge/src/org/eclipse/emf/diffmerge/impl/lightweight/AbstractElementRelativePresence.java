@@ -0,0 +1,112 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.lightweight;
+
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IElementRelativePresence;
+import org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope;
+
+
+/**
+ * A plain Java, memory-efficient base implementation of IElementRelativePresence.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EElementRelativePresenceImpl
+ */
+public abstract class AbstractElementRelativePresence extends AbstractMergeableDifference
+implements IElementRelativePresence {
+  
+  /** The non-null match to which this difference is relative */
+  private final Match _elementMatch;
+  
+  /** The non-null role in which presence is effective: TARGET or REFERENCE */
+  private final Role _presenceRole;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison to which this difference belongs
+   * @param elementMatch_p the non-null match to which this difference is relative
+   * @param presenceRole_p the role in which presence is effective: TARGET or REFERENCE
+   */
+  protected AbstractElementRelativePresence(Comparison comparison_p,
+      Match elementMatch_p, Role presenceRole_p) {
+    super(comparison_p);
+    _elementMatch = elementMatch_p;
+    _presenceRole = presenceRole_p;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference.Editable#doMergeIn(org.eclipse.emf.diffmerge.api.Role)
+   */
+  @Override
+  public final void doMergeIn(Role destination_p) {
+    if (destination_p == getPresenceRole())
+      mergeRemoval();
+    else
+      mergeAddition();
+  }
+  
+  /**
+   * Return the role which is opposite to the presence role
+   * @return a non-null role which is TARGET or REFERENCE
+   */
+  protected final Role getAbsenceRole() {
+    return getPresenceRole().opposite();
+  }
+  
+  /**
+   * Return the scope of the role opposite to the presence role
+   * @return a non-null scope
+   */
+  protected final IEditableModelScope getAbsenceScope() {
+    IEditableModelScope result = getComparison().getScope(getAbsenceRole());
+    assert result != null;
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IElementRelativeDifference#getElementMatch()
+   */
+  public Match getElementMatch() {
+    return _elementMatch;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IPresenceDifference#getPresenceRole()
+   */
+  public Role getPresenceRole() {
+    return _presenceRole;
+  }
+  
+  /**
+   * Return the scope of the presence role
+   * @return a non-null scope
+   */
+  protected final IEditableModelScope getPresenceScope() {
+    IEditableModelScope result = getComparison().getScope(getPresenceRole());
+    assert result != null;
+    return result;
+  }
+  
+  /**
+   * Add the element or value in the opposite role
+   */
+  protected abstract void mergeAddition();
+  
+  /**
+   * Remove the element or value from the presence role
+   */
+  protected abstract void mergeRemoval();
+  
+}
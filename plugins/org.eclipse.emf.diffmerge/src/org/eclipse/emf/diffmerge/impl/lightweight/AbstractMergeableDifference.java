@@ -0,0 +1,277 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.lightweight;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IMergeableDifference;
+import org.eclipse.emf.diffmerge.impl.helpers.DifferenceMerger;
+import org.eclipse.emf.diffmerge.util.structures.CompactNestedMap;
+
+
+/**
+ * A plain Java, memory-efficient base implementation of IMergeableDifference.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EMergeableDifferenceImpl
+ */
+public abstract class AbstractMergeableDifference implements IMergeableDifference.Editable {
+  
+  /** The non-null comparison which owns this difference */
+  private final Comparison _comparison;
+  
+  /** The role into which this difference has been merged, if any */
+  private Role _mergeDestination;
+  
+  /** Whether this difference also exists in the ancestor */
+  private boolean _alignedWithAncestor;
+  
+  /** Whether this difference is conflicting with another one */
+  private boolean _conflicting;
+  
+  /** Whether this difference may be merged to TARGET */
+  private boolean _mergeableToTarget;
+  
+  /** Whether this difference may be merged to REFERENCE */
+  private boolean _mergeableToReference;
+  
+  /** The direct explicit dependencies: role -> difference -> difference (initially null) */
+  private CompactNestedMap<Role, IMergeableDifference, IMergeableDifference> _explicitDependencies;
+  
+  /** The direct implicit dependencies: role -> difference -> difference (initially null) */
+  private CompactNestedMap<Role, IMergeableDifference, IMergeableDifference> _implicitDependencies;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison to which this difference belongs
+   */
+  protected AbstractMergeableDifference(Comparison comparison_p) {
+    _comparison = comparison_p;
+    _mergeDestination = null;
+    _alignedWithAncestor = true;
+    _conflicting = false;
+    _mergeableToTarget = true;
+    _mergeableToReference = true;
+    _explicitDependencies = null;
+    _implicitDependencies = null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifference#canMergeTo(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public boolean canMergeTo(Role destination_p) {
+    return isPossibleMergeDestination(destination_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference.Editable#doMergeIn(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public abstract void doMergeIn(Role destination_p);
+  
+  /**
+   * Forbid this difference from being merged in the given direction
+   * Postcondition: !canMergeTo(destination_p)
+   * @param destination_p a non-null role
+   */
+  protected final void forbidMergeTo(Role destination_p) {
+    if (destination_p == Role.TARGET)
+      _mergeableToTarget = false;
+    else if (destination_p == Role.REFERENCE)
+      _mergeableToReference = false;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifference#getComparison()
+   */
+  public Comparison getComparison() {
+    return _comparison;
+  }
+  
+  /**
+   * Return the direct dependencies of the given kind
+   * @param explicit_p whether explicit or implicit dependencies are concerned
+   * @param create_p whether the dependencies must be created if they do not exist
+   * @return a modifiable map which is not null if create_p
+   */
+  private CompactNestedMap<Role, IMergeableDifference, IMergeableDifference> getDependencies(
+      boolean explicit_p, boolean create_p) {
+    CompactNestedMap<Role, IMergeableDifference, IMergeableDifference> result =
+      explicit_p? _explicitDependencies: _implicitDependencies;
+    if (result == null && create_p) {
+      result = new CompactNestedMap<Role, IMergeableDifference, IMergeableDifference>();
+      if (explicit_p)
+        _explicitDependencies = result;
+      else
+        _implicitDependencies = result;
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference#getDirectImpliesDependencies(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public final Collection<IMergeableDifference> getDirectImpliesDependencies(Role role_p) {
+    return getDirectDependencies(false, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference#getDirectRequiresDependencies(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public final Collection<IMergeableDifference> getDirectRequiresDependencies(Role role_p) {
+    return getDirectDependencies(true, role_p);
+  }
+  
+  /**
+   * Return the direct dependencies of the given kind for the given role
+   * @param explicit_p whether explicit or implicit dependencies are concerned
+   * @param role_p a non-null role which is TARGET or REFERENCE
+   * @return a non-null, possibly empty, unmodifiable collection
+   */
+  private Collection<IMergeableDifference> getDirectDependencies(boolean explicit_p,
+      Role role_p) {
+    Collection<IMergeableDifference> result;
+    CompactNestedMap<Role, IMergeableDifference, IMergeableDifference> dependencies =
+      getDependencies(explicit_p, false);
+    if (dependencies == null)
+      result = Collections.emptyList();
+    else
+      result = dependencies.values(role_p == Role.TARGET? Role.TARGET: Role.REFERENCE);
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference#getImpliesDependencies(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public final Collection<IMergeableDifference> getImpliesDependencies(Role role_p) {
+    return getComparison().getStatistics().getDependencyClosures().getImpliesDependencies(
+        this, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifference#getMergeDestination()
+   */
+  public Role getMergeDestination() {
+    return _mergeDestination;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference#getRequiresDependencies(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public final Collection<IMergeableDifference> getRequiresDependencies(Role role_p) {
+    return getComparison().getStatistics().getDependencyClosures().getRequiresDependencies(
+        this, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifference#isAlignedWithAncestor()
+   */
+  public boolean isAlignedWithAncestor() {
+    return _alignedWithAncestor;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifference#isConflicting()
+   */
+  public boolean isConflicting() {
+    return _conflicting;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifference#isMerged()
+   */
+  public final boolean isMerged() {
+    return getMergeDestination() != null;
+  }
+  
+  /**
+   * Return whether the given role is among the possible merge destinations
+   * of this difference, independently of its nature
+   * @param destination_p a non-null role
+   */
+  protected final boolean isPossibleMergeDestination(Role destination_p) {
+    return destination_p == Role.TARGET && _mergeableToTarget ||
+      destination_p == Role.REFERENCE && _mergeableToReference;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifference.Editable#markAsConflicting()
+   */
+  public void markAsConflicting() {
+    markAsDifferentFromAncestor();
+    if (!_conflicting) {
+      _conflicting = true;
+      getComparison().getStatistics().differenceMarkedAsConflicting(this);
+    }
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IDifference.Editable#markAsDifferentFromAncestor()
+   */
+  public void markAsDifferentFromAncestor() {
+    _alignedWithAncestor = false;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference.Editable#markAsMergedIn(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public void markAsMergedIn(Role destination_p) {
+    if (getMergeDestination() == null) {
+      _mergeDestination = destination_p;
+      _mergeableToTarget = false;
+      _mergeableToReference = false;
+      getComparison().getStatistics().differenceMarkedAsMerged(this);
+    }
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference.Editable#markImplies(org.eclipse.emf.diffmerge.api.diff.IMergeableDifference, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public final void markImplies(IMergeableDifference difference_p, Role role_p) {
+    markDependency(false, difference_p, role_p);
+  }
+  
+  /**
+   * Mark the given difference as a direct dependency of the given kind
+   * @param explicit_p whether the dependency is explicit or implicit
+   * @param difference_p a non-null difference
+   * @param role_p a non-null role which is TARGET or REFERENCE
+   */
+  private void markDependency(boolean explicit_p, IMergeableDifference difference_p,
+      Role role_p) {
+    Role role = role_p == Role.TARGET? Role.TARGET: Role.REFERENCE;
+    CompactNestedMap<Role, IMergeableDifference, IMergeableDifference> dependencies =
+      getDependencies(explicit_p, true);
+    // Differences do not redefine equality: each one is registered at most once
+    dependencies.put(role, difference_p, difference_p);
+    getComparison().getStatistics().differenceDependencyAdded(this);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference.Editable#markRequires(org.eclipse.emf.diffmerge.api.diff.IMergeableDifference, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public final void markRequires(IMergeableDifference difference_p, Role role_p) {
+    markDependency(true, difference_p, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IMergeableDifference#mergeTo(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public Collection<IDifference> mergeTo(Role destination_p) {
+    return DifferenceMerger.mergeTo(this, destination_p);
+  }
+  
+}
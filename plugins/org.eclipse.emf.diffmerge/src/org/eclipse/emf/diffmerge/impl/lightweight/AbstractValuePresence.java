@@ -0,0 +1,140 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.lightweight;
+
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IValuePresence;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+
+/**
+ * A plain Java, memory-efficient base implementation of IValuePresence.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EValuePresenceImpl
+ */
+public abstract class AbstractValuePresence extends AbstractElementRelativePresence
+implements IValuePresence {
+  
+  /** The non-null feature holding the value */
+  private final EStructuralFeature _feature;
+  
+  /** Whether the unmatched presence is solely due to a different ordering */
+  private final boolean _isOrder;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison to which this difference belongs
+   * @param elementMatch_p the non-null match for the element holding the value
+   * @param feature_p the non-null feature holding the value
+   * @param presenceRole_p the role in which the value is held: TARGET or REFERENCE
+   * @param isOrder_p whether the value presence is solely due to ordering
+   */
+  protected AbstractValuePresence(Comparison comparison_p, Match elementMatch_p,
+      EStructuralFeature feature_p, Role presenceRole_p, boolean isOrder_p) {
+    super(comparison_p, elementMatch_p, presenceRole_p);
+    _feature = feature_p;
+    _isOrder = isOrder_p;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractMergeableDifference#canMergeTo(org.eclipse.emf.diffmerge.api.Role)
+   */
+  @Override
+  public boolean canMergeTo(Role destination_p) {
+    return super.canMergeTo(destination_p) && getFeature().isChangeable();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IValuePresence#getFeature()
+   */
+  public EStructuralFeature getFeature() {
+    return _feature;
+  }
+  
+  /**
+   * Return the element which holds the value
+   * @return a non-null element
+   */
+  public final EObject getHolder() {
+    return getElementMatch().get(getPresenceRole());
+  }
+  
+  /**
+   * Return the element which matches the holder of the value, if any
+   * @return a potentially null element
+   */
+  public final EObject getMatchOfHolder() {
+    return getElementMatch().get(getAbsenceRole());
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IValuePresence#getSymmetrical()
+   */
+  public abstract IValuePresence getSymmetrical();
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IValuePresence#isOrder()
+   */
+  public boolean isOrder() {
+    return _isOrder;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IValuePresence#isSymmetricalTo(org.eclipse.emf.diffmerge.api.diff.IValuePresence)
+   */
+  public boolean isSymmetricalTo(IValuePresence peer_p) {
+    return getAbsenceRole() == peer_p.getPresenceRole() &&
+      getFeature() == peer_p.getFeature() &&
+      (getFeature().getUpperBound() == 1 || isOrder() && peer_p.isOrder()) &&
+      getElementMatch() == peer_p.getElementMatch();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractElementRelativePresence#mergeAddition()
+   */
+  @Override
+  protected final void mergeAddition() {
+    if (isOrder())
+      mergeOrder();
+    else
+      mergeValueAddition();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractElementRelativePresence#mergeRemoval()
+   */
+  @Override
+  protected final void mergeRemoval() {
+    if (!isOrder())
+      mergeValueRemoval();
+  }
+  
+  /**
+   * Apply the order of the values in the presence role to the absence role
+   */
+  protected abstract void mergeOrder();
+  
+  /**
+   * Add the value to the absence scope
+   */
+  protected abstract void mergeValueAddition();
+  
+  /**
+   * Remove the value from the presence scope
+   */
+  protected abstract void mergeValueRemoval();
+  
+}
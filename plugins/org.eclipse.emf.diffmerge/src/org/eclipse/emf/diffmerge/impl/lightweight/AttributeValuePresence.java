@@ -0,0 +1,125 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.lightweight;
+
+import java.util.Collection;
+
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IAttributeValuePresence;
+import org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+
+
+/**
+ * A plain Java, memory-efficient implementation of IAttributeValuePresence.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EAttributeValuePresenceImpl
+ */
+public class AttributeValuePresence extends AbstractValuePresence
+implements IAttributeValuePresence {
+  
+  /** The non-null value being held */
+  private final Object _value;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison to which this difference belongs
+   * @param elementMatch_p the non-null match for the element holding the value
+   * @param attribute_p the non-null attribute holding the value
+   * @param value_p the non-null value held
+   * @param presenceRole_p the role in which the value is held: TARGET or REFERENCE
+   * @param isOrder_p whether the value presence is solely due to ordering
+   */
+  public AttributeValuePresence(Comparison comparison_p, Match elementMatch_p,
+      EAttribute attribute_p, Object value_p, Role presenceRole_p, boolean isOrder_p) {
+    super(comparison_p, elementMatch_p, attribute_p, presenceRole_p, isOrder_p);
+    _value = value_p;
+    elementMatch_p.addRelatedDifference(this);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#getFeature()
+   */
+  @Override
+  public EAttribute getFeature() {
+    return (EAttribute)super.getFeature();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#getSymmetrical()
+   */
+  @Override
+  public IAttributeValuePresence getSymmetrical() {
+    IAttributeValuePresence result = null;
+    if (!getFeature().isMany()) {
+      Collection<IAttributeValuePresence> candidates =
+        getElementMatch().getAttributeDifferences(getFeature());
+      assert candidates.size() <= 2; // Because !isMany()
+      for (IAttributeValuePresence candidate : candidates) {
+        if (candidate.getPresenceRole() == getAbsenceRole()) {
+          result = candidate;
+          break;
+        }
+      }
+    } else if (isOrder()) {
+      result = getElementMatch().getAttributeValueDifference(getFeature(), null);
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IValuePresence#getValue()
+   */
+  public Object getValue() {
+    return _value;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IElementRelativeDifference#isUnrelatedToContainmentTree()
+   */
+  public boolean isUnrelatedToContainmentTree() {
+    return true;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#mergeOrder()
+   */
+  @Override
+  protected void mergeOrder() {
+    // Not supported at this time, as in the EMF-based implementation
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#mergeValueAddition()
+   */
+  @Override
+  protected void mergeValueAddition() {
+    IEditableModelScope absenceScope = getAbsenceScope();
+    EObject holderMatch = getMatchOfHolder();
+    assert holderMatch != null; // Must be guaranteed by diff dependency handling
+    absenceScope.add(holderMatch, getFeature(), getValue());
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#mergeValueRemoval()
+   */
+  @Override
+  protected void mergeValueRemoval() {
+    IEditableModelScope presenceScope = getPresenceScope();
+    presenceScope.remove(getHolder(), getFeature(), getValue());
+  }
+  
+}
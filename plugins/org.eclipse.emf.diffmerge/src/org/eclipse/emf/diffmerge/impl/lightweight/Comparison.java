@@ -0,0 +1,554 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.lightweight;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.diffmerge.Messages;
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.api.IDiffPolicy;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.IMatchPolicy;
+import org.eclipse.emf.diffmerge.api.IMergePolicy;
+import org.eclipse.emf.diffmerge.api.IMergeSelector;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IAttributeValuePresence;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IDifferenceIndex;
+import org.eclipse.emf.diffmerge.api.diff.IElementPresence;
+import org.eclipse.emf.diffmerge.api.diff.IMergeableDifference;
+import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
+import org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope;
+import org.eclipse.emf.diffmerge.diffdata.EComparison;
+import org.eclipse.emf.diffmerge.diffdata.EMapping;
+import org.eclipse.emf.diffmerge.diffdata.EMatch;
+import org.eclipse.emf.diffmerge.diffdata.EMergeableDifference;
+import org.eclipse.emf.diffmerge.diffdata.impl.EComparisonImpl;
+import org.eclipse.emf.diffmerge.impl.helpers.ComparisonBehavior;
+import org.eclipse.emf.diffmerge.impl.helpers.ComparisonStatistics;
+import org.eclipse.emf.diffmerge.impl.helpers.DiffOperation;
+import org.eclipse.emf.diffmerge.impl.helpers.MatchOperation;
+import org.eclipse.emf.diffmerge.impl.helpers.MergeOperation;
+import org.eclipse.emf.diffmerge.impl.policies.DefaultDiffPolicy;
+import org.eclipse.emf.diffmerge.impl.policies.DefaultMatchPolicy;
+import org.eclipse.emf.diffmerge.impl.policies.DefaultMergePolicy;
+import org.eclipse.emf.diffmerge.util.IExpensiveOperation;
+import org.eclipse.emf.diffmerge.util.structures.FArrayList;
+import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+
+/**
+ * A plain Java, memory-efficient implementation of IComparison.
+ * It behaves like the EMF-based implementation but avoids the overhead of
+ * EObjects, notifications and containment lists on matches and differences.
+ * Use toEComparison() when the comparison must be persisted or edited as a model.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EComparisonImpl
+ */
+public class Comparison implements IComparison.Editable, IComparison.Indexed {
+  
+  /** The non-null model scope playing the TARGET role */
+  private final IEditableModelScope _targetScope;
+  
+  /** The non-null model scope playing the REFERENCE role */
+  private final IEditableModelScope _referenceScope;
+  
+  /** The optional model scope playing the ANCESTOR role */
+  private final IEditableModelScope _ancestorScope;
+  
+  /** The non-null mapping between the model scopes */
+  private final Mapping _mapping;
+
+  /** The non-null, incrementally maintained statistics on the contents of this comparison */
+  private final ComparisonStatistics _statistics;
+  
+  /** The non-null sets of duplicate match IDs per role */
+  private final Map<Role, Set<Object>> _duplicateIDs;
+  
+  /** The last match policy used, if any */
+  private IMatchPolicy _lastMatchPolicy;
+  
+  /** The last diff policy used, if any */
+  private IDiffPolicy _lastDiffPolicy;
+  
+  /** The last merge policy used, if any */
+  private IMergePolicy _lastMergePolicy;
+  
+  
+  /**
+   * Simplified constructor
+   * @param targetScope_p the non-null model scope playing the TARGET comparison role
+   * @param referenceScope_p the non-null model scope playing the REFERENCE comparison role
+   */
+  public Comparison(IEditableModelScope targetScope_p,
+      IEditableModelScope referenceScope_p) {
+    this(targetScope_p, referenceScope_p, null);
+  }
+  
+  /**
+   * Full constructor
+   * @param targetScope_p the non-null model scope playing the TARGET comparison role
+   * @param referenceScope_p the non-null model scope playing the REFERENCE comparison role
+   * @param ancestorScope_p the optional model scope playing the ANCESTOR comparison role
+   */
+  public Comparison(IEditableModelScope targetScope_p,
+      IEditableModelScope referenceScope_p, IEditableModelScope ancestorScope_p) {
+    _targetScope = targetScope_p;
+    _referenceScope = referenceScope_p;
+    _ancestorScope = ancestorScope_p;
+    _statistics = new ComparisonStatistics(this);
+    _mapping = new Mapping(this);
+    Map<Role, Set<Object>> duplicateIDs = new HashMap<Role, Set<Object>>(3);
+    duplicateIDs.put(Role.ANCESTOR, new HashSet<Object>(0));
+    duplicateIDs.put(Role.TARGET, new HashSet<Object>(0));
+    duplicateIDs.put(Role.REFERENCE, new HashSet<Object>(0));
+    _duplicateIDs = Collections.unmodifiableMap(duplicateIDs);
+    _lastMatchPolicy = null;
+    _lastDiffPolicy = null;
+    _lastMergePolicy = null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#clear()
+   */
+  public void clear() {
+    _mapping.clear();
+    _statistics.invalidate();
+    for (Set<Object> duplicates : _duplicateIDs.values())
+      duplicates.clear();
+    _lastMatchPolicy = null;
+    _lastDiffPolicy = null;
+    _lastMergePolicy = null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#compute(org.eclipse.emf.diffmerge.api.IMatchPolicy, org.eclipse.emf.diffmerge.api.IDiffPolicy, org.eclipse.emf.diffmerge.api.IMergePolicy, org.eclipse.core.runtime.IProgressMonitor)
+   */
+  public IStatus compute(IMatchPolicy matchPolicy_p, IDiffPolicy diffPolicy_p,
+      IMergePolicy mergePolicy_p, IProgressMonitor monitor_p) {
+    // Monitor
+    IProgressMonitor nonNullMonitor = monitor_p != null? monitor_p:
+      new NullProgressMonitor();
+    SubMonitor subMonitor = SubMonitor.convert(nonNullMonitor,
+        Messages.Comparison_Task_Main, 2);
+    // Policies
+    _lastMatchPolicy = matchPolicy_p != null? matchPolicy_p:
+      new DefaultMatchPolicy();
+    _lastDiffPolicy = diffPolicy_p != null? diffPolicy_p:
+      new DefaultDiffPolicy();
+    _lastMergePolicy = mergePolicy_p != null? mergePolicy_p:
+      new DefaultMergePolicy();
+    // Behavior
+    IStatus result = computeMatch(getLastMatchPolicy(), subMonitor.newChild(1));
+    if (result.isOK()) {
+      result = computeDiff(getLastDiffPolicy(), getLastMergePolicy(),
+          subMonitor.newChild(1));
+    }
+    return result;
+  }
+  
+  /**
+   * Execute the Diff phase of the comparison process
+   * @param diffPolicy_p a non-null diff policy
+   * @param mergePolicy_p a non-null merge policy
+   * @param monitor_p a non-null progress monitor
+   * @return a non-null status of the execution
+   */
+  protected IStatus computeDiff(IDiffPolicy diffPolicy_p,
+      IMergePolicy mergePolicy_p, IProgressMonitor monitor_p) {
+    IExpensiveOperation diffOperation = getDiffOperation(diffPolicy_p,
+        mergePolicy_p);
+    return diffOperation.run(monitor_p);
+  }
+  
+  /**
+   * Execute the Match phase of the comparison process
+   * @param matchPolicy_p a non-null match policy
+   * @param monitor_p a non-null progress monitor
+   * @return a non-null status of the execution
+   */
+  protected IStatus computeMatch(IMatchPolicy matchPolicy_p,
+      IProgressMonitor monitor_p) {
+    IExpensiveOperation matchOperation = getMatchOperation(matchPolicy_p,
+        _duplicateIDs);
+    return matchOperation.run(monitor_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getAllContents(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public TreeIterator<IMatch> getAllContents(Role role_p) {
+    return ComparisonBehavior.getAllContents(this, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getContainerOf(org.eclipse.emf.diffmerge.api.IMatch, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public IMatch getContainerOf(IMatch match_p, Role role_p) {
+    return ComparisonBehavior.getContainerOf(this, match_p, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getContents()
+   */
+  public List<IMatch> getContents() {
+    return ComparisonBehavior.getContents(this);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getContents(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public List<IMatch> getContents(Role role_p) {
+    return ComparisonBehavior.getContents(this, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getContentsOf(org.eclipse.emf.diffmerge.api.IMatch)
+   */
+  public List<IMatch> getContentsOf(IMatch match_p) {
+    return ComparisonBehavior.getContentsOf(this, match_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getContentsOf(org.eclipse.emf.diffmerge.api.IMatch, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public List<IMatch> getContentsOf(IMatch match_p, Role role_p) {
+    return ComparisonBehavior.getContentsOf(this, match_p, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison.Indexed#getDifferenceIndex()
+   */
+  public IDifferenceIndex getDifferenceIndex() {
+    return _statistics.getDifferenceIndex();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getDifferences(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public List<IDifference> getDifferences(Role role_p) {
+    return ComparisonBehavior.getDifferences(this, role_p);
+  }
+  
+  /**
+   * Return an operation for executing the Diff phase
+   * @param diffPolicy_p an optional diff policy
+   * @param mergePolicy_p an optional merge policy
+   * @return a non-null operation which is configured to be applied on this comparison
+   */
+  protected IExpensiveOperation getDiffOperation(IDiffPolicy diffPolicy_p,
+      IMergePolicy mergePolicy_p) {
+    return new DiffOperation(this, diffPolicy_p, mergePolicy_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getDuplicateMatchIDs(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public Collection<Object> getDuplicateMatchIDs(Role role_p) {
+    return _duplicateIDs.get(role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getLastDiffPolicy()
+   */
+  public IDiffPolicy getLastDiffPolicy() {
+    return _lastDiffPolicy;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getLastMatchPolicy()
+   */
+  public IMatchPolicy getLastMatchPolicy() {
+    return _lastMatchPolicy;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getLastMergePolicy()
+   */
+  public IMergePolicy getLastMergePolicy() {
+    return _lastMergePolicy;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison.Editable#getMapping()
+   */
+  public Mapping getMapping() {
+    return _mapping;
+  }
+  
+  /**
+   * Return an operation for executing the Match phase
+   * @param policy_p an optional match policy
+   * @param duplicateIDs_p an optional map that associates each role with an empty, modifiable set of duplicate match IDs
+   * @return a non-null operation which is configured to be applied on this comparison
+   */
+  protected IExpensiveOperation getMatchOperation(IMatchPolicy policy_p,
+      Map<Role, Set<Object>> duplicateIDs_p) {
+    return new MatchOperation(this, policy_p, duplicateIDs_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getNbDifferences()
+   */
+  public int getNbDifferences() {
+    return _statistics.getNbDifferences();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getNbNoContainmentDifferences()
+   */
+  public int getNbNoContainmentDifferences() {
+    return _statistics.getNbNoContainmentDifferences();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#getRemainingDifferences()
+   */
+  public Collection<IDifference> getRemainingDifferences() {
+    return _statistics.getRemainingDifferences();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison.Editable#getScope(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public IEditableModelScope getScope(Role role_p) {
+    IEditableModelScope result;
+    switch (role_p) {
+    case TARGET:
+      result = _targetScope;
+      break;
+    case REFERENCE:
+      result = _referenceScope;
+      break;
+    default:
+      result = _ancestorScope;
+    }
+    return result;
+  }
+  
+  /**
+   * Return the incrementally maintained statistics on the contents of this comparison
+   * @return a non-null object
+   */
+  public ComparisonStatistics getStatistics() {
+    return _statistics;
+  }
+
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#hasRemainingDifferences()
+   */
+  public boolean hasRemainingDifferences() {
+    return _statistics.hasRemainingDifferences();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#isConsistent()
+   */
+  public boolean isConsistent() {
+    return ComparisonBehavior.isConsistent(this);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#isThreeWay()
+   */
+  public boolean isThreeWay() {
+    return _ancestorScope != null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#merge(org.eclipse.emf.diffmerge.api.Role, boolean, org.eclipse.core.runtime.IProgressMonitor)
+   */
+  public Collection<IDifference> merge(Role destination_p,
+      boolean updateReferences_p, IProgressMonitor monitor_p) {
+    MergeOperation operation = new MergeOperation(this, destination_p,
+        updateReferences_p);
+    operation.run(monitor_p);
+    return operation.getOutput();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#merge(java.util.Collection, org.eclipse.emf.diffmerge.api.Role, boolean, org.eclipse.core.runtime.IProgressMonitor)
+   */
+  public Collection<IDifference> merge(
+      Collection<? extends IDifference> differences_p, Role destination_p,
+      boolean updateReferences_p, IProgressMonitor monitor_p) {
+    MergeOperation operation = new MergeOperation(this, differences_p,
+        destination_p, updateReferences_p);
+    operation.run(monitor_p);
+    return operation.getOutput();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison#merge(org.eclipse.emf.diffmerge.api.IMergeSelector, boolean, org.eclipse.core.runtime.IProgressMonitor)
+   */
+  public Collection<IDifference> merge(IMergeSelector merger_p,
+      boolean updateReferences_p, IProgressMonitor monitor_p) {
+    MergeOperation operation = new MergeOperation(this, merger_p,
+        updateReferences_p);
+    operation.run(monitor_p);
+    return operation.getOutput();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison.Editable#newAttributeValuePresence(org.eclipse.emf.diffmerge.api.IMatch, org.eclipse.emf.ecore.EAttribute, java.lang.Object, org.eclipse.emf.diffmerge.api.Role, boolean)
+   */
+  public IAttributeValuePresence newAttributeValuePresence(
+      IMatch elementMatch_p, EAttribute attribute_p, Object value_p,
+      Role presenceRole_p, boolean isOrder_p) {
+    return new AttributeValuePresence(this, (Match)elementMatch_p,
+        attribute_p, value_p, presenceRole_p, isOrder_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison.Editable#newElementPresence(org.eclipse.emf.diffmerge.api.IMatch, org.eclipse.emf.diffmerge.api.IMatch)
+   */
+  public IElementPresence newElementPresence(IMatch elementMatch_p,
+      IMatch ownerMatch_p) {
+    return new ElementPresence(this, (Match)elementMatch_p, (Match)ownerMatch_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison.Editable#newMatch(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject)
+   */
+  public Match newMatch(EObject targetElement_p, EObject referenceElement_p,
+      EObject ancestorElement_p) {
+    return new Match(_mapping, targetElement_p, referenceElement_p,
+        ancestorElement_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IComparison.Editable#newReferenceValuePresence(org.eclipse.emf.diffmerge.api.IMatch, org.eclipse.emf.ecore.EReference, org.eclipse.emf.diffmerge.api.IMatch, org.eclipse.emf.diffmerge.api.Role, boolean)
+   */
+  public IReferenceValuePresence newReferenceValuePresence(
+      IMatch elementMatch_p, EReference reference_p, IMatch valueMatch_p,
+      Role presenceRole_p, boolean isOrder_p) {
+    return new ReferenceValuePresence(this, (Match)elementMatch_p,
+        reference_p, (Match)valueMatch_p, presenceRole_p, isOrder_p);
+  }
+  
+  /**
+   * Return an EMF-based copy of this comparison which shares its model scopes.
+   * Matches, differences, dependencies and merge states are copied, so the result
+   * can be persisted or edited as a model. This comparison is left unchanged.
+   * @return a non-null comparison
+   */
+  public EComparison toEComparison() {
+    EComparisonImpl result = new EComparisonImpl(
+        _targetScope, _referenceScope, _ancestorScope);
+    result.setLastMatchPolicy(_lastMatchPolicy);
+    result.setLastDiffPolicy(_lastDiffPolicy);
+    result.setLastMergePolicy(_lastMergePolicy);
+    for (Role role : Role.values())
+      result.getDuplicateMatchIDs(role).addAll(getDuplicateMatchIDs(role));
+    EMapping eMapping = result.getMapping();
+    MatchOperation.setBulkConstruction(eMapping, true);
+    // Matches
+    Map<IMatch, EMatch> matchCopies = new IdentityHashMap<IMatch, EMatch>();
+    List<EMatch> eMatches = new FArrayList<EMatch>(
+        _mapping.size(), IEqualityTester.BY_REFERENCE);
+    for (Match match : _mapping.getModifiableContents()) {
+      EMatch eMatch = result.newMatch(match.get(Role.TARGET),
+          match.get(Role.REFERENCE), match.get(Role.ANCESTOR));
+      eMatch.setMatchID(match.getMatchID());
+      matchCopies.put(match, eMatch);
+      eMatches.add(eMatch);
+    }
+    ((InternalEList<EMatch>)eMapping.getModifiableContents()).addAllUnique(eMatches);
+    for (Role role : new Role[] {Role.TARGET, Role.REFERENCE}) {
+      Collection<IMatch> eCompleted = eMapping.getModifiableCompletedMatches(role);
+      for (IMatch completed : _mapping.getCompletedMatches(role))
+        eCompleted.add(matchCopies.get(completed));
+    }
+    // Differences, in the order of their matches so that the copy is deterministic
+    Map<IDifference, IMergeableDifference.Editable> differenceCopies =
+      new IdentityHashMap<IDifference, IMergeableDifference.Editable>();
+    List<AbstractMergeableDifference> originals =
+      new FArrayList<AbstractMergeableDifference>(IEqualityTester.BY_REFERENCE);
+    for (Match match : _mapping.getModifiableContents()) {
+      for (IDifference difference : match.getRelatedDifferences()) {
+        IDifference copy;
+        if (difference instanceof IElementPresence) {
+          IElementPresence presence = (IElementPresence)difference;
+          copy = result.newElementPresence(matchCopies.get(match),
+              matchCopies.get(presence.getOwnerMatch()));
+        } else if (difference instanceof IAttributeValuePresence) {
+          IAttributeValuePresence presence = (IAttributeValuePresence)difference;
+          copy = result.newAttributeValuePresence(matchCopies.get(match),
+              presence.getFeature(), presence.getValue(),
+              presence.getPresenceRole(), presence.isOrder());
+        } else {
+          IReferenceValuePresence presence = (IReferenceValuePresence)difference;
+          copy = result.newReferenceValuePresence(matchCopies.get(match),
+              presence.getFeature(), matchCopies.get(presence.getValue()),
+              presence.getPresenceRole(), presence.isOrder());
+        }
+        differenceCopies.put(difference, (IMergeableDifference.Editable)copy);
+        originals.add((AbstractMergeableDifference)difference);
+      }
+    }
+    // Difference states and dependencies
+    for (AbstractMergeableDifference original : originals) {
+      IMergeableDifference.Editable copy = differenceCopies.get(original);
+      if (!original.isAlignedWithAncestor())
+        copy.markAsDifferentFromAncestor();
+      if (original.isConflicting())
+        copy.markAsConflicting();
+      // Differences which no longer belong to a match, e.g., because their match
+      // has been completed by a merge, are not copied
+      for (Role role : new Role[] {Role.TARGET, Role.REFERENCE}) {
+        for (IMergeableDifference required : original.getDirectRequiresDependencies(role)) {
+          IMergeableDifference requiredCopy = differenceCopies.get(required);
+          if (requiredCopy != null)
+            copy.markRequires(requiredCopy, role);
+        }
+        for (IMergeableDifference implied : original.getDirectImpliesDependencies(role)) {
+          IMergeableDifference impliedCopy = differenceCopies.get(implied);
+          if (impliedCopy != null)
+            copy.markImplies(impliedCopy, role);
+        }
+      }
+      if (original.isMerged()) {
+        copy.markAsMergedIn(original.getMergeDestination());
+      } else {
+        for (Role role : new Role[] {Role.TARGET, Role.REFERENCE}) {
+          if (!original.isPossibleMergeDestination(role))
+            ((EMergeableDifference)copy).getPossibleMergeDestinations().remove(role);
+        }
+      }
+    }
+    MatchOperation.setBulkConstruction(eMapping, false);
+    if (_mapping.isCrossReferenced(Role.TARGET))
+      eMapping.crossReference(Role.TARGET);
+    if (_mapping.isCrossReferenced(Role.REFERENCE))
+      eMapping.crossReference(Role.REFERENCE);
+    return result;
+  }
+  
+}
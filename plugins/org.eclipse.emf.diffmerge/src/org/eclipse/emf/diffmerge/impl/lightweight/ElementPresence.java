@@ -0,0 +1,90 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.lightweight;
+
+import org.eclipse.emf.diffmerge.api.diff.IElementPresence;
+import org.eclipse.emf.diffmerge.impl.helpers.DifferenceMerger;
+import org.eclipse.emf.ecore.EObject;
+
+
+/**
+ * A plain Java, memory-efficient implementation of IElementPresence.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EElementPresenceImpl
+ */
+public class ElementPresence extends AbstractElementRelativePresence
+implements IElementPresence {
+  
+  /** The match for the owner of the element, if any */
+  private final Match _ownerMatch;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison to which this difference belongs
+   * @param elementMatch_p the non-null partial match for the element
+   * @param ownerMatch_p the potentially null match for the owner of the element
+   */
+  public ElementPresence(Comparison comparison_p, Match elementMatch_p,
+      Match ownerMatch_p) {
+    super(comparison_p, elementMatch_p, elementMatch_p.getUncoveredRole().opposite());
+    _ownerMatch = ownerMatch_p;
+    elementMatch_p.addRelatedDifference(this);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IElementPresence#getElement()
+   */
+  public EObject getElement() {
+    return getElementMatch().get(getPresenceRole());
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IElementPresence#getOwnerMatch()
+   */
+  public Match getOwnerMatch() {
+    return _ownerMatch;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IElementPresence#isRoot()
+   */
+  public boolean isRoot() {
+    return getOwnerMatch() == null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IElementRelativeDifference#isUnrelatedToContainmentTree()
+   */
+  public boolean isUnrelatedToContainmentTree() {
+    return false;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractElementRelativePresence#mergeAddition()
+   */
+  @Override
+  protected void mergeAddition() {
+    DifferenceMerger.mergeElementAddition(this);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractElementRelativePresence#mergeRemoval()
+   */
+  @Override
+  protected void mergeRemoval() {
+    DifferenceMerger.mergeElementRemoval(this);
+  }
+  
+}
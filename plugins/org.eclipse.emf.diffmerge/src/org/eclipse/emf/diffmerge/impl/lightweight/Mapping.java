@@ -0,0 +1,541 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.lightweight;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.EMap;
+import org.eclipse.emf.diffmerge.api.IMapping;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
+import org.eclipse.emf.diffmerge.impl.helpers.BidirectionalComparisonCopier;
+import org.eclipse.emf.diffmerge.impl.helpers.ComparisonStatistics;
+import org.eclipse.emf.diffmerge.impl.helpers.MappingBehavior;
+import org.eclipse.emf.diffmerge.impl.helpers.MappingCrossReferencer;
+import org.eclipse.emf.diffmerge.util.structures.ExcludingCollection;
+import org.eclipse.emf.diffmerge.util.structures.FArrayList;
+import org.eclipse.emf.diffmerge.util.structures.FHashSet;
+import org.eclipse.emf.diffmerge.util.structures.IEqualityTester;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature.Setting;
+
+
+/**
+ * A plain Java, memory-efficient implementation of IMapping.
+ * Matches are indexed by element and role from their creation on.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EMappingImpl
+ */
+public class Mapping implements IMapping.BulkConstructible,
+    IMapping.CrossReferencing {
+  
+  /** The non-null comparison which owns this mapping */
+  private final Comparison _comparison;
+  
+  /** The non-null, modifiable list of matches */
+  private final List<Match> _contents;
+  
+  /** The non-null identity-based indexes from model elements to matches, per role */
+  private final Map<Role, Map<EObject, Match>> _matchIndexes;
+  
+  /** The non-null formerly partial matches which have been completed in the TARGET role */
+  private final List<IMatch> _targetCompletedMatches;
+  
+  /** The non-null formerly partial matches which have been completed in the REFERENCE role */
+  private final List<IMatch> _referenceCompletedMatches;
+  
+  /** The non-null copier for completing partial matches */
+  private final BidirectionalComparisonCopier _copier;
+  
+  /** A non-null, stateful but frozen cross-referencer for the TARGET scope */
+  private final MappingCrossReferencer _targetCrossReferencer;
+  
+  /** A non-null, stateful but frozen cross-referencer for the REFERENCE scope */
+  private final MappingCrossReferencer _referenceCrossReferencer;
+  
+  /** The matches removed during the current bulk construction phase,
+      or null if no such phase is in progress */
+  private Set<IMatch> _removedMatches;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison which owns this mapping
+   */
+  public Mapping(Comparison comparison_p) {
+    _comparison = comparison_p;
+    _contents = new FArrayList<Match>(IEqualityTester.BY_REFERENCE);
+    // All indexes exist from the start so that concurrent lookups are safe
+    _matchIndexes = new EnumMap<Role, Map<EObject, Match>>(Role.class);
+    for (Role role : Role.values())
+      _matchIndexes.put(role, new IdentityHashMap<EObject, Match>());
+    _targetCompletedMatches = new IndexedMatchList();
+    _referenceCompletedMatches = new IndexedMatchList();
+    _copier = new BidirectionalComparisonCopier();
+    _targetCrossReferencer = new MappingCrossReferencer(this, Role.TARGET);
+    _referenceCrossReferencer = new MappingCrossReferencer(this, Role.REFERENCE);
+    _removedMatches = null;
+  }
+  
+  /**
+   * Add the given new match to this mapping
+   * @param match_p a non-null match which does not belong to this mapping
+   */
+  protected void addMatch(Match match_p) {
+    _contents.add(match_p);
+    index(match_p);
+    _comparison.getStatistics().matchAdded(match_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.Editable#clear()
+   */
+  public void clear() {
+    if (_removedMatches != null)
+      _removedMatches.clear();
+    _contents.clear();
+    for (Map<EObject, Match> index : _matchIndexes.values())
+      index.clear();
+    _targetCompletedMatches.clear();
+    _referenceCompletedMatches.clear();
+    _targetCrossReferencer.clear();
+    _referenceCrossReferencer.clear();
+    _comparison.getStatistics().invalidate();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.Editable#completeMatch(org.eclipse.emf.diffmerge.api.IMatch)
+   */
+  public EObject completeMatch(IMatch partialMatch_p) {
+    return _copier.completeMatch(this, partialMatch_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.Editable#completeReferences(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public void completeReferences(Role role_p) {
+    _copier.completeReferences(this, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#covers(org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public boolean covers(EObject element_p, Role role_p) {
+    return getMatchFor(element_p, role_p) != null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.Editable#crossReference(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public void crossReference(Role role_p) {
+    MappingCrossReferencer referencer = getCrossReferencer(role_p);
+    if (referencer != null)
+      referencer.crossReference();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#getComparison()
+   */
+  public Comparison getComparison() {
+    return _comparison;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#getCompletedMatches(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public Collection<IMatch> getCompletedMatches(Role destinationRole_p) {
+    return Collections.unmodifiableCollection(
+        getModifiableCompletedMatches(destinationRole_p));
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#getContents()
+   */
+  public Collection<IMatch> getContents() {
+    if (_removedMatches != null && !_removedMatches.isEmpty())
+      return new ExcludingCollection<IMatch>(_contents, _removedMatches);
+    return Collections.<IMatch>unmodifiableCollection(_contents);
+  }
+  
+  /**
+   * Return the cross-referencer for the given role, if any
+   * @param role_p a potentially null role
+   * @return a cross-referencer which is non-null if the role is TARGET or REFERENCE
+   */
+  private MappingCrossReferencer getCrossReferencer(Role role_p) {
+    MappingCrossReferencer result = null;
+    if (role_p == Role.TARGET)
+      result = _targetCrossReferencer;
+    else if (role_p == Role.REFERENCE)
+      result = _referenceCrossReferencer;
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#getCrossReferences(org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public Collection<Setting> getCrossReferences(EObject element_p, Role role_p) {
+    Collection<Setting> result = null;
+    MappingCrossReferencer referencer = getCrossReferencer(role_p);
+    if (referencer != null)
+      result = referencer.get(element_p);
+    if (result == null)
+      result = Collections.emptyList();
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#getMatchFor(org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public Match getMatchFor(EObject element_p, Role role_p) {
+    Match result = null;
+    if (element_p != null && role_p != null)
+      result = _matchIndexes.get(role_p).get(element_p);
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.Editable#getModifiableCompletedMatches(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public Collection<IMatch> getModifiableCompletedMatches(Role destinationRole_p) {
+    return Role.TARGET == destinationRole_p? _targetCompletedMatches:
+      _referenceCompletedMatches;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.Editable#getModifiableContents()
+   */
+  public List<Match> getModifiableContents() {
+    return _contents;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#getNbFullMatches()
+   */
+  public int getNbFullMatches() {
+    return _comparison.getStatistics().getNbFullMatches();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#getNbPartialMatches(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public int getNbPartialMatches(Role covered_p) {
+    return _comparison.getStatistics().getNbPartialMatches(covered_p);
+  }
+  
+  /**
+   * Register the given match in the indexes for all the roles it covers
+   * @param match_p a non-null match
+   */
+  protected void index(Match match_p) {
+    for (Role role : Role.values()) {
+      EObject element = match_p.get(role);
+      if (element != null)
+        _matchIndexes.get(role).put(element, match_p);
+    }
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.BulkConstructible#isBulkConstruction()
+   */
+  public boolean isBulkConstruction() {
+    return _removedMatches != null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#isCompleteFor(org.eclipse.emf.diffmerge.api.scopes.IModelScope, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public boolean isCompleteFor(IModelScope scope_p, Role role_p) {
+    return MappingBehavior.isCompleteFor(this, scope_p, role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.CrossReferencing#isCrossReferenced(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public boolean isCrossReferenced(Role role_p) {
+    MappingCrossReferencer referencer = getCrossReferencer(role_p);
+    return referencer != null && referencer.isCrossReferenced();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#isEmpty()
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.Editable#map(org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public IMatch.Editable map(EObject element_p, Role role_p) {
+    assert element_p != null && role_p != null;
+    IMatch previous = getMatchFor(element_p, role_p);
+    // Enforce consistency by removing previous match if any
+    if (previous != null)
+      removeMatch(previous);
+    Match result = getComparison().newMatch(
+        Role.TARGET == role_p? element_p: null,
+        Role.REFERENCE == role_p? element_p: null,
+        Role.ANCESTOR == role_p? element_p: null);
+    addMatch(result);
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.Editable#mapIncrementally(org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.Role, org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public boolean mapIncrementally(EObject element1_p, Role role1_p,
+      EObject element2_p, Role role2_p) {
+    assert role1_p != null && role2_p != null && role1_p != role2_p;
+    Match newMatch = null;
+    boolean result = false;
+    Role role3 = Role.otherThan(role1_p, role2_p);
+    EObject element3 = null;
+    // Checking existing match in role1_p
+    if (element1_p != null) {
+      newMatch = getMatchFor(element1_p, role1_p);
+      if (newMatch != null) {
+        element3 = newMatch.get(role3);
+        EObject foundElement2 = newMatch.get(role2_p);
+        result = foundElement2 != null && foundElement2 != element2_p;
+      }
+    }
+    // Checking existing match in role2_p
+    if (element2_p != null) {
+      Match found = getMatchFor(element2_p, role2_p);
+      if (found != null) {
+        EObject foundElement1 = found.get(role1_p);
+        result = result || foundElement1 != null && foundElement1 != element1_p;
+        EObject inRole3 = found.get(role3);
+        if (inRole3 != null)
+          element3 = inRole3;
+        // Match found for role2_p which is different from that of role1_p
+        if (newMatch != null && newMatch != found)
+          removeMatch(found);
+        else
+          newMatch = found;
+      }
+    }
+    Map<Role, EObject> elements = new EnumMap<Role, EObject>(Role.class);
+    elements.put(role1_p, element1_p);
+    elements.put(role2_p, element2_p);
+    elements.put(role3, element3);
+    if (newMatch == null) {
+      newMatch = getComparison().newMatch(elements.get(Role.TARGET),
+          elements.get(Role.REFERENCE), elements.get(Role.ANCESTOR));
+      addMatch(newMatch);
+    } else {
+      ComparisonStatistics statistics = _comparison.getStatistics();
+      statistics.matchRemoved(newMatch);
+      unindex(newMatch);
+      newMatch.reset(elements.get(Role.TARGET),
+          elements.get(Role.REFERENCE), elements.get(Role.ANCESTOR));
+      index(newMatch);
+      statistics.matchAdded(newMatch);
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#maps(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject)
+   */
+  public boolean maps(EObject target_p, EObject reference_p) {
+    return maps(target_p, Role.TARGET, reference_p, Role.REFERENCE);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#maps(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject)
+   */
+  public boolean maps(EObject target_p, EObject reference_p, EObject ancestor_p) {
+    return MappingBehavior.maps(this, target_p, reference_p, ancestor_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#maps(org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.Role, org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public boolean maps(EObject element1_p, Role role1_p, EObject element2_p,
+      Role role2_p) {
+    return MappingBehavior.maps(this, element1_p, role1_p, element2_p, role2_p);
+  }
+  
+  /**
+   * Remove the given match from this mapping
+   * @param match_p a non-null match which belongs to this mapping
+   */
+  protected void removeMatch(IMatch match_p) {
+    _comparison.getStatistics().matchRemoved(match_p);
+    unindex(match_p);
+    if (_removedMatches != null)
+      _removedMatches.add(match_p);
+    else
+      _contents.remove(match_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping.BulkConstructible#setBulkConstruction(boolean)
+   */
+  public void setBulkConstruction(boolean bulk_p) {
+    if (bulk_p && _removedMatches == null) {
+      _removedMatches = new FHashSet<IMatch>(IEqualityTester.BY_REFERENCE);
+    } else if (!bulk_p && _removedMatches != null) {
+      if (!_removedMatches.isEmpty()) {
+        // Compact the contents in a single pass
+        int kept = 0;
+        for (int i = 0; i < _contents.size(); i++) {
+          Match match = _contents.get(i);
+          if (!_removedMatches.contains(match)) {
+            if (kept < i)
+              _contents.set(kept, match);
+            kept++;
+          }
+        }
+        _contents.subList(kept, _contents.size()).clear();
+      }
+      _removedMatches = null;
+    }
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#size()
+   */
+  public int size() {
+    int result = _contents.size();
+    if (_removedMatches != null)
+      result -= _removedMatches.size();
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#size(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public int size(Role role_p) {
+    return _comparison.getStatistics().getNbMatches(role_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMapping#toMap(org.eclipse.emf.diffmerge.api.Role, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public EMap<EObject, EObject> toMap(Role keyRole_p, Role valueRole_p) {
+    return MappingBehavior.toMap(this, keyRole_p, valueRole_p);
+  }
+  
+  /**
+   * Unregister the given match from the indexes for all the roles it covers
+   * @param match_p a non-null match
+   */
+  protected void unindex(IMatch match_p) {
+    for (Role role : Role.values()) {
+      EObject element = match_p.get(role);
+      if (element != null) {
+        Map<EObject, Match> index = _matchIndexes.get(role);
+        if (index.get(element) == match_p)
+          index.remove(element);
+      }
+    }
+  }
+  
+  
+  /**
+   * A list of distinct matches which is backed by an identity-based set,
+   * so that checking whether it contains a given match takes constant time.
+   */
+  protected static class IndexedMatchList extends FArrayList<IMatch> {
+  
+    /** The serial version ID */
+    private static final long serialVersionUID = 1L;
+  
+    /** The non-null set of the members of this list */
+    private final Set<IMatch> _members;
+  
+    /**
+     * Constructor
+     */
+    public IndexedMatchList() {
+      super(IEqualityTester.BY_REFERENCE);
+      _members = new FHashSet<IMatch>(IEqualityTester.BY_REFERENCE);
+    }
+  
+    /**
+     * @see org.eclipse.emf.diffmerge.util.structures.FArrayList#contains(java.lang.Object)
+     */
+    @Override
+    public boolean contains(Object object_p) {
+      return _members.contains(object_p);
+    }
+  
+    /**
+     * @see org.eclipse.emf.common.util.BasicEList#didAdd(int, java.lang.Object)
+     */
+    @Override
+    protected void didAdd(int index_p, IMatch newObject_p) {
+      super.didAdd(index_p, newObject_p);
+      _members.add(newObject_p);
+    }
+  
+    /**
+     * @see org.eclipse.emf.common.util.BasicEList#didClear(int, java.lang.Object[])
+     */
+    @Override
+    protected void didClear(int size_p, Object[] oldObjects_p) {
+      super.didClear(size_p, oldObjects_p);
+      _members.clear();
+    }
+  
+    /**
+     * @see org.eclipse.emf.common.util.BasicEList#didRemove(int, java.lang.Object)
+     */
+    @Override
+    protected void didRemove(int index_p, IMatch oldObject_p) {
+      super.didRemove(index_p, oldObject_p);
+      _members.remove(oldObject_p);
+    }
+  
+    /**
+     * @see org.eclipse.emf.common.util.BasicEList#didSet(int, java.lang.Object, java.lang.Object)
+     */
+    @Override
+    protected void didSet(int index_p, IMatch newObject_p, IMatch oldObject_p) {
+      super.didSet(index_p, newObject_p, oldObject_p);
+      _members.remove(oldObject_p);
+      _members.add(newObject_p);
+    }
+  
+    /**
+     * @see org.eclipse.emf.common.util.AbstractEList#isUnique()
+     */
+    @Override
+    protected boolean isUnique() {
+      return true;
+    }
+  
+    /**
+     * @see org.eclipse.emf.common.util.BasicEList#setData(int, java.lang.Object[])
+     */
+    @Override
+    public void setData(int size_p, Object[] data_p) {
+      super.setData(size_p, data_p);
+      _members.clear();
+      for (int i = 0; i < size; i++)
+        _members.add((IMatch)data[i]);
+    }
+  }
+  
+}
@@ -0,0 +1,485 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.lightweight;
+
+import static org.eclipse.emf.diffmerge.api.Role.ANCESTOR;
+import static org.eclipse.emf.diffmerge.api.Role.REFERENCE;
+import static org.eclipse.emf.diffmerge.api.Role.TARGET;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.IPureMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IAttributeValuePresence;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IElementPresence;
+import org.eclipse.emf.diffmerge.api.diff.IElementRelativeDifference;
+import org.eclipse.emf.diffmerge.api.diff.IPresenceDifference;
+import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
+import org.eclipse.emf.diffmerge.api.diff.IValuePresence;
+import org.eclipse.emf.diffmerge.util.structures.CompactNestedMap;
+import org.eclipse.emf.diffmerge.util.structures.FArrayList;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+
+
+/**
+ * A plain Java, memory-efficient implementation of IMatch.
+ * Differences are indexed from their creation on, and the structures which hold
+ * them are only allocated when the match has differences.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EMatchImpl
+ */
+public class Match implements IMatch.Editable {
+  
+  /** A constant key representing order in the TARGET side in (feature, value presence) maps */
+  protected static final Object ORDER_KEY_TARGET = new Object();
+  
+  /** A constant key representing order in the REFERENCE side in (feature, value presence) maps */
+  protected static final Object ORDER_KEY_REFERENCE = new Object();
+  
+  /** The non-null mapping which owns this match */
+  private final Mapping _mapping;
+  
+  /** The optional element on the TARGET side */
+  private EObject _target;
+  
+  /** The optional element on the REFERENCE side */
+  private EObject _reference;
+  
+  /** The optional element on the ANCESTOR side */
+  private EObject _ancestor;
+  
+  /** The optional match ID */
+  private Object _matchID;
+  
+  /** The differences whose origin is this match (initially null) */
+  private List<IDifference> _relatedDifferences;
+  
+  /** The index: attribute -> value -> difference (initially null) */
+  private CompactNestedMap<EAttribute, Object, IAttributeValuePresence> _attributeIndex;
+  
+  /** The index: reference -> value match -> difference (initially null) */
+  private CompactNestedMap<EReference, Object, IReferenceValuePresence> _referenceIndex;
+  
+  /** The difference corresponding to the presence of an unmatched element, if any */
+  private IElementPresence _elementPresenceDifference;
+  
+  /** The difference concerned with the ownership of the element on the TARGET side, if any */
+  private IReferenceValuePresence _targetOwnershipDifference;
+  
+  /** The difference concerned with the ownership of the element on the REFERENCE side, if any */
+  private IReferenceValuePresence _referenceOwnershipDifference;
+  
+  
+  /**
+   * Constructor
+   * Precondition: at least one of the given elements is not null.
+   * @param mapping_p the non-null mapping which owns this match
+   * @param target_p the optional element on the TARGET side
+   * @param reference_p the optional element on the REFERENCE side
+   * @param ancestor_p the optional element on the ANCESTOR side
+   */
+  public Match(Mapping mapping_p, EObject target_p, EObject reference_p,
+      EObject ancestor_p) {
+    _mapping = mapping_p;
+    _target = target_p;
+    _reference = reference_p;
+    _ancestor = ancestor_p;
+    _matchID = null;
+    _relatedDifferences = null;
+    _attributeIndex = null;
+    _referenceIndex = null;
+    _elementPresenceDifference = null;
+    _targetOwnershipDifference = null;
+    _referenceOwnershipDifference = null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch.Editable#addOwnershipDifference(org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence)
+   */
+  public void addOwnershipDifference(IReferenceValuePresence presence_p) {
+    if (Role.TARGET == presence_p.getPresenceRole())
+      _targetOwnershipDifference = presence_p;
+    else
+      _referenceOwnershipDifference = presence_p;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch.Editable#addRelatedDifference(org.eclipse.emf.diffmerge.api.diff.IDifference)
+   */
+  public void addRelatedDifference(IDifference difference_p) {
+    assert difference_p != null;
+    if (_relatedDifferences == null)
+      _relatedDifferences = new FArrayList<IDifference>(2, null);
+    // Fresh differences need no uniqueness check in a bulk construction phase
+    boolean added = _mapping.isBulkConstruction() ||
+      !_relatedDifferences.contains(difference_p);
+    if (added) {
+      _relatedDifferences.add(difference_p);
+      if (difference_p instanceof IElementPresence) {
+        _elementPresenceDifference = (IElementPresence)difference_p;
+      } else if (difference_p instanceof IReferenceValuePresence) {
+        IReferenceValuePresence presence = (IReferenceValuePresence)difference_p;
+        if (_referenceIndex == null)
+          _referenceIndex = new CompactNestedMap<EReference, Object, IReferenceValuePresence>();
+        _referenceIndex.put(presence.getFeature(), getKey(presence), presence);
+        // If relevant, register implicit universal container reference on value
+        if (presence.getFeature().isContainment() && !presence.isOrder())
+          ((IMatch.Editable)presence.getValue()).addOwnershipDifference(presence);
+      } else if (difference_p instanceof IAttributeValuePresence) {
+        IAttributeValuePresence presence = (IAttributeValuePresence)difference_p;
+        if (_attributeIndex == null)
+          _attributeIndex = new CompactNestedMap<EAttribute, Object, IAttributeValuePresence>();
+        _attributeIndex.put(presence.getFeature(), getKey(presence), presence);
+      }
+      _mapping.getComparison().getStatistics().differenceAdded(this, difference_p);
+    }
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#coversRole(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public boolean coversRole(Role role_p) {
+    return get(role_p) != null;
+  }
+  
+  /**
+   * @see java.lang.Object#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object object_p) {
+    boolean result = false;
+    if (object_p instanceof IPureMatch) {
+      IPureMatch peer = (IPureMatch)object_p;
+      result = // Equality by reference of elements
+        peer == this || peer.get(TARGET) == get(TARGET) &&
+        peer.get(REFERENCE) == get(REFERENCE) && peer.get(ANCESTOR) == get(ANCESTOR);
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#get(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public EObject get(Role role_p) {
+    EObject result;
+    switch (role_p) {
+    case TARGET:
+      result = _target;
+      break;
+    case REFERENCE:
+      result = _reference;
+      break;
+    default:
+      result = _ancestor;
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getAllDifferences()
+   */
+  public List<IDifference> getAllDifferences() {
+    List<IDifference> result = new FArrayList<IDifference>(getRelatedDifferences(), null);
+    if (_targetOwnershipDifference != null)
+      result.add(_targetOwnershipDifference);
+    if (_referenceOwnershipDifference != null)
+      result.add(_referenceOwnershipDifference);
+    return Collections.unmodifiableList(result);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getAttributeDifferences(org.eclipse.emf.ecore.EAttribute)
+   */
+  public Collection<IAttributeValuePresence> getAttributeDifferences(
+      EAttribute attribute_p) {
+    Collection<IAttributeValuePresence> result;
+    if (_attributeIndex != null)
+      result = _attributeIndex.values(attribute_p);
+    else
+      result = Collections.emptyList();
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getAttributeValueDifference(org.eclipse.emf.ecore.EAttribute, java.lang.Object)
+   */
+  public IAttributeValuePresence getAttributeValueDifference(
+      EAttribute attribute_p, Object value_p) {
+    IAttributeValuePresence result = null;
+    if (_attributeIndex != null)
+      result = _attributeIndex.get(attribute_p, value_p);
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getAttributesWithDifferences()
+   */
+  public Collection<EAttribute> getAttributesWithDifferences() {
+    Collection<EAttribute> result;
+    if (_attributeIndex != null)
+      result = _attributeIndex.keySet();
+    else
+      result = Collections.emptySet();
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getElementPresenceDifference()
+   */
+  public IElementPresence getElementPresenceDifference() {
+    return _elementPresenceDifference;
+  }
+  
+  /**
+   * Return the key under which the given value presence is indexed
+   * @param presence_p a non-null value presence
+   * @return a potentially null object
+   */
+  protected Object getKey(IValuePresence presence_p) {
+    Object result;
+    if (presence_p.isOrder())
+      result = presence_p.getPresenceRole() == Role.TARGET? ORDER_KEY_TARGET:
+        ORDER_KEY_REFERENCE;
+    else
+      result = presence_p.getValue();
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#getMapping()
+   */
+  public Mapping getMapping() {
+    return _mapping;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#getMatchID()
+   */
+  public Object getMatchID() {
+    return _matchID;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getNbNoContainmentDifferences()
+   */
+  public int getNbNoContainmentDifferences() {
+    int result = 0;
+    if (!isPartial())
+      for (IDifference difference : getRelatedDifferences())
+        if (difference instanceof IElementRelativeDifference &&
+            ((IElementRelativeDifference)difference).isUnrelatedToContainmentTree() &&
+            !difference.isMerged())
+          result++;
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getOrderDifference(org.eclipse.emf.ecore.EStructuralFeature, org.eclipse.emf.diffmerge.api.Role)
+   */
+  public IValuePresence getOrderDifference(EStructuralFeature feature_p, Role role_p) {
+    IValuePresence result = null;
+    Object key = role_p == Role.TARGET? ORDER_KEY_TARGET: ORDER_KEY_REFERENCE;
+    if (feature_p instanceof EAttribute) {
+      if (_attributeIndex != null)
+        result = _attributeIndex.get(feature_p, key);
+    } else if (feature_p instanceof EReference) {
+      if (_referenceIndex != null)
+        result = _referenceIndex.get(feature_p, key);
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getOwnershipDifference(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public IReferenceValuePresence getOwnershipDifference(Role role_p) {
+    return Role.TARGET == role_p? _targetOwnershipDifference:
+      _referenceOwnershipDifference;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getPresenceDifferencesIn(org.eclipse.emf.diffmerge.api.Role)
+   */
+  public Collection<IDifference> getPresenceDifferencesIn(Role role_p) {
+    Collection<IDifference> result = new ArrayList<IDifference>();
+    for (IDifference difference : getRelatedDifferences()) {
+      if (difference instanceof IPresenceDifference &&
+          ((IPresenceDifference)difference).getPresenceRole() == role_p)
+        result.add(difference);
+    }
+    return Collections.unmodifiableCollection(result);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getReferenceDifferences(org.eclipse.emf.ecore.EReference)
+   */
+  public Collection<IReferenceValuePresence> getReferenceDifferences(
+      EReference reference_p) {
+    Collection<IReferenceValuePresence> result;
+    if (_referenceIndex != null)
+      result = _referenceIndex.values(reference_p);
+    else
+      result = Collections.emptyList();
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getReferenceValueDifference(org.eclipse.emf.ecore.EReference, org.eclipse.emf.diffmerge.api.IMatch)
+   */
+  public IReferenceValuePresence getReferenceValueDifference(
+      EReference reference_p, IMatch valueMatch_p) {
+    IReferenceValuePresence result = null;
+    if (_referenceIndex != null)
+      result = _referenceIndex.get(reference_p, valueMatch_p);
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getReferencesWithDifferences()
+   */
+  public Collection<EReference> getReferencesWithDifferences() {
+    Collection<EReference> result;
+    if (_referenceIndex != null)
+      result = _referenceIndex.keySet();
+    else
+      result = Collections.emptySet();
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#getRelatedDifferences()
+   */
+  public List<IDifference> getRelatedDifferences() {
+    List<IDifference> result;
+    if (_relatedDifferences == null)
+      result = Collections.emptyList();
+    else
+      result = Collections.unmodifiableList(_relatedDifferences);
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#getUncoveredRole()
+   */
+  public Role getUncoveredRole() {
+    Role result = null;
+    if (_target == null)
+      result = TARGET;
+    else if (_reference == null)
+      result = REFERENCE;
+    return result;
+  }
+  
+  /**
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    int result = 0;
+    if (_target != null)
+      result += _target.hashCode();
+    if (_reference != null)
+      result += _reference.hashCode();
+    if (_ancestor != null)
+      result += _ancestor.hashCode();
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#involves(org.eclipse.emf.ecore.resource.Resource)
+   */
+  public boolean involves(Resource resource_p) {
+    return _target != null && _target.eResource() == resource_p ||
+      _reference != null && _reference.eResource() == resource_p ||
+      _ancestor != null && _ancestor.eResource() == resource_p;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatch#isAMove()
+   */
+  public boolean isAMove() {
+    return !isPartial() &&
+      (_targetOwnershipDifference != null || _referenceOwnershipDifference != null);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#isPartial()
+   */
+  public boolean isPartial() {
+    return getUncoveredRole() != null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#maps(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject)
+   */
+  public boolean maps(EObject target_p, EObject reference_p) {
+    return _target == target_p && _reference == reference_p;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch#maps(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject)
+   */
+  public boolean maps(EObject target_p, EObject reference_p, EObject ancestor_p) {
+    return maps(target_p, reference_p) && _ancestor == ancestor_p;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch.Editable#reset(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EObject)
+   */
+  public void reset(EObject target_p, EObject reference_p, EObject ancestor_p) {
+    assert target_p != null || reference_p != null || ancestor_p != null;
+    _target = target_p;
+    _reference = reference_p;
+    _ancestor = ancestor_p;
+    _relatedDifferences = null;
+    _attributeIndex = null;
+    _referenceIndex = null;
+    _elementPresenceDifference = null;
+    _targetOwnershipDifference = null;
+    _referenceOwnershipDifference = null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch.Editable#set(org.eclipse.emf.diffmerge.api.Role, org.eclipse.emf.ecore.EObject)
+   */
+  public void set(Role role_p, EObject element_p) {
+    switch (role_p) {
+    case TARGET:
+      _target = element_p;
+      break;
+    case REFERENCE:
+      _reference = element_p;
+      break;
+    default:
+      _ancestor = element_p;
+    }
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IPureMatch.Editable#setMatchID(java.lang.Object)
+   */
+  public void setMatchID(Object matchID_p) {
+    _matchID = matchID_p;
+  }
+  
+}
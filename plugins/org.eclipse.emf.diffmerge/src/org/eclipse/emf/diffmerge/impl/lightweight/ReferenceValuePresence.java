@@ -0,0 +1,158 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.impl.lightweight;
+
+import java.util.Collection;
+
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
+import org.eclipse.emf.diffmerge.impl.helpers.DifferenceMerger;
+import org.eclipse.emf.ecore.EReference;
+
+
+/**
+ * A plain Java, memory-efficient implementation of IReferenceValuePresence.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EReferenceValuePresenceImpl
+ */
+public class ReferenceValuePresence extends AbstractValuePresence
+implements IReferenceValuePresence {
+  
+  /** The non-null match for the value being held */
+  private final Match _value;
+  
+  
+  /**
+   * Constructor
+   * @param comparison_p the non-null comparison to which this difference belongs
+   * @param elementMatch_p the non-null match for the element holding the value
+   * @param reference_p the non-null reference holding the value
+   * @param value_p the non-null match for the value held
+   * @param presenceRole_p the role in which the value is held: TARGET or REFERENCE
+   * @param isOrder_p whether the value presence is solely due to ordering
+   */
+  public ReferenceValuePresence(Comparison comparison_p, Match elementMatch_p,
+      EReference reference_p, Match value_p, Role presenceRole_p, boolean isOrder_p) {
+    super(comparison_p, elementMatch_p, reference_p, presenceRole_p, isOrder_p);
+    _value = value_p;
+    elementMatch_p.addRelatedDifference(this);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#getFeature()
+   */
+  @Override
+  public EReference getFeature() {
+    return (EReference)super.getFeature();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence#getOpposite()
+   */
+  public IReferenceValuePresence getOpposite() {
+    IReferenceValuePresence result = null;
+    EReference opposite = getFeature().getEOpposite();
+    if (opposite != null)
+      result = getValue().getReferenceValueDifference(opposite, getElementMatch());
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#getSymmetrical()
+   */
+  @Override
+  public IReferenceValuePresence getSymmetrical() {
+    IReferenceValuePresence result = null;
+    if (!getFeature().isMany()) {
+      Collection<IReferenceValuePresence> candidates =
+        getElementMatch().getReferenceDifferences(getFeature());
+      assert candidates.size() <= 2; // Because !isMany()
+      for (IReferenceValuePresence candidate : candidates) {
+        if (candidate.getPresenceRole() == getAbsenceRole()) {
+          result = candidate;
+          break;
+        }
+      }
+    } else if (isOrder()) {
+      result = (IReferenceValuePresence)getElementMatch().getOrderDifference(
+          getFeature(), getAbsenceRole());
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence#getSymmetricalOwnership()
+   */
+  public IReferenceValuePresence getSymmetricalOwnership() {
+    return getValue().getOwnershipDifference(getAbsenceRole());
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence#getValue()
+   */
+  public Match getValue() {
+    return _value;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence#isOppositeOf(org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence)
+   */
+  public boolean isOppositeOf(IReferenceValuePresence peer_p) {
+    return getPresenceRole() == peer_p.getPresenceRole() &&
+      getFeature().getEOpposite() == peer_p.getFeature() &&
+      getElementMatch() == peer_p.getValue() &&
+      getValue() == peer_p.getElementMatch();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence#isSymmetricalOwnershipTo(org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence)
+   */
+  public boolean isSymmetricalOwnershipTo(IReferenceValuePresence peer_p) {
+    return getAbsenceRole() == peer_p.getPresenceRole() &&
+      getFeature().isContainment() && peer_p.getFeature().isContainment() &&
+      getValue() == peer_p.getValue();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.diff.IElementRelativeDifference#isUnrelatedToContainmentTree()
+   */
+  public boolean isUnrelatedToContainmentTree() {
+    return !getFeature().isContainment() || isOrder();
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#mergeOrder()
+   */
+  @Override
+  protected void mergeOrder() {
+    DifferenceMerger.mergeReferenceOrder(this);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#mergeValueAddition()
+   */
+  @Override
+  protected void mergeValueAddition() {
+    DifferenceMerger.mergeReferenceValueAddition(this);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.lightweight.AbstractValuePresence#mergeValueRemoval()
+   */
+  @Override
+  protected final void mergeValueRemoval() {
+    DifferenceMerger.mergeReferenceValueRemoval(this);
+  }
+  
+}
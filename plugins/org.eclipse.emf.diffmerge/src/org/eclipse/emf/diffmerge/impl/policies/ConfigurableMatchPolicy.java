@@ -17,13 +17,19 @@ package org.eclipse.emf.diffmerge.impl.policies;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.emf.diffmerge.api.scopes.IFeaturedModelScope;
 import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
 import org.eclipse.emf.diffmerge.util.structures.comparable.ComparableLinkedList;
+import org.eclipse.emf.diffmerge.util.structures.comparable.ComparablePath;
 import org.eclipse.emf.diffmerge.util.structures.comparable.ComparableTreeMap;
 import org.eclipse.emf.diffmerge.util.structures.comparable.IComparableStructure;
 import org.eclipse.emf.ecore.EClass;
@@ -36,6 +42,9 @@ import org.eclipse.emf.ecore.resource.Resource;
 /**
  * A multi-criteria match policy that supports the computation of the match ID
  * of certain elements according to the match ID of other elements.
+ * During a matching phase, match IDs are cached so that the match ID of every
+ * element is computed once, and container-relative match IDs are paths which
+ * share the match ID of the container.
  * @author Olivier Constant
  */
 public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
@@ -54,6 +63,17 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
   /** The set of match criteria to use */
   private final Set<MatchCriterionKind> _selectedCriteria;
   
+  /** The match IDs computed during the current matching phase per scope,
+      or null if no matching phase is in progress */
+  private ConcurrentHashMap<IModelScope, Map<EObject, Object>> _matchIDCache;
+  
+  /** The numbers of siblings per type computed during the current matching phase,
+      per scope and per group of siblings, or null if no matching phase is in progress */
+  private ConcurrentHashMap<IModelScope, Map<List<Object>, Map<EClass, Integer>>> _typeCountCache;
+  
+  /** A placeholder for null match IDs in the cache */
+  private static final Object NO_MATCH_ID = new Object();
+  
   
   /**
    * Constructor
@@ -115,9 +135,10 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
       EObject container = getContainer(element_p, scope_p, inScopeOnly_p);
       if (container != null) {
         IComparableStructure<?> containerID = getMatchID(container, scope_p);
-        if (containerID instanceof ComparableLinkedList<?>) {
-          result = containerID;
-          ((ComparableLinkedList<String>)result).add(idSuffix_p);
+        if (containerID instanceof ComparableLinkedList<?> ||
+            containerID instanceof ComparablePath<?>) {
+          // The match ID of the container is shared, not modified
+          result = ComparablePath.extend((List<String>)containerID, idSuffix_p);
         } else if (containerID != null) {
           IComparableStructure<String> typeID = getEncapsulateOrNull(
               element_p.getClass().getName());
@@ -130,9 +151,7 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
         }
       } else {
         // Root
-        ComparableLinkedList<String> id = new ComparableLinkedList<String>();
-        id.add(idSuffix_p);
-        result = id;
+        result = new ComparablePath<String>(idSuffix_p);
       }
     }
     return result;
@@ -213,6 +232,16 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
     return result;
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.policies.DefaultMatchPolicy#getMatchIDComparator()
+   */
+  @Override
+  public Comparator<Object> getMatchIDComparator() {
+    // Match IDs are comparable structures whose list-based parts cache their
+    // hash code: hash-based registries are cheaper than structural comparisons
+    return null;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.impl.policies.DefaultMatchPolicy#getMatchID(org.eclipse.emf.ecore.EObject, org.eclipse.emf.diffmerge.api.scopes.IModelScope)
    */
@@ -220,6 +249,12 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
   public IComparableStructure<?> getMatchID(EObject element_p, IModelScope scope_p) {
     // Intended return types: IComparableStructure<String>,
     //  ComparableTreeMap<String, IComparableStructure<String>>
+    Map<EObject, Object> cache = getMatchIDCache(scope_p);
+    if (cache != null) {
+      Object cached = cache.get(element_p);
+      if (cached != null)
+        return cached == NO_MATCH_ID? null: (IComparableStructure<?>)cached;
+    }
     IComparableStructure<?> result = null;
     Iterator<MatchCriterionKind> it = getApplicableCriteria().iterator();
     while (result == null && it.hasNext()) {
@@ -227,6 +262,29 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
       if (useMatchCriterion(criterion))
         result = getMatchID(element_p, scope_p, criterion);
     }
+    if (cache != null)
+      cache.put(element_p, result == null? NO_MATCH_ID: result);
+    return result;
+  }
+  
+  /**
+   * Return the cache of match IDs for the given scope during the current
+   * matching phase, if any
+   * @param scope_p a non-null scope
+   * @return a modifiable, thread-safe map, or null if no matching phase is in progress
+   */
+  protected Map<EObject, Object> getMatchIDCache(IModelScope scope_p) {
+    ConcurrentHashMap<IModelScope, Map<EObject, Object>> caches = _matchIDCache;
+    Map<EObject, Object> result = null;
+    if (caches != null) {
+      result = caches.get(scope_p);
+      if (result == null) {
+        ConcurrentHashMap<EObject, Object> newCache = new ConcurrentHashMap<EObject, Object>();
+        result = caches.putIfAbsent(scope_p, newCache);
+        if (result == null)
+          result = newCache;
+      }
+    }
     return result;
   }
   
@@ -305,6 +363,56 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
     return Collections.unmodifiableCollection(result);
   }
   
+  /**
+   * Return the number of occurrences of each type among the siblings of the given
+   * element, including the element itself. During a matching phase, the result is
+   * computed once per group of siblings.
+   * @see ConfigurableMatchPolicy#getSiblings(EObject, IModelScope, boolean)
+   * @param element_p a non-null element
+   * @param scope_p a non-null scope to which the element belongs
+   * @param inScopeOnly_p whether only the scope may be considered, or the underlying EMF model
+   * @return a non-null, unmodifiable map
+   */
+  protected Map<EClass, Integer> getSiblingTypeCounts(EObject element_p,
+      IModelScope scope_p, boolean inScopeOnly_p) {
+    Map<List<Object>, Map<EClass, Integer>> cache = null;
+    List<Object> key = null;
+    ConcurrentHashMap<IModelScope, Map<List<Object>, Map<EClass, Integer>>> caches =
+      _typeCountCache;
+    if (caches != null) {
+      cache = caches.get(scope_p);
+      if (cache == null) {
+        Map<List<Object>, Map<EClass, Integer>> newCache =
+          new ConcurrentHashMap<List<Object>, Map<EClass, Integer>>();
+        cache = caches.putIfAbsent(scope_p, newCache);
+        if (cache == null)
+          cache = newCache;
+      }
+      // A group of siblings is identified by its owner and the containment
+      EReference containment = getContainment(element_p, scope_p, inScopeOnly_p);
+      Object owner;
+      if (containment == null) {
+        Resource resource = element_p.eResource();
+        owner = inScopeOnly_p || resource == null? scope_p: resource;
+      } else {
+        owner = getContainer(element_p, scope_p, inScopeOnly_p);
+      }
+      key = Arrays.asList(owner, containment);
+      Map<EClass, Integer> cached = cache.get(key);
+      if (cached != null)
+        return cached;
+    }
+    Map<EClass, Integer> counts = new HashMap<EClass, Integer>();
+    for (EObject sibling : getSiblings(element_p, scope_p, inScopeOnly_p)) {
+      Integer count = counts.get(sibling.eClass());
+      counts.put(sibling.eClass(), Integer.valueOf(count == null? 1: count.intValue() + 1));
+    }
+    Map<EClass, Integer> result = Collections.unmodifiableMap(counts);
+    if (cache != null)
+      cache.put(key, result);
+    return result;
+  }
+  
   /**
    * Return a match ID suffix for the given element which is relative to the match ID
    * of the container and made specific thanks to the structurally unique position of the
@@ -319,10 +427,8 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
     EReference containment = getContainment(element_p, scope_p, inScopeOnly_p);
     if (isDiscriminatingContainment(element_p, containment)) {
       boolean validated = containment != null && !containment.isMany();
-      if (!validated) {
-        Collection<EObject> siblings = getSiblings(element_p, scope_p, inScopeOnly_p);
-        validated = isUniqueOfItsTypeAmong(element_p, siblings);
-      }
+      if (!validated)
+        validated = isUniqueOfItsTypeAmongSiblings(element_p, scope_p, inScopeOnly_p);
       if (validated)
         result = getValidatedStructureMatchIDPart(element_p, scope_p, containment);
     }
@@ -366,6 +472,28 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
     return true;
   }
   
+  /**
+   * Return whether the given element is the only one of its type among its siblings.
+   * During a matching phase, this check is performed in constant time thanks to
+   * getSiblingTypeCounts(EObject, IModelScope, boolean).
+   * @param element_p a non-null element
+   * @param scope_p a non-null scope to which the element belongs
+   * @param inScopeOnly_p whether only the scope may be considered, or the underlying EMF model
+   */
+  protected boolean isUniqueOfItsTypeAmongSiblings(EObject element_p,
+      IModelScope scope_p, boolean inScopeOnly_p) {
+    boolean result;
+    if (_typeCountCache != null) {
+      Integer count = getSiblingTypeCounts(element_p, scope_p, inScopeOnly_p).get(
+          element_p.eClass());
+      result = count != null && count.intValue() == 1;
+    } else {
+      Collection<EObject> siblings = getSiblings(element_p, scope_p, inScopeOnly_p);
+      result = isUniqueOfItsTypeAmong(element_p, siblings);
+    }
+    return result;
+  }
+  
   /**
    * Return whether the given element is the only one of its type among those in the given collection
    * @param element_p a non-null element
@@ -389,6 +517,27 @@ public class ConfigurableMatchPolicy extends DefaultMatchPolicy {
     return result;
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.policies.DefaultMatchPolicy#matchingEnded()
+   */
+  @Override
+  public void matchingEnded() {
+    super.matchingEnded();
+    _matchIDCache = null;
+    _typeCountCache = null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.policies.DefaultMatchPolicy#matchingStarted()
+   */
+  @Override
+  public void matchingStarted() {
+    super.matchingStarted();
+    _matchIDCache = new ConcurrentHashMap<IModelScope, Map<EObject, Object>>();
+    _typeCountCache =
+      new ConcurrentHashMap<IModelScope, Map<List<Object>, Map<EClass, Integer>>>();
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.impl.policies.DefaultMatchPolicy#rememberMatchIDs()
    */
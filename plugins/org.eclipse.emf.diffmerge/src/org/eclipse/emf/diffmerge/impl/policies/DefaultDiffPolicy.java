@@ -27,7 +27,18 @@ import org.eclipse.emf.ecore.util.FeatureMapUtil;
  * @see IDiffPolicy
  * @author Olivier Constant
  */
-public class DefaultDiffPolicy implements IDiffPolicy {
+public class DefaultDiffPolicy implements IDiffPolicy.Hashing, IDiffPolicy.Concurrent {
+  
+  /** The number of threads for detecting differences */
+  private int _threadCount;
+  
+  
+  /**
+   * Constructor
+   */
+  public DefaultDiffPolicy() {
+    _threadCount = 1;
+  }
   
   /**
    * @see org.eclipse.emf.diffmerge.api.IDiffPolicy#considerEqual(Object, Object, EAttribute)
@@ -68,4 +79,33 @@ public class DefaultDiffPolicy implements IDiffPolicy {
     return true;
   }
   
+  /**
+   * The value itself is returned since considerEqual(Object, Object, EAttribute)
+   * relies on Object#equals(Object). Subclasses which redefine considerEqual must
+   * redefine this operation accordingly, for example by returning null for the
+   * values whose equality is redefined.
+   * @see org.eclipse.emf.diffmerge.api.IDiffPolicy.Hashing#getEqualityKey(Object, EAttribute)
+   */
+  public Object getEqualityKey(Object value_p, EAttribute attribute_p) {
+    return value_p;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IDiffPolicy.Concurrent#getThreadCount()
+   */
+  public int getThreadCount() {
+    return _threadCount;
+  }
+  
+  /**
+   * Set the number of threads on which differences must be detected.
+   * Redefinitions of the operations of this policy must be thread-safe
+   * if a number greater than 1 is set.
+   * @param threadCount_p a positive int, 1 meaning sequential detection
+   * @see org.eclipse.emf.diffmerge.api.IDiffPolicy.Concurrent#getThreadCount()
+   */
+  public void setThreadCount(int threadCount_p) {
+    _threadCount = Math.max(1, threadCount_p);
+  }
+  
 }
@@ -20,6 +20,7 @@ import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.diffmerge.api.IMatchPolicy;
 import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
 import org.eclipse.emf.diffmerge.api.scopes.IPersistentModelScope;
+import org.eclipse.emf.diffmerge.util.IncrementalURIComputer;
 import org.eclipse.emf.diffmerge.util.ModelImplUtil;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.util.EcoreUtil;
@@ -27,9 +28,26 @@ import org.eclipse.emf.ecore.util.EcoreUtil;
 
 /**
  * A default match policy based on unique IDs (intrinsic/extrinsic/URI) of model elements.
+ * During a matching phase, URIs are computed incrementally.
  * @author Olivier Constant
  */
-public class DefaultMatchPolicy implements IMatchPolicy {
+public class DefaultMatchPolicy implements IMatchPolicy.Caching,
+    IMatchPolicy.Concurrent {
+  
+  /** The computer of URIs during the current matching phase, or null if no matching
+      phase is in progress */
+  private IncrementalURIComputer _uriComputer;
+  
+  /** The number of threads for computing match IDs */
+  private int _threadCount;
+  
+  
+  /**
+   * Constructor
+   */
+  public DefaultMatchPolicy() {
+    _threadCount = 1;
+  }
   
   /**
    * Return the URI of the given element as a Comparable (String).
@@ -38,7 +56,8 @@ public class DefaultMatchPolicy implements IMatchPolicy {
    */
   protected String getComparableURI(EObject element_p) {
     String result = null;
-    URI uri = EcoreUtil.getURI(element_p);
+    IncrementalURIComputer computer = _uriComputer;
+    URI uri = computer != null? computer.getURI(element_p): EcoreUtil.getURI(element_p);
     if (uri != null)
       result = uri.toString();
     return result;
@@ -94,6 +113,13 @@ public class DefaultMatchPolicy implements IMatchPolicy {
     return NATURAL_ORDER_COMPARATOR;
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatchPolicy.Concurrent#getThreadCount()
+   */
+  public int getThreadCount() {
+    return _threadCount;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.api.IMatchPolicy#keepMatchIDs()
    */
@@ -101,4 +127,29 @@ public class DefaultMatchPolicy implements IMatchPolicy {
     return false;
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatchPolicy.Caching#matchingEnded()
+   */
+  public void matchingEnded() {
+    _uriComputer = null;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.api.IMatchPolicy.Caching#matchingStarted()
+   */
+  public void matchingStarted() {
+    _uriComputer = new IncrementalURIComputer();
+  }
+  
+  /**
+   * Set the number of threads on which match IDs must be computed.
+   * Redefinitions of getMatchID(EObject, IModelScope) must be thread-safe
+   * if a number greater than 1 is set.
+   * @param threadCount_p a positive int, 1 meaning sequential computation
+   * @see org.eclipse.emf.diffmerge.api.IMatchPolicy.Concurrent#getThreadCount()
+   */
+  public void setThreadCount(int threadCount_p) {
+    _threadCount = Math.max(1, threadCount_p);
+  }
+  
 }
@@ -22,7 +22,9 @@ import org.eclipse.emf.diffmerge.api.IMatch;
 import org.eclipse.emf.diffmerge.api.IMergePolicy;
 import org.eclipse.emf.diffmerge.api.Role;
 import org.eclipse.emf.diffmerge.api.scopes.IFeaturedModelScope;
+import org.eclipse.emf.diffmerge.impl.helpers.DifferenceMerger;
 import org.eclipse.emf.diffmerge.util.ModelImplUtil;
+import org.eclipse.emf.diffmerge.util.OrderingUtil;
 import org.eclipse.emf.diffmerge.util.structures.FHashSet;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
@@ -99,10 +101,15 @@ public class DefaultMergePolicy implements IMergePolicy {
   }
   
   /**
+   * The value is placed as it would be by the minimal sequence of moves which puts
+   * the destination values in the order of the source values: priority is given to
+   * the closest successor which is not out of order.
+   * @see OrderingUtil#getInsertionPosition(int[], int)
    * @see org.eclipse.emf.diffmerge.api.IMergePolicy#getDesiredValuePosition(org.eclipse.emf.diffmerge.api.IComparison, org.eclipse.emf.diffmerge.api.Role, org.eclipse.emf.diffmerge.api.IMatch, org.eclipse.emf.ecore.EReference, org.eclipse.emf.diffmerge.api.IMatch)
    */
   public int getDesiredValuePosition(IComparison comparison_p, Role destination_p,
       IMatch source_p, EReference reference_p, IMatch value_p) {
+    int result = -1;
     EObject sourceHolder = source_p.get(destination_p.opposite());
     EObject destinationHolder = source_p.get(destination_p);
     EObject sourceValue = value_p.get(destination_p.opposite());
@@ -111,23 +118,14 @@ public class DefaultMergePolicy implements IMergePolicy {
           sourceHolder, reference_p);
       List<EObject> destinationValues = comparison_p.getScope(destination_p).get(
           destinationHolder, reference_p);
-      // Priority is given to the successor
-      int start = sourceValues.indexOf(sourceValue) + 1;
-      for (int i = start; i < sourceValues.size(); i++) {
-        EObject nextSourceElement = sourceValues.get(i);
-        IMatch nextMatch = comparison_p.getMapping().getMatchFor(
-            nextSourceElement, destination_p.opposite());
-        if (nextMatch != null) { // Should be true since scope must be complete
-          EObject nextDestinationElement = nextMatch.get(destination_p);
-          if (nextDestinationElement != null) {
-            int nextDestinationIndex = destinationValues.indexOf(nextDestinationElement);
-            if (nextDestinationIndex >= 0)
-              return nextDestinationIndex;
-          }
-        }
+      int index = sourceValues.indexOf(sourceValue);
+      if (index >= 0) {
+        int[] positions = DifferenceMerger.getPositions(comparison_p.getMapping(),
+            sourceValues, destinationValues, destination_p);
+        result = OrderingUtil.getInsertionPosition(positions, index);
       }
     }
-    return -1;
+    return result;
   }
   
   /**
@@ -14,18 +14,28 @@
  */
 package org.eclipse.emf.diffmerge.impl.scopes;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
 import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.common.util.WrappedException;
 import org.eclipse.emf.diffmerge.api.scopes.IFragmentedModelScope;
 import org.eclipse.emf.diffmerge.api.scopes.IPersistentModelScope;
 import org.eclipse.emf.diffmerge.util.ModelImplUtil;
@@ -33,10 +43,14 @@ import org.eclipse.emf.diffmerge.util.structures.FArrayList;
 import org.eclipse.emf.diffmerge.util.structures.FOrderedSet;
 import org.eclipse.emf.diffmerge.util.structures.HashBinaryRelation;
 import org.eclipse.emf.diffmerge.util.structures.IBinaryRelation;
+import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.resource.URIHandler;
 import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
 import org.eclipse.emf.edit.domain.AdapterFactoryEditingDomain;
 import org.eclipse.emf.edit.domain.EditingDomain;
@@ -61,7 +75,10 @@ import org.eclipse.emf.edit.domain.IEditingDomainProvider;
  * @author Olivier Constant
  */
 public class FragmentedModelScope extends AbstractEditableModelScope
-implements IFragmentedModelScope.Editable {
+implements IFragmentedModelScope.Editable, IFragmentedModelScope.Digesting {
+  
+  /** The name of the algorithm for digests of resource contents */
+  protected static final String DIGEST_ALGORITHM = "SHA-1"; //$NON-NLS-1$
   
   /** Whether the resources should be opened in read-only mode */
   private final boolean _isReadOnly;
@@ -103,6 +120,21 @@ implements IFragmentedModelScope.Editable {
   /** The current state of the scope */
   protected ScopeState _state;
   
+  /** Whether digests of the persistent contents of resources are computed when loaded */
+  private boolean _isDigesting;
+  
+  /** The non-null map from resources to the non-null digests of their persistent
+   *  contents, which are computed when resources are loaded */
+  private final Map<Resource, byte[]> _digests;
+  
+  /** The non-null map from resources which have digests to the adapters which
+   *  drop the digests when the resources change */
+  private final Map<Resource, Adapter> _digestInvalidators;
+  
+  /** The URI handler which digests the persistent contents of resources while
+   *  they are being loaded, non-null iff loading is in progress and digesting */
+  private DigestingURIHandler _digestingHandler;
+  
   
   /**
    * Constructor
@@ -158,6 +190,10 @@ implements IFragmentedModelScope.Editable {
     _initiallyPresentResources = new HashSet<Resource>();
     _initiallyPresentResources.addAll(_resourceSet.getResources());
     _loadedResources = new HashSet<Resource>();
+    _isDigesting = false;
+    _digests = new IdentityHashMap<Resource, byte[]>();
+    _digestInvalidators = new IdentityHashMap<Resource, Adapter>();
+    _digestingHandler = null;
     if (_resourceSet instanceof IEditingDomainProvider)
       _editingDomain = ((IEditingDomainProvider)_resourceSet).getEditingDomain();
   }
@@ -169,17 +205,30 @@ implements IFragmentedModelScope.Editable {
     boolean result = false;
     Resource defaultResource = getResourceForNewRoot(element_p);
     if (defaultResource != null) {
+      notifyModification(element_p);
       defaultResource.getContents().add(element_p);
+      dropDigest(defaultResource);
       result = true;
     }
     return result;
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.scopes.AbstractEditableModelScope#add(EObject, EAttribute, Object)
+   */
+  @Override
+  public boolean add(EObject source_p, EAttribute attribute_p, Object value_p) {
+    notifyModification(source_p);
+    return super.add(source_p, attribute_p, value_p);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.impl.scopes.AbstractModelScope#add(EObject, EReference, EObject)
    */
   @Override
   public boolean add(EObject source_p, EReference reference_p, EObject value_p) {
+    notifyModification(source_p);
+    notifyModification(value_p);
     Resource oldResource = value_p.eResource();
     boolean wasRoot = oldResource != null && oldResource.getContents().contains(value_p);
     Object formerId = getExtrinsicID(value_p);
@@ -217,6 +266,32 @@ implements IFragmentedModelScope.Editable {
     return false;
   }
   
+  /**
+   * Create and return a message digest for the persistent contents of a resource
+   * @return a non-null message digest
+   */
+  protected MessageDigest createMessageDigest() {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new WrappedException(e); // Supported by every Java platform
+    }
+  }
+  
+  /**
+   * Drop the digest of the given resource, if any
+   * @param resource_p a non-null resource
+   */
+  protected void dropDigest(Resource resource_p) {
+    Adapter invalidator;
+    synchronized (_digests) {
+      _digests.remove(resource_p);
+      invalidator = _digestInvalidators.remove(resource_p);
+    }
+    if (invalidator != null)
+      resource_p.eAdapters().remove(invalidator);
+  }
+  
   /**
    * Called as soon as full scope exploration has been done
    */
@@ -225,6 +300,19 @@ implements IFragmentedModelScope.Editable {
     _loadedResources.addAll(_resourceSet.getResources());
     _loadedResources.removeAll(_initiallyPresentResources);
     _initiallyPresentResources.clear();
+    if (_digestingHandler != null) {
+      // Loading is over: keep the digests of the resources loaded by this scope
+      URIConverter converter = _resourceSet.getURIConverter();
+      for (Resource resource : _resources) {
+        if (resource.isLoaded() && !resource.isModified() &&
+            _loadedResources.contains(resource)) {
+          byte[] digest = _digestingHandler.getDigest(converter.normalize(resource.getURI()));
+          if (digest != null)
+            registerDigest(resource, digest);
+        }
+      }
+      uninstallDigestingHandler();
+    }
     // Handling read-only on loaded resources
     if (isReadOnly() && _editingDomain instanceof AdapterFactoryEditingDomain) {
       AdapterFactoryEditingDomain afEditingDomain = (AdapterFactoryEditingDomain)_editingDomain;
@@ -279,6 +367,21 @@ implements IFragmentedModelScope.Editable {
     return new ArrayList<EReference>();
   }
   
+  /**
+   * Digests are only available if this scope is digesting and has been fully explored,
+   * for the resources which have been loaded by this scope and which have not been
+   * modified since.
+   * @see FragmentedModelScope#setDigesting(boolean)
+   * @see org.eclipse.emf.diffmerge.api.scopes.IFragmentedModelScope.Digesting#getDigest(org.eclipse.emf.ecore.resource.Resource)
+   */
+  public byte[] getDigest(Resource resource_p) {
+    if (resource_p.isModified())
+      return null;
+    synchronized (_digests) {
+      return _digests.get(resource_p);
+    }
+  }
+  
   /**
    * @see IPersistentModelScope#getExtrinsicID(EObject)
    */
@@ -380,6 +483,15 @@ implements IFragmentedModelScope.Editable {
     return _state == ScopeState.FULLY_EXPLORED;
   }
   
+  /**
+   * Start digesting the persistent contents of the resources which are loaded
+   * through the URI converter of the resource set
+   */
+  protected void installDigestingHandler() {
+    _digestingHandler = new DigestingURIHandler(_resourceSet.getURIConverter());
+    _resourceSet.getURIConverter().getURIHandlers().add(0, _digestingHandler);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.api.scopes.IFragmentedModelScope#isFullyExplored()
    */
@@ -394,6 +506,14 @@ implements IFragmentedModelScope.Editable {
     return _state != ScopeState.INITIALIZED && _state != ScopeState.UNLOADED;
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.api.scopes.IFragmentedModelScope.Digesting#isDigesting()
+   * @see FragmentedModelScope#setDigesting(boolean)
+   */
+  public boolean isDigesting() {
+    return _isDigesting;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.impl.scopes.AbstractEditableModelScope#isReadOnly()
    */
@@ -412,12 +532,24 @@ implements IFragmentedModelScope.Editable {
     return true;
   }
   
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.scopes.AbstractEditableModelScope#move(EObject, EStructuralFeature, int, int)
+   */
+  @Override
+  public Object move(EObject source_p, EStructuralFeature feature_p, int newPosition_p,
+      int oldPosition_p) {
+    notifyModification(source_p);
+    return super.move(source_p, feature_p, newPosition_p, oldPosition_p);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.api.scopes.IPersistentModelScope#load()
    */
   public boolean load() throws Exception {
     boolean result = false;
     if (_state == ScopeState.INITIALIZED || _state == ScopeState.LOADED) {
+      if (_isDigesting && _digestingHandler == null)
+        installDigestingHandler();
       for (Resource rootResource : _rootResources) {
         rootResource.load(null);
       }
@@ -448,6 +580,23 @@ implements IFragmentedModelScope.Editable {
     }
   }
   
+  /**
+   * Get notified that the resource of the given element is about to be modified
+   * via this scope, so that its digest is dropped if any
+   * @param element_p a non-null element
+   */
+  protected void notifyModification(EObject element_p) {
+    if (_digestingHandler != null || !_digestInvalidators.isEmpty()) {
+      Resource resource = element_p.eResource();
+      if (resource != null) {
+        if (_digestingHandler != null) // Loading is in progress
+          _digestingHandler.dropDigest(
+              _resourceSet.getURIConverter().normalize(resource.getURI()));
+        dropDigest(resource);
+      }
+    }
+  }
+  
   /**
    * Get notified that the given source resource references the given target resource
    * @param source_p a non-null resource
@@ -461,6 +610,62 @@ implements IFragmentedModelScope.Editable {
     }
   }
   
+  /**
+   * Remember the given digest of the given resource until its contents change
+   * @param resource_p a non-null loaded resource
+   * @param digest_p a non-null digest of the persistent contents of the resource
+   */
+  protected void registerDigest(final Resource resource_p, byte[] digest_p) {
+    // Only the resource is adapted: changes to elements are detected via
+    // this scope or the modification status of the resource
+    Adapter invalidator = new AdapterImpl() {
+      /**
+       * @see org.eclipse.emf.common.notify.impl.AdapterImpl#notifyChanged(org.eclipse.emf.common.notify.Notification)
+       */
+      @Override
+      public void notifyChanged(Notification notification_p) {
+        if (!notification_p.isTouch()) {
+          switch (notification_p.getFeatureID(Resource.class)) {
+          case Resource.RESOURCE__CONTENTS:
+          case Resource.RESOURCE__IS_LOADED:
+          case Resource.RESOURCE__URI:
+          case Resource.RESOURCE__IS_MODIFIED:
+            dropDigest(resource_p);
+            break;
+          default:
+            break;
+          }
+        }
+      }
+    };
+    synchronized (_digests) {
+      _digests.put(resource_p, digest_p);
+      _digestInvalidators.put(resource_p, invalidator);
+    }
+    resource_p.eAdapters().add(invalidator);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.scopes.AbstractEditableModelScope#remove(EObject)
+   */
+  @Override
+  public boolean remove(EObject element_p) {
+    notifyModification(element_p);
+    return super.remove(element_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.impl.scopes.AbstractEditableModelScope#removeValue(EObject, EStructuralFeature, Object)
+   */
+  @Override
+  protected boolean removeValue(EObject source_p, EStructuralFeature feature_p,
+      Object value_p) {
+    notifyModification(source_p);
+    if (value_p instanceof EObject)
+      notifyModification((EObject)value_p);
+    return super.removeValue(source_p, feature_p, value_p);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.api.scopes.IPersistentModelScope#save()
    */
@@ -474,19 +679,49 @@ implements IFragmentedModelScope.Editable {
     return true;
   }
   
+  /**
+   * Set whether digests of the persistent contents of resources must be computed
+   * when they are loaded by this scope, that is, by load() for the root resources
+   * and during the first exploration of the scope for the other resources.
+   * Digests are computed from the streams that are parsed, through a URI handler
+   * which is temporarily added to the URI converter of the resource set. They are
+   * available once the scope has been fully explored.
+   * The digest of a resource is dropped as soon as the resource is modified via this
+   * scope, its roots change, it is unloaded or it is marked as modified. Modifications
+   * which are made otherwise must be reported via Resource#setModified(boolean).
+   * This must be set before the scope is loaded.
+   * @see IFragmentedModelScope.Digesting#getDigest(Resource)
+   * @param digesting_p whether digests must be computed
+   */
+  public void setDigesting(boolean digesting_p) {
+    _isDigesting = digesting_p;
+  }
+  
   /**
    * @see IPersistentModelScope#setExtrinsicID(EObject, Object)
    */
   @Override
   public boolean setExtrinsicID(EObject element_p, Object id_p) {
     // Increases visibility
+    notifyModification(element_p);
     return super.setExtrinsicID(element_p, id_p);
   }
   
+  /**
+   * Stop digesting the persistent contents of the resources which are loaded
+   * through the URI converter of the resource set
+   */
+  protected void uninstallDigestingHandler() {
+    _resourceSet.getURIConverter().getURIHandlers().remove(_digestingHandler);
+    _digestingHandler = null;
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.api.scopes.IPersistentModelScope#unload()
    */
   public List<Resource> unload() {
+    if (_digestingHandler != null)
+      uninstallDigestingHandler();
     for (Resource loadedResource : _loadedResources) {
       for (Adapter adapter : new ArrayList<Adapter>(loadedResource.eAdapters())) {
         if (adapter instanceof ECrossReferenceAdapter)
@@ -500,6 +735,12 @@ implements IFragmentedModelScope.Editable {
     _resourceSet.getResources().removeAll(_loadedResources);
     List<Resource> result = new ArrayList<Resource>(_loadedResources);
     _loadedResources.clear();
+    List<Resource> digestedResources;
+    synchronized (_digests) {
+      digestedResources = new ArrayList<Resource>(_digestInvalidators.keySet());
+    }
+    for (Resource digestedResource : digestedResources)
+      dropDigest(digestedResource);
     if (!result.isEmpty())
       _state = ScopeState.UNLOADED;
     return result;
@@ -537,4 +778,135 @@ implements IFragmentedModelScope.Editable {
     }
   }
   
+  
+  /**
+   * A URI handler which digests the persistent contents that are read through
+   * the streams it creates, and which delegates to the other URI handlers
+   * of a URI converter
+   */
+  protected class DigestingURIHandler implements URIHandler {
+    /** The non-null URI converter which owns this handler */
+    private final URIConverter _converter;
+    /** The non-null map from normalized URIs to the digests of their contents */
+    private final Map<URI, byte[]> _uriDigests;
+    /**
+     * Constructor
+     * @param converter_p the non-null URI converter which owns this handler
+     */
+    public DigestingURIHandler(URIConverter converter_p) {
+      _converter = converter_p;
+      _uriDigests = new HashMap<URI, byte[]>();
+    }
+    /**
+     * @see org.eclipse.emf.ecore.resource.URIHandler#canHandle(org.eclipse.emf.common.util.URI)
+     */
+    public boolean canHandle(URI uri_p) {
+      return getDelegate(uri_p) != null;
+    }
+    /**
+     * @see org.eclipse.emf.ecore.resource.URIHandler#contentDescription(org.eclipse.emf.common.util.URI, java.util.Map)
+     */
+    public Map<String, ?> contentDescription(URI uri_p, Map<?, ?> options_p)
+        throws IOException {
+      return getDelegate(uri_p).contentDescription(uri_p, options_p);
+    }
+    /**
+     * The contents which have not been read are digested when the stream is closed.
+     * @see org.eclipse.emf.ecore.resource.URIHandler#createInputStream(org.eclipse.emf.common.util.URI, java.util.Map)
+     */
+    public InputStream createInputStream(final URI uri_p, Map<?, ?> options_p)
+        throws IOException {
+      InputStream input = getDelegate(uri_p).createInputStream(uri_p, options_p);
+      return new DigestInputStream(input, createMessageDigest()) {
+        /** Whether the stream has been closed */
+        private boolean _isClosed = false;
+        /**
+         * @see java.io.FilterInputStream#close()
+         */
+        @Override
+        public void close() throws IOException {
+          if (!_isClosed) {
+            _isClosed = true;
+            try {
+              byte[] buffer = new byte[8192];
+              while (read(buffer) >= 0) {
+                // Digest the remaining contents
+              }
+              byte[] digest = getMessageDigest().digest();
+              synchronized (_uriDigests) {
+                _uriDigests.put(uri_p, digest);
+              }
+            } finally {
+              super.close();
+            }
+          }
+        }
+      };
+    }
+    /**
+     * @see org.eclipse.emf.ecore.resource.URIHandler#createOutputStream(org.eclipse.emf.common.util.URI, java.util.Map)
+     */
+    public OutputStream createOutputStream(URI uri_p, Map<?, ?> options_p)
+        throws IOException {
+      return getDelegate(uri_p).createOutputStream(uri_p, options_p);
+    }
+    /**
+     * @see org.eclipse.emf.ecore.resource.URIHandler#delete(org.eclipse.emf.common.util.URI, java.util.Map)
+     */
+    public void delete(URI uri_p, Map<?, ?> options_p) throws IOException {
+      getDelegate(uri_p).delete(uri_p, options_p);
+    }
+    /**
+     * Drop the digest of the contents which have been read from the given URI, if any
+     * @param uri_p a non-null normalized URI
+     */
+    public void dropDigest(URI uri_p) {
+      synchronized (_uriDigests) {
+        _uriDigests.remove(uri_p);
+      }
+    }
+    /**
+     * @see org.eclipse.emf.ecore.resource.URIHandler#exists(org.eclipse.emf.common.util.URI, java.util.Map)
+     */
+    public boolean exists(URI uri_p, Map<?, ?> options_p) {
+      return getDelegate(uri_p).exists(uri_p, options_p);
+    }
+    /**
+     * @see org.eclipse.emf.ecore.resource.URIHandler#getAttributes(org.eclipse.emf.common.util.URI, java.util.Map)
+     */
+    public Map<String, ?> getAttributes(URI uri_p, Map<?, ?> options_p) {
+      return getDelegate(uri_p).getAttributes(uri_p, options_p);
+    }
+    /**
+     * Return the handler of the URI converter, other than this one, which is
+     * applicable to the given URI
+     * @param uri_p a non-null URI
+     * @return a handler, or null if none
+     */
+    protected URIHandler getDelegate(URI uri_p) {
+      for (URIHandler handler : _converter.getURIHandlers()) {
+        if (handler != this && handler.canHandle(uri_p))
+          return handler;
+      }
+      return null;
+    }
+    /**
+     * Return the digest of the contents which have last been read from the given URI
+     * @param uri_p a non-null normalized URI
+     * @return a potentially null array of bytes
+     */
+    public byte[] getDigest(URI uri_p) {
+      synchronized (_uriDigests) {
+        return _uriDigests.get(uri_p);
+      }
+    }
+    /**
+     * @see org.eclipse.emf.ecore.resource.URIHandler#setAttributes(org.eclipse.emf.common.util.URI, java.util.Map, java.util.Map)
+     */
+    public void setAttributes(URI uri_p, Map<String, ?> attributes_p,
+        Map<?, ?> options_p) throws IOException {
+      getDelegate(uri_p).setAttributes(uri_p, attributes_p, options_p);
+    }
+  }
+  
 }
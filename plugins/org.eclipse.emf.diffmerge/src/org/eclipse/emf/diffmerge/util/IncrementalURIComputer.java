@@ -0,0 +1,217 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.util;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+
+
+/**
+ * A computer of URIs of model elements which returns the same results as
+ * EcoreUtil#getURI(EObject) but which remembers the positions of elements in
+ * their containment lists and the path-based URI fragments of containers.
+ * The fragment of an element is thus obtained by extending the fragment of its
+ * container by one segment, in time which depends neither on the depth of the
+ * element nor on the number of its siblings.
+ * The optimization only applies to resources and elements which rely on the
+ * default fragment computation of EMF; this is checked once per class by comparing
+ * the first results with those of EMF. Other cases are delegated to EMF.
+ * Models must not be modified during the lifetime of an instance.
+ * Instances are thread-safe.
+ */
+public class IncrementalURIComputer {
+  
+  /** The non-null map from elements to their position in their containment list */
+  private final ConcurrentHashMap<EObject, Integer> _positions;
+  
+  /** The non-null map from root elements to their position in their resource */
+  private final ConcurrentHashMap<EObject, Integer> _rootPositions;
+  
+  /** The non-null map from containers to their path-based URI fragment */
+  private final ConcurrentHashMap<EObject, String> _containerFragments;
+  
+  /** The non-null map from classes to whether they use the default fragment computation,
+   *  where classes which are absent have not been checked yet */
+  private final ConcurrentHashMap<Class<?>, Boolean> _defaultFragmentClasses;
+  
+  
+  /**
+   * Constructor
+   */
+  public IncrementalURIComputer() {
+    _positions = new ConcurrentHashMap<EObject, Integer>();
+    _rootPositions = new ConcurrentHashMap<EObject, Integer>();
+    _containerFragments = new ConcurrentHashMap<EObject, String>();
+    _defaultFragmentClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+  }
+  
+  /**
+   * Append the URI fragment segment of the given element within the given container
+   * to the given buffer
+   * @see InternalEObject#eURIFragmentSegment(EStructuralFeature, EObject)
+   * @param builder_p a non-null buffer
+   * @param container_p a non-null element
+   * @param feature_p the potentially null containing feature of the element
+   * @param element_p a non-null element contained in container_p
+   */
+  protected void appendURIFragmentSegment(StringBuilder builder_p,
+      InternalEObject container_p, EStructuralFeature feature_p, EObject element_p) {
+    String segment = null;
+    Class<?> type = container_p.getClass();
+    Boolean usesDefault = _defaultFragmentClasses.get(type);
+    if (!Boolean.FALSE.equals(usesDefault) &&
+        feature_p instanceof EReference && feature_p.isMany() &&
+        ((EReference)feature_p).getEKeys().isEmpty()) {
+      List<?> values = (List<?>)container_p.eGet(feature_p, false);
+      segment = '@' + feature_p.getName() + '.' + getPosition(element_p, values, _positions);
+      if (usesDefault == null) {
+        String actual = container_p.eURIFragmentSegment(feature_p, element_p);
+        _defaultFragmentClasses.put(type, Boolean.valueOf(segment.equals(actual)));
+        segment = actual;
+      }
+    }
+    if (segment == null)
+      segment = container_p.eURIFragmentSegment(feature_p, element_p);
+    builder_p.append(segment);
+  }
+  
+  /**
+   * Return the path-based URI fragment of the given container within the given resource
+   * @param container_p a non-null element which belongs to the given resource
+   * @param resource_p a non-null resource
+   * @return a non-null string
+   */
+  protected String getContainerFragment(InternalEObject container_p, Resource resource_p) {
+    String result = _containerFragments.get(container_p);
+    if (result == null) {
+      result = getPathFragment(container_p, resource_p);
+      _containerFragments.put(container_p, result);
+    }
+    return result;
+  }
+  
+  /**
+   * Return the URI fragment of the given element within the given resource as
+   * computed by default by EMF
+   * @see ResourceImpl#getURIFragment(EObject)
+   * @param element_p a non-null element which belongs to the given resource
+   * @param resource_p a non-null resource
+   * @return a non-null string
+   */
+  protected String getFragment(EObject element_p, Resource resource_p) {
+    String result = null;
+    if (resource_p instanceof XMLResource)
+      result = ((XMLResource)resource_p).getID(element_p);
+    if (result == null)
+      result = EcoreUtil.getID(element_p);
+    if (result == null)
+      result = getPathFragment((InternalEObject)element_p, resource_p);
+    return result;
+  }
+  
+  /**
+   * Return the path-based URI fragment of the given element within the given resource
+   * @see ResourceImpl#getURIFragment(EObject)
+   * @param element_p a non-null element which belongs to the given resource
+   * @param resource_p a non-null resource
+   * @return a non-null string
+   */
+  protected String getPathFragment(InternalEObject element_p, Resource resource_p) {
+    StringBuilder builder;
+    if (element_p.eDirectResource() == resource_p) {
+      // Root
+      builder = new StringBuilder("/"); //$NON-NLS-1$
+      List<EObject> roots = resource_p.getContents();
+      if (roots.size() > 1)
+        builder.append(getPosition(element_p, roots, _rootPositions));
+    } else {
+      InternalEObject container = element_p.eInternalContainer();
+      builder = new StringBuilder(getContainerFragment(container, resource_p));
+      builder.append('/');
+      appendURIFragmentSegment(builder, container, element_p.eContainingFeature(), element_p);
+    }
+    return builder.toString();
+  }
+  
+  /**
+   * Return the position of the given element in the given list
+   * @param element_p a non-null element
+   * @param list_p a non-null list which is the containment list of the element
+   * @param positions_p a non-null, modifiable map of the known positions in such lists
+   * @return a positive int or -1 if not found
+   */
+  protected int getPosition(EObject element_p, List<?> list_p,
+      ConcurrentHashMap<EObject, Integer> positions_p) {
+    Integer result = positions_p.get(element_p);
+    if (result == null) {
+      // Register the positions of all members at once
+      for (int i = 0; i < list_p.size(); i++) {
+        Object member = list_p instanceof InternalEList<?>?
+            ((InternalEList<?>)list_p).basicGet(i): list_p.get(i);
+        if (member instanceof EObject)
+          positions_p.putIfAbsent((EObject)member, Integer.valueOf(i));
+      }
+      result = positions_p.get(element_p);
+      if (result == null)
+        result = Integer.valueOf(list_p.indexOf(element_p));
+    }
+    return result.intValue();
+  }
+  
+  /**
+   * Return the URI of the given element
+   * @see EcoreUtil#getURI(EObject)
+   * @param element_p a non-null element
+   * @return a non-null URI
+   */
+  public URI getURI(EObject element_p) {
+    URI result = null;
+    if (!element_p.eIsProxy()) {
+      Resource resource = element_p.eResource();
+      if (resource instanceof ResourceImpl) {
+        Class<?> type = resource.getClass();
+        Boolean usesDefault = _defaultFragmentClasses.get(type);
+        if (!Boolean.FALSE.equals(usesDefault)) {
+          String fragment = getFragment(element_p, resource);
+          if (usesDefault == null) {
+            // Roots are not representative: the check goes on until a contained element
+            String actual = resource.getURIFragment(element_p);
+            if (!fragment.equals(actual))
+              _defaultFragmentClasses.put(type, Boolean.FALSE);
+            else if (element_p.eContainer() != null)
+              _defaultFragmentClasses.put(type, Boolean.TRUE);
+            fragment = actual;
+          }
+          result = resource.getURI().appendFragment(fragment);
+        }
+      }
+    }
+    if (result == null)
+      result = EcoreUtil.getURI(element_p);
+    return result;
+  }
+  
+}
@@ -0,0 +1,224 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.util;
+
+
+/**
+ * Utility class for comparing the orders of values in ordered features.
+ * The order of a list of values with respect to another list is represented
+ * by an array of positions: the i-th position is the position in the other list
+ * of the counterpart of the i-th value, or a negative number if the value has
+ * no counterpart in the other list. Negative positions are ignored.
+ */
+public final class OrderingUtil {
+  
+  /**
+   * Private constructor
+   */
+  private OrderingUtil() {
+    // Forbids instantiation
+  }
+  
+  /**
+   * Return the index of the first value whose position is lower than the position
+   * of a previous value
+   * @param positions_p a non-null array of positions
+   * @return a positive int or 0, or -1 if positions are ordered
+   */
+  public static int getFirstInversion(int[] positions_p) {
+    int maxPosition = -1;
+    for (int i = 0; i < positions_p.length; i++) {
+      int position = positions_p[i];
+      if (position >= 0) {
+        if (position < maxPosition)
+          return i;
+        maxPosition = position;
+      }
+    }
+    return -1;
+  }
+  
+  /**
+   * Return the index of the first value which must be moved in a minimal sequence
+   * of moves which puts the values of the other list in the same order as the values
+   * @see #getMoves(int[], int)
+   * @param positions_p a non-null array of positions
+   * @return a positive int or 0, or -1 if positions are ordered
+   */
+  public static int getFirstMove(int[] positions_p) {
+    int result = -1;
+    if (getFirstInversion(positions_p) >= 0) {
+      int[] sequence = getLongestIncreasingSequence(positions_p);
+      int next = 0; // Index in sequence of the next value which is not moved
+      for (int i = 0; i < positions_p.length && result < 0; i++) {
+        if (next < sequence.length && sequence[next] == i)
+          next++;
+        else if (positions_p[i] >= 0)
+          result = i;
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Return the position in the other list at which the counterpart of the value at
+   * the given index must be inserted for being ordered like the values, consistently
+   * with getMoves(int[], int): right before the counterpart of its closest successor
+   * which is not moved or, if there is none, right after the counterpart of its
+   * closest predecessor which is not moved. The counterpart of the value itself, if any,
+   * is ignored.
+   * @see #getMoves(int[], int)
+   * @param positions_p a non-null array of positions
+   * @param index_p a valid index in positions_p
+   * @return a positive int or 0, or -1 if no value other than the given one has a counterpart
+   */
+  public static int getInsertionPosition(int[] positions_p, int index_p) {
+    int[] positions = positions_p.clone();
+    positions[index_p] = -1;
+    int[] sequence = getLongestIncreasingSequence(positions);
+    int result = -1;
+    for (int k = 0; k < sequence.length && result < 0; k++) {
+      if (sequence[k] > index_p)
+        result = positions[sequence[k]];
+    }
+    if (result < 0 && sequence.length > 0)
+      result = positions[sequence[sequence.length - 1]] + 1;
+    return result;
+  }
+  
+  /**
+   * Return the indexes of the values which belong to a longest sequence of
+   * values whose positions are strictly increasing.
+   * Complexity is O(n log n) where n is the number of values.
+   * @param positions_p a non-null array of positions
+   * @return a non-null, potentially empty array of indexes in increasing order
+   */
+  public static int[] getLongestIncreasingSequence(int[] positions_p) {
+    int n = positions_p.length;
+    // ends[k]: index of the smallest last value of an increasing sequence of length k+1
+    int[] ends = new int[n];
+    // previous[i]: index of the value which precedes value i in its sequence
+    int[] previous = new int[n];
+    int length = 0;
+    for (int i = 0; i < n; i++) {
+      int position = positions_p[i];
+      if (position >= 0) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+          int middle = (low + high) >>> 1;
+          if (positions_p[ends[middle]] < position)
+            low = middle + 1;
+          else
+            high = middle;
+        }
+        previous[i] = low > 0? ends[low - 1]: -1;
+        ends[low] = i;
+        if (low == length)
+          length++;
+      }
+    }
+    int[] result = new int[length];
+    int current = length > 0? ends[length - 1]: -1;
+    for (int k = length - 1; k >= 0; k--) {
+      result[k] = current;
+      current = previous[current];
+    }
+    return result;
+  }
+  
+  /**
+   * Return a minimal sequence of moves which puts the values of the other list
+   * in the same order as the values. Values which have no counterpart are never
+   * moved. Every moved value is placed right before the counterpart of its closest
+   * successor which has a counterpart or, if there is none, right after the
+   * counterpart of its closest predecessor which is not moved.
+   * Complexity is O(n log n + d) where n is the number of values and d is the sum
+   * of the distances of the moves.
+   * @param positions_p a non-null array of positions
+   * @param size_p the size of the other list, which is greater than every position
+   * @return a non-null, potentially empty array of moves to apply in order, where
+   *         every move is an array of two ints which are positions in the other list
+   *         at the time the move is applied: the position before which the value
+   *         must be inserted, or the size of the list for the end of the list, and
+   *         the old position of the value
+   * @see org.eclipse.emf.diffmerge.api.scopes.IEditableModelScope#move(org.eclipse.emf.ecore.EObject, org.eclipse.emf.ecore.EStructuralFeature, int, int)
+   */
+  public static int[][] getMoves(int[] positions_p, int size_p) {
+    int[] sequence = getLongestIncreasingSequence(positions_p);
+    boolean[] stable = new boolean[positions_p.length];
+    for (int index : sequence)
+      stable[index] = true;
+    int nbMoves = 0;
+    for (int i = 0; i < positions_p.length; i++) {
+      if (positions_p[i] >= 0 && !stable[i])
+        nbMoves++;
+    }
+    int[][] result = new int[nbMoves][];
+    if (nbMoves > 0) {
+      // Track the current positions in the other list of its original values
+      int[] originals = new int[size_p];
+      int[] currents = new int[size_p];
+      for (int i = 0; i < size_p; i++) {
+        originals[i] = i;
+        currents[i] = i;
+      }
+      int lastStable = positions_p[sequence[sequence.length - 1]];
+      int successor = -1;
+      int k = 0;
+      for (int i = positions_p.length - 1; i >= 0; i--) {
+        int position = positions_p[i];
+        if (position >= 0) {
+          if (!stable[i]) {
+            int from = currents[position];
+            int to = successor >= 0? currents[successor]: currents[lastStable] + 1;
+            result[k++] = new int[] {to, from};
+            move(originals, currents, from < to? to - 1: to, from);
+          }
+          successor = position;
+        }
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Move a value within a list of original positions and update the current
+   * positions accordingly
+   * @param originals_p a non-null array of the original positions of the values
+   *          in the order of the list
+   * @param currents_p a non-null array of the current positions of the values
+   *          in the order of their original positions
+   * @param to_p the new position of the value
+   * @param from_p the old position of the value
+   */
+  private static void move(int[] originals_p, int[] currents_p, int to_p, int from_p) {
+    int value = originals_p[from_p];
+    if (from_p < to_p) {
+      for (int i = from_p; i < to_p; i++) {
+        originals_p[i] = originals_p[i + 1];
+        currents_p[originals_p[i]] = i;
+      }
+    } else {
+      for (int i = from_p; i > to_p; i--) {
+        originals_p[i] = originals_p[i - 1];
+        currents_p[originals_p[i]] = i;
+      }
+    }
+    originals_p[to_p] = value;
+    currents_p[value] = to_p;
+  }
+  
+}
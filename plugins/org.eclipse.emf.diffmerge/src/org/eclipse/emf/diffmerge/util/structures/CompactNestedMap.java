@@ -0,0 +1,387 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.util.structures;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * A memory-efficient double map: key -> sub-key -> value, which is meant for
+ * a small number of keys and a potentially large number of sub-keys per key.
+ * Keys are compared by reference and looked up linearly. Sub-keys are compared
+ * by equality and looked up linearly or, beyond a small number of entries,
+ * through an open-addressing hash table.
+ * All entries are held in arrays and keep their insertion order.
+ * Removal of individual entries is not supported.
+ * @param K the type of the keys
+ * @param L the type of the sub-keys
+ * @param V the type of the values
+ */
+public class CompactNestedMap<K, L, V> {
+  
+  /** The number of entries per key beyond which sub-keys are hashed */
+  protected static final int HASHING_THRESHOLD = 8;
+  
+  /** The keys, of which the first _size ones are significant, or null if none */
+  private Object[] _keys;
+  
+  /** The sub-maps in the same order as the keys, or null if none */
+  private SubMap[] _subMaps;
+  
+  /** The number of keys */
+  private int _size;
+  
+  
+  /**
+   * Constructor for an empty map
+   */
+  public CompactNestedMap() {
+    _keys = null;
+    _subMaps = null;
+    _size = 0;
+  }
+  
+  /**
+   * Remove all entries from this map
+   */
+  public void clear() {
+    _keys = null;
+    _subMaps = null;
+    _size = 0;
+  }
+  
+  /**
+   * Return the value associated to the given key and sub-key, if any
+   * @param key_p a potentially null object
+   * @param subKey_p a potentially null object
+   * @return a potentially null value
+   */
+  @SuppressWarnings("unchecked")
+  public V get(Object key_p, Object subKey_p) {
+    V result = null;
+    SubMap subMap = getSubMap(key_p);
+    if (subMap != null)
+      result = (V)subMap.get(subKey_p);
+    return result;
+  }
+  
+  /**
+   * Return the sub-map for the given key, if any
+   * @param key_p a potentially null object
+   * @return a potentially null sub-map
+   */
+  private SubMap getSubMap(Object key_p) {
+    SubMap result = null;
+    for (int i = 0; i < _size && result == null; i++) {
+      if (_keys[i] == key_p)
+        result = _subMaps[i];
+    }
+    return result;
+  }
+  
+  /**
+   * Return whether this map has no entry
+   */
+  public boolean isEmpty() {
+    return _size == 0;
+  }
+  
+  /**
+   * Return an unmodifiable view of the keys of this map in insertion order
+   * @return a non-null, potentially empty set
+   */
+  public Set<K> keySet() {
+    return new AbstractSet<K>() {
+      /**
+       * @see java.util.AbstractCollection#contains(java.lang.Object)
+       */
+      @Override
+      public boolean contains(Object object_p) {
+        return getSubMap(object_p) != null;
+      }
+      /**
+       * @see java.util.AbstractCollection#iterator()
+       */
+      @Override
+      public Iterator<K> iterator() {
+        return new ArrayIterator<K>(_keys, _size, 1, 0);
+      }
+      /**
+       * @see java.util.AbstractCollection#size()
+       */
+      @Override
+      public int size() {
+        return _size;
+      }
+    };
+  }
+  
+  /**
+   * Associate the given value to the given key and sub-key
+   * @param key_p a potentially null object
+   * @param subKey_p a potentially null object
+   * @param value_p a potentially null value
+   * @return the value formerly associated to the key and sub-key, if any
+   */
+  @SuppressWarnings("unchecked")
+  public V put(K key_p, L subKey_p, V value_p) {
+    SubMap subMap = getSubMap(key_p);
+    if (subMap == null) {
+      if (_keys == null) {
+        _keys = new Object[2];
+        _subMaps = new SubMap[2];
+      } else if (_size == _keys.length) {
+        Object[] newKeys = new Object[2 * _size];
+        System.arraycopy(_keys, 0, newKeys, 0, _size);
+        _keys = newKeys;
+        SubMap[] newSubMaps = new SubMap[2 * _size];
+        System.arraycopy(_subMaps, 0, newSubMaps, 0, _size);
+        _subMaps = newSubMaps;
+      }
+      subMap = new SubMap();
+      _keys[_size] = key_p;
+      _subMaps[_size] = subMap;
+      _size++;
+    }
+    return (V)subMap.put(subKey_p, value_p);
+  }
+  
+  /**
+   * Return an unmodifiable view of the values associated to the given key
+   * in insertion order
+   * @param key_p a potentially null object
+   * @return a non-null, potentially empty collection
+   */
+  public Collection<V> values(Object key_p) {
+    Collection<V> result;
+    final SubMap subMap = getSubMap(key_p);
+    if (subMap == null) {
+      result = Collections.emptyList();
+    } else {
+      result = new AbstractCollection<V>() {
+        /**
+         * @see java.util.AbstractCollection#iterator()
+         */
+        @Override
+        public Iterator<V> iterator() {
+          return new ArrayIterator<V>(subMap._entries, subMap._size, 2, 1);
+        }
+        /**
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+          return subMap._size;
+        }
+      };
+    }
+    return result;
+  }
+  
+  
+  /**
+   * A map from sub-keys to values whose entries are stored in a single array
+   * of alternate sub-keys and values.
+   */
+  private static class SubMap {
+  
+    /** The non-null entries: sub-key at 2i and value at 2i+1 for the i-th entry */
+    protected Object[] _entries;
+  
+    /** The number of entries */
+    protected int _size;
+  
+    /** The hash table of 1-based entry positions (0 for free slots), or null if
+     * the number of entries does not exceed HASHING_THRESHOLD */
+    private int[] _table;
+  
+    /**
+     * Constructor
+     */
+    protected SubMap() {
+      _entries = new Object[4];
+      _size = 0;
+      _table = null;
+    }
+  
+    /**
+     * Return the value associated to the given sub-key, if any
+     * @param subKey_p a potentially null object
+     */
+    protected Object get(Object subKey_p) {
+      int position = indexOf(subKey_p);
+      return position < 0? null: _entries[2 * position + 1];
+    }
+  
+    /**
+     * Return the hash of the given sub-key
+     * @param subKey_p a potentially null object
+     */
+    private int hash(Object subKey_p) {
+      int result = subKey_p == null? 0: subKey_p.hashCode();
+      result ^= (result >>> 20) ^ (result >>> 12);
+      return result ^ (result >>> 7) ^ (result >>> 4);
+    }
+  
+    /**
+     * Return the position of the entry for the given sub-key, or -1 if none
+     * @param subKey_p a potentially null object
+     */
+    private int indexOf(Object subKey_p) {
+      int result = -1;
+      if (_table == null) {
+        for (int i = 0; i < _size && result < 0; i++) {
+          Object current = _entries[2 * i];
+          if (current == subKey_p || current != null && current.equals(subKey_p))
+            result = i;
+        }
+      } else {
+        int mask = _table.length - 1;
+        int slot = hash(subKey_p) & mask;
+        while (result < 0 && _table[slot] != 0) {
+          int position = _table[slot] - 1;
+          Object current = _entries[2 * position];
+          if (current == subKey_p || current != null && current.equals(subKey_p))
+            result = position;
+          else
+            slot = (slot + 1) & mask;
+        }
+      }
+      return result;
+    }
+  
+    /**
+     * Associate the given value to the given sub-key
+     * @param subKey_p a potentially null object
+     * @param value_p a potentially null object
+     * @return the value formerly associated to the sub-key, if any
+     */
+    protected Object put(Object subKey_p, Object value_p) {
+      Object result = null;
+      int position = indexOf(subKey_p);
+      if (position >= 0) {
+        result = _entries[2 * position + 1];
+        _entries[2 * position + 1] = value_p;
+      } else {
+        if (2 * _size == _entries.length) {
+          Object[] newEntries = new Object[2 * _entries.length];
+          System.arraycopy(_entries, 0, newEntries, 0, _entries.length);
+          _entries = newEntries;
+        }
+        _entries[2 * _size] = subKey_p;
+        _entries[2 * _size + 1] = value_p;
+        _size++;
+        if (_table != null && 2 * _size <= _table.length)
+          register(_size - 1);
+        else if (_size > HASHING_THRESHOLD)
+          rehash();
+      }
+      return result;
+    }
+  
+    /**
+     * Register the entry at the given position in the hash table
+     * @param position_p a valid entry position
+     */
+    private void register(int position_p) {
+      int mask = _table.length - 1;
+      int slot = hash(_entries[2 * position_p]) & mask;
+      while (_table[slot] != 0)
+        slot = (slot + 1) & mask;
+      _table[slot] = position_p + 1;
+    }
+  
+    /**
+     * Rebuild the hash table so that its load factor does not exceed 1/2
+     */
+    private void rehash() {
+      int capacity = Integer.highestOneBit(_size) * 4;
+      _table = new int[capacity];
+      for (int i = 0; i < _size; i++)
+        register(i);
+    }
+  }
+  
+  
+  /**
+   * An iterator over regularly spaced elements of an array.
+   * @param E the type of the elements
+   */
+  private static class ArrayIterator<E> implements Iterator<E> {
+  
+    /** The non-null array */
+    private final Object[] _array;
+  
+    /** The number of elements to iterate over */
+    private final int _count;
+  
+    /** The space between consecutive elements */
+    private final int _step;
+  
+    /** The position of the first element */
+    private final int _offset;
+  
+    /** The number of elements already returned */
+    private int _returned;
+  
+    /**
+     * Constructor
+     * @param array_p a potentially null array if count_p is 0
+     * @param count_p the positive or zero number of elements to iterate over
+     * @param step_p the positive space between consecutive elements
+     * @param offset_p the position of the first element
+     */
+    protected ArrayIterator(Object[] array_p, int count_p, int step_p, int offset_p) {
+      _array = array_p;
+      _count = count_p;
+      _step = step_p;
+      _offset = offset_p;
+      _returned = 0;
+    }
+  
+    /**
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext() {
+      return _returned < _count;
+    }
+  
+    /**
+     * @see java.util.Iterator#next()
+     */
+    @SuppressWarnings("unchecked")
+    public E next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      E result = (E)_array[_offset + _step * _returned];
+      _returned++;
+      return result;
+    }
+  
+    /**
+     * @see java.util.Iterator#remove()
+     */
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+  
+}
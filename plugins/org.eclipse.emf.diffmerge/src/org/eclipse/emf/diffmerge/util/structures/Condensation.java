@@ -0,0 +1,447 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.util.structures;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+
+/**
+ * The condensation of an endorelation restricted to the elements which are reachable
+ * from given elements, that is, the strongly connected components of the relation graph.
+ * Components are computed once by Tarjan's algorithm in time linear in the number
+ * of reachable elements and couples. They are numbered so that every component comes
+ * after the components it is mapped to: transitive closures can thus be obtained
+ * in an order where elements come after the elements they are mapped to, unless they
+ * belong to the same cycle.
+ * The components reachable from each component which is not a leaf of the condensation
+ * are represented as a bit set which is computed on demand, then shared by all the
+ * transitive closures which involve it.
+ * The relation must not change during the lifetime of the condensation.
+ * @param T the type of the elements
+ */
+public class Condensation<T> {
+  
+  /** The non-null relation being condensed */
+  private final IEndorelation<T> _relation;
+  
+  /** The non-null map from reachable elements to the index of their component */
+  private final Map<T, Integer> _componentIndexes;
+  
+  /** The non-null list of components, each one being a non-null, non-empty list */
+  private final List<List<T>> _components;
+  
+  /** The non-null list of the components reachable from each component, null if not
+      computed yet or if the component is a leaf */
+  private final List<BitSet> _reachableComponents;
+  
+  /** The non-null set of the components which are known to be leaves */
+  private final BitSet _leaves;
+  
+  
+  /**
+   * Constructor
+   * @param relation_p a non-null endorelation
+   * @param elements_p a non-null, potentially empty collection of elements
+   *        from which reachable elements must be covered
+   */
+  public Condensation(IEndorelation<T> relation_p, Collection<? extends T> elements_p) {
+    _relation = relation_p;
+    _componentIndexes = createMap(relation_p.getEqualityTester());
+    _components = new ArrayList<List<T>>();
+    Map<T, Node<T>> nodes = createMap(relation_p.getEqualityTester());
+    for (T element : elements_p) {
+      if (!nodes.containsKey(element))
+        computeComponents(element, nodes);
+    }
+    _reachableComponents = new ArrayList<BitSet>(
+        Collections.<BitSet>nCopies(_components.size(), null));
+    _leaves = new BitSet();
+  }
+  
+  /**
+   * Compute the components of the elements reachable from the given element
+   * which have not been explored yet, according to Tarjan's algorithm.
+   * Implementation is iterative, not recursive, for scalability reasons.
+   * @param element_p a non-null element which has not been explored yet
+   * @param nodes_p the non-null, modifiable map of explored elements
+   */
+  private void computeComponents(T element_p, Map<T, Node<T>> nodes_p) {
+    List<Node<T>> callStack = new ArrayList<Node<T>>();
+    List<Node<T>> tarjanStack = new ArrayList<Node<T>>();
+    callStack.add(newNode(element_p, nodes_p, tarjanStack));
+    while (!callStack.isEmpty()) {
+      Node<T> current = callStack.get(callStack.size() - 1);
+      if (current._successors.hasNext()) {
+        T successor = current._successors.next();
+        Node<T> successorNode = nodes_p.get(successor);
+        if (successorNode == null)
+          callStack.add(newNode(successor, nodes_p, tarjanStack));
+        else if (successorNode._onStack)
+          current._lowLink = Math.min(current._lowLink, successorNode._index);
+      } else {
+        callStack.remove(callStack.size() - 1);
+        if (current._lowLink == current._index) {
+          // Current is the root of a component
+          Integer componentIndex = Integer.valueOf(_components.size());
+          List<T> component = new ArrayList<T>();
+          Node<T> member;
+          do {
+            member = tarjanStack.remove(tarjanStack.size() - 1);
+            member._onStack = false;
+            member._successors = null;
+            component.add(member._element);
+            _componentIndexes.put(member._element, componentIndex);
+          } while (member != current);
+          Collections.reverse(component);
+          _components.add(Collections.unmodifiableList(component));
+        }
+        if (!callStack.isEmpty()) {
+          Node<T> caller = callStack.get(callStack.size() - 1);
+          caller._lowLink = Math.min(caller._lowLink, current._lowLink);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Return a new map whose keys are compared according to the given equality tester
+   * @param tester_p a non-null equality tester
+   * @return a non-null, modifiable, empty map
+   */
+  private static <K, V> Map<K, V> createMap(IEqualityTester tester_p) {
+    Map<K, V> result;
+    if (tester_p == IEqualityTester.BY_REFERENCE)
+      result = new IdentityHashMap<K, V>();
+    else if (tester_p == IEqualityTester.BY_EQUALS)
+      result = new HashMap<K, V>();
+    else
+      result = new FHashMap<K, V>(tester_p).map();
+    return result;
+  }
+  
+  /**
+   * Return the component of the given index
+   * @param index_p a positive int or 0 which is lower than getComponentCount()
+   * @return a non-null, non-empty, unmodifiable list of elements
+   */
+  public List<T> getComponent(int index_p) {
+    return _components.get(index_p);
+  }
+  
+  /**
+   * Return the number of components
+   * @return a positive int or 0
+   */
+  public int getComponentCount() {
+    return _components.size();
+  }
+  
+  /**
+   * Return the index of the component of the given element
+   * @param element_p a non-null element
+   * @return a positive int or 0, or -1 if the element is not covered
+   */
+  public int getComponentIndex(T element_p) {
+    Integer result = _componentIndexes.get(element_p);
+    return result == null? -1: result.intValue();
+  }
+  
+  /**
+   * Return the indexes of the components which are directly reachable from the
+   * component of the given index, excluding itself
+   * @param index_p a positive int or 0 which is lower than getComponentCount()
+   * @return a non-null, potentially empty bit set
+   */
+  private BitSet getDirectlyReachableComponents(int index_p) {
+    BitSet result = new BitSet(index_p);
+    for (T member : _components.get(index_p)) {
+      for (T successor : _relation.get(member)) {
+        int successorIndex = getComponentIndex(successor);
+        if (successorIndex != index_p)
+          result.set(successorIndex);
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Return the indexes of the components which are reachable from the component
+   * of the given index, including itself. Since components come after the components
+   * they are mapped to, the result only contains indexes lower or equal to the given one.
+   * The result is computed on the first call, then shared.
+   * @param index_p a positive int or 0 which is lower than getComponentCount()
+   * @return a bit set which must not be modified, or null if the component is a leaf,
+   *         i.e., if only the component itself is reachable
+   */
+  protected synchronized BitSet getReachableComponents(int index_p) {
+    if (_reachableComponents.get(index_p) == null && !_leaves.get(index_p)) {
+      // Iterative post-order exploration, for scalability reasons
+      List<Integer> toCompute = new ArrayList<Integer>();
+      toCompute.add(Integer.valueOf(index_p));
+      while (!toCompute.isEmpty()) {
+        int current = toCompute.get(toCompute.size() - 1).intValue();
+        if (_reachableComponents.get(current) != null || _leaves.get(current)) {
+          toCompute.remove(toCompute.size() - 1);
+          continue;
+        }
+        BitSet direct = getDirectlyReachableComponents(current);
+        if (direct.isEmpty()) {
+          _leaves.set(current);
+          toCompute.remove(toCompute.size() - 1);
+          continue;
+        }
+        boolean ready = true;
+        for (int i = direct.nextSetBit(0); i >= 0; i = direct.nextSetBit(i + 1)) {
+          if (_reachableComponents.get(i) == null && !_leaves.get(i)) {
+            toCompute.add(Integer.valueOf(i));
+            ready = false;
+          }
+        }
+        if (ready) {
+          BitSet reachable = (BitSet)direct.clone();
+          reachable.set(current);
+          for (int i = direct.nextSetBit(0); i >= 0; i = direct.nextSetBit(i + 1)) {
+            BitSet successorReachable = _reachableComponents.get(i);
+            if (successorReachable != null)
+              reachable.or(successorReachable);
+          }
+          _reachableComponents.set(current, reachable);
+          toCompute.remove(toCompute.size() - 1);
+        }
+      }
+    }
+    return _reachableComponents.get(index_p);
+  }
+  
+  /**
+   * Return the transitive closure of the relation starting on the given elements,
+   * encompassing cycles if there are any. Every element comes after the elements
+   * it is mapped to, unless they belong to the same component.
+   * The closure is a view on the shared bit sets of reachable components: it is
+   * obtained in time proportional to the number of given elements once these bit
+   * sets have been computed.
+   * @param elements_p a non-null collection of covered elements
+   * @return a non-null, unmodifiable list of elements excluding elements_p
+   */
+  public List<T> getTransitiveClosure(Collection<? extends T> elements_p) {
+    BitSet reached = null; // Shared as long as a single bit set is involved
+    BitSet owned = null; // The copy which is owned by the closure, if any
+    Map<T, Boolean> excluded = createMap(_relation.getEqualityTester());
+    for (T element : elements_p) {
+      excluded.put(element, Boolean.TRUE);
+      int index = getComponentIndex(element);
+      BitSet reachable = getReachableComponents(index);
+      if (reachable == null) {
+        // Leaf component: only the component itself is reachable
+        if (reached == null || !reached.get(index)) {
+          if (reached == null)
+            owned = new BitSet();
+          else if (reached != owned)
+            owned = (BitSet)reached.clone();
+          reached = owned;
+          reached.set(index);
+        }
+      } else if (reached == null) {
+        reached = reachable;
+      } else if (reached != reachable) {
+        if (reached != owned)
+          owned = (BitSet)reached.clone();
+        reached = owned;
+        reached.or(reachable);
+      }
+    }
+    List<T> result;
+    if (reached == null)
+      result = Collections.emptyList();
+    else
+      result = new ClosureList(reached, excluded);
+    return result;
+  }
+  
+  /**
+   * Create and register the node of the given newly explored element
+   * @param element_p a non-null element
+   * @param nodes_p the non-null, modifiable map of explored elements
+   * @param tarjanStack_p the non-null, modifiable stack of nodes being assigned components
+   * @return a non-null node
+   */
+  private Node<T> newNode(T element_p, Map<T, Node<T>> nodes_p,
+      List<Node<T>> tarjanStack_p) {
+    Node<T> result = new Node<T>(element_p, nodes_p.size(),
+        _relation.get(element_p).iterator());
+    nodes_p.put(element_p, result);
+    tarjanStack_p.add(result);
+    return result;
+  }
+  
+  
+  /**
+   * An unmodifiable list of the members of given components, excluding given elements,
+   * in the order of the components. The list is computed on the first random access.
+   */
+  private class ClosureList extends AbstractList<T> {
+    /** The non-null indexes of the components, which must not be modified */
+    private final BitSet _componentIndexes;
+    /** The non-null map whose keys are the elements to exclude */
+    private final Map<T, Boolean> _excluded;
+    /** The elements of the list, null if not computed yet */
+    private List<T> _elements;
+    /**
+     * Constructor
+     * @param componentIndexes_p the non-null indexes of the components, which must not be modified
+     * @param excluded_p the non-null map whose keys are the elements to exclude
+     */
+    protected ClosureList(BitSet componentIndexes_p, Map<T, Boolean> excluded_p) {
+      _componentIndexes = componentIndexes_p;
+      _excluded = excluded_p;
+    }
+    /**
+     * @see java.util.AbstractList#get(int)
+     */
+    @Override
+    public T get(int index_p) {
+      return getElements().get(index_p);
+    }
+    /**
+     * Return the elements of this list, computing them if needed
+     * @return a non-null list
+     */
+    private List<T> getElements() {
+      if (_elements == null) {
+        List<T> elements = new ArrayList<T>();
+        Iterator<T> it = iterator();
+        while (it.hasNext())
+          elements.add(it.next());
+        _elements = elements;
+      }
+      return _elements;
+    }
+    /**
+     * @see java.util.AbstractList#iterator()
+     */
+    @Override
+    public Iterator<T> iterator() {
+      return _elements != null? Collections.unmodifiableList(_elements).iterator():
+        new ClosureIterator();
+    }
+    /**
+     * @see java.util.AbstractCollection#size()
+     */
+    @Override
+    public int size() {
+      return getElements().size();
+    }
+    /**
+     * An iterator over the members of the components which skips excluded elements.
+     */
+    private class ClosureIterator implements Iterator<T> {
+      /** The index of the current component, negative if none */
+      private int _componentIndex;
+      /** The position of the next member to consider in the current component */
+      private int _position;
+      /** The next element, null if none */
+      private T _next;
+      /**
+       * Constructor
+       */
+      protected ClosureIterator() {
+        _componentIndex = _componentIndexes.nextSetBit(0);
+        _position = 0;
+        advance();
+      }
+      /**
+       * Set the next element to the next non-excluded member, if any
+       */
+      private void advance() {
+        _next = null;
+        while (_next == null && _componentIndex >= 0) {
+          List<T> component = _components.get(_componentIndex);
+          if (_position < component.size()) {
+            T candidate = component.get(_position++);
+            if (!_excluded.containsKey(candidate))
+              _next = candidate;
+          } else {
+            _componentIndex = _componentIndexes.nextSetBit(_componentIndex + 1);
+            _position = 0;
+          }
+        }
+      }
+      /**
+       * @see java.util.Iterator#hasNext()
+       */
+      public boolean hasNext() {
+        return _next != null;
+      }
+      /**
+       * @see java.util.Iterator#next()
+       */
+      public T next() {
+        if (_next == null)
+          throw new NoSuchElementException();
+        T result = _next;
+        advance();
+        return result;
+      }
+      /**
+       * @see java.util.Iterator#remove()
+       */
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    }
+  }
+  
+  
+  /**
+   * The exploration state of an element in Tarjan's algorithm.
+   * @param T the type of the elements
+   */
+  private static class Node<T> {
+    /** The non-null element */
+    protected final T _element;
+    /** The order of exploration of the element */
+    protected final int _index;
+    /** The lowest index of a node reachable from this one in the stack */
+    protected int _lowLink;
+    /** Whether the node is in the Tarjan stack */
+    protected boolean _onStack;
+    /** The iterator over the elements the element is mapped to, null when done */
+    protected Iterator<T> _successors;
+    /**
+     * Constructor
+     * @param element_p the non-null element
+     * @param index_p the order of exploration of the element
+     * @param successors_p the non-null iterator over the elements the element is mapped to
+     */
+    protected Node(T element_p, int index_p, Iterator<T> successors_p) {
+      _element = element_p;
+      _index = index_p;
+      _lowLink = index_p;
+      _onStack = true;
+      _successors = successors_p;
+    }
+  }
+  
+}
@@ -0,0 +1,109 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.util.structures;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * An unmodifiable view of a collection which excludes the elements of a set.
+ * The excluded elements are assumed to all belong to the collection at most once,
+ * so that the size of the view is obtained in constant time.
+ * @param E the type of the elements
+ */
+public class ExcludingCollection<E> extends AbstractCollection<E> {
+  
+  /** The non-null underlying collection */
+  private final Collection<? extends E> _base;
+  
+  /** The non-null set of the elements to exclude */
+  private final Set<?> _excluded;
+  
+  
+  /**
+   * Constructor
+   * @param base_p a non-null collection
+   * @param excluded_p a non-null set of elements which belong to base_p once
+   */
+  public ExcludingCollection(Collection<? extends E> base_p, Set<?> excluded_p) {
+    _base = base_p;
+    _excluded = excluded_p;
+  }
+  
+  /**
+   * @see java.util.AbstractCollection#contains(java.lang.Object)
+   */
+  @Override
+  public boolean contains(Object object_p) {
+    return !_excluded.contains(object_p) && _base.contains(object_p);
+  }
+  
+  /**
+   * @see java.util.AbstractCollection#iterator()
+   */
+  @Override
+  public Iterator<E> iterator() {
+    final Iterator<? extends E> baseIterator = _base.iterator();
+    return new Iterator<E>() {
+      /** The next element to return */
+      private E _next = null;
+      /** Whether _next is significant */
+      private boolean _hasNext = false;
+      /**
+       * @see java.util.Iterator#hasNext()
+       */
+      public boolean hasNext() {
+        while (!_hasNext && baseIterator.hasNext()) {
+          E candidate = baseIterator.next();
+          if (!_excluded.contains(candidate)) {
+            _next = candidate;
+            _hasNext = true;
+          }
+        }
+        return _hasNext;
+      }
+      /**
+       * @see java.util.Iterator#next()
+       */
+      public E next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        _hasNext = false;
+        E result = _next;
+        _next = null;
+        return result;
+      }
+      /**
+       * @see java.util.Iterator#remove()
+       */
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+  
+  /**
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size() {
+    return _base.size() - _excluded.size();
+  }
+  
+}
@@ -30,7 +30,8 @@ public interface IEndorelation<T> extends IBinaryRelation<T, T> {
    * encompassing cycles if there are any
    * @param element_p a non-null element
    * @return a non-null, unmodifiable set of elements excluding element_p
-   *         whose order is that of a breadth-first exploration of the relation graph
+   *         where every element comes after the elements it is mapped to, unless
+   *         they belong to the same cycle
    */
   List<T> getTransitiveClosure(T element_p);
   
@@ -39,7 +40,8 @@ public interface IEndorelation<T> extends IBinaryRelation<T, T> {
    * encompassing cycles if there are any
    * @param elements_p a non-null, potentially empty collection
    * @return a non-null, unmodifiable set of elements excluding elements_p
-   *         whose order is that of a breadth-first exploration of the relation graph
+   *         where every element comes after the elements it is mapped to, unless
+   *         they belong to the same cycle
    */
   List<T> getTransitiveClosure(Collection<? extends T> elements_p);
   
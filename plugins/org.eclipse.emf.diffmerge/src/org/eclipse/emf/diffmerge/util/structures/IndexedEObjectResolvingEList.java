@@ -0,0 +1,169 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.util.structures;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.util.EObjectResolvingEList;
+
+
+/**
+ * A list of non-containment references to EObjects which is backed by an identity
+ * hash index once it is larger than a small threshold, so that checking whether
+ * it contains a given element takes constant time unless it contains proxies.
+ * Below the threshold, which is the common case, no index is allocated and the
+ * list is searched linearly.
+ * @param E the type of the elements
+ */
+public class IndexedEObjectResolvingEList<E> extends EObjectResolvingEList<E> {
+  
+  /** The serial version ID */
+  private static final long serialVersionUID = 1L;
+  
+  /** The size above which the members of the list are indexed */
+  private static final int INDEX_THRESHOLD = 8;
+  
+  /** The map from the members of the list to their number of occurrences,
+      or null if the list has not been indexed */
+  private Map<Object, Integer> _occurrences;
+  
+  /** The number of proxies in the list, if indexed */
+  private int _proxyCount;
+  
+  /**
+   * Constructor
+   * @param dataClass_p the non-null class of the elements
+   * @param owner_p the non-null owner of the list
+   * @param featureID_p the ID of the feature of the owner which the list defines
+   */
+  public IndexedEObjectResolvingEList(Class<?> dataClass_p, InternalEObject owner_p,
+      int featureID_p) {
+    super(dataClass_p, owner_p, featureID_p);
+    _occurrences = null;
+    _proxyCount = 0;
+  }
+  
+  /**
+   * @see org.eclipse.emf.ecore.util.EcoreEList#contains(java.lang.Object)
+   */
+  @Override
+  public boolean contains(Object object_p) {
+    if (_occurrences == null && size > INDEX_THRESHOLD)
+      index();
+    boolean result;
+    if (_occurrences == null) {
+      result = super.contains(object_p);
+    } else {
+      result = _occurrences.containsKey(object_p);
+      if (!result && _proxyCount > 0)
+        // A proxy may resolve to the object
+        result = super.contains(object_p);
+    }
+    return result;
+  }
+  
+  /**
+   * @see org.eclipse.emf.common.notify.impl.NotifyingListImpl#didAdd(int, java.lang.Object)
+   */
+  @Override
+  protected void didAdd(int index_p, E newObject_p) {
+    super.didAdd(index_p, newObject_p);
+    register(newObject_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.common.notify.impl.NotifyingListImpl#didClear(int, java.lang.Object[])
+   */
+  @Override
+  protected void didClear(int size_p, Object[] oldObjects_p) {
+    super.didClear(size_p, oldObjects_p);
+    _occurrences = null;
+    _proxyCount = 0;
+  }
+  
+  /**
+   * @see org.eclipse.emf.common.notify.impl.NotifyingListImpl#didRemove(int, java.lang.Object)
+   */
+  @Override
+  protected void didRemove(int index_p, E oldObject_p) {
+    super.didRemove(index_p, oldObject_p);
+    unregister(oldObject_p);
+  }
+  
+  /**
+   * @see org.eclipse.emf.common.notify.impl.NotifyingListImpl#didSet(int, java.lang.Object, java.lang.Object)
+   */
+  @Override
+  protected void didSet(int index_p, E newObject_p, E oldObject_p) {
+    super.didSet(index_p, newObject_p, oldObject_p);
+    unregister(oldObject_p);
+    register(newObject_p);
+  }
+  
+  /**
+   * Index the current members of the list
+   */
+  private void index() {
+    _occurrences = new IdentityHashMap<Object, Integer>(2 * size);
+    _proxyCount = 0;
+    for (int i = 0; i < size; i++)
+      register(data[i]);
+  }
+  
+  /**
+   * Register the given object as a new member of the list, if indexed
+   * @param object_p a potentially null object
+   */
+  private void register(Object object_p) {
+    if (_occurrences != null && object_p != null) {
+      Integer occurrences = _occurrences.get(object_p);
+      _occurrences.put(object_p, Integer.valueOf(
+          occurrences == null? 1: occurrences.intValue() + 1));
+      if (object_p instanceof EObject && ((EObject)object_p).eIsProxy())
+        _proxyCount++;
+    }
+  }
+  
+  /**
+   * @see org.eclipse.emf.common.util.BasicEList#setData(int, java.lang.Object[])
+   */
+  @Override
+  public void setData(int size_p, Object[] data_p) {
+    super.setData(size_p, data_p);
+    _occurrences = null;
+    _proxyCount = 0;
+  }
+  
+  /**
+   * Unregister the given object as a former member of the list, if indexed
+   * @param object_p a potentially null object
+   */
+  private void unregister(Object object_p) {
+    if (_occurrences != null && object_p != null) {
+      Integer occurrences = _occurrences.get(object_p);
+      if (occurrences != null) {
+        if (occurrences.intValue() > 1)
+          _occurrences.put(object_p, Integer.valueOf(occurrences.intValue() - 1));
+        else
+          _occurrences.remove(object_p);
+        if (object_p instanceof EObject && ((EObject)object_p).eIsProxy())
+          _proxyCount--;
+      }
+    }
+  }
+}
@@ -16,6 +16,7 @@ package org.eclipse.emf.diffmerge.util.structures.comparable;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.eclipse.emf.common.util.BasicEList;
 import org.eclipse.emf.diffmerge.util.structures.StructuresUtil;
@@ -37,6 +38,12 @@ implements IComparableList<E> {
   /** Whether equals rather than == must be used to compare members */
   private final boolean _useEquals;
   
+  /** The cached hash code, only valid if _hashModCount == modCount */
+  private transient int _hashCode;
+  
+  /** The modification count when the hash code was cached, or -1 if none */
+  private transient int _hashModCount = -1;
+  
   
   /**
    * Constructor for empty list with default capacity and usage of == to compare members
@@ -85,6 +92,15 @@ implements IComparableList<E> {
     return STRUCTURE_COMPARATOR.compare(this, o_p);
   }
   
+  /**
+   * @see org.eclipse.emf.common.util.AbstractEList#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object object_p) {
+    return object_p == this || object_p instanceof List<?> &&
+      hashCode() == object_p.hashCode() && super.equals(object_p);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.util.structures.comparable.IComparableStructure#getCompareIterator()
    */
@@ -92,6 +108,27 @@ implements IComparableList<E> {
     return iterator();
   }
   
+  /**
+   * @see org.eclipse.emf.common.util.AbstractEList#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    if (_hashModCount != modCount) {
+      _hashCode = super.hashCode();
+      _hashModCount = modCount;
+    }
+    return _hashCode;
+  }
+  
+  /**
+   * @see org.eclipse.emf.common.util.BasicEList#setUnique(int, java.lang.Object)
+   */
+  @Override
+  public E setUnique(int index_p, E object_p) {
+    _hashModCount = -1; // Replacing a member does not change the modification count
+    return super.setUnique(index_p, object_p);
+  }
+  
   /**
    * @see org.eclipse.emf.common.util.AbstractEList#toString()
    */
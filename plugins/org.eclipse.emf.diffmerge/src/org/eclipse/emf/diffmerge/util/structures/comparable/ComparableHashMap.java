@@ -16,6 +16,7 @@ package org.eclipse.emf.diffmerge.util.structures.comparable;
 
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.emf.common.util.BasicEList;
@@ -44,6 +45,12 @@ extends BasicEMap<K, V> implements IComparableStructure<IComparableMapEntry<K, V
   /** Whether equals rather than == must be used to compare values */
   private final boolean _useEqualsForValues;
   
+  /** The cached hash code, only valid if _hashModCount == modCount */
+  private transient int _hashCode;
+  
+  /** The modification count when the hash code was cached, or -1 if none */
+  private transient int _hashModCount = -1;
+  
   
   /**
    * Constructor for empty map and usage of == instead of equals for keys and values
@@ -95,6 +102,24 @@ extends BasicEMap<K, V> implements IComparableStructure<IComparableMapEntry<K, V
     return STRUCTURE_COMPARATOR.compare(this, o_p);
   }
   
+  /**
+   * @see org.eclipse.emf.common.util.BasicEMap#didModify(org.eclipse.emf.common.util.BasicEMap.Entry, java.lang.Object)
+   */
+  @Override
+  protected void didModify(BasicEMap.Entry<K, V> entry_p, V newValue_p) {
+    super.didModify(entry_p, newValue_p);
+    _hashModCount = -1; // Replacing a value does not change the modification count
+  }
+  
+  /**
+   * @see org.eclipse.emf.common.util.BasicEMap#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object object_p) {
+    return object_p == this || object_p instanceof List<?> &&
+      hashCode() == object_p.hashCode() && super.equals(object_p);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.util.structures.comparable.IComparableStructure#getCompareIterator()
    */
@@ -106,6 +131,18 @@ extends BasicEMap<K, V> implements IComparableStructure<IComparableMapEntry<K, V
     return (Iterator)Arrays.asList(contents).iterator();
   }
   
+  /**
+   * @see org.eclipse.emf.common.util.BasicEMap#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    if (_hashModCount != modCount) {
+      _hashCode = super.hashCode();
+      _hashModCount = modCount;
+    }
+    return _hashCode;
+  }
+  
   /**
    * @see org.eclipse.emf.common.util.BasicEMap#newEntry(int, java.lang.Object, java.lang.Object)
    */
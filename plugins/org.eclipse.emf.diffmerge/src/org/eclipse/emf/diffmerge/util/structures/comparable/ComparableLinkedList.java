@@ -17,6 +17,7 @@ package org.eclipse.emf.diffmerge.util.structures.comparable;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.ListIterator;
 
 import org.eclipse.emf.common.util.BasicEList;
@@ -43,6 +44,12 @@ implements IComparableList<E> {
   /** Whether equals rather than == must be used to compare members */
   private final boolean _useEquals;
   
+  /** The cached hash code, only valid if _hashModCount == modCount */
+  private transient int _hashCode;
+  
+  /** The modification count when the hash code was cached, or -1 if none */
+  private transient int _hashModCount = -1;
+  
   
   /**
    * Constructor for empty list with default equality tester
@@ -96,6 +103,15 @@ implements IComparableList<E> {
     return STRUCTURE_COMPARATOR.compare(this, o_p);
   }
   
+  /**
+   * @see java.util.AbstractList#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object object_p) {
+    return object_p == this || object_p instanceof List<?> &&
+      hashCode() == object_p.hashCode() && super.equals(object_p);
+  }
+  
   /**
    * @see org.eclipse.emf.diffmerge.util.structures.comparable.IComparableStructure#getCompareIterator()
    */
@@ -103,6 +119,18 @@ implements IComparableList<E> {
     return iterator();
   }
   
+  /**
+   * @see java.util.AbstractList#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    if (_hashModCount != modCount) {
+      _hashCode = super.hashCode();
+      _hashModCount = modCount;
+    }
+    return _hashCode;
+  }
+  
   /**
    * @see java.util.LinkedList#indexOf(Object)
    */
@@ -133,6 +161,29 @@ implements IComparableList<E> {
     return -1;
   }
   
+  /**
+   * @see java.util.LinkedList#listIterator(int)
+   */
+  @Override
+  public ListIterator<E> listIterator(int index_p) {
+    final ListIterator<E> wrapped = super.listIterator(index_p);
+    // Replacing a member does not change the modification count
+    return new ListIterator<E>() {
+      public void add(E e_p) { wrapped.add(e_p); }
+      public boolean hasNext() { return wrapped.hasNext(); }
+      public boolean hasPrevious() { return wrapped.hasPrevious(); }
+      public E next() { return wrapped.next(); }
+      public int nextIndex() { return wrapped.nextIndex(); }
+      public E previous() { return wrapped.previous(); }
+      public int previousIndex() { return wrapped.previousIndex(); }
+      public void remove() { wrapped.remove(); }
+      public void set(E e_p) {
+        _hashModCount = -1;
+        wrapped.set(e_p);
+      }
+    };
+  }
+  
   /**
    * @see java.util.LinkedList#remove(Object)
    */
@@ -145,6 +196,15 @@ implements IComparableList<E> {
     return result;
   }
   
+  /**
+   * @see java.util.LinkedList#set(int, java.lang.Object)
+   */
+  @Override
+  public E set(int index_p, E element_p) {
+    _hashModCount = -1; // Replacing a member does not change the modification count
+    return super.set(index_p, element_p);
+  }
+  
   /**
    * @see org.eclipse.emf.common.util.AbstractEList#toString()
    */
@@ -0,0 +1,194 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.util.structures.comparable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.diffmerge.util.structures.StructuresUtil;
+import org.eclipse.emf.diffmerge.util.structures.comparable.IComparableStructure.IComparableList;
+
+
+/**
+ * An immutable, non-empty list which is Comparable based on its members.
+ * A path is defined as the extension of another path by one member, and it
+ * shares its prefix with that other path: building the paths of all the elements
+ * of a tree thus requires linear time and memory.
+ * Null values are accepted.
+ * @param <E> the type of the elements in the path
+ */
+public class ComparablePath<E extends Comparable<?>> extends AbstractList<E>
+implements IComparableList<E> {
+  
+  /** The potentially null path this path extends */
+  private final ComparablePath<E> _prefix;
+  
+  /** The potentially null last member of this path */
+  private final E _last;
+  
+  /** The number of members */
+  private final int _size;
+  
+  /** The hash code, which is consistent with List#hashCode() */
+  private final int _hashCode;
+  
+  
+  /**
+   * Constructor for a path of one member
+   * @param member_p a potentially null member
+   */
+  public ComparablePath(E member_p) {
+    this(null, member_p);
+  }
+  
+  /**
+   * Constructor for the extension of the given path by the given member
+   * @param prefix_p a potentially null path, where null stands for the empty path
+   * @param last_p a potentially null member
+   */
+  public ComparablePath(ComparablePath<E> prefix_p, E last_p) {
+    _prefix = prefix_p;
+    _last = last_p;
+    _size = prefix_p == null? 1: prefix_p.size() + 1;
+    _hashCode = 31 * (prefix_p == null? 1: prefix_p.hashCode()) +
+      (last_p == null? 0: last_p.hashCode());
+  }
+  
+  /**
+   * Return a path made of the members of the given list followed by the given member.
+   * If the given list is a path, it is shared by the result.
+   * @param prefix_p a non-null, potentially empty list
+   * @param last_p a potentially null member
+   * @return a non-null path
+   */
+  @SuppressWarnings("unchecked")
+  public static <T extends Comparable<?>> ComparablePath<T> extend(
+      List<? extends T> prefix_p, T last_p) {
+    ComparablePath<T> prefix = null;
+    if (prefix_p instanceof ComparablePath<?>) {
+      prefix = (ComparablePath<T>)prefix_p; // Immutable
+    } else {
+      for (T member : prefix_p)
+        prefix = new ComparablePath<T>(prefix, member);
+    }
+    return new ComparablePath<T>(prefix, last_p);
+  }
+  
+  /**
+   * @see java.lang.Comparable#compareTo(java.lang.Object)
+   */
+  public int compareTo(IComparableStructure<?> o_p) {
+    return STRUCTURE_COMPARATOR.compare(this, o_p);
+  }
+  
+  /**
+   * @see java.util.AbstractList#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object object_p) {
+    if (object_p == this)
+      return true;
+    if (!(object_p instanceof List<?>) || hashCode() != object_p.hashCode())
+      return false;
+    if (!(object_p instanceof ComparablePath<?>))
+      return super.equals(object_p);
+    // Compare members backwards until a shared prefix is reached
+    ComparablePath<?> current1 = this;
+    ComparablePath<?> current2 = (ComparablePath<?>)object_p;
+    if (current1.size() != current2.size())
+      return false;
+    while (current1 != current2) {
+      Object last1 = current1._last;
+      Object last2 = current2._last;
+      if (last1 == null? last2 != null: !last1.equals(last2))
+        return false;
+      current1 = current1._prefix;
+      current2 = current2._prefix;
+    }
+    return true;
+  }
+  
+  /**
+   * @see java.util.AbstractList#get(int)
+   */
+  @Override
+  public E get(int index_p) {
+    if (index_p < 0 || index_p >= _size)
+      throw new IndexOutOfBoundsException(String.valueOf(index_p));
+    ComparablePath<E> current = this;
+    for (int i = _size - 1; i > index_p; i--)
+      current = current._prefix;
+    return current._last;
+  }
+  
+  /**
+   * @see org.eclipse.emf.diffmerge.util.structures.comparable.IComparableStructure#getCompareIterator()
+   */
+  public Iterator<E> getCompareIterator() {
+    return iterator();
+  }
+  
+  /**
+   * @see java.util.AbstractList#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    return _hashCode;
+  }
+  
+  /**
+   * @see java.util.AbstractList#iterator()
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterator<E> iterator() {
+    // The members are instances of E stored in an Object array
+    Iterator<?> result = Arrays.asList(toMemberArray()).iterator();
+    return (Iterator<E>)result;
+  }
+  
+  /**
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size() {
+    return _size;
+  }
+  
+  /**
+   * Return the members of this path as an array, from first to last
+   * @return a non-null array
+   */
+  protected Object[] toMemberArray() {
+    Object[] result = new Object[_size];
+    ComparablePath<E> current = this;
+    for (int i = _size - 1; i >= 0; i--) {
+      result[i] = current._last;
+      current = current._prefix;
+    }
+    return result;
+  }
+  
+  /**
+   * @see java.util.AbstractCollection#toString()
+   */
+  @Override
+  public String toString() {
+    return StructuresUtil.toCollectionString(this);
+  }
+  
+}
@@ -26,6 +26,10 @@ import org.eclipse.emf.diffmerge.util.structures.StructuresUtil;
 
 /**
  * A structure which is Comparable based on its contents.
+ * List-based and hash-based implementations cache their structural hash code
+ * so that they can be used efficiently as keys in hash-based maps. As for any key,
+ * a structure must not be modified while it is a member of another structure
+ * or a key in a map.
  * @param <E> the type of the comparable contents
  * @author Olivier Constant
  */
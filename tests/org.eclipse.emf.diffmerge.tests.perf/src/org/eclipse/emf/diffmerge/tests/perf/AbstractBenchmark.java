@@ -0,0 +1,271 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.tests.perf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.diffdata.impl.EComparisonImpl;
+import org.eclipse.emf.diffmerge.impl.policies.DefaultDiffPolicy;
+import org.eclipse.emf.diffmerge.impl.policies.DefaultMatchPolicy;
+import org.eclipse.emf.diffmerge.impl.policies.DefaultMergePolicy;
+import org.eclipse.emf.diffmerge.impl.scopes.SubtreeModelScope;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+
+
+/**
+ * A base class for headless benchmarks which compare an operation before and
+ * after an optimization on synthetic models of configurable size.
+ * Measures are reported on the standard output: they are not assertions since
+ * they depend on the execution environment.
+ */
+public abstract class AbstractBenchmark extends TestCase {
+  
+  /** The number of runs whose measures are ignored */
+  protected static final int WARMUP_RUNS = 3;
+  
+  /** The number of runs whose measures are taken into account */
+  protected static final int MEASURED_RUNS = 7;
+  
+  
+  /**
+   * Create and return a synthetic Ecore model in a resource of its own
+   * @param nbPackages_p the number of sub-packages of the root package
+   * @param nbClasses_p the number of classes per sub-package
+   * @param nbFeatures_p the number of attributes per class
+   * @return a non-null root package
+   */
+  protected EPackage createModel(int nbPackages_p, int nbClasses_p,
+      int nbFeatures_p) {
+    EcoreFactory factory = EcoreFactory.eINSTANCE;
+    EPackage result = factory.createEPackage();
+    result.setName("root"); //$NON-NLS-1$
+    EClass previous = null;
+    for (int i = 0; i < nbPackages_p; i++) {
+      EPackage pkg = factory.createEPackage();
+      pkg.setName("p" + i); //$NON-NLS-1$
+      result.getESubpackages().add(pkg);
+      for (int j = 0; j < nbClasses_p; j++) {
+        EClass clazz = factory.createEClass();
+        clazz.setName("C" + i + '_' + j); //$NON-NLS-1$
+        pkg.getEClassifiers().add(clazz);
+        for (int k = 0; k < nbFeatures_p; k++) {
+          EAttribute attribute = factory.createEAttribute();
+          attribute.setName("a" + k); //$NON-NLS-1$
+          attribute.setEType(EcorePackage.eINSTANCE.getEString());
+          clazz.getEStructuralFeatures().add(attribute);
+        }
+        if (previous != null) {
+          EReference reference = factory.createEReference();
+          reference.setName("previous"); //$NON-NLS-1$
+          reference.setEType(previous);
+          clazz.getEStructuralFeatures().add(reference);
+        }
+        previous = clazz;
+      }
+    }
+    store(result);
+    return result;
+  }
+  
+  /**
+   * Create and return a synthetic Ecore model made of a chain of nested packages,
+   * in a resource of its own
+   * @param depth_p the number of nested packages
+   * @param nbClasses_p the number of classes per package
+   * @return a non-null root package
+   */
+  protected EPackage createDeepModel(int depth_p, int nbClasses_p) {
+    EcoreFactory factory = EcoreFactory.eINSTANCE;
+    EPackage result = factory.createEPackage();
+    result.setName("root"); //$NON-NLS-1$
+    EPackage current = result;
+    for (int i = 0; i < depth_p; i++) {
+      for (int j = 0; j < nbClasses_p; j++) {
+        EClass clazz = factory.createEClass();
+        clazz.setName("C" + j); //$NON-NLS-1$
+        current.getEClassifiers().add(clazz);
+      }
+      EPackage pkg = factory.createEPackage();
+      pkg.setName("p" + i); //$NON-NLS-1$
+      current.getESubpackages().add(pkg);
+      current = pkg;
+    }
+    store(result);
+    return result;
+  }
+  
+  /**
+   * Create and return a copy of the given model in a resource of its own,
+   * where one class out of the given period is renamed
+   * @param model_p a non-null model created by createModel(int, int, int)
+   * @param period_p a strictly positive int
+   * @return a non-null root package
+   */
+  protected EPackage createVariant(EPackage model_p, int period_p) {
+    EPackage result = EcoreUtil.copy(model_p);
+    Iterator<EObject> it = result.eAllContents();
+    int i = 0;
+    while (it.hasNext()) {
+      EObject current = it.next();
+      if (current instanceof EClass && i++ % period_p == 0)
+        ((EClass)current).setName(((EClass)current).getName() + "_v"); //$NON-NLS-1$
+    }
+    store(result);
+    return result;
+  }
+  
+  /**
+   * Create and return a copy of the given model in a resource of its own,
+   * where every class and attribute has its properties changed but keeps
+   * its name, so that the differences are value presences only
+   * @param model_p a non-null model created by createModel(int, int, int)
+   * @return a non-null root package
+   */
+  protected EPackage createValueVariant(EPackage model_p) {
+    EPackage result = EcoreUtil.copy(model_p);
+    Iterator<EObject> it = result.eAllContents();
+    while (it.hasNext()) {
+      EObject current = it.next();
+      if (current instanceof EClass) {
+        ((EClass)current).setAbstract(true);
+      } else if (current instanceof EAttribute) {
+        EAttribute attribute = (EAttribute)current;
+        attribute.setEType(EcorePackage.eINSTANCE.getEInt());
+        attribute.setLowerBound(1);
+        attribute.setUnsettable(true);
+      }
+    }
+    store(result);
+    return result;
+  }
+  
+  /**
+   * Compute and return a comparison between the given models with the default policies
+   * @param target_p a non-null model
+   * @param reference_p a non-null model
+   * @return a non-null comparison
+   */
+  protected IComparison.Editable compare(EObject target_p, EObject reference_p) {
+    IComparison.Editable result = new EComparisonImpl(
+        new SubtreeModelScope(target_p), new SubtreeModelScope(reference_p));
+    result.compute(new DefaultMatchPolicy(), new DefaultDiffPolicy(),
+        new DefaultMergePolicy(), null);
+    return result;
+  }
+  
+  /**
+   * Return all the elements of the given model, including its root
+   * @param model_p a non-null model
+   * @return a non-null, modifiable list
+   */
+  protected List<EObject> getAllElements(EObject model_p) {
+    List<EObject> result = new ArrayList<EObject>();
+    result.add(model_p);
+    Iterator<EObject> it = model_p.eAllContents();
+    while (it.hasNext())
+      result.add(it.next());
+    return result;
+  }
+  
+  /**
+   * Run the given task repeatedly and return the median of the durations of
+   * the measured runs
+   * @param task_p a non-null task
+   * @return a duration in nanoseconds
+   */
+  protected long measure(Runnable task_p) {
+    for (int i = 0; i < WARMUP_RUNS; i++)
+      task_p.run();
+    long[] durations = new long[MEASURED_RUNS];
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      long start = System.nanoTime();
+      task_p.run();
+      durations[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(durations);
+    return durations[MEASURED_RUNS / 2];
+  }
+  
+  /**
+   * Return the amount of heap memory in use once garbage has been collected
+   * @return a number of bytes
+   */
+  protected long getUsedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    long result = Long.MAX_VALUE;
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      System.gc();
+      result = Math.min(result, runtime.totalMemory() - runtime.freeMemory());
+    }
+    return result;
+  }
+  
+  /**
+   * Report the given measures on the standard output
+   * @param operation_p a non-null description of the measured operation
+   * @param nbOperations_p the number of operations per run
+   * @param before_p the duration of a run before the optimization in nanoseconds
+   * @param after_p the duration of a run after the optimization in nanoseconds
+   */
+  protected void report(String operation_p, int nbOperations_p, long before_p,
+      long after_p) {
+    System.out.println(getClass().getSimpleName() + " - " + operation_p + //$NON-NLS-1$
+        " x" + nbOperations_p + ": before " + before_p / 1000 + //$NON-NLS-1$ //$NON-NLS-2$
+        "us, after " + after_p / 1000 + "us, speedup " + //$NON-NLS-1$ //$NON-NLS-2$
+        (after_p > 0? (double)before_p / after_p: Double.NaN));
+  }
+  
+  /**
+   * Report the given memory footprints on the standard output
+   * @param subject_p a non-null description of the measured data
+   * @param before_p the footprint before the optimization in bytes
+   * @param after_p the footprint after the optimization in bytes
+   */
+  protected void reportFootprint(String subject_p, long before_p, long after_p) {
+    System.out.println(getClass().getSimpleName() + " - " + subject_p + //$NON-NLS-1$
+        ": before " + before_p / 1024 + "KB, after " + after_p / 1024 + //$NON-NLS-1$ //$NON-NLS-2$
+        "KB, ratio " + (after_p > 0? (double)before_p / after_p: Double.NaN)); //$NON-NLS-1$
+  }
+  
+  /**
+   * Put the given model into a new resource of a new resource set
+   * @param model_p a non-null model
+   */
+  private void store(EObject model_p) {
+    ResourceSet resourceSet = new ResourceSetImpl();
+    Resource resource = new XMIResourceImpl(URI.createURI("model.ecore")); //$NON-NLS-1$
+    resource.getContents().add(model_p);
+    resourceSet.getResources().add(resource);
+  }
+  
+}
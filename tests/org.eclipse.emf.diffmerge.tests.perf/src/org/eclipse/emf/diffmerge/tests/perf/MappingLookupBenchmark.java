@@ -0,0 +1,116 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.tests.perf;
+
+import java.util.List;
+
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.api.IMapping;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.diffdata.DiffdataPackage;
+import org.eclipse.emf.diffmerge.diffdata.EMapping;
+import org.eclipse.emf.diffmerge.diffdata.EMatch;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature.Setting;
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+
+
+/**
+ * A benchmark of the retrieval of matches from model elements: the index of
+ * the mapping is compared to the cross-reference adapter formerly used.
+ * @see IMapping#getMatchFor(EObject, Role)
+ */
+public class MappingLookupBenchmark extends AbstractBenchmark {
+  
+  /**
+   * Measure the retrieval of the matches of all the elements of a comparison
+   */
+  public void testMatchLookup() {
+    EPackage target = createModel(20, 100, 5);
+    EPackage reference = createVariant(target, 10);
+    IComparison comparison = compare(target, reference);
+    final IMapping mapping = comparison.getMapping();
+    final List<EObject> elements = getAllElements(target);
+    elements.addAll(getAllElements(reference));
+    final MatchCrossReferenceAdapter adapter = new MatchCrossReferenceAdapter();
+    ((EMapping)mapping).eAdapters().add(adapter);
+    for (EObject element : elements) {
+      for (Role role : Role.values())
+        assertSame(adapter.getMatchFor(element, role), mapping.getMatchFor(element, role));
+    }
+    long before = measure(new Runnable() {
+      public void run() {
+        for (EObject element : elements) {
+          adapter.getMatchFor(element, Role.TARGET);
+          adapter.getMatchFor(element, Role.REFERENCE);
+        }
+      }
+    });
+    long after = measure(new Runnable() {
+      public void run() {
+        for (EObject element : elements) {
+          mapping.getMatchFor(element, Role.TARGET);
+          mapping.getMatchFor(element, Role.REFERENCE);
+        }
+      }
+    });
+    report("getMatchFor", 2 * elements.size(), before, after); //$NON-NLS-1$
+    ((EMapping)mapping).eAdapters().remove(adapter);
+  }
+  
+  
+  /**
+   * The cross-reference adapter formerly used for retrieving matches from model elements
+   */
+  protected static class MatchCrossReferenceAdapter extends ECrossReferenceAdapter {
+    /**
+     * Return the match for the given element in the given role, if any
+     * @param element_p a non-null element
+     * @param role_p a non-null role
+     * @return a potentially null match
+     */
+    public IMatch getMatchFor(EObject element_p, Role role_p) {
+      EReference matchReference;
+      switch (role_p) {
+      case ANCESTOR:
+        matchReference = DiffdataPackage.eINSTANCE.getEMatch_Ancestor();
+        break;
+      case REFERENCE:
+        matchReference = DiffdataPackage.eINSTANCE.getEMatch_Reference();
+        break;
+      default:
+        matchReference = DiffdataPackage.eINSTANCE.getEMatch_Target();
+      }
+      for (Setting setting : getNonNavigableInverseReferences(element_p)) {
+        if (setting.getEStructuralFeature() == matchReference)
+          return (EMatch)setting.getEObject();
+      }
+      return null;
+    }
+    /**
+     * @see org.eclipse.emf.ecore.util.ECrossReferenceAdapter#isIncluded(org.eclipse.emf.ecore.EReference)
+     */
+    @Override
+    protected boolean isIncluded(EReference reference_p) {
+      return reference_p == DiffdataPackage.eINSTANCE.getEMatch_Ancestor()
+          || reference_p == DiffdataPackage.eINSTANCE.getEMatch_Reference()
+          || reference_p == DiffdataPackage.eINSTANCE.getEMatch_Target();
+    }
+  }
+  
+}
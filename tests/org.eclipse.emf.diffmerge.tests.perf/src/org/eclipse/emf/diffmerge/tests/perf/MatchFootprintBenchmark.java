@@ -0,0 +1,71 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.tests.perf;
+
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IValuePresence;
+import org.eclipse.emf.diffmerge.diffdata.EMatch;
+import org.eclipse.emf.ecore.EPackage;
+
+
+/**
+ * A benchmark of the memory footprint of the value presences of matches:
+ * the compact index of matches is compared to the persistent maps formerly
+ * filled during the comparison, which replace the index once requested.
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EMatchImpl#getModifiableAttributeMap()
+ * @see org.eclipse.emf.diffmerge.diffdata.impl.EMatchImpl#getModifiableReferenceMap()
+ */
+public class MatchFootprintBenchmark extends AbstractBenchmark {
+  
+  /** The maximal heap used by a comparison per difference in bytes, which the persistent maps exceed */
+  private static final long MAX_BYTES_PER_DIFFERENCE = 800;
+  
+  
+  /**
+   * Measure the heap used by a comparison where all classes and attributes
+   * have their properties changed, before and after its value presences are
+   * moved to the persistent maps
+   */
+  public void testFootprint() {
+    EPackage target = createModel(20, 100, 5);
+    EPackage reference = createValueVariant(target);
+    long initial = getUsedHeap();
+    IComparison comparison = compare(target, reference);
+    long after = getUsedHeap() - initial;
+    int nbDifferences = 0;
+    int nbValuePresences = 0;
+    for (IMatch match : comparison.getMapping().getContents()) {
+      for (IDifference difference : match.getAllDifferences()) {
+        nbDifferences++;
+        if (difference instanceof IValuePresence)
+          nbValuePresences++;
+      }
+    }
+    for (IMatch match : comparison.getMapping().getContents()) {
+      ((EMatch)match).getModifiableAttributeMap();
+      ((EMatch)match).getModifiableReferenceMap();
+    }
+    long before = getUsedHeap() - initial;
+    assertEquals(nbDifferences, comparison.getNbDifferences());
+    reportFootprint("comparison with " + nbValuePresences + //$NON-NLS-1$
+        " value presences out of " + nbDifferences + " differences", //$NON-NLS-1$ //$NON-NLS-2$
+        before, after);
+    assertTrue(nbValuePresences > 0 && nbValuePresences == nbDifferences);
+    assertTrue(after <= MAX_BYTES_PER_DIFFERENCE * nbDifferences);
+  }
+  
+}
@@ -0,0 +1,126 @@
+/**
+ * <copyright>
+ * 
+ * Copyright (c) 2014 Thales Global Services S.A.S.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Thales Global Services S.A.S. - initial API and implementation
+ * 
+ * </copyright>
+ */
+package org.eclipse.emf.diffmerge.tests.perf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.emf.diffmerge.api.IMatchPolicy;
+import org.eclipse.emf.diffmerge.api.scopes.IModelScope;
+import org.eclipse.emf.diffmerge.impl.policies.ConfigurableMatchPolicy;
+import org.eclipse.emf.diffmerge.impl.policies.ConfigurableMatchPolicy.MatchCriterionKind;
+import org.eclipse.emf.diffmerge.impl.scopes.SubtreeModelScope;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+
+
+/**
+ * A benchmark of the registries of structured match IDs on deep containment trees:
+ * the hash-based registry is compared to the comparator-based one formerly used.
+ * @see org.eclipse.emf.diffmerge.impl.helpers.MatchOperation#createMatchIDToElementMap()
+ */
+public class MatchIDRegistryBenchmark extends AbstractBenchmark {
+  
+  /**
+   * Measure the registration and retrieval of the name-based match IDs
+   * of all the elements of two deep models
+   */
+  public void testRegistry() {
+    EPackage target = createDeepModel(200, 20);
+    EPackage reference = createVariant(target, 10);
+    ConfigurableMatchPolicy policy = new ConfigurableMatchPolicy();
+    policy.setUseMatchCriterion(MatchCriterionKind.INTRINSIC_ID, false);
+    policy.setUseMatchCriterion(MatchCriterionKind.EXTRINSIC_ID, false);
+    policy.setUseMatchCriterion(MatchCriterionKind.NAME, true);
+    policy.setUseMatchCriterion(MatchCriterionKind.STRUCTURE, true);
+    final List<Object> targetIDs = getMatchIDs(target, policy);
+    final List<Object> referenceIDs = getMatchIDs(reference, policy);
+    final Map<Object, Integer> hashRegistry = new HashMap<Object, Integer>();
+    final Map<Object, Integer> treeRegistry = new TreeMap<Object, Integer>(
+        IMatchPolicy.NATURAL_ORDER_COMPARATOR);
+    fill(hashRegistry, targetIDs);
+    fill(treeRegistry, targetIDs);
+    assertEquals(treeRegistry.size(), hashRegistry.size());
+    for (Object id : referenceIDs)
+      assertEquals(treeRegistry.get(id), hashRegistry.get(id));
+    long before = measure(new Runnable() {
+      public void run() {
+        treeRegistry.clear();
+        fill(treeRegistry, targetIDs);
+        lookUp(treeRegistry, referenceIDs);
+      }
+    });
+    long after = measure(new Runnable() {
+      public void run() {
+        hashRegistry.clear();
+        fill(hashRegistry, targetIDs);
+        lookUp(hashRegistry, referenceIDs);
+      }
+    });
+    report("match ID registration and lookup", //$NON-NLS-1$
+        targetIDs.size() + referenceIDs.size(), before, after);
+  }
+  
+  /**
+   * Register the given match IDs in the given registry
+   * @param registry_p a non-null, modifiable map
+   * @param ids_p a non-null list of match IDs
+   */
+  protected void fill(Map<Object, Integer> registry_p, List<Object> ids_p) {
+    for (int i = 0; i < ids_p.size(); i++) {
+      Object id = ids_p.get(i);
+      if (id != null)
+        registry_p.put(id, Integer.valueOf(i));
+    }
+  }
+  
+  /**
+   * Return the match IDs of all the elements of the given model in depth-first order
+   * @param model_p a non-null model
+   * @param policy_p a non-null match policy
+   * @return a non-null list
+   */
+  protected List<Object> getMatchIDs(EObject model_p, ConfigurableMatchPolicy policy_p) {
+    IModelScope scope = new SubtreeModelScope(model_p);
+    List<Object> result = new ArrayList<Object>();
+    policy_p.matchingStarted();
+    try {
+      for (EObject element : getAllElements(model_p))
+        result.add(policy_p.getMatchID(element, scope));
+    } finally {
+      policy_p.matchingEnded();
+    }
+    return result;
+  }
+  
+  /**
+   * Look the given match IDs up in the given registry
+   * @param registry_p a non-null map
+   * @param ids_p a non-null list of match IDs
+   * @return the number of match IDs found
+   */
+  protected int lookUp(Map<Object, Integer> registry_p, List<Object> ids_p) {
+    int result = 0;
+    for (Object id : ids_p) {
+      if (id != null && registry_p.get(id) != null)
+        result++;
+    }
+    return result;
+  }
+  
+}
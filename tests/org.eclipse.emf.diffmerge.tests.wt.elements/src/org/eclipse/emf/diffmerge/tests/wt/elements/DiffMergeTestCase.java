@@ -9,6 +9,7 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.common.util.URI;
 import org.eclipse.swt.custom.ViewForm;
 import org.eclipse.swt.widgets.Tree;
 import org.eclipse.ui.IPerspectiveDescriptor;
@@ -173,6 +174,17 @@ public abstract class DiffMergeTestCase extends UITestCaseSWT {
     return getClass().getSimpleName();
   }
   
+  /**
+   * Return the URI of the given predefined model at the given path
+   * @param path the path of the folder of the model in the predefined project
+   * @param isModel1 whether model1 is considered, or model2
+   */
+  protected URI getPredefinedModelURI(String path, boolean isModel1) {
+    String fileName = isModel1? MODEL1: MODEL2;
+    return URI.createPlatformResourceURI(
+        PREDEFINED_PROJECT_NAME + SEP + path + SEP + fileName, true);
+  }
+  
   /**
    * Define the checks that must hold before and after save
    * @param ui a non-null UI context
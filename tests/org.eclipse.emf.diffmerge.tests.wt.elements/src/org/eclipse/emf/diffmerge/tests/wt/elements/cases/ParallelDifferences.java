@@ -0,0 +1,155 @@
+package org.eclipse.emf.diffmerge.tests.wt.elements.cases;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.diffmerge.api.IComparison;
+import org.eclipse.emf.diffmerge.api.IMatch;
+import org.eclipse.emf.diffmerge.api.Role;
+import org.eclipse.emf.diffmerge.api.diff.IDifference;
+import org.eclipse.emf.diffmerge.api.diff.IElementRelativeDifference;
+import org.eclipse.emf.diffmerge.api.diff.IMergeableDifference;
+import org.eclipse.emf.diffmerge.api.diff.IPresenceDifference;
+import org.eclipse.emf.diffmerge.api.diff.IReferenceValuePresence;
+import org.eclipse.emf.diffmerge.api.diff.IValuePresence;
+import org.eclipse.emf.diffmerge.diffdata.impl.EComparisonImpl;
+import org.eclipse.emf.diffmerge.impl.policies.ConfigurableDiffPolicy;
+import org.eclipse.emf.diffmerge.impl.policies.DefaultMatchPolicy;
+import org.eclipse.emf.diffmerge.impl.policies.DefaultMergePolicy;
+import org.eclipse.emf.diffmerge.impl.scopes.RootedModelScope;
+import org.eclipse.emf.diffmerge.tests.wt.elements.DiffMergeTestCase;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+
+/**
+ * Differences detected in parallel must be the same as those detected sequentially
+ */
+public class ParallelDifferences extends DiffMergeTestCase {
+
+  private static final String[] EXAMPLES = {
+    "Graph", "HierarchyAddition", "InterReferencedAdditions",
+    "InterReferencedAdditionsMandatory", "InterReferencedAdditionsNested",
+    "MandatoryRefChange", "MovedInAdded", "NestedReferencedAddition",
+    "NestedReferencedAdditionOpposites", "others/UniqueAddition",
+    "others/UniqueAddition/bigger"
+  };
+  private static final int THREAD_COUNT = 4;
+
+
+  /**
+   * Main test method.
+   */
+  public void testParallelDifferences() throws Exception {
+    for (String example : EXAMPLES) {
+      String sequential = describeDifferences(example, 1);
+      String parallel = describeDifferences(example, THREAD_COUNT);
+      assertEquals(example, sequential, parallel);
+    }
+  }
+
+  /**
+   * Compare the models of the given example and return a description of the
+   * differences and of their dependencies
+   * @param example the path of the example in the predefined project
+   * @param threadCount the number of threads for detecting differences
+   */
+  private String describeDifferences(String example, int threadCount) {
+    IComparison comparison = new EComparisonImpl(
+        getScope(example, true), getScope(example, false));
+    ConfigurableDiffPolicy diffPolicy = new ConfigurableDiffPolicy();
+    diffPolicy.setIgnoreOrders(false);
+    diffPolicy.setThreadCount(threadCount);
+    comparison.compute(new DefaultMatchPolicy(), diffPolicy, new DefaultMergePolicy(), null);
+    List<IDifference> differences = new ArrayList<IDifference>();
+    for (IMatch match : comparison.getMapping().getContents())
+      differences.addAll(match.getAllDifferences());
+    StringBuilder builder = new StringBuilder();
+    for (IDifference difference : differences) {
+      builder.append(describe(difference));
+      if (difference instanceof IMergeableDifference) {
+        IMergeableDifference mergeable = (IMergeableDifference)difference;
+        for (Role role : Role.values()) {
+          builder.append(" requires ").append(getPositions(
+              mergeable.getRequiresDependencies(role), differences));
+          builder.append(" implies ").append(getPositions(
+              mergeable.getImpliesDependencies(role), differences));
+        }
+      }
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Return a description of the given difference
+   * @param difference a non-null difference
+   */
+  private String describe(IDifference difference) {
+    StringBuilder builder = new StringBuilder(difference.getClass().getSimpleName());
+    if (difference instanceof IElementRelativeDifference)
+      builder.append(' ').append(describe(
+          ((IElementRelativeDifference)difference).getElementMatch()));
+    if (difference instanceof IPresenceDifference)
+      builder.append(' ').append(((IPresenceDifference)difference).getPresenceRole());
+    if (difference instanceof IValuePresence) {
+      IValuePresence presence = (IValuePresence)difference;
+      if (presence.getFeature() != null)
+        builder.append(' ').append(presence.getFeature().getName());
+      builder.append(presence.isOrder()? " order ": " value ");
+      if (presence instanceof IReferenceValuePresence)
+        builder.append(describe(((IReferenceValuePresence)presence).getValue()));
+      else
+        builder.append(presence.getValue());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Return a description of the given match
+   * @param match a potentially null match
+   */
+  private String describe(IMatch match) {
+    StringBuilder builder = new StringBuilder("[");
+    if (match != null) {
+      for (Role role : Role.values()) {
+        EObject element = match.get(role);
+        if (element != null)
+          builder.append(EcoreUtil.getURI(element).fragment());
+        builder.append(';');
+      }
+    }
+    return builder.append(']').toString();
+  }
+
+  /**
+   * Return the sorted positions of the given differences in the given list
+   * @param differences a non-null collection of differences
+   * @param all a non-null list which contains the differences
+   */
+  private List<Integer> getPositions(Collection<? extends IDifference> differences,
+      List<IDifference> all) {
+    List<Integer> result = new ArrayList<Integer>();
+    for (IDifference difference : differences)
+      result.add(Integer.valueOf(all.indexOf(difference)));
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * Load the given model of the given example in a new resource set and
+   * return a scope that covers it
+   * @param example the path of the example in the predefined project
+   * @param isModel1 whether model1 is considered, or model2
+   */
+  private RootedModelScope getScope(String example, boolean isModel1) {
+    Resource resource = new ResourceSetImpl().getResource(
+        getPredefinedModelURI(example, isModel1), true);
+    return new RootedModelScope(resource.getContents());
+  }
+
+}